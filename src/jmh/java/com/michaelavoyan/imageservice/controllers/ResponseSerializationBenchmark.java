@@ -0,0 +1,92 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.controllers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.michaelavoyan.imageservice.dto.ImageSummary;
+import com.michaelavoyan.imageservice.dto.OrderedImage;
+import com.michaelavoyan.imageservice.entities.Image;
+import com.michaelavoyan.imageservice.entities.Slideshow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the JSON serialization of responses holding {@code playlistSize} images, with an
+ * {@link ObjectMapper} configured like the one Spring MVC uses.
+ * <ul>
+ *     <li>{@link #slideshowOrder}: the slideshow order polled by players, serialized on cache misses;</li>
+ *     <li>{@link #slideshow}: the slideshow entity returned by {@code addSlideshow};</li>
+ *     <li>{@link #searchResults}: the image summaries returned by {@code images/search}.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResponseSerializationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int playlistSize;
+
+    private ObjectMapper objectMapper;
+    private List<OrderedImage> orderedImages;
+    private Slideshow slideshowEntity;
+    private List<ImageSummary> summaries;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        LocalDateTime createdAt = LocalDateTime.of(2025, 3, 1, 12, 0);
+
+        orderedImages = new ArrayList<>(playlistSize);
+        summaries = new ArrayList<>(playlistSize);
+        List<Image> images = new ArrayList<>(playlistSize);
+        for (int i = 0; i < playlistSize; i++) {
+            long id = i + 1;
+            String url = "https://cdn.example.com/campaigns/spring-2025/creative-" + id + ".jpg";
+            orderedImages.add(new OrderedImage(id, url, 10, createdAt));
+            summaries.add(new ImageSummary(id, url, 10, createdAt, 1L, playlistSize));
+
+            Image image = new Image();
+            image.setId(id);
+            image.setUrl(url);
+            image.setDuration(10);
+            image.setCreatedAt(createdAt);
+            image.setDisplayPosition(i);
+            images.add(image);
+        }
+        slideshowEntity = new Slideshow();
+        slideshowEntity.setId(1L);
+        slideshowEntity.setImages(images);
+    }
+
+    @Benchmark
+    public byte[] slideshowOrder() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(orderedImages);
+    }
+
+    @Benchmark
+    public byte[] slideshow() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(slideshowEntity);
+    }
+
+    @Benchmark
+    public byte[] searchResults() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(summaries);
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.repositories;
+
+import com.michaelavoyan.imageservice.ImageServiceApplication;
+import com.michaelavoyan.imageservice.entities.Image;
+import com.michaelavoyan.imageservice.entities.Slideshow;
+import com.michaelavoyan.imageservice.services.ImageOrderingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the persistence of a new slideshow of {@code images} images over an H2 database, in one
+ * transaction like {@code addSlideshow}.
+ * <ul>
+ *     <li>{@link #insertBatch}: the images inserted in one JDBC batch, as {@code addSlideshow} does;</li>
+ *     <li>{@link #saveAll}: the images saved through Hibernate, as it used to, one INSERT per image since
+ *     Hibernate cannot batch inserts of entities with {@code IDENTITY} IDs.</li>
+ * </ul>
+ * H2 runs in-process, so the gap measured here is the per-statement overhead only; on MySQL every statement
+ * saved is also a network round-trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SlideshowCreationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int images;
+
+    private ConfigurableApplicationContext context;
+    private SlideshowRepository slideshowRepository;
+    private ImageRepository imageRepository;
+    private TransactionTemplate transactionTemplate;
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Makes image URLs unique across invocations; the URL column is unique.
+     */
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(ImageServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                // Command-line arguments, which take precedence over application.properties
+                .run(
+                        "--spring.datasource.url=jdbc:h2:mem:benchmark",
+                        "--spring.datasource.driverClassName=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.hibernate.ddl-auto=create",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN",
+                        // No background index catch-ups competing for the CPU during measurements
+                        "--imageservice.search.catch-up-interval=1h",
+                        "--imageservice.duplicates.catch-up-interval=1h");
+        slideshowRepository = context.getBean(SlideshowRepository.class);
+        imageRepository = context.getBean(ImageRepository.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+    }
+
+    /**
+     * Empties the tables between iterations, so that the database does not grow through the trial.
+     */
+    @TearDown(Level.Iteration)
+    public void clear() {
+        jdbcTemplate.update("DELETE FROM image");
+        jdbcTemplate.update("DELETE FROM slideshow");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Image> insertBatch() {
+        List<Image> slideshowImages = newImages();
+        return transactionTemplate.execute(status -> {
+            assignSlideshow(slideshowImages);
+            imageRepository.insertBatch(slideshowImages);
+            return slideshowImages;
+        });
+    }
+
+    @Benchmark
+    public List<Image> saveAll() {
+        List<Image> slideshowImages = newImages();
+        return transactionTemplate.execute(status -> {
+            assignSlideshow(slideshowImages);
+            return imageRepository.saveAll(slideshowImages);
+        });
+    }
+
+    private List<Image> newImages() {
+        List<Image> slideshowImages = new ArrayList<>(images);
+        for (int i = 0; i < images; i++) {
+            Image image = new Image();
+            image.setUrl("https://cdn.example.com/campaigns/benchmark/creative-" + sequence++ + ".jpg");
+            image.setDuration(10);
+            slideshowImages.add(image);
+        }
+        return slideshowImages;
+    }
+
+    /**
+     * Saves a new slideshow and assigns it to the images, in play order.
+     */
+    private void assignSlideshow(List<Image> slideshowImages) {
+        Slideshow slideshow = slideshowRepository.saveAndFlush(new Slideshow());
+        for (int i = 0; i < slideshowImages.size(); i++) {
+            slideshowImages.get(i).setSlideshow(slideshow);
+            slideshowImages.get(i).setDisplayPosition((i + 1) * ImageOrderingService.POSITION_GAP);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.michaelavoyan.imageservice.ImageServiceApplication;
+import com.michaelavoyan.imageservice.dto.ImageSummary;
+import com.michaelavoyan.imageservice.entities.Image;
+import com.michaelavoyan.imageservice.entities.Slideshow;
+import com.michaelavoyan.imageservice.repositories.ImageRepository;
+import com.michaelavoyan.imageservice.repositories.SlideshowRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of image search over an H2 database of {@code datasetSize} images, comparing the
+ * {@code LIKE} query of {@link ImageRepository#searchImageSummaries} with the in-memory trigram index
+ * of {@link ImageSearchService}. Both return the same summaries.
+ * <p>
+ * The application context runs without a web server; three of four images belong to slideshows of ten.
+ * The queries match about one image in eight ({@code summer}), a hundred images ({@code campaign-42/})
+ * and none ({@code no-such-image}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ImageSearchBenchmark {
+
+    private static final String[] WORDS = {"summer", "winter", "spring", "autumn", "sale", "launch", "promo", "brand"};
+
+    private static final int INSERT_BATCH_SIZE = 1_000;
+
+    @Param({"1000", "10000", "100000"})
+    public int datasetSize;
+
+    @Param({"summer", "campaign-42/", "no-such-image"})
+    public String query;
+
+    private ConfigurableApplicationContext context;
+    private ImageRepository imageRepository;
+    private ImageSearchService imageSearchService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(ImageServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                // Command-line arguments, which take precedence over application.properties
+                .run(
+                        "--spring.datasource.url=jdbc:h2:mem:benchmark",
+                        "--spring.datasource.driverClassName=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.hibernate.ddl-auto=create",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN");
+        imageRepository = context.getBean(ImageRepository.class);
+        imageSearchService = context.getBean(ImageSearchService.class);
+        populate(context.getBean(SlideshowRepository.class));
+        imageSearchService.rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<ImageSummary> searchDatabase() {
+        return imageRepository.searchImageSummaries(query, 0);
+    }
+
+    @Benchmark
+    public List<ImageSummary> searchIndex() {
+        return imageSearchService.search(query, 0);
+    }
+
+    private void populate(SlideshowRepository slideshowRepository) {
+        List<Image> batch = new ArrayList<>(INSERT_BATCH_SIZE);
+        Slideshow slideshow = null;
+        int members = 0;
+        for (int i = 0; i < datasetSize; i++) {
+            Image image = new Image();
+            image.setUrl("https://cdn" + i % 20 + ".example.com/campaign-" + i / 100 + "/"
+                    + WORDS[i % WORDS.length] + "-" + i + ".jpg");
+            image.setDuration(1 + i % 30);
+            if (i % 4 != 0) {
+                if (members % 10 == 0) {
+                    slideshow = slideshowRepository.save(new Slideshow());
+                }
+                image.setSlideshow(slideshow);
+                image.setDisplayPosition(members++ % 10);
+            }
+            batch.add(image);
+            if (batch.size() == INSERT_BATCH_SIZE) {
+                imageRepository.insertBatch(batch);
+                batch = new ArrayList<>(INSERT_BATCH_SIZE);
+            }
+        }
+        imageRepository.insertBatch(batch);
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.utils;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+/**
+ * Image fixtures shared by the benchmarks: the image bundled with the tests and generated ones
+ * covering the shapes seen in production, from icons to camera-sized photos.
+ */
+public final class BenchmarkImages {
+
+    /**
+     * The fixture names accepted by {@link #load}.
+     */
+    public static final String BUNDLED = "js-collections.jpeg";
+    public static final String PHOTO = "photo-4000x3000.jpg";
+    public static final String NOISE = "noise-1024x768.png";
+    public static final String ICON = "icon-64x64.png";
+
+    private BenchmarkImages() {
+    }
+
+    /**
+     * Returns the encoded bytes of a fixture.
+     *
+     * @param name one of the fixture names
+     * @return the encoded image
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    public static byte[] load(String name) {
+        return switch (name) {
+            case BUNDLED -> bundled();
+            case PHOTO -> encode(photo(4000, 3000), "jpg");
+            case NOISE -> encode(noise(1024, 768), "png");
+            case ICON -> encode(photo(64, 64), "png");
+            default -> throw new IllegalArgumentException("Unknown image fixture: " + name);
+        };
+    }
+
+    private static byte[] bundled() {
+        try (InputStream in = BenchmarkImages.class.getResourceAsStream("/" + BUNDLED)) {
+            if (in == null) {
+                throw new IllegalStateException(BUNDLED + " not found on the classpath");
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Draws smooth gradients and shapes, which compress like a photo.
+     */
+    private static BufferedImage photo(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setPaint(new GradientPaint(0, 0, Color.ORANGE, width, height, Color.BLUE));
+            graphics.fillRect(0, 0, width, height);
+            graphics.setColor(Color.WHITE);
+            graphics.fillOval(width / 8, height / 5, width / 3, height / 2);
+            graphics.setColor(Color.DARK_GRAY);
+            graphics.fillRect(width / 2, height / 2, width / 3, height / 3);
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Fills an image with random pixels, which barely compress.
+     */
+    private static BufferedImage noise(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    private static byte[] encode(BufferedImage image, String format) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, format, out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.utils;
+
+import com.michaelavoyan.imageservice.config.HttpClientProperties;
+import com.michaelavoyan.imageservice.config.VerifierProperties;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Benchmarks of image verification, per fixture and verification mode.
+ * <p>
+ * {@link #isValidImageUrl} measures the whole path against a local origin, from the request to the verdict,
+ * with the verification cache disabled so that every call reaches the origin. {@link #isReadableImage}
+ * measures the decoding alone, on the bytes the verifier would have received.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ImageVerifierBenchmark {
+
+    private static final Pattern RANGE = Pattern.compile("bytes=0-(\\d+)");
+
+    @Param({BenchmarkImages.BUNDLED, BenchmarkImages.ICON, BenchmarkImages.NOISE, BenchmarkImages.PHOTO})
+    public String fixture;
+
+    @Param({"HEADER", "STRICT"})
+    public VerifierProperties.Mode mode;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private ImageVerifier imageVerifier;
+    private String url;
+    private byte[] received;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] image = BenchmarkImages.load(fixture);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            // Honour the Range header sent in header mode, like most image origins and CDNs.
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            Matcher matcher = range != null ? RANGE.matcher(range) : null;
+            byte[] body = image;
+            int status = 200;
+            if (matcher != null && matcher.matches()) {
+                int end = Math.min(image.length - 1, Integer.parseInt(matcher.group(1)));
+                body = Arrays.copyOf(image, end + 1);
+                status = 206;
+                exchange.getResponseHeaders().set("Content-Range", "bytes 0-" + end + "/" + image.length);
+            }
+            exchange.getResponseHeaders().set("Content-Type", fixture.endsWith(".png") ? "image/png" : "image/jpeg");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.start();
+
+        VerifierProperties properties = new VerifierProperties();
+        properties.setMode(mode);
+        properties.getCache().setMaxEntries(0);
+        HttpClientProperties httpClientProperties = new HttpClientProperties();
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(httpClientProperties.getConnectTimeout())
+                .build();
+        executor = Executors.newFixedThreadPool(4);
+        imageVerifier = new ImageVerifier(
+                properties, httpClientProperties, httpClient, executor, new VerificationCache(properties),
+                new SimpleMeterRegistry());
+        url = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/image";
+        received = mode == VerifierProperties.Mode.HEADER
+                ? Arrays.copyOf(image, Math.min(image.length, properties.getHeaderBytes()))
+                : image;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop(0);
+        ((ExecutorService) server.getExecutor()).shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public boolean isValidImageUrl() {
+        return imageVerifier.isValidImageUrl(url).join();
+    }
+
+    @Benchmark
+    public boolean isReadableImage() {
+        return imageVerifier.isReadableImage(received);
+    }
+}
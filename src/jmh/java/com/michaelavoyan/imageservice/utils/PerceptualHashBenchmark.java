@@ -0,0 +1,41 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of perceptual hashing, which decodes every image added when near-duplicate detection is enabled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PerceptualHashBenchmark {
+
+    @Param({BenchmarkImages.BUNDLED, BenchmarkImages.ICON, BenchmarkImages.NOISE, BenchmarkImages.PHOTO})
+    public String fixture;
+
+    private byte[] image;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        image = BenchmarkImages.load(fixture);
+    }
+
+    @Benchmark
+    public Long hash() {
+        return PerceptualHash.of(image);
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * The operations of the load-test workload, named as in {@code loadtest.mix}.
+ */
+public enum Endpoint {
+    ADD_IMAGE("addImage"),
+    ADD_SLIDESHOW("addSlideshow"),
+    SEARCH("search"),
+    SLIDESHOW_ORDER("slideshowOrder"),
+    PROOF_OF_PLAY("proofOfPlay");
+
+    private final String displayName;
+
+    Endpoint(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * @return the name used in the configuration and the report
+     */
+    public String displayName() {
+        return displayName;
+    }
+
+    /**
+     * Finds an endpoint by name.
+     *
+     * @param name the name used in the configuration
+     * @return the endpoint
+     * @throws IllegalArgumentException if no endpoint has this name
+     */
+    public static Endpoint fromName(String name) {
+        return Arrays.stream(values())
+                .filter(endpoint -> endpoint.displayName.equals(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown endpoint: " + name));
+    }
+}
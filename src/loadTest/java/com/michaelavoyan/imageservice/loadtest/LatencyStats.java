@@ -0,0 +1,128 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.loadtest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Latencies and outcomes of the measured requests, per endpoint.
+ * Every sample is kept, so percentiles are exact; a run of a few minutes holds at most a few million samples.
+ */
+public class LatencyStats {
+
+    private final Map<Endpoint, Samples> samples = new EnumMap<>(Endpoint.class);
+
+    /**
+     * Creates empty statistics for every endpoint.
+     */
+    public LatencyStats() {
+        for (Endpoint endpoint : Endpoint.values()) {
+            samples.put(endpoint, new Samples());
+        }
+    }
+
+    /**
+     * Records a request.
+     *
+     * @param endpoint the endpoint called
+     * @param latencyNanos the time from when the request was due to be sent until its response was received
+     * @param success whether the response had a {@code 2xx} or {@code 3xx} status
+     */
+    public void record(Endpoint endpoint, long latencyNanos, boolean success) {
+        samples.get(endpoint).add(latencyNanos, success);
+    }
+
+    /**
+     * Summarizes the recorded requests of every endpoint that received traffic, followed by all of them together.
+     *
+     * @param measured how long requests were measured, for the throughput
+     * @return one report per endpoint, then the total
+     */
+    public List<EndpointReport> report(Duration measured) {
+        List<EndpointReport> reports = new ArrayList<>();
+        Samples total = new Samples();
+        for (Map.Entry<Endpoint, Samples> entry : samples.entrySet()) {
+            Samples endpointSamples = entry.getValue();
+            synchronized (endpointSamples) {
+                if (endpointSamples.count > 0) {
+                    reports.add(endpointSamples.report(entry.getKey().displayName(), measured));
+                    total.addAll(endpointSamples);
+                }
+            }
+        }
+        reports.add(total.report("total", measured));
+        return reports;
+    }
+
+    /**
+     * The summary of the requests to one endpoint; latencies are in milliseconds.
+     */
+    public record EndpointReport(
+            String endpoint,
+            long requests,
+            long errors,
+            double errorRate,
+            double throughput,
+            double p50Ms,
+            double p95Ms,
+            double p99Ms,
+            double maxMs
+    ) {
+    }
+
+    private static final class Samples {
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+
+        synchronized void add(long latencyNanos, boolean success) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyNanos;
+            if (!success) {
+                errors++;
+            }
+        }
+
+        void addAll(Samples other) {
+            for (int i = 0; i < other.count; i++) {
+                add(other.latencies[i], true);
+            }
+            errors += other.errors;
+        }
+
+        EndpointReport report(String name, Duration measured) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return new EndpointReport(
+                    name,
+                    count,
+                    errors,
+                    count == 0 ? 0 : (double) errors / count,
+                    count / (measured.toNanos() / 1e9),
+                    percentile(sorted, 0.50),
+                    percentile(sorted, 0.95),
+                    percentile(sorted, 0.99),
+                    count == 0 ? 0 : sorted[count - 1] / 1e6);
+        }
+
+        /**
+         * Nearest-rank percentile, in milliseconds.
+         */
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(quantile * sorted.length);
+            return sorted[Math.max(0, rank - 1)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.michaelavoyan.imageservice.ImageServiceApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load-test harness, run with {@code ./gradlew loadTest}.
+ * <p>
+ * Starts a {@link SimulatedOrigin} and the application on an in-memory H2 database, seeds slideshows, then sends
+ * a weighted mix of requests at a fixed rate: a warmup period, then the measured period. The rate is kept
+ * whatever the response times (an open workload), and latencies are measured from when each request was due,
+ * so a stalled server shows up in the percentiles instead of slowing the test down. Per-endpoint latency
+ * percentiles, throughput and error rates are printed and written as JSON.
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.fromSystemProperties();
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(8);
+        try (SimulatedOrigin origin = new SimulatedOrigin(
+                config.originLatency(), config.originErrorRate(), config.originPayloadSizes())) {
+            origin.start();
+            ConfigurableApplicationContext context = startApplication();
+            try {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                HttpClient httpClient = HttpClient.newBuilder()
+                        .executor(clientExecutor)
+                        .connectTimeout(Duration.ofSeconds(5))
+                        .build();
+                Workload workload = new Workload(httpClient, "http://localhost:" + port, origin, objectMapper);
+                workload.seed(config.seedSlideshows());
+
+                LatencyStats stats = run(config, workload);
+                List<LatencyStats.EndpointReport> reports = stats.report(config.duration());
+                print(reports, origin);
+                write(config, reports, origin, objectMapper);
+            } finally {
+                context.close();
+            }
+        } finally {
+            clientExecutor.shutdownNow();
+        }
+    }
+
+    private static ConfigurableApplicationContext startApplication() {
+        return new SpringApplicationBuilder(ImageServiceApplication.class)
+                // Command-line arguments, which take precedence over application.properties
+                .run(
+                        "--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:loadtest",
+                        "--spring.datasource.driverClassName=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                        "--spring.jpa.hibernate.ddl-auto=create",
+                        "--spring.jpa.show-sql=false",
+                        // Every request comes from the same address, so per-client limits would shed most of them
+                        "--imageservice.rate-limit.enabled=false",
+                        "--logging.level.root=WARN");
+    }
+
+    /**
+     * Sends requests at the configured rate until the end of the measured period, then waits for the
+     * outstanding responses.
+     */
+    private static LatencyStats run(LoadTestConfig config, Workload workload) throws InterruptedException {
+        LatencyStats stats = new LatencyStats();
+        Endpoint[] endpoints = weightedEndpoints(config.mix());
+        Random random = new Random(42);
+        Semaphore inFlight = new Semaphore(config.maxInFlight());
+        long interval = TimeUnit.SECONDS.toNanos(1) / config.rate();
+        long start = System.nanoTime();
+        long measureFrom = start + config.warmup().toNanos();
+        long end = measureFrom + config.duration().toNanos();
+
+        for (long due = start; due < end; due += interval) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Endpoint endpoint = endpoints[random.nextInt(endpoints.length)];
+            boolean measured = due >= measureFrom;
+            long dueAt = due;
+            if (!inFlight.tryAcquire()) {
+                // The server is too far behind; count the request as failed rather than queue it without bound.
+                if (measured) {
+                    stats.record(endpoint, System.nanoTime() - dueAt, false);
+                }
+                continue;
+            }
+            workload.send(endpoint).whenComplete((success, error) -> {
+                inFlight.release();
+                if (measured) {
+                    stats.record(endpoint, System.nanoTime() - dueAt, error == null && success);
+                }
+            });
+        }
+        if (!inFlight.tryAcquire(config.maxInFlight(), 1, TimeUnit.MINUTES)) {
+            System.err.println("Some requests were still pending after one minute and are not reported");
+        }
+        return stats;
+    }
+
+    /**
+     * Expands the weights into an array where each endpoint appears as many times as its weight.
+     */
+    private static Endpoint[] weightedEndpoints(Map<Endpoint, Integer> mix) {
+        return mix.entrySet().stream()
+                .flatMap(entry -> Collections.nCopies(entry.getValue(), entry.getKey()).stream())
+                .toArray(Endpoint[]::new);
+    }
+
+    private static void print(List<LatencyStats.EndpointReport> reports, SimulatedOrigin origin) {
+        System.out.printf("%n%-16s %10s %8s %8s %10s %10s %10s %10s %10s%n",
+                "endpoint", "requests", "errors", "error%", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        for (LatencyStats.EndpointReport report : reports) {
+            System.out.printf("%-16s %10d %8d %8.2f %10.1f %10.2f %10.2f %10.2f %10.2f%n",
+                    report.endpoint(), report.requests(), report.errors(), report.errorRate() * 100,
+                    report.throughput(), report.p50Ms(), report.p95Ms(), report.p99Ms(), report.maxMs());
+        }
+        System.out.printf("%nSimulated origin: %d requests, %d errors%n", origin.requestCount(), origin.errorCount());
+    }
+
+    private static void write(
+            LoadTestConfig config,
+            List<LatencyStats.EndpointReport> reports,
+            SimulatedOrigin origin,
+            ObjectMapper objectMapper
+    ) throws IOException {
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put("rate", config.rate());
+        settings.put("duration", config.duration().toString());
+        settings.put("warmup", config.warmup().toString());
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        config.mix().forEach((endpoint, weight) -> mix.put(endpoint.displayName(), weight));
+        settings.put("mix", mix);
+        settings.put("originLatency", config.originLatency().toString());
+        settings.put("originErrorRate", config.originErrorRate());
+        settings.put("originPayloadSizes", config.originPayloadSizes().stream().map(Object::toString).toList());
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("settings", settings);
+        report.put("endpoints", reports);
+        report.put("origin", Map.of("requests", origin.requestCount(), "errors", origin.errorCount()));
+
+        Path path = Path.of(config.report());
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        objectMapper.copy().enable(SerializationFeature.INDENT_OUTPUT).writeValue(path.toFile(), report);
+        System.out.println("Report written to " + path.toAbsolutePath());
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings of a load test, read from {@code loadtest.*} system properties
+ * (passed as {@code -Ploadtest.*} project properties by the {@code loadTest} Gradle task).
+ *
+ * @param rate the target number of requests per second, across all endpoints
+ * @param duration how long requests are measured
+ * @param warmup how long requests are sent, but not measured, before the measurement starts
+ * @param mix the relative weight of each {@link Endpoint}
+ * @param maxInFlight the most requests awaiting a response; requests beyond it are counted as errors
+ * @param seedSlideshows the number of slideshows created before the warmup, polled by players from the start
+ * @param originLatency the delay before the simulated origin sends the body of an image
+ * @param originErrorRate the fraction of image requests the origin answers with {@code 503}
+ * @param originPayloadSizes the sizes of the images served by the origin, used in turn
+ * @param report where the JSON report is written
+ */
+public record LoadTestConfig(
+        int rate,
+        Duration duration,
+        Duration warmup,
+        Map<Endpoint, Integer> mix,
+        int maxInFlight,
+        int seedSlideshows,
+        Duration originLatency,
+        double originErrorRate,
+        List<DataSize> originPayloadSizes,
+        String report
+) {
+
+    /**
+     * Reads the settings from the system properties, with defaults for those missing.
+     *
+     * @return the settings
+     * @throws IllegalArgumentException if a property is malformed
+     */
+    public static LoadTestConfig fromSystemProperties() {
+        return new LoadTestConfig(
+                Integer.parseInt(property("rate", "100")),
+                DurationStyle.detectAndParse(property("duration", "60s")),
+                DurationStyle.detectAndParse(property("warmup", "10s")),
+                parseMix(property("mix", "addImage=5,addSlideshow=1,search=10,slideshowOrder=70,proofOfPlay=14")),
+                Integer.parseInt(property("max-in-flight", "1000")),
+                Integer.parseInt(property("seed-slideshows", "20")),
+                DurationStyle.detectAndParse(property("origin.latency", "50ms")),
+                Double.parseDouble(property("origin.error-rate", "0.02")),
+                Arrays.stream(property("origin.payload-sizes", "20KB,200KB,2MB").split(","))
+                        .map(size -> DataSize.parse(size.trim()))
+                        .toList(),
+                property("report", "build/reports/load-test/report.json"));
+    }
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty("loadtest." + name, defaultValue);
+    }
+
+    /**
+     * Parses {@code endpoint=weight} pairs separated by commas; endpoints left out get no traffic.
+     */
+    private static Map<Endpoint, Integer> parseMix(String mix) {
+        Map<Endpoint, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected endpoint=weight in loadtest.mix, got: " + entry);
+            }
+            weights.put(Endpoint.fromName(parts[0].trim()), Integer.parseInt(parts[1].trim()));
+        }
+        return weights;
+    }
+}
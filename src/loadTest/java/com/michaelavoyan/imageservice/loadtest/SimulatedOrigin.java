@@ -0,0 +1,175 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.loadtest;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local image origin built on {@link MockWebServer}, serving {@code /images/<n>.png}.
+ * <p>
+ * Every image is a small PNG padded with trailing bytes up to one of the configured payload sizes; decoders
+ * ignore the padding, so verification and hashing see a valid image while the network carries the full size.
+ * There are {@value #DISTINCT_IMAGES} distinct pictures, so near-duplicates occur as they would in a real
+ * catalogue. Responses wait for the configured latency, a configurable fraction fails with {@code 503},
+ * and {@code Range} requests get the requested prefix.
+ */
+public class SimulatedOrigin implements Closeable {
+
+    private static final int DISTINCT_IMAGES = 256;
+
+    private static final Pattern IMAGE_PATH = Pattern.compile("/images/(\\d+)\\.png");
+    private static final Pattern RANGE = Pattern.compile("bytes=0-(\\d+)");
+
+    private final MockWebServer server = new MockWebServer();
+    private final byte[][] pictures = new byte[DISTINCT_IMAGES][];
+    private final Duration latency;
+    private final double errorRate;
+    private final List<DataSize> payloadSizes;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    /**
+     * Creates the origin; it listens once {@link #start} is called.
+     *
+     * @param latency the delay before each response is sent
+     * @param errorRate the fraction of image requests answered with {@code 503}
+     * @param payloadSizes the sizes of the served images, used in turn by image number
+     */
+    public SimulatedOrigin(Duration latency, double errorRate, List<DataSize> payloadSizes) {
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.payloadSizes = payloadSizes;
+        for (int i = 0; i < DISTINCT_IMAGES; i++) {
+            pictures[i] = picture(i);
+        }
+    }
+
+    /**
+     * Starts listening on a free local port.
+     *
+     * @throws IOException if the server cannot be started
+     */
+    public void start() throws IOException {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return respond(request);
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Returns the URL of an image; each number is a different URL.
+     *
+     * @param number the image number
+     * @return the URL
+     */
+    public String imageUrl(long number) {
+        return server.url("/images/" + number + ".png").toString();
+    }
+
+    /**
+     * @return the number of requests received
+     */
+    public long requestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return the number of requests answered with an error
+     */
+    public long errorCount() {
+        return errors.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.shutdown();
+    }
+
+    private MockResponse respond(RecordedRequest request) {
+        requests.incrementAndGet();
+        Matcher path = IMAGE_PATH.matcher(request.getPath() != null ? request.getPath() : "");
+        if (!path.matches()) {
+            errors.incrementAndGet();
+            return new MockResponse().setResponseCode(404);
+        }
+        if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+            errors.incrementAndGet();
+            return new MockResponse().setResponseCode(503).setHeadersDelay(latency.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        long number = Long.parseLong(path.group(1));
+        byte[] picture = pictures[(int) (number % DISTINCT_IMAGES)];
+        long size = Math.max(picture.length, payloadSizes.get((int) (number % payloadSizes.size())).toBytes());
+        long end = size - 1;
+        int status = 200;
+        String range = request.getHeader("Range");
+        Matcher rangeMatcher = range != null ? RANGE.matcher(range) : null;
+        if (rangeMatcher != null && rangeMatcher.matches() && Long.parseLong(rangeMatcher.group(1)) < end) {
+            end = Long.parseLong(rangeMatcher.group(1));
+            status = 206;
+        }
+
+        Buffer body = new Buffer().write(picture, 0, (int) Math.min(picture.length, end + 1));
+        body.write(new byte[(int) (end + 1 - body.size())]);
+        MockResponse response = new MockResponse()
+                .setResponseCode(status)
+                .setHeader("Content-Type", "image/png")
+                .setHeader("ETag", "\"" + number + "-" + size + "\"")
+                .setHeadersDelay(latency.toMillis(), TimeUnit.MILLISECONDS)
+                .setBody(body);
+        if (status == 206) {
+            response.setHeader("Content-Range", "bytes 0-" + end + "/" + size);
+        }
+        return response;
+    }
+
+    /**
+     * Draws a distinct 64x64 picture of random blocks.
+     */
+    private static byte[] picture(int seed) {
+        BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(seed);
+        for (int y = 0; y < 64; y += 8) {
+            for (int x = 0; x < 64; x += 8) {
+                int rgb = random.nextInt();
+                for (int dy = 0; dy < 8; dy++) {
+                    for (int dx = 0; dx < 8; dx++) {
+                        image.setRGB(x + dx, y + dy, rgb);
+                    }
+                }
+            }
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
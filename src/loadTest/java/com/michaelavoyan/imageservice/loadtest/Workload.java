@@ -0,0 +1,202 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The requests of the load test and the state they share: the slideshows created so far, whose orders
+ * are polled and whose images are reported as played, and the last ETag each player received.
+ */
+public class Workload {
+
+    private static final int SLIDESHOW_SIZE = 10;
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final SimulatedOrigin origin;
+    private final ObjectMapper objectMapper;
+    private final AtomicLong nextImage = new AtomicLong();
+    private final List<CreatedSlideshow> slideshows = new CopyOnWriteArrayList<>();
+    private final Map<Long, String> eTags = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the workload.
+     *
+     * @param httpClient the client sending the requests
+     * @param baseUrl the URL of the application, without a trailing slash
+     * @param origin the origin serving the images added
+     * @param objectMapper the mapper writing request bodies and reading responses
+     */
+    public Workload(HttpClient httpClient, String baseUrl, SimulatedOrigin origin, ObjectMapper objectMapper) {
+        this.httpClient = httpClient;
+        this.baseUrl = baseUrl;
+        this.origin = origin;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Creates slideshows for players to poll from the start of the test.
+     *
+     * @param count the number of slideshows to create
+     * @throws IllegalStateException if none could be created
+     */
+    public void seed(int count) {
+        for (int i = 0; i < count; i++) {
+            send(Endpoint.ADD_SLIDESHOW).exceptionally(error -> false).join();
+        }
+        if (slideshows.isEmpty()) {
+            throw new IllegalStateException("No slideshow could be created; is the simulated origin failing?");
+        }
+    }
+
+    /**
+     * Sends one request to an endpoint.
+     *
+     * @param endpoint the endpoint to call
+     * @return a future completing with whether the response was successful
+     */
+    public CompletableFuture<Boolean> send(Endpoint endpoint) {
+        return switch (endpoint) {
+            case ADD_IMAGE -> addImage();
+            case ADD_SLIDESHOW -> addSlideshow();
+            case SEARCH -> search();
+            case SLIDESHOW_ORDER -> slideshowOrder();
+            case PROOF_OF_PLAY -> proofOfPlay();
+        };
+    }
+
+    /**
+     * Adds an image, half of the time to an existing slideshow, which invalidates the order players poll.
+     */
+    private CompletableFuture<Boolean> addImage() {
+        ObjectNode image = newImage();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextBoolean()) {
+            image.putObject("slideshow").put("id", randomSlideshow().id());
+        }
+        return post("/api/addImage", image).thenApply(response -> response.statusCode() == 200);
+    }
+
+    private CompletableFuture<Boolean> addSlideshow() {
+        ObjectNode slideshow = objectMapper.createObjectNode();
+        ArrayNode images = slideshow.putArray("images");
+        for (int i = 0; i < SLIDESHOW_SIZE; i++) {
+            images.add(newImage());
+        }
+        return post("/api/addSlideshow", slideshow).thenApply(response -> {
+            if (response.statusCode() != 200) {
+                return false;
+            }
+            JsonNode created = readTree(response.body());
+            long[] imageIds = new long[created.path("images").size()];
+            for (int i = 0; i < imageIds.length; i++) {
+                imageIds[i] = created.path("images").get(i).path("id").asLong();
+            }
+            slideshows.add(new CreatedSlideshow(created.path("id").asLong(), imageIds));
+            return true;
+        });
+    }
+
+    /**
+     * Searches URLs by a random image-number prefix, from broad to narrow queries as the catalogue grows.
+     */
+    private CompletableFuture<Boolean> search() {
+        long prefix = ThreadLocalRandom.current().nextLong(Math.max(1, nextImage.get() / 10));
+        String query = URLEncoder.encode("/images/" + prefix, StandardCharsets.UTF_8);
+        return get("/api/images/search?query=" + query, null).thenApply(response -> response.statusCode() == 200);
+    }
+
+    /**
+     * Polls the order of a slideshow like a player, revalidating the order it already holds.
+     */
+    private CompletableFuture<Boolean> slideshowOrder() {
+        long slideshowId = randomSlideshow().id();
+        return get("/api/slideShow/" + slideshowId + "/slideshowOrder", eTags.get(slideshowId)).thenApply(response -> {
+            response.headers().firstValue("ETag").ifPresent(eTag -> eTags.put(slideshowId, eTag));
+            return response.statusCode() == 200 || response.statusCode() == 304;
+        });
+    }
+
+    private CompletableFuture<Boolean> proofOfPlay() {
+        CreatedSlideshow slideshow = randomSlideshow();
+        long imageId = slideshow.imageIds()[ThreadLocalRandom.current().nextInt(slideshow.imageIds().length)];
+        HttpRequest request = request("/api/slideShow/" + slideshow.id() + "/proof-of-play/" + imageId)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenApply(response -> response.statusCode() < 300);
+    }
+
+    private ObjectNode newImage() {
+        ObjectNode image = objectMapper.createObjectNode();
+        image.put("url", origin.imageUrl(nextImage.incrementAndGet()));
+        image.put("duration", 1 + ThreadLocalRandom.current().nextInt(30));
+        return image;
+    }
+
+    private CreatedSlideshow randomSlideshow() {
+        return slideshows.get(ThreadLocalRandom.current().nextInt(slideshows.size()));
+    }
+
+    private CompletableFuture<HttpResponse<byte[]>> post(String path, JsonNode body) {
+        try {
+            HttpRequest request = request(path)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                    .build();
+            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private CompletableFuture<HttpResponse<byte[]>> get(String path, String ifNoneMatch) {
+        HttpRequest.Builder request = request(path).GET();
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return httpClient.sendAsync(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(REQUEST_TIMEOUT);
+    }
+
+    private JsonNode readTree(byte[] body) {
+        try {
+            return objectMapper.readTree(body);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unreadable response: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * A slideshow created by the workload, with the IDs of its initial images.
+     */
+    private record CreatedSlideshow(long id, long[] imageIds) {
+    }
+}
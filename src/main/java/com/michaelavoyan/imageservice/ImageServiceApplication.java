@@ -6,6 +6,7 @@ package com.michaelavoyan.imageservice;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 /**
  * The {@code ImageServiceApplication} class is the entry point for the Image Service application.
@@ -13,6 +14,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * It initializes the Spring Boot framework and runs the application context.
  */
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class ImageServiceApplication {
     /**
      * The main method that serves as the entry point for the Spring Boot application.
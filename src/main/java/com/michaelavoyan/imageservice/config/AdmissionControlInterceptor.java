@@ -0,0 +1,154 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import com.michaelavoyan.imageservice.controllers.ImageServiceController;
+import com.michaelavoyan.imageservice.errors.TooManyRequestsException;
+import com.michaelavoyan.imageservice.utils.TokenBuckets;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control of the write endpoints {@code addImage}, {@code addSlideshow} and proof-of-play.
+ * <p>
+ * Each client, identified by its remote address, has a token bucket per endpoint, and all clients share at most
+ * {@code maxConcurrentWrites} writes in flight. Request headers are not used to tell clients apart, since a client
+ * could pick a new value for every request and so a new, full bucket; behind a reverse proxy the address is taken
+ * from {@code X-Forwarded-For} through {@code server.forward-headers-strategy}. A request
+ * over its client's rate, or arriving while the writes in flight are at the cap, fails with
+ * {@link TooManyRequestsException} before reaching the controller. An admitted request holds its slot until it
+ * completes, including asynchronous processing; a request shed for concurrency still uses a token of its client.
+ */
+public class AdmissionControlInterceptor implements AsyncHandlerInterceptor, MeterBinder {
+
+    private static final String PERMIT_ATTRIBUTE = AdmissionControlInterceptor.class.getName() + ".PERMIT";
+
+    private static final Duration CONCURRENCY_RETRY_AFTER = Duration.ofSeconds(1);
+
+    private final RateLimitProperties properties;
+    private final Semaphore writes;
+
+    /**
+     * Limited endpoints by controller method name; proof-of-play batches share the limit of single plays.
+     */
+    private final Map<String, Endpoint> endpoints = new LinkedHashMap<>();
+
+    /**
+     * Constructor to initialize properties, token buckets and the concurrency limit.
+     */
+    public AdmissionControlInterceptor(RateLimitProperties properties) {
+        this.properties = properties;
+        this.writes = new Semaphore(properties.getMaxConcurrentWrites());
+        endpoints.put("addImage", new Endpoint("addImage", properties.getAddImage(), properties.getStripes()));
+        endpoints.put("addSlideshow",
+                new Endpoint("addSlideshow", properties.getAddSlideshow(), properties.getStripes()));
+        Endpoint proofOfPlay = new Endpoint("addProofOfPlay", properties.getAddProofOfPlay(), properties.getStripes());
+        endpoints.put("addProofOfPlay", proofOfPlay);
+        endpoints.put("addProofOfPlayBatch", proofOfPlay);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() != DispatcherType.REQUEST || !(handler instanceof HandlerMethod method)
+                || method.getMethod().getDeclaringClass() != ImageServiceController.class) {
+            return true;
+        }
+        Endpoint endpoint = endpoints.get(method.getMethod().getName());
+        if (endpoint == null) {
+            return true;
+        }
+        long wait = endpoint.buckets.tryAcquire(request.getRemoteAddr(), System.nanoTime());
+        if (wait > 0) {
+            endpoint.rateLimited.increment();
+            throw new TooManyRequestsException(
+                    "rate limit of " + endpoint.name + " exceeded, please slow down.", Duration.ofNanos(wait));
+        }
+        if (!writes.tryAcquire()) {
+            endpoint.concurrencyLimited.increment();
+            throw new TooManyRequestsException(
+                    "too many writes in progress, please retry later.", CONCURRENCY_RETRY_AFTER);
+        }
+        request.setAttribute(PERMIT_ATTRIBUTE, Boolean.TRUE);
+        endpoint.admitted.increment();
+        return true;
+    }
+
+    /**
+     * Frees the slot of an admitted request. For asynchronous requests this runs at the end of the
+     * asynchronous dispatch, once the result is written.
+     */
+    @Override
+    public void afterCompletion(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            Object handler,
+            Exception ex
+    ) {
+        if (request.getAttribute(PERMIT_ATTRIBUTE) != null) {
+            request.removeAttribute(PERMIT_ATTRIBUTE);
+            writes.release();
+        }
+    }
+
+    /**
+     * @return the number of write requests currently admitted and not completed
+     */
+    public int getWritesInFlight() {
+        return properties.getMaxConcurrentWrites() - writes.availablePermits();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Endpoint endpoint : endpoints.values().stream().distinct().toList()) {
+            counter(registry, endpoint, "admitted", endpoint.admitted);
+            counter(registry, endpoint, "rate_limited", endpoint.rateLimited);
+            counter(registry, endpoint, "concurrency_limited", endpoint.concurrencyLimited);
+            Gauge.builder("ratelimit.clients", endpoint.buckets, TokenBuckets::size)
+                    .description("Clients with a token bucket that is not full")
+                    .tag("endpoint", endpoint.name)
+                    .register(registry);
+        }
+        Gauge.builder("ratelimit.writes.in_flight", this, AdmissionControlInterceptor::getWritesInFlight)
+                .description("Write requests being processed")
+                .register(registry);
+    }
+
+    private static void counter(MeterRegistry registry, Endpoint endpoint, String outcome, LongAdder count) {
+        FunctionCounter.builder("ratelimit.requests", count, LongAdder::sum)
+                .description("Write requests admitted or shed by admission control")
+                .tag("endpoint", endpoint.name)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    /**
+     * A limited endpoint, with the token buckets of its clients and its request counts.
+     */
+    private static final class Endpoint {
+        private final String name;
+        private final TokenBuckets buckets;
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder rateLimited = new LongAdder();
+        private final LongAdder concurrencyLimited = new LongAdder();
+
+        private Endpoint(String name, RateLimitProperties.Limit limit, int stripes) {
+            this.name = name;
+            this.buckets = new TokenBuckets(limit.getPermitsPerSecond(), limit.getBurst(), stripes);
+        }
+    }
+}
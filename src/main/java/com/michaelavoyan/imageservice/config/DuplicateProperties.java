@@ -0,0 +1,72 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for near-duplicate image detection.
+ * Bound from the {@code imageservice.duplicates} prefix in {@code application.properties}.
+ * Images only get the perceptual hash this relies on when {@code imageservice.verifier.perceptual-hash} is enabled.
+ */
+@Setter
+@Getter
+@ConfigurationProperties(prefix = "imageservice.duplicates")
+public class DuplicateProperties {
+    /**
+     * What happens when an added image is a near-duplicate of an existing one.
+     */
+    private Action action = Action.FLAG;
+
+    /**
+     * Largest Hamming distance between two perceptual hashes for the images to count as near-duplicates.
+     */
+    private int maxDistance = 6;
+
+    /**
+     * Largest distance accepted by similarity queries; wider queries visit most of the index.
+     */
+    private int maxQueryDistance = 16;
+
+    /**
+     * Delay between two loads of images added by other instances.
+     */
+    private Duration catchUpInterval = Duration.ofSeconds(5);
+
+    /**
+     * Number of IDs below the highest indexed one that each catch-up reads again, for images committed
+     * after others with higher IDs.
+     */
+    private int catchUpWindow = 1_000;
+
+    /**
+     * Delay between two full rebuilds, which also drop images deleted by other instances.
+     */
+    private Duration rebuildInterval = Duration.ofHours(1);
+
+    /**
+     * Number of images read per query while loading the index.
+     */
+    private int loadBatchSize = 5_000;
+
+    /**
+     * Possible reactions to a near-duplicate.
+     */
+    public enum Action {
+        /**
+         * Saves the image and lists its near-duplicates in the {@code X-Similar-Images} response header.
+         */
+        FLAG,
+
+        /**
+         * Refuses the image with {@code 409 Conflict}; bulk imports report it as rejected.
+         */
+        REJECT
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Declares the dedicated executors used instead of {@code ForkJoinPool.commonPool()}.
+ * The dedicated pools are bounded: once the queue is full, submissions fail with a
+ * {@link java.util.concurrent.RejectedExecutionException}, which is reported as HTTP 503.
+ */
+@Configuration
+public class ExecutorConfig {
+    /**
+     * Executor for image URL verification, which blocks on remote origins.
+     *
+     * @param properties the executor configuration
+     * @return the verification executor
+     */
+    @Bean
+    public ThreadPoolTaskExecutor verificationExecutor(ExecutorProperties properties) {
+        return boundedExecutor("verify-", properties.getVerification());
+    }
+
+    /**
+     * Executor for the database work that follows a successful verification,
+     * so that slow origins cannot starve persistence and vice versa.
+     *
+     * @param properties the executor configuration
+     * @return the persistence executor
+     */
+    @Bean
+    public ThreadPoolTaskExecutor persistenceExecutor(ExecutorProperties properties) {
+        return boundedExecutor("persist-", properties.getPersistence());
+    }
+
+    /**
+     * Executor for rendering image derivatives, which is CPU- and memory-heavy,
+     * so a burst of renders cannot take over the verification or persistence threads.
+     *
+     * @param properties the executor configuration
+     * @return the render executor
+     */
+    @Bean
+    public ThreadPoolTaskExecutor renderExecutor(ExecutorProperties properties) {
+        return boundedExecutor("render-", properties.getRender());
+    }
+
+    /**
+     * The general-purpose executor used by Spring MVC for asynchronous requests such as streamed responses.
+     * Spring Boot only auto-configures it when no other executor is declared, so it is declared here,
+     * still configured through the {@code spring.task.execution} properties.
+     *
+     * @param builder the builder pre-configured by Spring Boot
+     * @return the application task executor
+     */
+    @Bean(name = {
+            TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME
+    })
+    public ThreadPoolTaskExecutor applicationTaskExecutor(ThreadPoolTaskExecutorBuilder builder) {
+        return builder.build();
+    }
+
+    private static ThreadPoolTaskExecutor boundedExecutor(String threadNamePrefix, ExecutorProperties.Pool pool) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setCorePoolSize(pool.getPoolSize());
+        executor.setMaxPoolSize(pool.getPoolSize());
+        executor.setQueueCapacity(pool.getQueueCapacity());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        return executor;
+    }
+}
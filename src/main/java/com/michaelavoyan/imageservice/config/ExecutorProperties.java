@@ -0,0 +1,59 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration properties for the application's bounded executors.
+ * Bound from the {@code imageservice.executors} prefix in {@code application.properties}.
+ */
+@Setter
+@Getter
+@ConfigurationProperties(prefix = "imageservice.executors")
+public class ExecutorProperties {
+    /**
+     * Executor running the blocking part of image URL verification.
+     */
+    private Pool verification = new Pool(16, 200);
+
+    /**
+     * Executor running the database continuation once an image has been verified.
+     */
+    private Pool persistence = new Pool(8, 500);
+
+    /**
+     * Executor decoding and resizing images into rendered derivatives; CPU-bound, so kept small.
+     */
+    private Pool render = new Pool(4, 100);
+
+    /**
+     * Sizing of a fixed-size thread pool with a bounded queue.
+     * Tasks submitted while the queue is full are rejected.
+     */
+    @Setter
+    @Getter
+    public static class Pool {
+        /**
+         * Number of worker threads.
+         */
+        private int poolSize;
+
+        /**
+         * Maximum number of tasks waiting for a worker.
+         */
+        private int queueCapacity;
+
+        public Pool() {
+        }
+
+        public Pool(int poolSize, int queueCapacity) {
+            this.poolSize = poolSize;
+            this.queueCapacity = queueCapacity;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Applies the concurrency limit to the streamed exports.
+ */
+@Configuration
+public class ExportConfig implements WebMvcConfigurer {
+
+    private final ExportProperties properties;
+
+    /**
+     * Constructor to initialize properties.
+     */
+    public ExportConfig(ExportProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Interceptor limiting the number of exports streamed at once.
+     *
+     * @return the export limit interceptor
+     */
+    @Bean
+    public ExportLimitInterceptor exportLimitInterceptor() {
+        return new ExportLimitInterceptor(properties);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(exportLimitInterceptor()).addPathPatterns("/api/**");
+    }
+}
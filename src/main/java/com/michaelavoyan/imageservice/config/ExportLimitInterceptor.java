@@ -0,0 +1,96 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import com.michaelavoyan.imageservice.controllers.ExportController;
+import com.michaelavoyan.imageservice.errors.TooManyRequestsException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrency limit of the streamed exports of {@link ExportController}.
+ * <p>
+ * An export reads its rows through a database cursor while it writes them, so it holds a pooled connection
+ * at the pace of the client downloading it. At most {@code maxConcurrent} exports run at once; further exports
+ * fail with {@link TooManyRequestsException} before reaching the controller, rather than draining the pool
+ * the rest of the application needs. An admitted export holds its slot until the asynchronous dispatch that
+ * completes it, whether it finished, failed or timed out.
+ */
+public class ExportLimitInterceptor implements AsyncHandlerInterceptor, MeterBinder {
+
+    private static final String PERMIT_ATTRIBUTE = ExportLimitInterceptor.class.getName() + ".PERMIT";
+
+    private static final Duration RETRY_AFTER = Duration.ofSeconds(5);
+
+    private final ExportProperties properties;
+    private final Semaphore exports;
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Constructor to initialize properties and the concurrency limit.
+     */
+    public ExportLimitInterceptor(ExportProperties properties) {
+        this.properties = properties;
+        this.exports = new Semaphore(properties.getMaxConcurrent());
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getDispatcherType() != DispatcherType.REQUEST || !(handler instanceof HandlerMethod method)
+                || method.getMethod().getDeclaringClass() != ExportController.class) {
+            return true;
+        }
+        if (!exports.tryAcquire()) {
+            rejected.increment();
+            throw new TooManyRequestsException("too many exports in progress, please retry later.", RETRY_AFTER);
+        }
+        request.setAttribute(PERMIT_ATTRIBUTE, Boolean.TRUE);
+        return true;
+    }
+
+    /**
+     * Frees the slot of an admitted export once its asynchronous dispatch has completed.
+     */
+    @Override
+    public void afterCompletion(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            Object handler,
+            Exception ex
+    ) {
+        if (request.getAttribute(PERMIT_ATTRIBUTE) != null) {
+            request.removeAttribute(PERMIT_ATTRIBUTE);
+            exports.release();
+        }
+    }
+
+    /**
+     * @return the number of exports currently streaming
+     */
+    public int getExportsInFlight() {
+        return properties.getMaxConcurrent() - exports.availablePermits();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("export.in_flight", this, ExportLimitInterceptor::getExportsInFlight)
+                .description("Exports being streamed")
+                .register(registry);
+        FunctionCounter.builder("export.rejected", rejected, LongAdder::sum)
+                .description("Exports rejected because too many were in progress")
+                .register(registry);
+    }
+}
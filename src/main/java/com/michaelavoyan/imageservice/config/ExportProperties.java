@@ -0,0 +1,24 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration properties for the streamed exports.
+ * Bound from the {@code imageservice.export} prefix in {@code application.properties}.
+ */
+@Setter
+@Getter
+@ConfigurationProperties(prefix = "imageservice.export")
+public class ExportProperties {
+    /**
+     * Maximum number of exports streamed at once. Each holds a pooled database connection for as long as the
+     * client takes to download it, so this must stay well below the connection pool size.
+     */
+    private int maxConcurrent = 2;
+}
@@ -0,0 +1,34 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+
+/**
+ * Declares the shared {@link HttpClient} used to reach image origins.
+ * The JDK client performs non-blocking I/O, negotiates HTTP/2 (multiplexing requests to the
+ * same origin over one connection) and keeps HTTP/1.1 connections alive in a pool, so repeated
+ * requests to the same CDN skip the TCP and TLS handshakes.
+ */
+@Configuration
+public class HttpClientConfig {
+    /**
+     * Creates the shared image origin client.
+     *
+     * @param properties the HTTP client configuration
+     * @return the HTTP client
+     */
+    @Bean
+    public HttpClient imageHttpClient(HttpClientProperties properties) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(properties.getConnectTimeout())
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for the shared HTTP client used to reach image origins.
+ * Bound from the {@code imageservice.http-client} prefix in {@code application.properties}.
+ */
+@Setter
+@Getter
+@ConfigurationProperties(prefix = "imageservice.http-client")
+public class HttpClientProperties {
+    /**
+     * Maximum time to establish a TCP/TLS connection.
+     */
+    private Duration connectTimeout = Duration.ofSeconds(5);
+
+    /**
+     * Maximum time to wait for the response headers.
+     */
+    private Duration requestTimeout = Duration.ofSeconds(5);
+
+    /**
+     * Maximum time for a whole exchange, including reading the body.
+     */
+    private Duration readTimeout = Duration.ofSeconds(10);
+
+    /**
+     * Maximum number of concurrent requests, and therefore connections, to a single host.
+     */
+    private int maxConnectionsPerHost = 8;
+
+    /**
+     * Maximum time to wait for a free per-host slot before the verification is rejected.
+     */
+    private Duration connectionAcquireTimeout = Duration.ofSeconds(2);
+
+    /**
+     * How long an idle keep-alive connection stays in the pool.
+     */
+    private Duration keepAliveTimeout = Duration.ofSeconds(30);
+
+    /**
+     * How long successful DNS lookups are cached by the JVM.
+     */
+    private Duration dnsCacheTtl = Duration.ofSeconds(60);
+}
@@ -0,0 +1,28 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration properties for the bulk image import.
+ * Bound from the {@code imageservice.import} prefix in {@code application.properties}.
+ */
+@Setter
+@Getter
+@ConfigurationProperties(prefix = "imageservice.import")
+public class ImportProperties {
+    /**
+     * Maximum number of image URLs of one import verified at the same time.
+     */
+    private int parallelism = 16;
+
+    /**
+     * Number of verified images inserted per JDBC batch.
+     */
+    private int batchSize = 100;
+}
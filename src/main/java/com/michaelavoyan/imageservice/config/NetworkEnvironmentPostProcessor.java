@@ -0,0 +1,39 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+
+import java.security.Security;
+import java.time.Duration;
+
+/**
+ * Applies the JVM-wide networking settings from {@link HttpClientProperties}.
+ * The DNS cache TTL and the HTTP client keep-alive timeout are read once by the JDK,
+ * so they are set here, before any bean performs a lookup or creates a client.
+ * Values passed explicitly as JVM system properties take precedence.
+ */
+public class NetworkEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    private static final String DNS_CACHE_TTL = "networkaddress.cache.ttl";
+    private static final String KEEP_ALIVE_TIMEOUT = "jdk.httpclient.keepalive.timeout";
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        Duration dnsCacheTtl = environment.getProperty(
+                "imageservice.http-client.dns-cache-ttl", Duration.class, Duration.ofSeconds(60));
+        Duration keepAliveTimeout = environment.getProperty(
+                "imageservice.http-client.keep-alive-timeout", Duration.class, Duration.ofSeconds(30));
+
+        if (System.getProperty("sun.net.inetaddr.ttl") == null) {
+            Security.setProperty(DNS_CACHE_TTL, Long.toString(dnsCacheTtl.toSeconds()));
+        }
+        if (System.getProperty(KEEP_ALIVE_TIMEOUT) == null) {
+            System.setProperty(KEEP_ALIVE_TIMEOUT, Long.toString(keepAliveTimeout.toSeconds()));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Configuration properties for the local cache of original image bytes.
+ * Bound from the {@code imageservice.origin-cache} prefix in {@code application.properties}.
+ */
+@Setter
+@Getter
+@ConfigurationProperties(prefix = "imageservice.origin-cache")
+public class OriginCacheProperties {
+    /**
+     * Whether image bytes are proxied through the service. When disabled, image content requests
+     * are redirected to the origin.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Directory holding the cached bytes, one file per SHA-256; it survives restarts and is shared by nothing else.
+     */
+    private Path directory = Path.of(System.getProperty("java.io.tmpdir"), "imageservice-originals");
+
+    /**
+     * Total size of the cached bytes; the least recently served images are deleted beyond it.
+     */
+    private DataSize maxStoreSize = DataSize.ofGigabytes(5);
+
+    /**
+     * How long a file dropped from the store while being served stays on disk after the response completed.
+     * Covers Tomcat's sendfile, which opens the file just after the request has completed.
+     */
+    private Duration releaseGrace = Duration.ofSeconds(10);
+
+    /**
+     * Largest image cached; larger images cannot be served through the cache.
+     */
+    private DataSize maxImageSize = DataSize.ofMegabytes(20);
+
+    /**
+     * Whether images are downloaded as soon as they are added, rather than on first request.
+     */
+    private boolean prefetch = true;
+
+    /**
+     * Maximum number of concurrent prefetches. Images added while all are busy, typically by a bulk import,
+     * are downloaded on first request instead, so prefetching never competes with URL verification.
+     */
+    private int prefetchParallelism = 4;
+
+    /**
+     * The {@code max-age} sent to clients with every image.
+     */
+    private Duration clientMaxAge = Duration.ofDays(1);
+}
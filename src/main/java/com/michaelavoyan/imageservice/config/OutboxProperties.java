@@ -0,0 +1,48 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for the event outbox.
+ * Bound from the {@code imageservice.outbox} prefix in {@code application.properties}.
+ */
+@Setter
+@Getter
+@ConfigurationProperties(prefix = "imageservice.outbox")
+public class OutboxProperties {
+    /**
+     * Maximum number of events read and dispatched at once.
+     */
+    private int batchSize = 100;
+
+    /**
+     * How often the outbox is polled when no commit has signalled new events,
+     * which picks up events left over by a previous run.
+     */
+    private Duration pollInterval = Duration.ofSeconds(1);
+
+    /**
+     * How long events are kept after they were written. Every instance reads the outbox on its own,
+     * and a restarted instance replays the events still kept.
+     */
+    private Duration retention = Duration.ofMinutes(10);
+
+    /**
+     * How long a missing event ID below the newest event read is rechecked. IDs are assigned at insert
+     * but become visible at commit, so a slower transaction may commit an older ID later.
+     */
+    private Duration gapTimeout = Duration.ofMinutes(1);
+
+    /**
+     * How many times an event is delivered before it is given up on when a listener keeps failing.
+     */
+    private int maxAttempts = 5;
+}
@@ -0,0 +1,31 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for the in-memory play counters.
+ * Bound from the {@code imageservice.play-counts} prefix in {@code application.properties}.
+ */
+@Setter
+@Getter
+@ConfigurationProperties(prefix = "imageservice.play-counts")
+public class PlayCountProperties {
+    /**
+     * Delay between two rollups of the in-memory counters into the {@code play_count_rollup} table.
+     */
+    private Duration rollupInterval = Duration.ofSeconds(10);
+
+    /**
+     * How long after the end of its minute an idle counter is kept in memory.
+     * Plays reported later than this still count, they just allocate a new counter.
+     */
+    private Duration retention = Duration.ofHours(1);
+}
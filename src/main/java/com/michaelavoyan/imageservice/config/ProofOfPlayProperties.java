@@ -0,0 +1,89 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for proof-of-play ingestion.
+ * Bound from the {@code imageservice.proof-of-play} prefix in {@code application.properties}.
+ */
+@Setter
+@Getter
+@ConfigurationProperties(prefix = "imageservice.proof-of-play")
+public class ProofOfPlayProperties {
+    /**
+     * How accepted plays are written to the database.
+     */
+    private Ingestion ingestion = Ingestion.SYNC;
+
+    /**
+     * Maximum number of accepted plays waiting to be written in {@link Ingestion#WRITE_BEHIND} mode.
+     * Plays arriving while the queue is full are rejected with HTTP 503.
+     */
+    private int queueCapacity = 10_000;
+
+    /**
+     * Maximum number of plays written in one JDBC batch.
+     */
+    private int batchSize = 500;
+
+    /**
+     * Maximum time an accepted play waits before its batch is written.
+     */
+    private Duration flushInterval = Duration.ofSeconds(1);
+
+    /**
+     * Maximum number of plays accepted in one batch upload.
+     */
+    private int maxUploadSize = 1_000;
+
+    /**
+     * How long plays are kept. Older days are dropped by the retention job.
+     */
+    private Duration retention = Duration.ofDays(90);
+
+    /**
+     * Number of future daily partitions kept ready on MySQL.
+     */
+    private int partitionsAhead = 7;
+
+    /**
+     * When the partition and retention job runs.
+     */
+    private String maintenanceCron = "0 5 0 * * *";
+
+    /**
+     * Whether the maintenance job converts an unpartitioned MySQL table that already holds plays to daily
+     * partitions. The conversion copies the whole table under a lock, so it is meant to be enabled once, in a
+     * maintenance window; until then expired plays are deleted row by row. An empty table is always converted.
+     */
+    private boolean convertToPartitioned = false;
+
+    /**
+     * Whether a {@code PlayRecordedEvent} is written to the outbox with every play. No listener consumes it
+     * yet, and at play rates the extra row per play roughly doubles the write load, so it is off until one does.
+     */
+    private boolean publishEvents = false;
+
+    /**
+     * Supported ingestion modes.
+     */
+    public enum Ingestion {
+        /**
+         * Each play is saved before the request returns.
+         */
+        SYNC,
+
+        /**
+         * Plays are queued in memory and written in batches by a background writer.
+         */
+        WRITE_BEHIND
+    }
+}
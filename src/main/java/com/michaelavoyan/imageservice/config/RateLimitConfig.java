@@ -0,0 +1,44 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Applies admission control to the write endpoints unless {@code imageservice.rate-limit.enabled} is turned off.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "imageservice.rate-limit", name = "enabled", havingValue = "true",
+        matchIfMissing = true)
+public class RateLimitConfig implements WebMvcConfigurer {
+
+    private final RateLimitProperties properties;
+
+    /**
+     * Constructor to initialize properties.
+     */
+    public RateLimitConfig(RateLimitProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Interceptor limiting the rate and concurrency of the write endpoints.
+     *
+     * @return the admission control interceptor
+     */
+    @Bean
+    public AdmissionControlInterceptor admissionControlInterceptor() {
+        return new AdmissionControlInterceptor(properties);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(admissionControlInterceptor()).addPathPatterns("/api/**");
+    }
+}
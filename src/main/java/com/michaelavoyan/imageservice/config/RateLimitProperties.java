@@ -0,0 +1,73 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuration properties for the admission control of the write endpoints.
+ * Bound from the {@code imageservice.rate-limit} prefix in {@code application.properties}.
+ */
+@Setter
+@Getter
+@ConfigurationProperties(prefix = "imageservice.rate-limit")
+public class RateLimitProperties {
+    /**
+     * Whether write requests are rate-limited per client and capped in concurrency.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Maximum number of write requests processed at once, across all clients and write endpoints.
+     */
+    private int maxConcurrentWrites = 32;
+
+    /**
+     * Number of independently locked stripes the token buckets of each endpoint are spread over.
+     */
+    private int stripes = 64;
+
+    /**
+     * Per-client limit of {@code addImage}.
+     */
+    private Limit addImage = new Limit(10, 20);
+
+    /**
+     * Per-client limit of {@code addSlideshow}.
+     */
+    private Limit addSlideshow = new Limit(2, 5);
+
+    /**
+     * Per-client limit of proof-of-play, shared by single plays and batches.
+     */
+    private Limit addProofOfPlay = new Limit(50, 100);
+
+    /**
+     * Token bucket settings of one endpoint.
+     */
+    @Setter
+    @Getter
+    public static class Limit {
+        /**
+         * Sustained number of requests a client may make per second.
+         */
+        private double permitsPerSecond;
+
+        /**
+         * Number of requests a client may make at once after being idle.
+         */
+        private int burst;
+
+        public Limit() {
+        }
+
+        public Limit(double permitsPerSecond, int burst) {
+            this.permitsPerSecond = permitsPerSecond;
+            this.burst = burst;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import com.michaelavoyan.imageservice.utils.ReplicaRoutingDataSource;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Filter keeping the reads of a client on the primary for {@code readYourWritesWindow} after it wrote,
+ * so that it reads its own writes however far the replicas lag.
+ * <p>
+ * Any request other than {@code GET}, {@code HEAD} and {@code OPTIONS} counts as a write, from its start
+ * until it completes, including asynchronous processing; the reads it makes itself, such as existence checks,
+ * use the primary as well. Clients are identified by the {@code clientHeader} request header, or by their
+ * remote address when they send none. The header lets clients sharing an address, such as behind a NAT,
+ * be pinned separately. It is not authenticated, which is harmless since pinning only moves reads to the
+ * primary, and is why the rate limit keys on the address instead. Reads are only pinned on the request
+ * thread; work handed to other executors reads from the replicas.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    private static final Set<String> READ_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    /**
+     * Number of tracked clients above which expired entries are removed.
+     */
+    private static final int PURGE_THRESHOLD = 10_000;
+
+    private final ReplicaProperties properties;
+
+    /**
+     * Time of the last write of each client, from {@link System#nanoTime()}.
+     */
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor to initialize properties.
+     */
+    public ReadYourWritesFilter(ReplicaProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain
+    ) throws ServletException, IOException {
+        String client = client(request);
+        boolean write = !READ_METHODS.contains(request.getMethod());
+        if (write) {
+            recordWrite(client);
+        } else if (!wroteRecently(client)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        ReplicaRoutingDataSource.setPinnedToPrimary(true);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            ReplicaRoutingDataSource.setPinnedToPrimary(false);
+            if (write) {
+                recordWrite(client);
+            }
+        }
+    }
+
+    private String client(HttpServletRequest request) {
+        String header = request.getHeader(properties.getClientHeader());
+        return header != null && !header.isBlank() ? header : request.getRemoteAddr();
+    }
+
+    private void recordWrite(String client) {
+        long now = System.nanoTime();
+        lastWrites.put(client, now);
+        if (lastWrites.size() > PURGE_THRESHOLD) {
+            long window = properties.getReadYourWritesWindow().toNanos();
+            lastWrites.values().removeIf(writtenAt -> now - writtenAt > window);
+        }
+    }
+
+    private boolean wroteRecently(String client) {
+        Long writtenAt = lastWrites.get(client);
+        return writtenAt != null && System.nanoTime() - writtenAt <= properties.getReadYourWritesWindow().toNanos();
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Configuration properties for rendered image derivatives.
+ * Bound from the {@code imageservice.render} prefix in {@code application.properties}.
+ */
+@Setter
+@Getter
+@ConfigurationProperties(prefix = "imageservice.render")
+public class RenderProperties {
+    /**
+     * Directory holding the rendered derivatives; it survives restarts and is shared by nothing else.
+     */
+    private Path directory = Path.of(System.getProperty("java.io.tmpdir"), "imageservice-renders");
+
+    /**
+     * Total size of the derivatives kept on disk; the least recently served ones are deleted beyond it.
+     */
+    private DataSize maxStoreSize = DataSize.ofGigabytes(1);
+
+    /**
+     * How long a file dropped from the store while being served stays on disk after the response completed.
+     * Covers Tomcat's sendfile, which opens the file just after the request has completed.
+     */
+    private Duration releaseGrace = Duration.ofSeconds(10);
+
+    /**
+     * Largest width or height that may be requested.
+     */
+    private int maxDimension = 4096;
+
+    /**
+     * Largest original image downloaded for rendering when the origin cache is disabled.
+     */
+    private DataSize maxSourceSize = DataSize.ofMegabytes(20);
+
+    /**
+     * Largest original image, in pixels, decoded for rendering; larger images are refused before decoding.
+     */
+    private long maxSourcePixels = 40_000_000;
+
+    /**
+     * JPEG compression quality, from {@code 0} to {@code 1}.
+     */
+    private float jpegQuality = 0.85f;
+
+    /**
+     * The {@code max-age} sent to clients with every derivative. Image URLs never change,
+     * so derivatives can be cached for long.
+     */
+    private Duration clientMaxAge = Duration.ofDays(1);
+}
@@ -0,0 +1,116 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import com.michaelavoyan.imageservice.services.ReplicaMonitor;
+import com.michaelavoyan.imageservice.utils.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Routes read-only transactions to the read replicas when {@code imageservice.replicas.enabled} is set.
+ * <p>
+ * The primary is configured through the usual {@code spring.datasource} properties, and each replica gets
+ * its own connection pool with the same settings. The application data source hands out connections lazily:
+ * a connection is only taken once the transaction runs its first statement, from the replicas if the
+ * transaction is read-only, as with {@code @Transactional(readOnly = true)}, and from the primary otherwise.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "imageservice.replicas", name = "enabled", havingValue = "true")
+public class ReplicaDataSourceConfig {
+    /**
+     * Monitor of the replicas, owning the connection pools of the primary and the replicas.
+     *
+     * @param dataSourceProperties the connection settings of the primary
+     * @param properties the replica configuration
+     * @param environment the environment holding the {@code spring.datasource.hikari} pool settings
+     * @return the replica monitor
+     */
+    @Bean
+    public ReplicaMonitor replicaMonitor(
+            DataSourceProperties dataSourceProperties,
+            ReplicaProperties properties,
+            Environment environment
+    ) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+
+        List<ReplicaRoutingDataSource.Replica> replicas = new ArrayList<>();
+        for (ReplicaProperties.Instance instance : properties.getInstances()) {
+            String name = "replica-" + (replicas.size() + 1);
+            replicas.add(new ReplicaRoutingDataSource.Replica(name, replicaPool(name, primary, instance, properties)));
+        }
+        return new ReplicaMonitor(new ReplicaRoutingDataSource(primary, replicas), properties, Clock.systemUTC());
+    }
+
+    /**
+     * The application data source, taking connections from the primary or, for read-only transactions,
+     * from the replicas.
+     *
+     * @param replicaMonitor the monitor holding the data sources
+     * @return the application data source
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaMonitor replicaMonitor) {
+        ReplicaRoutingDataSource router = replicaMonitor.getRouter();
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(router.getPrimary());
+        dataSource.setReadOnlyDataSource(router);
+        return dataSource;
+    }
+
+    /**
+     * Filter keeping the reads of a client on the primary right after it wrote.
+     *
+     * @param properties the replica configuration
+     * @return the read-your-writes filter
+     */
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(ReplicaProperties properties) {
+        return new ReadYourWritesFilter(properties);
+    }
+
+    /**
+     * Creates the connection pool of a replica, with the settings of the primary pool. The pool starts even if
+     * the replica is down, and waits no longer than {@code connectionTimeout} for a connection before reads
+     * fall back to the primary.
+     */
+    private static HikariDataSource replicaPool(
+            String name,
+            HikariDataSource primary,
+            ReplicaProperties.Instance instance,
+            ReplicaProperties properties
+    ) {
+        HikariDataSource pool = new HikariDataSource();
+        primary.copyStateTo(pool);
+        pool.setPoolName(name);
+        pool.setJdbcUrl(instance.getUrl());
+        pool.setUsername(instance.getUsername() != null ? instance.getUsername() : primary.getUsername());
+        pool.setPassword(instance.getPassword() != null ? instance.getPassword() : primary.getPassword());
+        pool.setReadOnly(true);
+        pool.setMaximumPoolSize(properties.getMaximumPoolSize());
+        if (primary.getMinimumIdle() > properties.getMaximumPoolSize()) {
+            pool.setMinimumIdle(properties.getMaximumPoolSize());
+        }
+        pool.setConnectionTimeout(properties.getConnectionTimeout().toMillis());
+        pool.setInitializationFailTimeout(-1);
+        return pool;
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration properties for the read replicas serving read-only transactions.
+ * Bound from the {@code imageservice.replicas} prefix in {@code application.properties}.
+ */
+@Setter
+@Getter
+@ConfigurationProperties(prefix = "imageservice.replicas")
+public class ReplicaProperties {
+    /**
+     * Whether read-only transactions are routed to the replicas; when disabled, everything uses the primary.
+     */
+    private boolean enabled = false;
+
+    /**
+     * The replicas, each with its own connection pool.
+     */
+    private List<Instance> instances = new ArrayList<>();
+
+    /**
+     * Maximum replication lag of a replica still used for reads; a replica lagging further is skipped
+     * until it catches up.
+     */
+    private Duration maxLag = Duration.ofSeconds(5);
+
+    /**
+     * How often the primary writes the replication heartbeat and the replicas are checked.
+     */
+    private Duration checkInterval = Duration.ofSeconds(1);
+
+    /**
+     * How long the reads of a client stay on the primary after it wrote, so it reads its own writes.
+     */
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+
+    /**
+     * Request header identifying a client for read-your-writes; clients sending none are identified
+     * by their remote address. Unlike rate limiting, which only trusts the address, an unauthenticated
+     * header is enough here: a client sending someone else's ID only moves reads to the primary.
+     */
+    private String clientHeader = "X-Client-Id";
+
+    /**
+     * Maximum number of connections of each replica pool. The other pool settings are those of the primary.
+     */
+    private int maximumPoolSize = 10;
+
+    /**
+     * Maximum time to wait for a replica connection before falling back to the primary.
+     */
+    private Duration connectionTimeout = Duration.ofSeconds(2);
+
+    /**
+     * Connection settings of one replica.
+     */
+    @Setter
+    @Getter
+    public static class Instance {
+        /**
+         * JDBC URL of the replica.
+         */
+        private String url;
+
+        /**
+         * Login user of the replica; defaults to the user of the primary.
+         */
+        private String username;
+
+        /**
+         * Login password of the replica; defaults to the password of the primary.
+         */
+        private String password;
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for the image search index.
+ * Bound from the {@code imageservice.search} prefix in {@code application.properties}.
+ */
+@Setter
+@Getter
+@ConfigurationProperties(prefix = "imageservice.search")
+public class SearchProperties {
+    /**
+     * Whether searches use the in-memory trigram index. When disabled, every search is a database LIKE query.
+     */
+    private boolean indexEnabled = true;
+
+    /**
+     * Delay between two loads of images added by other instances.
+     */
+    private Duration catchUpInterval = Duration.ofSeconds(5);
+
+    /**
+     * Number of IDs below the highest indexed one that each catch-up reads again. IDs are allocated before
+     * their transactions commit, so an image can become visible after one with a higher ID; images committed
+     * later than this window allows are picked up by the next rebuild.
+     */
+    private int catchUpWindow = 1_000;
+
+    /**
+     * Delay between two full rebuilds, which also drop images deleted by other instances.
+     */
+    private Duration rebuildInterval = Duration.ofHours(1);
+
+    /**
+     * Number of images read per query while loading the index.
+     */
+    private int loadBatchSize = 5_000;
+}
@@ -0,0 +1,37 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for the slideshow order cache.
+ * Bound from the {@code imageservice.slideshow-order-cache} prefix in {@code application.properties}.
+ */
+@Setter
+@Getter
+@ConfigurationProperties(prefix = "imageservice.slideshow-order-cache")
+public class SlideshowOrderCacheProperties {
+    /**
+     * Maximum number of cached slideshow orders; {@code 0} disables the cache.
+     */
+    private int maxEntries = 10_000;
+
+    /**
+     * How long a cached order is served. Changes made by this instance invalidate it immediately;
+     * the TTL bounds how long changes made by other instances stay invisible.
+     */
+    private Duration ttl = Duration.ofSeconds(60);
+
+    /**
+     * The {@code max-age} sent to clients with every slideshow order. Clients revalidate with
+     * {@code If-None-Match} once it has passed; {@code 0} makes them revalidate on every poll.
+     */
+    private Duration clientMaxAge = Duration.ZERO;
+}
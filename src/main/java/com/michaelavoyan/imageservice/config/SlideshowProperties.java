@@ -0,0 +1,30 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for slideshow creation.
+ * Bound from the {@code imageservice.slideshow} prefix in {@code application.properties}.
+ */
+@Setter
+@Getter
+@ConfigurationProperties(prefix = "imageservice.slideshow")
+public class SlideshowProperties {
+    /**
+     * Maximum number of image URLs of one slideshow verified at the same time.
+     */
+    private int verificationParallelism = 16;
+
+    /**
+     * Time allowed to verify all the images of one slideshow; images not verified by then are reported as failed.
+     */
+    private Duration verificationTimeout = Duration.ofSeconds(30);
+}
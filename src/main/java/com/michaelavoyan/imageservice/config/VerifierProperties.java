@@ -0,0 +1,89 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for {@link com.michaelavoyan.imageservice.utils.ImageVerifier}.
+ * Bound from the {@code imageservice.verifier} prefix in {@code application.properties}.
+ */
+@Setter
+@Getter
+@ConfigurationProperties(prefix = "imageservice.verifier")
+public class VerifierProperties {
+    /**
+     * How thoroughly an image URL is verified.
+     */
+    private Mode mode = Mode.HEADER;
+
+    /**
+     * Maximum number of bytes read from the origin in {@link Mode#HEADER} mode.
+     * The image header (including JPEG EXIF blocks) must fit within this prefix.
+     */
+    private int headerBytes = 64 * 1024;
+
+    /**
+     * Whether verification also computes the perceptual hash used to detect near-duplicate images.
+     * The hash needs the pixels, so in {@link Mode#HEADER} mode this downloads whole images
+     * (up to {@code maxImageSize}) instead of their header only.
+     */
+    private boolean perceptualHash = false;
+
+    /**
+     * Largest body read in {@link Mode#HEADER} mode when computing perceptual hashes.
+     * Larger images are still verified from their header but get no hash.
+     */
+    private DataSize maxImageSize = DataSize.ofMegabytes(20);
+
+    /**
+     * Cache of verification results.
+     */
+    private Cache cache = new Cache();
+
+    /**
+     * Supported verification modes.
+     */
+    public enum Mode {
+        /**
+         * Reads only the first {@code headerBytes} of the body, sniffs the magic bytes
+         * and reads the image dimensions without decoding any pixels.
+         */
+        HEADER,
+
+        /**
+         * Downloads and fully decodes the image.
+         */
+        STRICT
+    }
+
+    /**
+     * Sizing of the verification result cache.
+     */
+    @Setter
+    @Getter
+    public static class Cache {
+        /**
+         * Maximum number of cached results; the least recently used are evicted first.
+         * Zero disables caching, while concurrent requests for one URL are still coalesced.
+         */
+        private int maxEntries = 10_000;
+
+        /**
+         * How long a valid result is served without contacting the origin.
+         */
+        private Duration ttl = Duration.ofMinutes(10);
+
+        /**
+         * How long an invalid result is served without contacting the origin.
+         */
+        private Duration negativeTtl = Duration.ofMinutes(1);
+    }
+}
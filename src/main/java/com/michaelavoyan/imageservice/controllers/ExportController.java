@@ -0,0 +1,156 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.controllers;
+
+import com.michaelavoyan.imageservice.services.ExportService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Controller class for exporting images and proof-of-play records.
+ * Exports are streamed as they are read from the database, so they have no size limit, and are gzipped
+ * when the client accepts it.
+ */
+@RestController
+@RequestMapping("/api")
+public class ExportController {
+
+    private static final int GZIP_BUFFER_SIZE = 8 * 1024;
+
+    private final ExportService exportService;
+
+    /**
+     * Constructor to initialize services.
+     */
+    public ExportController(ExportService exportService) {
+        this.exportService = exportService;
+    }
+
+    /**
+     * Exports the images matching a URL and duration, ordered by ID, like {@code /api/images/search}.
+     *
+     * @param query The substring to look for in the URL; all images by default.
+     * @param duration The duration to match; any by default.
+     * @param format The format of the export, {@code ndjson} (the default) or {@code csv}.
+     * @param acceptEncoding The {@code Accept-Encoding} header of the request.
+     * @return A response entity streaming the images.
+     */
+    @GetMapping("/images/export")
+    public ResponseEntity<StreamingResponseBody> exportImages(
+            @RequestParam(defaultValue = "") String query,
+            @RequestParam(defaultValue = "0") int duration,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) {
+        ExportService.Format exportFormat = ExportService.Format.of(format);
+        boolean gzip = acceptsGzip(acceptEncoding);
+        return response("images", exportFormat, gzip)
+                .body(out -> {
+                    OutputStream body = gzip ? new GZIPOutputStream(out, GZIP_BUFFER_SIZE) : out;
+                    exportService.exportImages(query, duration, exportFormat, body);
+                    finish(body);
+                });
+    }
+
+    /**
+     * Exports the recorded plays of a slideshow in a time range, oldest first, like
+     * {@code /api/slideShow/{id}/proof-of-play} but without a limit.
+     *
+     * @param id The slideshow ID.
+     * @param from The start of the range, inclusive; defaults to 24 hours before {@code to}.
+     * @param to The end of the range, exclusive; defaults to now.
+     * @param imageId The optional image ID to restrict the plays to.
+     * @param format The format of the export, {@code ndjson} (the default) or {@code csv}.
+     * @param acceptEncoding The {@code Accept-Encoding} header of the request.
+     * @return A response entity streaming the plays.
+     */
+    @GetMapping("/slideShow/{id}/proof-of-play/export")
+    public ResponseEntity<StreamingResponseBody> exportProofOfPlay(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long imageId,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) {
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        LocalDateTime start = from != null ? from : end.minusHours(24);
+        if (!start.isBefore(end)) {
+            throw new IllegalArgumentException("'from' must be before 'to'.");
+        }
+        ExportService.Format exportFormat = ExportService.Format.of(format);
+        boolean gzip = acceptsGzip(acceptEncoding);
+        return response("slideshow-" + id + "-plays", exportFormat, gzip)
+                .body(out -> {
+                    OutputStream body = gzip ? new GZIPOutputStream(out, GZIP_BUFFER_SIZE) : out;
+                    exportService.exportPlays(id, imageId, start, end, exportFormat, body);
+                    finish(body);
+                });
+    }
+
+    /**
+     * Starts a response for an export, downloaded as a file named after the export and its format.
+     */
+    private static ResponseEntity.BodyBuilder response(String name, ExportService.Format format, boolean gzip) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(format.mediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(name + "." + format.extension()).build().toString())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        return gzip ? response.header(HttpHeaders.CONTENT_ENCODING, "gzip") : response;
+    }
+
+    /**
+     * Writes the gzip trailer, leaving the response stream open for the container to complete.
+     */
+    private static void finish(OutputStream body) throws IOException {
+        if (body instanceof GZIPOutputStream gzip) {
+            gzip.finish();
+        }
+        body.flush();
+    }
+
+    /**
+     * Checks whether an {@code Accept-Encoding} header accepts gzip, that is lists {@code gzip} or {@code *}
+     * without a zero quality.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String candidate : acceptEncoding.split(",")) {
+            String[] parts = candidate.split(";");
+            String coding = parts[0].trim();
+            if (!coding.equalsIgnoreCase("gzip") && !coding.equals("*")) {
+                continue;
+            }
+            boolean refused = false;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim().replace(" ", "");
+                if (parameter.startsWith("q=") && parameter.substring(2).matches("0(\\.0*)?")) {
+                    refused = true;
+                }
+            }
+            if (!refused) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
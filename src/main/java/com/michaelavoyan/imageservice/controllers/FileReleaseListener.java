@@ -0,0 +1,41 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.controllers;
+
+import jakarta.servlet.ServletRequestEvent;
+import jakarta.servlet.ServletRequestListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Releases the files leased by a request, registered with {@link FileResponses#releaseAfter}.
+ * <p>
+ * The container notifies the listener once the response is complete, after the asynchronous processing of the
+ * request if any. A file that is not available yet, such as one still rendering when an asynchronous request
+ * timed out, is released as soon as it is.
+ */
+@Component
+class FileReleaseListener implements ServletRequestListener {
+
+    private static final Logger log = LoggerFactory.getLogger(FileReleaseListener.class);
+
+    @Override
+    public void requestDestroyed(ServletRequestEvent event) {
+        if (event.getServletRequest().getAttribute(FileResponses.RELEASE_ATTR) instanceof CompletableFuture<?> file) {
+            file.thenAccept(FileReleaseListener::release);
+        }
+    }
+
+    private static void release(Object file) {
+        try {
+            ((AutoCloseable) file).close();
+        } catch (Exception e) {
+            log.warn("Could not release a served file", e);
+        }
+    }
+}
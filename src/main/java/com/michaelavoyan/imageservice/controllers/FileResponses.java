@@ -0,0 +1,118 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.controllers;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Builds responses serving files from disk.
+ * <p>
+ * Under Tomcat, a plain {@code GET} of a whole file answered on the request thread is handed to the connector's
+ * sendfile support, which copies the file to the socket with {@code FileChannel.transferTo} instead of through
+ * the heap. Tomcat only performs sendfile for synchronous requests, so files that become available later are
+ * {@linkplain #streamed streamed}. Conditional and {@code Range} requests, and other containers, go through
+ * Spring MVC's {@link Resource} handling, which answers {@code 304 Not Modified} and {@code 206 Partial Content}
+ * and streams the file.
+ * <p>
+ * Files handed out by a store are leased; {@link #releaseAfter} keeps the lease until the request has completed,
+ * so an eviction cannot delete the file while it is being sent.
+ */
+final class FileResponses {
+
+    static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    static final String RELEASE_ATTR = FileResponses.class.getName() + ".release";
+
+    private FileResponses() {
+    }
+
+    /**
+     * Releases a leased file once the request has completed, or once the file is available if that comes later.
+     * Must be called on the request thread; the release is performed by {@link FileReleaseListener}.
+     *
+     * @param request the current request
+     * @param file the future of the leased file
+     */
+    static void releaseAfter(HttpServletRequest request, CompletableFuture<? extends AutoCloseable> file) {
+        request.setAttribute(RELEASE_ATTR, file);
+    }
+
+    /**
+     * Builds a {@code 200 OK} response serving a file, using sendfile when possible.
+     * Must be called on the request thread, before any asynchronous processing has started.
+     *
+     * @param request the current request
+     * @param file the file to serve
+     * @param eTag the strong ETag of the file
+     * @param mediaType the media type of the file
+     * @param cacheControl the caching directives for clients
+     * @return the response
+     */
+    static ResponseEntity<Resource> ok(
+            HttpServletRequest request,
+            Path file,
+            String eTag,
+            MediaType mediaType,
+            CacheControl cacheControl
+    ) {
+        if (!canSendfile(request)) {
+            return streamed(file, eTag, mediaType, cacheControl);
+        }
+        try {
+            long length = Files.size(file);
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.toRealPath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, 0L);
+            request.setAttribute(SENDFILE_END_ATTR, length);
+            return headers(eTag, mediaType, cacheControl).contentLength(length).build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Builds a {@code 200 OK} response streaming a file through Spring MVC; safe in asynchronous requests.
+     *
+     * @param file the file to serve
+     * @param eTag the strong ETag of the file
+     * @param mediaType the media type of the file
+     * @param cacheControl the caching directives for clients
+     * @return the response
+     */
+    static ResponseEntity<Resource> streamed(Path file, String eTag, MediaType mediaType, CacheControl cacheControl) {
+        return headers(eTag, mediaType, cacheControl).body(new FileSystemResource(file));
+    }
+
+    private static ResponseEntity.BodyBuilder headers(String eTag, MediaType mediaType, CacheControl cacheControl) {
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(cacheControl)
+                .contentType(mediaType)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes");
+    }
+
+    private static boolean canSendfile(HttpServletRequest request) {
+        return Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))
+                && HttpMethod.GET.matches(request.getMethod())
+                && request.getHeader(HttpHeaders.RANGE) == null
+                && request.getHeader(HttpHeaders.IF_NONE_MATCH) == null
+                && request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) == null;
+    }
+}
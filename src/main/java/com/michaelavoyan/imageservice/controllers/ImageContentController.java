@@ -0,0 +1,66 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.controllers;
+
+import com.michaelavoyan.imageservice.services.ImageOriginCache;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Controller class for serving the bytes of images through the local origin cache.
+ * When the cache is disabled, clients are redirected to the origin.
+ */
+@RestController
+@RequestMapping("/api")
+public class ImageContentController {
+
+    private final ImageOriginCache imageOriginCache;
+
+    /**
+     * Constructor to initialize services.
+     */
+    public ImageContentController(ImageOriginCache imageOriginCache) {
+        this.imageOriginCache = imageOriginCache;
+    }
+
+    /**
+     * Returns the bytes of an image, downloading them from the origin on first request.
+     *
+     * @param id The image ID.
+     * @param request The current request.
+     * @return A response entity containing the image or redirecting to its origin if the cache is disabled,
+     *         or a future of one while the image is downloaded.
+     */
+    @GetMapping("/images/{id}/content")
+    public Object getImageContent(
+            @PathVariable Long id,
+            HttpServletRequest request
+    ) {
+        if (!imageOriginCache.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.FOUND)
+                    .location(URI.create(imageOriginCache.originUrl(id)))
+                    .build();
+        }
+        CacheControl cacheControl = CacheControl.maxAge(imageOriginCache.clientMaxAge()).cachePublic();
+        CompletableFuture<ImageOriginCache.Content> content = imageOriginCache.content(id);
+        FileResponses.releaseAfter(request, content);
+        if (content.isDone() && !content.isCompletedExceptionally()) {
+            // Already on disk: answer on the request thread, where the file can be sent with sendfile.
+            ImageOriginCache.Content cached = content.join();
+            return FileResponses.ok(request, cached.file(), cached.eTag(), cached.mediaType(), cacheControl);
+        }
+        return content.thenApply(cached -> FileResponses.streamed(
+                cached.file(), cached.eTag(), cached.mediaType(), cacheControl));
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.controllers;
+
+import com.michaelavoyan.imageservice.services.ImageImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Controller class for importing images in bulk.
+ * The request and the response are both streamed, so an import of any size runs in constant memory.
+ */
+@RestController
+@RequestMapping("/api")
+public class ImageImportController {
+
+    private final ImageImportService imageImportService;
+
+    /**
+     * Constructor to initialize services.
+     */
+    public ImageImportController(ImageImportService imageImportService) {
+        this.imageImportService = imageImportService;
+    }
+
+    /**
+     * Imports many images at once.
+     * The body is either a JSON array of images or newline-delimited JSON (one image per line),
+     * each image in the same shape as for {@code /api/addImage}. The response is newline-delimited JSON
+     * with one line per image, holding either the saved image ID or the rejection reason.
+     *
+     * @param request the HTTP request whose body is streamed
+     * @return a response entity streaming the per-image results
+     * @throws IOException if the request body cannot be opened
+     */
+    @PostMapping(
+            value = "/images/import",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE
+    )
+    public ResponseEntity<StreamingResponseBody> importImages(HttpServletRequest request) throws IOException {
+        InputStream body = request.getInputStream();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> imageImportService.importImages(body, out));
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.controllers;
+
+import com.michaelavoyan.imageservice.services.ImageRenderService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.CacheControl;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Controller class for serving resized derivatives of images.
+ * Derivatives are sent from disk rather than loaded in memory; {@code Range} requests are answered
+ * with {@code 206 Partial Content} and {@code If-None-Match} requests with {@code 304 Not Modified}.
+ */
+@RestController
+@RequestMapping("/api")
+public class ImageRenderController {
+
+    private final ImageRenderService imageRenderService;
+
+    /**
+     * Constructor to initialize services.
+     */
+    public ImageRenderController(ImageRenderService imageRenderService) {
+        this.imageRenderService = imageRenderService;
+    }
+
+    /**
+     * Returns an image scaled down to fit within the given box, rendering it on first request.
+     *
+     * @param id The image ID.
+     * @param w The largest width; omitted for no limit.
+     * @param h The largest height; omitted for no limit.
+     * @param fmt The output format, {@code jpg} or {@code png}.
+     * @param request The current request.
+     * @return A response entity containing the derivative, or a future of one while the derivative is rendered.
+     */
+    @GetMapping("/images/{id}/render")
+    public Object render(
+            @PathVariable Long id,
+            @RequestParam(required = false) Integer w,
+            @RequestParam(required = false) Integer h,
+            @RequestParam(defaultValue = "jpg") String fmt,
+            HttpServletRequest request
+    ) {
+        CacheControl cacheControl = CacheControl.maxAge(imageRenderService.clientMaxAge()).cachePublic();
+        CompletableFuture<ImageRenderService.Rendition> rendition = imageRenderService.render(id, w, h, fmt);
+        FileResponses.releaseAfter(request, rendition);
+        if (rendition.isDone() && !rendition.isCompletedExceptionally()) {
+            // Already on disk: answer on the request thread, where the file can be sent with sendfile.
+            ImageRenderService.Rendition stored = rendition.join();
+            return FileResponses.ok(request, stored.file(), stored.eTag(), stored.format().mediaType(), cacheControl);
+        }
+        return rendition.thenApply(stored -> FileResponses.streamed(
+                stored.file(), stored.eTag(), stored.format().mediaType(), cacheControl));
+    }
+}
@@ -4,36 +4,85 @@
 
 package com.michaelavoyan.imageservice.controllers;
 
+import com.michaelavoyan.imageservice.dto.ImageSummary;
+import com.michaelavoyan.imageservice.dto.PlayBatchResult;
+import com.michaelavoyan.imageservice.dto.PlayEvent;
+import com.michaelavoyan.imageservice.dto.PlayRecord;
+import com.michaelavoyan.imageservice.dto.PlayUpload;
+import com.michaelavoyan.imageservice.dto.SimilarImage;
 import com.michaelavoyan.imageservice.entities.Image;
 import com.michaelavoyan.imageservice.entities.ProofOfPlay;
 import com.michaelavoyan.imageservice.entities.Slideshow;
+import com.michaelavoyan.imageservice.events.ImageAddedEvent;
+import com.michaelavoyan.imageservice.events.ImageDeletedEvent;
+import com.michaelavoyan.imageservice.events.PlayRecordedEvent;
+import com.michaelavoyan.imageservice.events.SlideshowAddedEvent;
+import com.michaelavoyan.imageservice.events.SlideshowDeletedEvent;
 import com.michaelavoyan.imageservice.repositories.ImageRepository;
 import com.michaelavoyan.imageservice.repositories.ProofOfPlayRepository;
 import com.michaelavoyan.imageservice.repositories.SlideshowRepository;
+import com.michaelavoyan.imageservice.services.EventOutbox;
+import com.michaelavoyan.imageservice.services.ImageOrderingService;
+import com.michaelavoyan.imageservice.services.ImageSearchService;
+import com.michaelavoyan.imageservice.services.PlayCounter;
+import com.michaelavoyan.imageservice.services.SimilarImageService;
+import com.michaelavoyan.imageservice.services.SlideshowOrderCache;
+import com.michaelavoyan.imageservice.services.SlideshowVerificationService;
+import com.michaelavoyan.imageservice.services.ProofOfPlayIngestor;
 import com.michaelavoyan.imageservice.utils.ImageVerifier;
 import jakarta.validation.Valid;
-import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Limit;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Controller class for managing images, slideshows, and proof-of-play records.
  * Provides RESTful endpoints for handling image-related CRUD operations.
+ * Every change is written together with its domain events to the {@link EventOutbox} in one transaction.
  */
 @RestController
 @RequestMapping("/api")
 public class ImageServiceController {
 
+    /**
+     * Response header listing the IDs of the near-duplicates of an added image.
+     */
+    static final String SIMILAR_IMAGES_HEADER = "X-Similar-Images";
+
     private final ImageRepository imageRepository;
     private final SlideshowRepository slideshowRepository;
     private final ProofOfPlayRepository proofOfPlayRepository;
-    private final ApplicationEventPublisher eventPublisher;
+    private final EventOutbox eventOutbox;
+    private final TransactionTemplate transactionTemplate;
     private final ImageVerifier imageVerifier;
+    private final Executor persistenceExecutor;
+    private final ProofOfPlayIngestor proofOfPlayIngestor;
+    private final PlayCounter playCounter;
+    private final ImageSearchService imageSearchService;
+    private final SlideshowOrderCache slideshowOrderCache;
+    private final ImageOrderingService imageOrderingService;
+    private final SimilarImageService similarImageService;
+    private final SlideshowVerificationService slideshowVerificationService;
 
     /**
      * Constructor to initialize repositories and services.
@@ -42,35 +91,75 @@ public class ImageServiceController {
             ImageRepository imageRepository,
             SlideshowRepository slideshowRepository,
             ProofOfPlayRepository proofOfPlayRepository,
-            ApplicationEventPublisher eventPublisher,
-            ImageVerifier imageVerifier
+            EventOutbox eventOutbox,
+            TransactionTemplate transactionTemplate,
+            ImageVerifier imageVerifier,
+            @Qualifier("persistenceExecutor") Executor persistenceExecutor,
+            ProofOfPlayIngestor proofOfPlayIngestor,
+            PlayCounter playCounter,
+            ImageSearchService imageSearchService,
+            SlideshowOrderCache slideshowOrderCache,
+            ImageOrderingService imageOrderingService,
+            SimilarImageService similarImageService,
+            SlideshowVerificationService slideshowVerificationService
     ) {
         this.imageRepository = imageRepository;
         this.slideshowRepository = slideshowRepository;
         this.proofOfPlayRepository = proofOfPlayRepository;
-        this.eventPublisher = eventPublisher;
+        this.eventOutbox = eventOutbox;
+        this.transactionTemplate = transactionTemplate;
         this.imageVerifier = imageVerifier;
+        this.persistenceExecutor = persistenceExecutor;
+        this.proofOfPlayIngestor = proofOfPlayIngestor;
+        this.playCounter = playCounter;
+        this.imageSearchService = imageSearchService;
+        this.slideshowOrderCache = slideshowOrderCache;
+        this.imageOrderingService = imageOrderingService;
+        this.similarImageService = similarImageService;
+        this.slideshowVerificationService = slideshowVerificationService;
     }
 
     /**
      * Adds a new image if the URL is valid.
+     * The URL is verified on the verification executor and the image is saved on the
+     * persistence executor, so neither blocks the request thread or the common pool.
+     * <p>
+     * Images within the configured perceptual-hash distance of an existing image are near-duplicates: they are
+     * either saved with their IDs listed in the {@code X-Similar-Images} header, or refused with 409 Conflict.
      *
      * @param image The image entity containing the URL.
      * @return A response entity containing the saved image or an error message.
      */
     @PostMapping("/addImage")
     public CompletableFuture<ResponseEntity<?>> addImage(@Valid @RequestBody Image image) {
-        return imageVerifier.isValidImageUrl(
-                imageVerifier.createConnection(image.getUrl())
-        ).thenApply(isValid -> {
-            if (!isValid) {
+        return imageVerifier.verifyImageUrl(image.getUrl()).thenApplyAsync(result -> {
+            if (!result.valid()) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                         .body("Invalid image URL. The URL does not contain a valid image.");
             }
-            Image savedImage = imageRepository.save(image);
-            eventPublisher.publishEvent("Image added: " + savedImage.getId());
+            image.setPerceptualHash(result.perceptualHash());
+            List<Long> duplicates = similarImageService.findDuplicates(result.perceptualHash());
+            String similarIds = duplicates.stream().map(String::valueOf).collect(Collectors.joining(","));
+            if (!duplicates.isEmpty() && similarImageService.rejectsDuplicates()) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .header(SIMILAR_IMAGES_HEADER, similarIds)
+                        .body("Near-duplicate of image(s) " + similarIds + ".");
+            }
+            Image savedImage = transactionTemplate.execute(status -> {
+                Long slideshowId = image.getSlideshow() != null ? image.getSlideshow().getId() : null;
+                if (slideshowId != null) {
+                    slideshowRepository.incrementVersions(List.of(slideshowId));
+                    imageOrderingService.append(slideshowId, List.of(image));
+                }
+                Image saved = imageRepository.save(image);
+                eventOutbox.publish(imageAdded(saved));
+                return saved;
+            });
+            if (!duplicates.isEmpty()) {
+                return ResponseEntity.ok().header(SIMILAR_IMAGES_HEADER, similarIds).body(savedImage);
+            }
             return ResponseEntity.ok(savedImage);
-        });
+        }, persistenceExecutor);
     }
 
     /**
@@ -84,45 +173,74 @@ public class ImageServiceController {
         if (!imageRepository.existsById(id)) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Image not found.");
         }
-        imageRepository.deleteById(id);
-        eventPublisher.publishEvent("Image deleted: " + id);
+        Long slideshowId = imageRepository.findSlideshowIdById(id);
+        transactionTemplate.executeWithoutResult(status -> {
+            imageRepository.deleteById(id);
+            if (slideshowId != null) {
+                slideshowRepository.incrementVersions(List.of(slideshowId));
+            }
+            eventOutbox.publish(new ImageDeletedEvent(id, slideshowId));
+        });
         return ResponseEntity.noContent().build();
     }
 
     /**
-     * Adds a new slideshow along with its images in a transactional operation.
+     * Adds a new slideshow along with its images.
+     * The image URLs are verified concurrently within a time budget; if any fails, nothing is saved and the
+     * failed images are listed with their reason. Otherwise the slideshow and its images are saved in one
+     * transaction on the persistence executor, so no database connection is held while origins are contacted.
      *
      * @param slideshow The slideshow entity containing images.
-     * @return A response entity with the saved slideshow or an error message.
+     * @return A response entity with the saved slideshow, the images that failed verification, or an error message.
      */
     @PostMapping("/addSlideshow")
-    @Transactional // Ensures the slideshow and its images are saved in one atomic database transaction.
-    public ResponseEntity<?> addSlideshow(@Valid @RequestBody Slideshow slideshow) {
+    public CompletableFuture<ResponseEntity<?>> addSlideshow(@Valid @RequestBody Slideshow slideshow) {
         if (slideshow.getImages() == null || slideshow.getImages().isEmpty()) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Slideshow must contain images.");
+            return CompletableFuture.completedFuture(
+                    ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Slideshow must contain images."));
         }
 
         // Temporarily store images and remove them from slideshow to prevent early persistence
         List<Image> images = slideshow.getImages();
         slideshow.setImages(null);
 
+        return slideshowVerificationService.verify(images).thenApplyAsync(failures -> {
+            if (!failures.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(failures);
+            }
+            // The slideshow and its images are saved in one atomic database transaction.
+            return ResponseEntity.ok(transactionTemplate.execute(status -> saveSlideshow(slideshow, images)));
+        }, persistenceExecutor);
+    }
+
+    private Slideshow saveSlideshow(Slideshow slideshow, List<Image> images) {
+
         // Save the Slideshow first, ensuring ID is generated
         Slideshow savedSlideshow = slideshowRepository.saveAndFlush(slideshow);
 
-        // Assign the saved Slideshow to each Image
+        // Assign the saved Slideshow to each Image, keeping the request order as play order
         for (Image image : images) {
             image.setSlideshow(savedSlideshow);
         }
+        imageOrderingService.append(savedSlideshow.getId(), images);
 
-        // Save images separately after slideshow ID is assigned
-        List<Image> savedImages = imageRepository.saveAll(images);
+        // Insert the images in one JDBC batch once the slideshow ID is assigned; Hibernate would insert
+        // entities with IDENTITY IDs one round-trip at a time
+        imageRepository.insertBatch(images);
 
-        // Restore images to slideshow so it is returned in the response
-        savedSlideshow.setImages(savedImages);
+        // Return the images with a copy of the slideshow: the images are not managed by Hibernate,
+        // so adding them to the managed slideshow would cascade a second persist at commit
+        Slideshow response = new Slideshow();
+        response.setId(savedSlideshow.getId());
+        response.setVersion(savedSlideshow.getVersion());
+        response.setImages(images);
 
-        // Publish event and return response
-        eventPublisher.publishEvent("Slideshow added: " + savedSlideshow.getId());
-        return ResponseEntity.ok(savedSlideshow);
+        // Write events to the outbox (delivered after commit) and return response
+        List<Object> events = new ArrayList<>(images.size() + 1);
+        images.forEach(image -> events.add(imageAdded(image)));
+        events.add(new SlideshowAddedEvent(savedSlideshow.getId()));
+        eventOutbox.publishAll(events);
+        return response;
     }
 
     /**
@@ -136,51 +254,113 @@ public class ImageServiceController {
         if (!slideshowRepository.existsById(id)) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Slideshow not found.");
         }
-        slideshowRepository.deleteById(id);
-        eventPublisher.publishEvent("Slideshow deleted: " + id);
+        List<Long> imageIds = imageRepository.findIdsBySlideshowId(id);
+        transactionTemplate.executeWithoutResult(status -> {
+            slideshowRepository.deleteById(id);
+            eventOutbox.publish(new SlideshowDeletedEvent(id, imageIds));
+        });
         return ResponseEntity.noContent().build();
     }
 
     /**
      * Searches images based on a query string and optional duration filter.
+     * Matching IDs come from the in-memory search index; the summaries are then loaded in a single
+     * query, without loading the slideshow entities.
      *
      * @param query The search query string.
      * @param duration The optional duration filter.
-     * @return A list of matching images.
+     * @return A list of matching image summaries.
      */
-    @Transactional // This ensures that Hibernate's session remains open during execution.
     @GetMapping("/images/search")
-    public ResponseEntity<List<Image>> searchImages(
+    public ResponseEntity<List<ImageSummary>> searchImages(
             @RequestParam String query,
             @RequestParam(required = false) Integer duration
     ) {
-        List<Image> images = imageRepository.searchImages(query, (duration != null) ? duration : 0);
+        return ResponseEntity.ok(imageSearchService.search(query, (duration != null) ? duration : 0));
+    }
 
-        // Explicitly load images from each slideshow to prevent LazyInitializationException
-        images.forEach(image -> {
-            if (image.getSlideshow() != null) {
-                image.getSlideshow().getImages().size(); // Force Hibernate to initialize images
-            }
-        });
+    /**
+     * Finds the images that look like a given image, by Hamming distance between their perceptual hashes.
+     * Images added without a perceptual hash have no similar images.
+     *
+     * @param id The image ID.
+     * @param maxDistance The largest distance accepted; defaults to the near-duplicate distance.
+     * @return The similar images, closest first.
+     */
+    @GetMapping("/images/{id}/similar")
+    public ResponseEntity<List<SimilarImage>> getSimilarImages(
+            @PathVariable Long id,
+            @RequestParam(required = false) Integer maxDistance
+    ) {
+        return ResponseEntity.ok(similarImageService.similarTo(id, maxDistance));
+    }
 
-        return ResponseEntity.ok(images);
+    /**
+     * Finds the images that look like an image not yet added, given its perceptual hash.
+     *
+     * @param hash The perceptual hash, as 16 hexadecimal digits.
+     * @param maxDistance The largest distance accepted; defaults to the near-duplicate distance.
+     * @return The similar images, closest first.
+     */
+    @GetMapping("/images/similar")
+    public ResponseEntity<List<SimilarImage>> findSimilarImages(
+            @RequestParam String hash,
+            @RequestParam(required = false) Integer maxDistance
+    ) {
+        return ResponseEntity.ok(similarImageService.similarTo(hash, maxDistance));
     }
 
     /**
      * Retrieves images for a given slideshow ID.
+     * The response is served from the slideshow order cache as pre-serialized JSON, with the slideshow
+     * version as a strong ETag. A request whose {@code If-None-Match} holds the current version is
+     * answered with 304 Not Modified after reading only that version.
      *
      * @param id The slideshow ID.
+     * @param ifNoneMatch The ETags the client already holds, if any.
      * @return A response entity containing the list of images.
      */
     @GetMapping("/slideShow/{id}/slideshowOrder")
-    public ResponseEntity<?> getSlideshowImages(@Valid @PathVariable Long id) {
-        return slideshowRepository.findById(id)
-                .map(slideshow -> ResponseEntity.ok(slideshow.getImages()))
-                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(List.of()));
+    public ResponseEntity<?> getSlideshowImages(
+            @Valid @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        CacheControl cacheControl = CacheControl.maxAge(slideshowOrderCache.clientMaxAge()).mustRevalidate();
+        SlideshowOrderCache.SlideshowOrder order;
+        if (ifNoneMatch != null) {
+            Long version = slideshowOrderCache.version(id);
+            if (version == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body("[]".getBytes(StandardCharsets.UTF_8));
+            }
+            String eTag = SlideshowOrderCache.SlideshowOrder.eTag(version);
+            if (matchesETag(ifNoneMatch, eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(cacheControl).build();
+            }
+            order = slideshowOrderCache.get(id, version);
+        } else {
+            order = slideshowOrderCache.get(id);
+        }
+
+        if (!order.found()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(order.json());
+        }
+        return ResponseEntity.ok()
+                .eTag(order.eTag())
+                .cacheControl(cacheControl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(order.json());
     }
 
     /**
      * Records proof of play for a slideshow and image.
+     * In write-behind mode a valid play is checked with a single query, queued, and answered with
+     * 202 Accepted; the detailed lookups below only run to explain a rejected play.
+     * If the ingestor publishes events, the {@link PlayRecordedEvent} is written with the play,
+     * by the ingestor in write-behind mode.
      *
      * @param id The slideshow ID.
      * @param imageId The image ID.
@@ -191,6 +371,13 @@ public class ImageServiceController {
             @Valid @PathVariable Long id,
             @Valid @PathVariable Long imageId
     ) {
+        if (proofOfPlayIngestor.isWriteBehind() && imageRepository.existsByIdAndSlideshowId(imageId, id)) {
+            PlayEvent play = new PlayEvent(id, imageId, LocalDateTime.now());
+            proofOfPlayIngestor.submit(play);
+            playCounter.record(id, imageId, play.playedAt());
+            return ResponseEntity.accepted().body(play);
+        }
+
         Slideshow slideshow = slideshowRepository.findById(id).orElse(null);
         if (slideshow == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -211,9 +398,140 @@ public class ImageServiceController {
         ProofOfPlay pop = new ProofOfPlay();
         pop.setSlideshow(slideshow);
         pop.setImage(image);
-        proofOfPlayRepository.save(pop);
-
-        eventPublisher.publishEvent("Proof of Play recorded: Slideshow ID " + id + ", Image ID " + imageId);
+        LocalDateTime playedAt = transactionTemplate.execute(status -> {
+            proofOfPlayRepository.save(pop);
+            LocalDateTime savedAt = pop.getPlayedAt() != null ? pop.getPlayedAt() : LocalDateTime.now();
+            if (proofOfPlayIngestor.publishesEvents()) {
+                eventOutbox.publish(new PlayRecordedEvent(id, imageId, savedAt));
+            }
+            return savedAt;
+        });
+        playCounter.record(id, imageId, playedAt);
         return ResponseEntity.ok(pop);
     }
+
+    /**
+     * Records many plays of a slideshow uploaded by a device in one call.
+     * Image membership is checked with a single query for the whole upload. Valid plays are queued
+     * in write-behind mode (202 Accepted) or inserted in one batch otherwise (200 OK); invalid plays
+     * are listed in the result with the reason they were rejected.
+     *
+     * @param id The slideshow ID.
+     * @param uploads The plays to record.
+     * @return A response entity with the number of accepted plays and the rejected ones.
+     */
+    @PostMapping("/slideShow/{id}/proof-of-play")
+    public ResponseEntity<?> addProofOfPlayBatch(
+            @Valid @PathVariable Long id,
+            @RequestBody List<PlayUpload> uploads
+    ) {
+        if (uploads.size() > proofOfPlayIngestor.maxUploadSize()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body("At most " + proofOfPlayIngestor.maxUploadSize() + " plays can be uploaded at once.");
+        }
+        if (!slideshowRepository.existsById(id)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body("Slideshow with ID " + id + " not found.");
+        }
+
+        Set<Long> imageIds = new HashSet<>(imageRepository.findIdsBySlideshowId(id));
+        LocalDateTime now = LocalDateTime.now();
+        List<PlayEvent> plays = new ArrayList<>(uploads.size());
+        List<Integer> indexes = new ArrayList<>(uploads.size());
+        List<PlayBatchResult.Rejected> rejected = new ArrayList<>();
+        for (int i = 0; i < uploads.size(); i++) {
+            PlayUpload upload = uploads.get(i);
+            if (!imageIds.contains(upload.imageId())) {
+                rejected.add(new PlayBatchResult.Rejected(i, upload.imageId(),
+                        "Image ID " + upload.imageId() + " is not part of Slideshow ID " + id));
+                continue;
+            }
+            plays.add(new PlayEvent(id, upload.imageId(), upload.playedAt() != null ? upload.playedAt() : now));
+            indexes.add(i);
+        }
+
+        List<PlayEvent> recorded;
+        if (proofOfPlayIngestor.isWriteBehind()) {
+            int queued = proofOfPlayIngestor.submitAll(plays);
+            if (queued == 0 && !plays.isEmpty()) {
+                throw new RejectedExecutionException("Proof-of-play queue is full");
+            }
+            for (int i = queued; i < plays.size(); i++) {
+                rejected.add(new PlayBatchResult.Rejected(indexes.get(i), plays.get(i).imageId(),
+                        "Server busy, retry later."));
+            }
+            recorded = plays.subList(0, queued);
+        } else {
+            Set<Integer> failures = new HashSet<>(proofOfPlayIngestor.write(plays));
+            recorded = new ArrayList<>(plays.size() - failures.size());
+            for (int i = 0; i < plays.size(); i++) {
+                if (failures.contains(i)) {
+                    rejected.add(new PlayBatchResult.Rejected(indexes.get(i), plays.get(i).imageId(),
+                            "Could not save play."));
+                } else {
+                    recorded.add(plays.get(i));
+                }
+            }
+        }
+
+        for (PlayEvent play : recorded) {
+            playCounter.record(id, play.imageId(), play.playedAt());
+        }
+        rejected.sort(Comparator.comparingInt(PlayBatchResult.Rejected::index));
+        PlayBatchResult result = new PlayBatchResult(recorded.size(), rejected);
+        return proofOfPlayIngestor.isWriteBehind() ? ResponseEntity.accepted().body(result) : ResponseEntity.ok(result);
+    }
+
+    /**
+     * Retrieves the recorded plays of a slideshow in a time range, oldest first.
+     *
+     * @param id The slideshow ID.
+     * @param from The start of the range, inclusive; defaults to 24 hours before {@code to}.
+     * @param to The end of the range, exclusive; defaults to now.
+     * @param imageId The optional image ID to restrict the plays to.
+     * @param limit The maximum number of plays returned, at most 10000.
+     * @return A response entity containing the plays.
+     */
+    @GetMapping("/slideShow/{id}/proof-of-play")
+    @Transactional(readOnly = true)
+    public ResponseEntity<?> getProofOfPlay(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long imageId,
+            @RequestParam(defaultValue = "1000") int limit
+    ) {
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        LocalDateTime start = from != null ? from : end.minusHours(24);
+        if (!start.isBefore(end) || limit < 1 || limit > 10_000) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("'from' must be before 'to' and 'limit' between 1 and 10000.");
+        }
+        List<PlayRecord> plays = imageId != null
+                ? proofOfPlayRepository.findImagePlays(id, imageId, start, end, Limit.of(limit))
+                : proofOfPlayRepository.findPlays(id, start, end, Limit.of(limit));
+        return ResponseEntity.ok(plays);
+    }
+
+    /**
+     * Checks an {@code If-None-Match} header against an ETag, using the weak comparison required for it.
+     */
+    private static boolean matchesETag(String ifNoneMatch, String eTag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ImageAddedEvent imageAdded(Image image) {
+        Long slideshowId = image.getSlideshow() != null ? image.getSlideshow().getId() : null;
+        return new ImageAddedEvent(
+                image.getId(), image.getUrl(), image.getDuration(), slideshowId, image.getPerceptualHash());
+    }
 }
@@ -0,0 +1,58 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.controllers;
+
+import com.michaelavoyan.imageservice.services.PlayCounter;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Controller class for reading play counts.
+ * Counts come from the rollup table and the in-memory counters; the proof-of-play table is not read.
+ */
+@RestController
+@RequestMapping("/api")
+public class PlayCountController {
+
+    private final PlayCounter playCounter;
+
+    /**
+     * Constructor to initialize services.
+     */
+    public PlayCountController(PlayCounter playCounter) {
+        this.playCounter = playCounter;
+    }
+
+    /**
+     * Retrieves the play counts of a slideshow per image and minute.
+     *
+     * @param id The slideshow ID.
+     * @param from The first minute, inclusive; defaults to one hour before {@code to}.
+     * @param to The end of the range, exclusive; defaults to the end of the current minute.
+     * @return A response entity containing the counts ordered by minute and image.
+     */
+    @GetMapping("/slideShow/{id}/play-counts")
+    public ResponseEntity<?> getPlayCounts(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to
+    ) {
+        LocalDateTime end = to != null ? to : LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        LocalDateTime start = from != null ? from : end.minusHours(1);
+        if (!start.isBefore(end)) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("'from' must be before 'to'.");
+        }
+        return ResponseEntity.ok(playCounter.counts(id, start, end));
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.controllers;
+
+import com.michaelavoyan.imageservice.services.ImageOrderingService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Controller class for changing the play order of slideshows.
+ * A move updates the moved image only; the new order is served by the slideshow order endpoint.
+ */
+@RestController
+@RequestMapping("/api")
+public class SlideshowOrderingController {
+
+    private final ImageOrderingService imageOrderingService;
+
+    /**
+     * Constructor to initialize services.
+     */
+    public SlideshowOrderingController(ImageOrderingService imageOrderingService) {
+        this.imageOrderingService = imageOrderingService;
+    }
+
+    /**
+     * Moves an image of a slideshow directly after another of its images, or to the front.
+     *
+     * @param id The slideshow ID.
+     * @param imageId The ID of the image to move.
+     * @param after The ID of the image to move it after; omitted to move it to the front.
+     * @return An empty response once the move is committed.
+     */
+    @PostMapping("/slideShow/{id}/images/{imageId}/move")
+    public ResponseEntity<?> moveImage(
+            @PathVariable Long id,
+            @PathVariable Long imageId,
+            @RequestParam(required = false) Long after
+    ) {
+        imageOrderingService.move(id, imageId, after);
+        return ResponseEntity.noContent().build();
+    }
+}
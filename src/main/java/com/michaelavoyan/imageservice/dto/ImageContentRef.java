@@ -0,0 +1,14 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.dto;
+
+/**
+ * Where the bytes of an image come from and, once cached, what they hash to.
+ *
+ * @param url the URL of the image
+ * @param contentHash the SHA-256 of the cached bytes in lowercase hex, or {@code null} if never cached
+ */
+public record ImageContentRef(String url, String contentHash) {
+}
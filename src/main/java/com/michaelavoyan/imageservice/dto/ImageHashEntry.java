@@ -0,0 +1,14 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.dto;
+
+/**
+ * The perceptual hash of an image, loaded to build the in-memory near-duplicate index.
+ *
+ * @param id the ID of the image
+ * @param perceptualHash the perceptual hash of the image
+ */
+public record ImageHashEntry(Long id, long perceptualHash) {
+}
@@ -0,0 +1,15 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.dto;
+
+/**
+ * The searchable fields of an image, loaded to build the in-memory search index.
+ *
+ * @param id the ID of the image
+ * @param url the URL of the image
+ * @param duration the display duration of the image
+ */
+public record ImageIndexEntry(Long id, String url, int duration) {
+}
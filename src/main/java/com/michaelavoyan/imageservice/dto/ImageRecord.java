@@ -0,0 +1,19 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * A stored image row, read without loading the image and slideshow entities.
+ *
+ * @param id the ID of the image
+ * @param url the URL of the image
+ * @param duration the display duration of the image
+ * @param createdAt when the image was added
+ * @param slideshowId the ID of the slideshow of the image, or {@code null} if it has none
+ */
+public record ImageRecord(Long id, String url, int duration, LocalDateTime createdAt, Long slideshowId) {
+}
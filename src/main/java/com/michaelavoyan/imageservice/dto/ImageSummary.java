@@ -0,0 +1,27 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * An image as returned by the search, with its slideshow reduced to an ID and an image count.
+ *
+ * @param id the ID of the image
+ * @param url the URL of the image
+ * @param duration the display duration of the image
+ * @param createdAt when the image was created
+ * @param slideshowId the ID of the slideshow of the image, or {@code null}
+ * @param slideshowImageCount the number of images in that slideshow, or {@code 0}
+ */
+public record ImageSummary(
+        Long id,
+        String url,
+        int duration,
+        LocalDateTime createdAt,
+        Long slideshowId,
+        long slideshowImageCount
+) {
+}
@@ -0,0 +1,27 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * The outcome of importing one image of a bulk import, written as one NDJSON line.
+ *
+ * @param index the zero-based position of the image in the request
+ * @param url the image URL
+ * @param id the ID of the saved image, or {@code null} if it was rejected
+ * @param error the reason the image was rejected, or {@code null} if it was saved
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ImportResult(int index, String url, Long id, String error) {
+
+    public static ImportResult saved(int index, String url, Long id) {
+        return new ImportResult(index, url, id, null);
+    }
+
+    public static ImportResult rejected(int index, String url, String error) {
+        return new ImportResult(index, url, null, error);
+    }
+}
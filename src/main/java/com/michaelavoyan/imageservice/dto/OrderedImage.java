@@ -0,0 +1,18 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * An image of a slideshow, as served to player devices in the slideshow order.
+ *
+ * @param id the ID of the image
+ * @param url the URL of the image
+ * @param duration the display duration of the image
+ * @param createdAt when the image was created
+ */
+public record OrderedImage(Long id, String url, int duration, LocalDateTime createdAt) {
+}
@@ -0,0 +1,26 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.dto;
+
+import java.util.List;
+
+/**
+ * The outcome of a batch upload of plays.
+ *
+ * @param accepted the number of plays accepted
+ * @param rejected the plays that were not accepted, with the reason
+ */
+public record PlayBatchResult(int accepted, List<Rejected> rejected) {
+
+    /**
+     * A play that was not accepted.
+     *
+     * @param index the zero-based position of the play in the upload
+     * @param imageId the ID of the played image
+     * @param reason why the play was not accepted
+     */
+    public record Rejected(int index, Long imageId, String reason) {
+    }
+}
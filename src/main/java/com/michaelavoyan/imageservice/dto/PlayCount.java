@@ -0,0 +1,17 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * The number of plays of an image in a slideshow during one minute.
+ *
+ * @param imageId the ID of the image
+ * @param bucketStart the start of the minute
+ * @param count the number of plays
+ */
+public record PlayCount(Long imageId, LocalDateTime bucketStart, long count) {
+}
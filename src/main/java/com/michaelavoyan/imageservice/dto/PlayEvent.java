@@ -0,0 +1,17 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * A validated play of an image in a slideshow, waiting to be written as a ProofOfPlay row.
+ *
+ * @param slideshowId the ID of the slideshow
+ * @param imageId the ID of the image
+ * @param playedAt when the image was played
+ */
+public record PlayEvent(Long slideshowId, Long imageId, LocalDateTime playedAt) {
+}
@@ -0,0 +1,18 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * A stored proof-of-play row, read without loading the slideshow and image entities.
+ *
+ * @param id the ID of the row
+ * @param slideshowId the ID of the slideshow
+ * @param imageId the ID of the image
+ * @param playedAt when the image was played
+ */
+public record PlayRecord(Long id, Long slideshowId, Long imageId, LocalDateTime playedAt) {
+}
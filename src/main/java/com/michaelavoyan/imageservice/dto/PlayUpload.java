@@ -0,0 +1,18 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.dto;
+
+import jakarta.validation.constraints.NotNull;
+
+import java.time.LocalDateTime;
+
+/**
+ * One play in a batch upload from a player device.
+ *
+ * @param imageId the ID of the played image
+ * @param playedAt when the image was played; defaults to the time of the upload
+ */
+public record PlayUpload(@NotNull Long imageId, LocalDateTime playedAt) {
+}
@@ -0,0 +1,15 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.dto;
+
+/**
+ * An image whose perceptual hash is close to a queried one.
+ *
+ * @param id the ID of the image
+ * @param url the URL of the image
+ * @param distance the number of differing hash bits, from {@code 0} (same picture) to {@code 64}
+ */
+public record SimilarImage(Long id, String url, int distance) {
+}
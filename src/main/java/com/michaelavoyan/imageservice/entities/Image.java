@@ -4,6 +4,8 @@
 
 package com.michaelavoyan.imageservice.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
@@ -20,6 +22,7 @@ import java.time.LocalDateTime;
 @Setter
 @Getter
 @Entity
+@Table(indexes = @Index(name = "idx_image_slideshow_position", columnList = "slideshow_id, display_position"))
 public class Image {
     /**
      * The unique identifier for the image.
@@ -49,11 +52,37 @@ public class Image {
 
     /**
      * The slideshow to which this image belongs.
+     * Its images are left out of the JSON form, which would otherwise nest the slideshow in each of its images.
      */
+    @JsonIgnoreProperties("images")
     @ManyToOne
     @JoinColumn(name = "slideshow_id") // This allows Hibernate to persist Image after Slideshow is saved.
     private Slideshow slideshow;
 
+    /**
+     * The position of the image in its slideshow. Images are played in ascending position, then ID.
+     * Positions are spaced {@code ImageOrderingService.POSITION_GAP} apart so that an image can be moved
+     * between two others by updating its own row only.
+     */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(nullable = false)
+    private long displayPosition;
+
+    /**
+     * The SHA-256 of the image bytes, in lowercase hex, once the origin cache has stored them;
+     * it names the cached copy. {@code null} until then.
+     */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(length = 64)
+    private String contentHash;
+
+    /**
+     * The perceptual hash of the image, computed during verification and used to find near-duplicates;
+     * {@code null} if it was not computed.
+     */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long perceptualHash;
+
     /**
      * Automatically sets the creation timestamp before persisting the entity.
      */
@@ -0,0 +1,48 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.entities;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity representing a domain event written to the outbox.
+ * Rows are written in the same transaction as the change they describe. Every instance reads them
+ * independently, so they are only deleted once older than the outbox retention.
+ */
+@Setter
+@Getter
+@Entity
+@Table(name = "outbox_event", indexes = @Index(name = "idx_outbox_event_created_at", columnList = "created_at"))
+public class OutboxEvent {
+    /**
+     * Unique identifier of the event; events are read in ID order.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * The simple class name of the event, such as {@code ImageAddedEvent}.
+     */
+    @Column(nullable = false, length = 100)
+    private String eventType;
+
+    /**
+     * The event serialized as JSON.
+     */
+    @Lob
+    @Column(nullable = false)
+    private String payload;
+
+    /**
+     * The timestamp when the event was written.
+     */
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,53 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Identifies the plays of one image in one slideshow during one minute.
+ * Immutable, so it is also used as the key of the in-memory counters.
+ */
+@Getter
+@Embeddable
+@EqualsAndHashCode
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class PlayCountKey implements Serializable {
+    /**
+     * The ID of the slideshow.
+     */
+    @Column(name = "slideshow_id", nullable = false)
+    private Long slideshowId;
+
+    /**
+     * The ID of the image.
+     */
+    @Column(name = "image_id", nullable = false)
+    private Long imageId;
+
+    /**
+     * The start of the minute in which the plays happened.
+     */
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    /**
+     * Creates the key of the minute bucket containing {@code playedAt}.
+     */
+    public static PlayCountKey of(Long slideshowId, Long imageId, LocalDateTime playedAt) {
+        return new PlayCountKey(slideshowId, imageId, playedAt.truncatedTo(ChronoUnit.MINUTES));
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.entities;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Entity holding the number of plays of an image in a slideshow during one minute.
+ * Rows are upserted by the periodic rollup of the in-memory play counters.
+ */
+@Setter
+@Getter
+@Entity
+@Table(name = "play_count_rollup")
+public class PlayCountRollup {
+    /**
+     * The slideshow, image and minute counted by this row.
+     */
+    @EmbeddedId
+    private PlayCountKey id;
+
+    /**
+     * The number of plays recorded for the key.
+     */
+    @Column(nullable = false)
+    private long playCount;
+}
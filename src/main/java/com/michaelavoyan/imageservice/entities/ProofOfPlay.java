@@ -4,6 +4,7 @@
 
 package com.michaelavoyan.imageservice.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
@@ -12,13 +13,15 @@ import java.time.LocalDateTime;
 
 /**
  * Entity representing a record of an image being played in a slideshow.
- * This entity is stored in the database with a unique constraint
- * ensuring that the combination of slideshow and image is unique.
+ * The table is append-only: every play is stored as its own row, and rows are only removed
+ * by the retention job of {@link com.michaelavoyan.imageservice.services.ProofOfPlayPartitionManager}.
+ * On MySQL it is partitioned by day of {@code played_at}, which rules out foreign keys,
+ * so the references to the slideshow and image are not enforced by the database.
  */
 @Setter
 @Getter
 @Entity
-@Table(uniqueConstraints = {@UniqueConstraint(columnNames = {"slideshow_id", "image_id"})})
+@Table(indexes = {@Index(name = "idx_proof_of_play_slideshow_played_at", columnList = "slideshow_id, played_at")})
 public class ProofOfPlay {
     /**
      * Unique identifier for this proof of play entry.
@@ -29,22 +32,25 @@ public class ProofOfPlay {
 
     /**
      * The slideshow in which the image was played.
+     * Its images are left out of the JSON form; they are not loaded when the play is returned.
      */
+    @JsonIgnoreProperties("images")
     @ManyToOne
-    @JoinColumn(name = "slideshow_id", nullable = false)
+    @JoinColumn(name = "slideshow_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Slideshow slideshow;
 
     /**
      * The image that was played.
      */
     @ManyToOne
-    @JoinColumn(name = "image_id", nullable = false)
+    @JoinColumn(name = "image_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Image image;
 
     /**
      * The timestamp when the image was played.
-     * It is automatically set before persistence.
+     * It is automatically set before persistence and is the partitioning key of the table.
      */
+    @Column(nullable = false)
     private LocalDateTime playedAt;
 
     @PrePersist
@@ -0,0 +1,31 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.entities;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Entity holding the replication heartbeat: the primary regularly writes the current time to its single row,
+ * and the lag of a replica is how old the heartbeat it has replicated is.
+ */
+@Setter
+@Getter
+@Entity
+@Table(name = "replica_heartbeat")
+public class ReplicaHeartbeat {
+    /**
+     * Identifier of the row; there is only one.
+     */
+    @Id
+    private Integer id;
+
+    /**
+     * The time of the last heartbeat, in milliseconds since the epoch.
+     */
+    @Column(nullable = false)
+    private long beatAt;
+}
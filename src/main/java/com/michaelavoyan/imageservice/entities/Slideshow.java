@@ -4,6 +4,7 @@
 
 package com.michaelavoyan.imageservice.entities;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
@@ -34,4 +35,12 @@ public class Slideshow {
     @OneToMany(mappedBy = "slideshow", cascade = CascadeType.PERSIST, orphanRemoval = true)
     private List<Image> images;
 
+    /**
+     * Incremented whenever images are added to or removed from this slideshow.
+     * It is the ETag of the slideshow order, so an unchanged order can be confirmed without loading the images.
+     */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    @Column(nullable = false)
+    private long version;
+
 }
@@ -8,10 +8,12 @@ import jakarta.persistence.EntityNotFoundException;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * Global exception handler for handling various exceptions in the application.
  * This class provides centralized exception handling using Spring's @RestControllerAdvice.
- * It handles generic exceptions, bad requests, and entity not found errors,
+ * It handles generic exceptions, bad requests, entity not found errors, rejected work and shed requests,
  * returning appropriate HTTP status codes and messages.
  */
 @RestControllerAdvice
@@ -51,4 +53,31 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.NOT_FOUND)
                 .body("Not Found: " + e.getMessage());
     }
+
+    /**
+     * Handles RejectedExecutionException, indicating that a bounded executor is saturated.
+     *
+     * @param e the caught exception
+     * @return a response entity with a 503 Service Unavailable status and a Retry-After hint
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<String> handleRejected(RejectedExecutionException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body("Service Unavailable: the server is busy, please retry later.");
+    }
+
+    /**
+     * Handles TooManyRequestsException, indicating that admission control shed the request.
+     *
+     * @param e the caught exception
+     * @return a response entity with a 429 Too Many Requests status and a Retry-After hint
+     */
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<String> handleTooManyRequests(TooManyRequestsException e) {
+        long seconds = Math.max(1, (e.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(seconds))
+                .body("Too Many Requests: " + e.getMessage());
+    }
 }
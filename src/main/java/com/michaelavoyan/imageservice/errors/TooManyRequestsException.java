@@ -0,0 +1,31 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.errors;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a request is shed by admission control, because its client exceeded its rate
+ * or too many requests are already being processed.
+ */
+public class TooManyRequestsException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    /**
+     * Constructor to initialize the message and the time after which the client may retry.
+     */
+    public TooManyRequestsException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * @return how long the client should wait before retrying
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
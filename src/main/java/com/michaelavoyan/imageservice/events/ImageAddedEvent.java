@@ -0,0 +1,17 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.events;
+
+/**
+ * Published after an image has been saved, on its own or as part of a slideshow or an import.
+ *
+ * @param imageId the ID of the image
+ * @param url the URL of the image
+ * @param duration the display duration of the image
+ * @param slideshowId the ID of the slideshow of the image, or {@code null}
+ * @param perceptualHash the perceptual hash of the image, or {@code null}
+ */
+public record ImageAddedEvent(Long imageId, String url, int duration, Long slideshowId, Long perceptualHash) {
+}
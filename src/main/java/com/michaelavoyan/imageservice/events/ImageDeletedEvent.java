@@ -0,0 +1,14 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.events;
+
+/**
+ * Published after an image has been deleted.
+ *
+ * @param imageId the ID of the image
+ * @param slideshowId the ID of the slideshow the image belonged to, or {@code null}
+ */
+public record ImageDeletedEvent(Long imageId, Long slideshowId) {
+}
@@ -0,0 +1,17 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.events;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published after a play has been recorded, or accepted for writing in write-behind mode.
+ *
+ * @param slideshowId the ID of the slideshow
+ * @param imageId the ID of the image
+ * @param playedAt when the image was played
+ */
+public record PlayRecordedEvent(Long slideshowId, Long imageId, LocalDateTime playedAt) {
+}
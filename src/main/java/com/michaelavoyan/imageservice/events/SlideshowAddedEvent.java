@@ -0,0 +1,13 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.events;
+
+/**
+ * Published after a slideshow has been saved. Its images are announced by their own {@link ImageAddedEvent}.
+ *
+ * @param slideshowId the ID of the slideshow
+ */
+public record SlideshowAddedEvent(Long slideshowId) {
+}
@@ -0,0 +1,16 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.events;
+
+import java.util.List;
+
+/**
+ * Published after a slideshow and its images have been deleted.
+ *
+ * @param slideshowId the ID of the slideshow
+ * @param imageIds the IDs of the images deleted with it
+ */
+public record SlideshowDeletedEvent(Long slideshowId, List<Long> imageIds) {
+}
@@ -0,0 +1,14 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.events;
+
+/**
+ * Published after an image of a slideshow has been moved to another position.
+ *
+ * @param slideshowId the ID of the slideshow
+ * @param imageId the ID of the moved image
+ */
+public record SlideshowReorderedEvent(Long slideshowId, Long imageId) {
+}
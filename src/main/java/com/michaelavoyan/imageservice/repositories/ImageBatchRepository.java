@@ -0,0 +1,33 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.repositories;
+
+import com.michaelavoyan.imageservice.entities.Image;
+
+import java.util.List;
+
+/**
+ * Repository fragment for inserting and renumbering many Image entities in JDBC batches.
+ * It is mixed into {@link ImageRepository}.
+ */
+public interface ImageBatchRepository {
+    /**
+     * Inserts the images in a single JDBC batch and transaction, and assigns their generated IDs.
+     * If any row fails, no image of the batch is inserted.
+     *
+     * @param images the images to insert
+     * @throws org.springframework.dao.DataAccessException if the batch cannot be inserted
+     */
+    void insertBatch(List<Image> images);
+
+    /**
+     * Renumbers the given images in a single JDBC batch, joining the current transaction.
+     * The first image gets position {@code gap}, the second {@code 2 * gap}, and so on.
+     *
+     * @param idsInOrder the IDs of the images in their new order
+     * @param gap the distance between consecutive positions
+     */
+    void updatePositions(List<Long> idsInOrder, long gap);
+}
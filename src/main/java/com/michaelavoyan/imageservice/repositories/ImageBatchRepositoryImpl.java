@@ -0,0 +1,91 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.repositories;
+
+import com.michaelavoyan.imageservice.entities.Image;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JDBC implementation of {@link ImageBatchRepository}.
+ * Bypasses Hibernate, which cannot batch inserts of entities with {@code IDENTITY} IDs.
+ */
+public class ImageBatchRepositoryImpl implements ImageBatchRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO image (url, duration, created_at, slideshow_id, display_position, perceptual_hash) "
+                    + "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_POSITION_SQL = "UPDATE image SET display_position = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ImageBatchRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public void insertBatch(List<Image> images) {
+        if (images.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement =
+                         connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (Image image : images) {
+                    image.prePersist();
+                    statement.setString(1, image.getUrl());
+                    statement.setInt(2, image.getDuration());
+                    statement.setTimestamp(3, Timestamp.valueOf(image.getCreatedAt()));
+                    if (image.getSlideshow() != null && image.getSlideshow().getId() != null) {
+                        statement.setLong(4, image.getSlideshow().getId());
+                    } else {
+                        statement.setNull(4, Types.BIGINT);
+                    }
+                    statement.setLong(5, image.getDisplayPosition());
+                    if (image.getPerceptualHash() != null) {
+                        statement.setLong(6, image.getPerceptualHash());
+                    } else {
+                        statement.setNull(6, Types.BIGINT);
+                    }
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    for (Image image : images) {
+                        if (keys.next()) {
+                            image.setId(keys.getLong(1));
+                        }
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    @Transactional
+    public void updatePositions(List<Long> idsInOrder, long gap) {
+        if (idsInOrder.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(idsInOrder.size());
+        for (int i = 0; i < idsInOrder.size(); i++) {
+            rows.add(new Object[]{(i + 1) * gap, idsInOrder.get(i)});
+        }
+        jdbcTemplate.batchUpdate(UPDATE_POSITION_SQL, rows);
+    }
+}
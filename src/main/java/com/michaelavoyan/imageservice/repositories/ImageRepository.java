@@ -4,19 +4,264 @@
 
 package com.michaelavoyan.imageservice.repositories;
 
+import com.michaelavoyan.imageservice.dto.ImageContentRef;
+import com.michaelavoyan.imageservice.dto.ImageHashEntry;
+import com.michaelavoyan.imageservice.dto.ImageIndexEntry;
+import com.michaelavoyan.imageservice.dto.ImageRecord;
+import com.michaelavoyan.imageservice.dto.ImageSummary;
+import com.michaelavoyan.imageservice.dto.OrderedImage;
 import com.michaelavoyan.imageservice.entities.Image;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for managing Image entities.
  * This interface extends {@link JpaRepository} to provide CRUD operations for the Image entity.
- * It includes a custom query method to search for images by URL and duration.
+ * It includes a custom query method to search for images by URL and duration,
+ * and batched inserts and position updates through {@link ImageBatchRepository}.
  */
-public interface ImageRepository extends JpaRepository<Image, Long> {
+public interface ImageRepository extends JpaRepository<Image, Long>, ImageBatchRepository {
     @Query("SELECT i FROM Image i WHERE i.url LIKE %:query% AND (:duration = 0 OR i.duration = :duration)")
     List<Image> searchImages(@Param("query") String query, @Param("duration") int duration);
+
+    /**
+     * Searches images by URL and duration like {@link #searchImages}, returning summaries in one query.
+     *
+     * @param query The substring to look for in the URL.
+     * @param duration The duration to match, or {@code 0} for any.
+     * @return The summaries of the matching images, ordered by ID.
+     */
+    @Query("SELECT new com.michaelavoyan.imageservice.dto.ImageSummary("
+            + "i.id, i.url, i.duration, i.createdAt, s.id, COUNT(o)) "
+            + "FROM Image i LEFT JOIN i.slideshow s LEFT JOIN s.images o "
+            + "WHERE i.url LIKE %:query% AND (:duration = 0 OR i.duration = :duration) "
+            + "GROUP BY i.id, i.url, i.duration, i.createdAt, s.id ORDER BY i.id")
+    List<ImageSummary> searchImageSummaries(@Param("query") String query, @Param("duration") int duration);
+
+    /**
+     * Streams the images matching a URL and duration, ordered by ID, for exports.
+     * Rows are fetched from the database 1000 at a time; the stream must be read within a transaction and closed.
+     *
+     * @param query The substring to look for in the URL.
+     * @param duration The duration to match, or {@code 0} for any.
+     * @return The matching images.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.michaelavoyan.imageservice.dto.ImageRecord(i.id, i.url, i.duration, i.createdAt, s.id) "
+            + "FROM Image i LEFT JOIN i.slideshow s "
+            + "WHERE i.url LIKE %:query% AND (:duration = 0 OR i.duration = :duration) ORDER BY i.id")
+    Stream<ImageRecord> streamImages(@Param("query") String query, @Param("duration") int duration);
+
+    /**
+     * Loads the summaries of the given images, with the image count of their slideshow, in one query.
+     *
+     * @param ids The IDs of the images.
+     * @return The summaries of the images that exist, ordered by ID.
+     */
+    @Query("SELECT new com.michaelavoyan.imageservice.dto.ImageSummary("
+            + "i.id, i.url, i.duration, i.createdAt, s.id, COUNT(o)) "
+            + "FROM Image i LEFT JOIN i.slideshow s LEFT JOIN s.images o "
+            + "WHERE i.id IN :ids "
+            + "GROUP BY i.id, i.url, i.duration, i.createdAt, s.id ORDER BY i.id")
+    List<ImageSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Checks whether an image belongs to a slideshow, without loading either entity.
+     *
+     * @param id The ID of the image.
+     * @param slideshowId The ID of the slideshow.
+     * @return {@code true} if the image exists and belongs to the slideshow.
+     */
+    boolean existsByIdAndSlideshowId(Long id, Long slideshowId);
+
+    /**
+     * Finds the IDs of all images of a slideshow.
+     *
+     * @param slideshowId The ID of the slideshow.
+     * @return The IDs of the images of the slideshow.
+     */
+    @Query("SELECT i.id FROM Image i WHERE i.slideshow.id = :slideshowId")
+    List<Long> findIdsBySlideshowId(@Param("slideshowId") Long slideshowId);
+
+    /**
+     * Finds the ID of the slideshow of an image.
+     *
+     * @param id The ID of the image.
+     * @return The ID of its slideshow, or {@code null} if the image does not exist or has no slideshow.
+     */
+    @Query("SELECT s.id FROM Image i JOIN i.slideshow s WHERE i.id = :id")
+    Long findSlideshowIdById(@Param("id") Long id);
+
+    /**
+     * Finds the URL of an image without loading the entity.
+     *
+     * @param id The ID of the image.
+     * @return The URL of the image, or {@code null} if it does not exist.
+     */
+    @Query("SELECT i.url FROM Image i WHERE i.id = :id")
+    String findUrlById(@Param("id") Long id);
+
+    /**
+     * Finds the URL and content hash of an image without loading the entity.
+     *
+     * @param id The ID of the image.
+     * @return The URL and content hash of the image, or {@code null} if it does not exist.
+     */
+    @Query("SELECT new com.michaelavoyan.imageservice.dto.ImageContentRef(i.url, i.contentHash) "
+            + "FROM Image i WHERE i.id = :id")
+    ImageContentRef findContentRefById(@Param("id") Long id);
+
+    /**
+     * Records the hash of the bytes of an image.
+     *
+     * @param id The ID of the image.
+     * @param contentHash The SHA-256 of the image bytes, in lowercase hex.
+     * @return The number of updated rows.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Image i SET i.contentHash = :contentHash WHERE i.id = :id")
+    int updateContentHash(@Param("id") Long id, @Param("contentHash") String contentHash);
+
+    /**
+     * Loads the images of a slideshow in display order, without loading the slideshow entity.
+     *
+     * @param slideshowId The ID of the slideshow.
+     * @return The images of the slideshow, or an empty list if it has none or does not exist.
+     */
+    @Query("SELECT new com.michaelavoyan.imageservice.dto.OrderedImage(i.id, i.url, i.duration, i.createdAt) "
+            + "FROM Image i WHERE i.slideshow.id = :slideshowId ORDER BY i.displayPosition, i.id")
+    List<OrderedImage> findOrderBySlideshowId(@Param("slideshowId") Long slideshowId);
+
+    /**
+     * Finds the IDs of the images of a slideshow in play order.
+     *
+     * @param slideshowId The ID of the slideshow.
+     * @return The IDs ordered by position, then ID.
+     */
+    @Query("SELECT i.id FROM Image i WHERE i.slideshow.id = :slideshowId ORDER BY i.displayPosition, i.id")
+    List<Long> findIdsInOrderBySlideshowId(@Param("slideshowId") Long slideshowId);
+
+    /**
+     * Finds the highest position used in a slideshow.
+     *
+     * @param slideshowId The ID of the slideshow.
+     * @return The highest position, or empty if the slideshow has no images.
+     */
+    @Query("SELECT MAX(i.displayPosition) FROM Image i WHERE i.slideshow.id = :slideshowId")
+    Optional<Long> findMaxPositionBySlideshowId(@Param("slideshowId") Long slideshowId);
+
+    /**
+     * Finds the position of an image within a slideshow.
+     *
+     * @param id The ID of the image.
+     * @param slideshowId The ID of the slideshow.
+     * @return The position, or empty if the image is not part of the slideshow.
+     */
+    @Query("SELECT i.displayPosition FROM Image i WHERE i.id = :id AND i.slideshow.id = :slideshowId")
+    Optional<Long> findPositionByIdAndSlideshowId(@Param("id") Long id, @Param("slideshowId") Long slideshowId);
+
+    /**
+     * Finds the first positions of a slideshow in play order, ignoring one image.
+     *
+     * @param slideshowId The ID of the slideshow.
+     * @param excludedId The ID of the image to ignore, typically the one being moved.
+     * @param limit The maximum number of positions to return.
+     * @return The positions in play order.
+     */
+    @Query("SELECT i.displayPosition FROM Image i WHERE i.slideshow.id = :slideshowId AND i.id <> :excludedId "
+            + "ORDER BY i.displayPosition, i.id")
+    List<Long> findFirstPositions(
+            @Param("slideshowId") Long slideshowId,
+            @Param("excludedId") Long excludedId,
+            Limit limit
+    );
+
+    /**
+     * Finds the positions following an image of a slideshow in play order, ignoring one image.
+     *
+     * @param slideshowId The ID of the slideshow.
+     * @param excludedId The ID of the image to ignore, typically the one being moved.
+     * @param position The position of the image to start after.
+     * @param afterId The ID of the image to start after, which breaks ties between equal positions.
+     * @param limit The maximum number of positions to return.
+     * @return The positions in play order.
+     */
+    @Query("SELECT i.displayPosition FROM Image i WHERE i.slideshow.id = :slideshowId AND i.id <> :excludedId "
+            + "AND (i.displayPosition > :position OR (i.displayPosition = :position AND i.id > :afterId)) "
+            + "ORDER BY i.displayPosition, i.id")
+    List<Long> findPositionsAfter(
+            @Param("slideshowId") Long slideshowId,
+            @Param("excludedId") Long excludedId,
+            @Param("position") long position,
+            @Param("afterId") Long afterId,
+            Limit limit
+    );
+
+    /**
+     * Finds the slideshows in which several images share a position, such as images created
+     * before positions were introduced.
+     *
+     * @return The IDs of the slideshows to rebalance.
+     */
+    @Query("SELECT i.slideshow.id FROM Image i WHERE i.slideshow IS NOT NULL GROUP BY i.slideshow.id "
+            + "HAVING COUNT(DISTINCT i.displayPosition) < COUNT(i)")
+    List<Long> findSlideshowIdsWithSharedPositions();
+
+    /**
+     * Moves an image to a new position.
+     *
+     * @param id The ID of the image.
+     * @param position The new position.
+     * @return The number of images updated.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Image i SET i.displayPosition = :position WHERE i.id = :id")
+    int updatePosition(@Param("id") Long id, @Param("position") long position);
+
+    /**
+     * Reads the searchable fields of the images with an ID above {@code afterId}, in ID order.
+     * Used to load the search index one keyset page at a time.
+     *
+     * @param afterId The ID after which to start.
+     * @param limit The maximum number of images to read.
+     * @return The searchable fields of the images.
+     */
+    @Query("SELECT new com.michaelavoyan.imageservice.dto.ImageIndexEntry(i.id, i.url, i.duration) "
+            + "FROM Image i WHERE i.id > :afterId ORDER BY i.id")
+    List<ImageIndexEntry> findIndexEntries(@Param("afterId") long afterId, Limit limit);
+
+    /**
+     * Reads the perceptual hashes of the images with an ID above {@code afterId}, in ID order,
+     * skipping images without a hash. Used to load the near-duplicate index one keyset page at a time.
+     *
+     * @param afterId The ID after which to start.
+     * @param limit The maximum number of images to read.
+     * @return The IDs and hashes of the images.
+     */
+    @Query("SELECT new com.michaelavoyan.imageservice.dto.ImageHashEntry(i.id, i.perceptualHash) "
+            + "FROM Image i WHERE i.id > :afterId AND i.perceptualHash IS NOT NULL ORDER BY i.id")
+    List<ImageHashEntry> findHashEntries(@Param("afterId") long afterId, Limit limit);
+
+    /**
+     * Finds the perceptual hash of an image.
+     *
+     * @param id The ID of the image.
+     * @return The hash, or {@code null} if the image does not exist or has no hash.
+     */
+    @Query("SELECT i.perceptualHash FROM Image i WHERE i.id = :id")
+    Long findPerceptualHashById(@Param("id") Long id);
 }
@@ -0,0 +1,22 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.repositories;
+
+import com.michaelavoyan.imageservice.entities.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * Repository fragment for appending many OutboxEvent rows in one JDBC batch.
+ * It is mixed into {@link OutboxEventRepository}.
+ */
+public interface OutboxEventBatchRepository {
+    /**
+     * Inserts the events in a single JDBC batch, joining the current transaction.
+     *
+     * @param events the events to insert; their IDs are not set
+     */
+    void append(List<OutboxEvent> events);
+}
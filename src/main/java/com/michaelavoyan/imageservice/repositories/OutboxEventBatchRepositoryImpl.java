@@ -0,0 +1,40 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.repositories;
+
+import com.michaelavoyan.imageservice.entities.OutboxEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * JDBC implementation of {@link OutboxEventBatchRepository}.
+ */
+public class OutboxEventBatchRepositoryImpl implements OutboxEventBatchRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO outbox_event (event_type, payload, created_at) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public OutboxEventBatchRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public void append(List<OutboxEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, events, events.size(), (statement, event) -> {
+            statement.setString(1, event.getEventType());
+            statement.setString(2, event.getPayload());
+            statement.setTimestamp(3, Timestamp.valueOf(event.getCreatedAt()));
+        });
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.repositories;
+
+import com.michaelavoyan.imageservice.entities.OutboxEvent;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository interface for managing OutboxEvent entities.
+ * Events are appended in JDBC batches through {@link OutboxEventBatchRepository}.
+ */
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long>, OutboxEventBatchRepository {
+    /**
+     * Finds the oldest events after the given one.
+     *
+     * @param id    the last event already read
+     * @param limit the maximum number of events to return
+     * @return the events in ID order
+     */
+    List<OutboxEvent> findAllByIdGreaterThanOrderByIdAsc(long id, Limit limit);
+
+    /**
+     * Deletes the events written before the cutoff with a single statement.
+     *
+     * @param cutoff the oldest creation time kept
+     * @return the number of deleted events
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM OutboxEvent e WHERE e.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,24 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.repositories;
+
+import com.michaelavoyan.imageservice.entities.PlayCountKey;
+
+import java.util.Map;
+
+/**
+ * Repository fragment for adding play counts to many rollup rows in JDBC batches.
+ * It is mixed into {@link PlayCountRollupRepository}.
+ */
+public interface PlayCountRollupBatchRepository {
+    /**
+     * Adds each delta to the count of its rollup row, creating the rows that do not exist yet,
+     * in a single transaction.
+     *
+     * @param deltas the number of plays to add per key
+     * @throws org.springframework.dao.DataAccessException if the counts cannot be written
+     */
+    void addCounts(Map<PlayCountKey, Long> deltas);
+}
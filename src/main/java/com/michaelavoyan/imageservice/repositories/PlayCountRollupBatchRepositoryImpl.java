@@ -0,0 +1,74 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.repositories;
+
+import com.michaelavoyan.imageservice.entities.PlayCountKey;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC implementation of {@link PlayCountRollupBatchRepository}.
+ * Uses a batched UPDATE followed by a batched INSERT of the missing rows, which works on both
+ * MySQL and H2 without a vendor-specific upsert.
+ */
+public class PlayCountRollupBatchRepositoryImpl implements PlayCountRollupBatchRepository {
+
+    private static final String UPDATE_SQL = "UPDATE play_count_rollup SET play_count = play_count + ? "
+            + "WHERE slideshow_id = ? AND image_id = ? AND bucket_start = ?";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO play_count_rollup (slideshow_id, image_id, bucket_start, play_count) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PlayCountRollupBatchRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public void addCounts(Map<PlayCountKey, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<PlayCountKey, Long>> entries = new ArrayList<>(deltas.entrySet());
+        int[][] updated = jdbcTemplate.batchUpdate(UPDATE_SQL, entries, entries.size(), (statement, entry) -> {
+            statement.setLong(1, entry.getValue());
+            bindKey(statement, 2, entry.getKey());
+        });
+
+        List<Map.Entry<PlayCountKey, Long>> missing = new ArrayList<>();
+        int i = 0;
+        for (int[] counts : updated) {
+            for (int count : counts) {
+                // SUCCESS_NO_INFO (-2) means the driver did not report a count; the row was updated.
+                if (count == 0) {
+                    missing.add(entries.get(i));
+                }
+                i++;
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, missing, missing.size(), (statement, entry) -> {
+            bindKey(statement, 1, entry.getKey());
+            statement.setLong(4, entry.getValue());
+        });
+    }
+
+    private static void bindKey(PreparedStatement statement, int index, PlayCountKey key) throws SQLException {
+        statement.setLong(index, key.getSlideshowId());
+        statement.setLong(index + 1, key.getImageId());
+        statement.setTimestamp(index + 2, Timestamp.valueOf(key.getBucketStart()));
+    }
+}
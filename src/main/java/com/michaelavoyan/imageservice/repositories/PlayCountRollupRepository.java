@@ -0,0 +1,41 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.repositories;
+
+import com.michaelavoyan.imageservice.entities.PlayCountKey;
+import com.michaelavoyan.imageservice.entities.PlayCountRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository interface for managing PlayCountRollup entities.
+ * Counts are added by {@link PlayCountRollupBatchRepository}.
+ */
+@Repository
+public interface PlayCountRollupRepository
+        extends JpaRepository<PlayCountRollup, PlayCountKey>, PlayCountRollupBatchRepository {
+
+    /**
+     * Finds the rollups of a slideshow for the minutes in {@code [from, to)}.
+     *
+     * @param slideshowId The ID of the slideshow.
+     * @param from The first minute, inclusive.
+     * @param to The end of the range, exclusive.
+     * @return The rollups ordered by minute and image.
+     */
+    @Query("SELECT r FROM PlayCountRollup r WHERE r.id.slideshowId = :slideshowId "
+            + "AND r.id.bucketStart >= :from AND r.id.bucketStart < :to "
+            + "ORDER BY r.id.bucketStart, r.id.imageId")
+    List<PlayCountRollup> findBySlideshow(
+            @Param("slideshowId") Long slideshowId,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to
+    );
+}
@@ -0,0 +1,24 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.repositories;
+
+import com.michaelavoyan.imageservice.dto.PlayEvent;
+
+import java.util.List;
+
+/**
+ * Repository fragment for inserting many ProofOfPlay rows in JDBC batches.
+ * It is mixed into {@link ProofOfPlayRepository}.
+ */
+public interface ProofOfPlayBatchRepository {
+    /**
+     * Inserts the plays in a single JDBC batch and transaction.
+     * If any row fails, no play of the batch is inserted.
+     *
+     * @param plays the plays to insert
+     * @throws org.springframework.dao.DataAccessException if the batch cannot be inserted
+     */
+    void insertBatch(List<PlayEvent> plays);
+}
@@ -0,0 +1,38 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.repositories;
+
+import com.michaelavoyan.imageservice.dto.PlayEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * JDBC implementation of {@link ProofOfPlayBatchRepository}.
+ * Writes rows straight from the play IDs, without loading the slideshow and image entities.
+ */
+public class ProofOfPlayBatchRepositoryImpl implements ProofOfPlayBatchRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO proof_of_play (slideshow_id, image_id, played_at) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ProofOfPlayBatchRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    @Transactional
+    public void insertBatch(List<PlayEvent> plays) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, plays, plays.size(), (statement, play) -> {
+            statement.setLong(1, play.slideshowId());
+            statement.setLong(2, play.imageId());
+            statement.setTimestamp(3, Timestamp.valueOf(play.playedAt()));
+        });
+    }
+}
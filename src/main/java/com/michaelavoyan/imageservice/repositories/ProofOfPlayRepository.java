@@ -4,17 +4,31 @@
 
 package com.michaelavoyan.imageservice.repositories;
 
+import com.michaelavoyan.imageservice.dto.PlayRecord;
 import com.michaelavoyan.imageservice.entities.ProofOfPlay;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for managing ProofOfPlay entities.
  * This interface extends {@link JpaRepository} to provide basic CRUD operations and
  * additional query methods for fetching ProofOfPlay records based on slideshow ID and image ID.
+ * The time-range queries filter on {@code played_at} with a half-open range, so MySQL only reads
+ * the daily partitions overlapping the range.
+ * Batched inserts are provided by {@link ProofOfPlayBatchRepository}.
  */
-public interface ProofOfPlayRepository extends JpaRepository<ProofOfPlay, Long> {
+public interface ProofOfPlayRepository extends JpaRepository<ProofOfPlay, Long>, ProofOfPlayBatchRepository {
     /**
      * Finds a list of ProofOfPlay records associated with the given slideshow ID.
      *
@@ -30,4 +44,96 @@ public interface ProofOfPlayRepository extends JpaRepository<ProofOfPlay, Long>
      * @return a list of ProofOfPlay entities related to the specified image ID
      */
     List<ProofOfPlay> findByImageId(Long imageId);
+
+    /**
+     * Finds the plays of a slideshow in {@code [from, to)}, oldest first.
+     *
+     * @param slideshowId the ID of the slideshow
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @param limit the maximum number of plays to return
+     * @return the plays in the range
+     */
+    @Query("SELECT new com.michaelavoyan.imageservice.dto.PlayRecord(p.id, p.slideshow.id, p.image.id, p.playedAt) "
+            + "FROM ProofOfPlay p WHERE p.slideshow.id = :slideshowId "
+            + "AND p.playedAt >= :from AND p.playedAt < :to ORDER BY p.playedAt, p.id")
+    List<PlayRecord> findPlays(
+            @Param("slideshowId") Long slideshowId,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            Limit limit
+    );
+
+    /**
+     * Finds the plays of one image of a slideshow in {@code [from, to)}, oldest first.
+     *
+     * @param slideshowId the ID of the slideshow
+     * @param imageId the ID of the image
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @param limit the maximum number of plays to return
+     * @return the plays in the range
+     */
+    @Query("SELECT new com.michaelavoyan.imageservice.dto.PlayRecord(p.id, p.slideshow.id, p.image.id, p.playedAt) "
+            + "FROM ProofOfPlay p WHERE p.slideshow.id = :slideshowId AND p.image.id = :imageId "
+            + "AND p.playedAt >= :from AND p.playedAt < :to ORDER BY p.playedAt, p.id")
+    List<PlayRecord> findImagePlays(
+            @Param("slideshowId") Long slideshowId,
+            @Param("imageId") Long imageId,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            Limit limit
+    );
+
+    /**
+     * Streams the plays of a slideshow in {@code [from, to)}, oldest first, for exports.
+     * Rows are fetched from the database 1000 at a time; the stream must be read within a transaction and closed.
+     *
+     * @param slideshowId the ID of the slideshow
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @return the plays in the range
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.michaelavoyan.imageservice.dto.PlayRecord(p.id, p.slideshow.id, p.image.id, p.playedAt) "
+            + "FROM ProofOfPlay p WHERE p.slideshow.id = :slideshowId "
+            + "AND p.playedAt >= :from AND p.playedAt < :to ORDER BY p.playedAt, p.id")
+    Stream<PlayRecord> streamPlays(
+            @Param("slideshowId") Long slideshowId,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to
+    );
+
+    /**
+     * Streams the plays of one image of a slideshow in {@code [from, to)}, oldest first, for exports.
+     * Rows are fetched from the database 1000 at a time; the stream must be read within a transaction and closed.
+     *
+     * @param slideshowId the ID of the slideshow
+     * @param imageId the ID of the image
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @return the plays in the range
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.michaelavoyan.imageservice.dto.PlayRecord(p.id, p.slideshow.id, p.image.id, p.playedAt) "
+            + "FROM ProofOfPlay p WHERE p.slideshow.id = :slideshowId AND p.image.id = :imageId "
+            + "AND p.playedAt >= :from AND p.playedAt < :to ORDER BY p.playedAt, p.id")
+    Stream<PlayRecord> streamImagePlays(
+            @Param("slideshowId") Long slideshowId,
+            @Param("imageId") Long imageId,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to
+    );
+
+    /**
+     * Deletes all plays before the cutoff with a single statement.
+     * Used for retention on databases where the table is not partitioned.
+     *
+     * @param cutoff the first instant kept
+     * @return the number of deleted plays
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ProofOfPlay p WHERE p.playedAt < :cutoff")
+    int deletePlayedBefore(@Param("cutoff") LocalDateTime cutoff);
 }
@@ -5,11 +5,17 @@
 package com.michaelavoyan.imageservice.repositories;
 
 import com.michaelavoyan.imageservice.entities.Slideshow;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository interface for managing Slideshow entities.
@@ -26,4 +32,35 @@ public interface SlideshowRepository extends JpaRepository<Slideshow, Long> {
      */
     @Query("SELECT s FROM Slideshow s JOIN s.images i WHERE i.id = :imageId")
     List<Slideshow> findSlideshowsContainingImage(@Param("imageId") Long imageId);
+
+    /**
+     * Reads the version of a slideshow without loading the entity or its images.
+     *
+     * @param id The ID of the slideshow.
+     * @return The version, or empty if the slideshow does not exist.
+     */
+    @Query("SELECT s.version FROM Slideshow s WHERE s.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    /**
+     * Loads a slideshow and locks its row until the current transaction ends,
+     * serializing the changes to the order of its images.
+     *
+     * @param id The ID of the slideshow.
+     * @return The slideshow, or empty if it does not exist.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM Slideshow s WHERE s.id = :id")
+    Optional<Slideshow> findForUpdateById(@Param("id") Long id);
+
+    /**
+     * Increments the version of the given slideshows, joining the current transaction.
+     *
+     * @param ids The IDs of the slideshows whose images changed.
+     * @return The number of slideshows updated.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Slideshow s SET s.version = s.version + 1 WHERE s.id IN :ids")
+    int incrementVersions(@Param("ids") Collection<Long> ids);
 }
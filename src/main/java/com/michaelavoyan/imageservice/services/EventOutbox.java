@@ -0,0 +1,126 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.michaelavoyan.imageservice.entities.OutboxEvent;
+import com.michaelavoyan.imageservice.events.ImageAddedEvent;
+import com.michaelavoyan.imageservice.events.ImageDeletedEvent;
+import com.michaelavoyan.imageservice.events.PlayRecordedEvent;
+import com.michaelavoyan.imageservice.events.SlideshowAddedEvent;
+import com.michaelavoyan.imageservice.events.SlideshowDeletedEvent;
+import com.michaelavoyan.imageservice.events.SlideshowReorderedEvent;
+import com.michaelavoyan.imageservice.repositories.OutboxEventRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Service writing domain events to the outbox table.
+ * <p>
+ * Events are inserted in the caller's transaction, so an event exists if and only if the change it
+ * describes was committed. Once the transaction commits, the {@link OutboxDispatcher} is woken to
+ * deliver the events to the application's listeners on its own thread.
+ */
+@Service
+public class EventOutbox {
+
+    /**
+     * The event types that may be written to and read from the outbox, by simple class name.
+     */
+    static final Map<String, Class<?>> EVENT_TYPES = Stream.of(
+                    ImageAddedEvent.class,
+                    ImageDeletedEvent.class,
+                    SlideshowAddedEvent.class,
+                    SlideshowDeletedEvent.class,
+                    SlideshowReorderedEvent.class,
+                    PlayRecordedEvent.class)
+            .collect(Collectors.toUnmodifiableMap(Class::getSimpleName, Function.identity()));
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxDispatcher dispatcher;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Constructor to initialize repositories and services.
+     */
+    public EventOutbox(
+            OutboxEventRepository outboxEventRepository,
+            OutboxDispatcher dispatcher,
+            ObjectMapper objectMapper
+    ) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.dispatcher = dispatcher;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Writes one event to the outbox.
+     *
+     * @param event the event, one of the types in the {@code events} package
+     * @throws org.springframework.transaction.IllegalTransactionStateException if no transaction is active
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publish(Object event) {
+        publishAll(List.of(event));
+    }
+
+    /**
+     * Writes the events to the outbox in one JDBC batch.
+     *
+     * @param events the events, each one of the types in the {@code events} package
+     * @throws org.springframework.transaction.IllegalTransactionStateException if no transaction is active
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publishAll(List<?> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEvent> rows = new ArrayList<>(events.size());
+        for (Object event : events) {
+            String type = event.getClass().getSimpleName();
+            if (EVENT_TYPES.get(type) != event.getClass()) {
+                throw new IllegalArgumentException("Not an outbox event type: " + event.getClass().getName());
+            }
+            OutboxEvent row = new OutboxEvent();
+            row.setEventType(type);
+            row.setPayload(toJson(event));
+            row.setCreatedAt(now);
+            rows.add(row);
+        }
+        outboxEventRepository.append(rows);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatcher.wakeUp();
+                }
+            });
+        } else {
+            dispatcher.wakeUp();
+        }
+    }
+
+    private String toJson(Object event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not serialize " + event.getClass().getSimpleName(), e);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.michaelavoyan.imageservice.dto.ImageRecord;
+import com.michaelavoyan.imageservice.dto.PlayRecord;
+import com.michaelavoyan.imageservice.repositories.ImageRepository;
+import com.michaelavoyan.imageservice.repositories.ProofOfPlayRepository;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Service exporting images and proof-of-play records as newline-delimited JSON or as CSV with a header line.
+ * <p>
+ * Rows are read through a database cursor, 1000 at a time, within one read-only transaction, and written to
+ * the output as they are read, so an export of any size runs in constant memory. They are read as DTO
+ * projections, which never enter the persistence context, so it stays empty however many rows are exported.
+ */
+@Service
+public class ExportService {
+
+    private static final byte[] NEWLINE = {'\n'};
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String[] IMAGE_COLUMNS = {"id", "url", "duration", "createdAt", "slideshowId"};
+
+    private static final String[] PLAY_COLUMNS = {"id", "slideshowId", "imageId", "playedAt"};
+
+    /**
+     * The formats of exports.
+     */
+    public enum Format {
+        NDJSON("ndjson", MediaType.APPLICATION_NDJSON),
+        CSV("csv", new MediaType("text", "csv", StandardCharsets.UTF_8));
+
+        private final String extension;
+        private final MediaType mediaType;
+
+        Format(String extension, MediaType mediaType) {
+            this.extension = extension;
+            this.mediaType = mediaType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        public MediaType mediaType() {
+            return mediaType;
+        }
+
+        /**
+         * Parses a format name, {@code ndjson} or {@code csv}, ignoring case.
+         *
+         * @param name the format name
+         * @return the format
+         * @throws IllegalArgumentException if the format is not supported
+         */
+        public static Format of(String name) {
+            return switch (name == null ? "" : name.toLowerCase(Locale.ROOT)) {
+                case "ndjson" -> NDJSON;
+                case "csv" -> CSV;
+                default -> throw new IllegalArgumentException("Unsupported export format: " + name);
+            };
+        }
+    }
+
+    private final ImageRepository imageRepository;
+    private final ProofOfPlayRepository proofOfPlayRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Constructor to initialize repositories and services.
+     */
+    public ExportService(
+            ImageRepository imageRepository,
+            ProofOfPlayRepository proofOfPlayRepository,
+            PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper
+    ) {
+        this.imageRepository = imageRepository;
+        this.proofOfPlayRepository = proofOfPlayRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Exports the images matching a URL and duration, ordered by ID.
+     *
+     * @param query the substring to look for in the URL
+     * @param duration the duration to match, or {@code 0} for any
+     * @param format the format of the export
+     * @param out the output, which is flushed but not closed
+     * @throws IOException if the output cannot be written
+     */
+    public void exportImages(String query, int duration, Format format, OutputStream out) throws IOException {
+        export(() -> imageRepository.streamImages(query, duration), format, IMAGE_COLUMNS,
+                image -> new Object[]{image.id(), image.url(), image.duration(), image.createdAt(),
+                        image.slideshowId()},
+                out);
+    }
+
+    /**
+     * Exports the plays of a slideshow in {@code [from, to)}, oldest first.
+     *
+     * @param slideshowId the ID of the slideshow
+     * @param imageId the ID of the image to restrict the plays to, or {@code null} for all images
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @param format the format of the export
+     * @param out the output, which is flushed but not closed
+     * @throws IOException if the output cannot be written
+     */
+    public void exportPlays(
+            Long slideshowId,
+            Long imageId,
+            LocalDateTime from,
+            LocalDateTime to,
+            Format format,
+            OutputStream out
+    ) throws IOException {
+        export(() -> imageId != null
+                        ? proofOfPlayRepository.streamImagePlays(slideshowId, imageId, from, to)
+                        : proofOfPlayRepository.streamPlays(slideshowId, from, to),
+                format, PLAY_COLUMNS,
+                play -> new Object[]{play.id(), play.slideshowId(), play.imageId(), play.playedAt()},
+                out);
+    }
+
+    /**
+     * Writes the rows of a stream opened and closed within a read-only transaction.
+     *
+     * @param rows opens the stream of rows
+     * @param format the format of the export
+     * @param columns the CSV header
+     * @param values the CSV values of a row, in the order of the header
+     * @param out the output
+     */
+    private <T> void export(
+            Supplier<Stream<T>> rows,
+            Format format,
+            String[] columns,
+            Function<T, Object[]> values,
+            OutputStream out
+    ) throws IOException {
+        BufferedOutputStream buffered = new BufferedOutputStream(out, BUFFER_SIZE);
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<T> stream = rows.get()) {
+                    if (format == Format.CSV) {
+                        writeCsvLine(buffered, columns);
+                    }
+                    for (T row : (Iterable<T>) stream::iterator) {
+                        if (format == Format.CSV) {
+                            writeCsvLine(buffered, values.apply(row));
+                        } else {
+                            buffered.write(objectMapper.writeValueAsBytes(row));
+                            buffered.write(NEWLINE);
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        buffered.flush();
+    }
+
+    private static void writeCsvLine(OutputStream out, Object[] values) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            if (values[i] != null) {
+                appendCsvField(line, values[i].toString());
+            }
+        }
+        line.append("\r\n");
+        out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Appends a CSV field, quoting it if it contains a separator, a quote or a line break.
+     */
+    private static void appendCsvField(StringBuilder line, String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            line.append(value);
+            return;
+        }
+        line.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+}
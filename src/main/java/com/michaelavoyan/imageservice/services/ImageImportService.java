@@ -0,0 +1,345 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.michaelavoyan.imageservice.config.ImportProperties;
+import com.michaelavoyan.imageservice.dto.ImportResult;
+import com.michaelavoyan.imageservice.entities.Image;
+import com.michaelavoyan.imageservice.events.ImageAddedEvent;
+import com.michaelavoyan.imageservice.repositories.ImageRepository;
+import com.michaelavoyan.imageservice.repositories.SlideshowRepository;
+import com.michaelavoyan.imageservice.utils.ImageVerifier;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Service importing many images in one streamed request.
+ * <p>
+ * The request body (a JSON array or newline-delimited JSON objects) is parsed one image at a time.
+ * Up to {@code parallelism} URLs are verified concurrently, verified images are inserted in JDBC
+ * batches, and one {@link ImportResult} line is written per image as soon as its outcome is known.
+ * At most {@code parallelism + batchSize} images are held in memory, whatever the size of the import.
+ * Each batch, its {@link ImageAddedEvent}s and the new versions of the affected slideshows are written
+ * to the database in one transaction.
+ * <p>
+ * When near-duplicates are rejected, images close to an already indexed image are rejected as well. Images of
+ * the same import only become visible to that check once their batch has been delivered to the index.
+ */
+@Service
+public class ImageImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageImportService.class);
+
+    private static final byte[] NEWLINE = {'\n'};
+
+    private final ImageRepository imageRepository;
+    private final SlideshowRepository slideshowRepository;
+    private final ImageOrderingService imageOrderingService;
+    private final ImageVerifier imageVerifier;
+    private final EventOutbox eventOutbox;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final ImportProperties properties;
+    private final SimilarImageService similarImageService;
+
+    /**
+     * Constructor to initialize repositories and services.
+     */
+    public ImageImportService(
+            ImageRepository imageRepository,
+            SlideshowRepository slideshowRepository,
+            ImageOrderingService imageOrderingService,
+            ImageVerifier imageVerifier,
+            EventOutbox eventOutbox,
+            TransactionTemplate transactionTemplate,
+            ObjectMapper objectMapper,
+            Validator validator,
+            ImportProperties properties,
+            SimilarImageService similarImageService
+    ) {
+        this.imageRepository = imageRepository;
+        this.slideshowRepository = slideshowRepository;
+        this.imageOrderingService = imageOrderingService;
+        this.imageVerifier = imageVerifier;
+        this.eventOutbox = eventOutbox;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.properties = properties;
+        this.similarImageService = similarImageService;
+    }
+
+    /**
+     * Imports the images read from {@code in} and writes one NDJSON result line per image to {@code out}.
+     * Results are written in completion order; each line carries the index of its image in the request.
+     *
+     * @param in the request body, a JSON array of images or newline-delimited image objects
+     * @param out the response body
+     * @throws IOException if the request cannot be read or the response cannot be written
+     */
+    public void importImages(InputStream in, OutputStream out) throws IOException {
+        new ImportRun(out).run(in);
+    }
+
+    /**
+     * The state of a single import.
+     * All writes to the response and the database happen on the calling thread;
+     * verification callbacks only hand their outcome over through {@link #verified}.
+     */
+    private class ImportRun {
+
+        private final OutputStream out;
+        private final Semaphore permits = new Semaphore(properties.getParallelism());
+        private final BlockingQueue<Verified> verified = new LinkedBlockingQueue<>();
+        private final List<Verified> batch = new ArrayList<>(properties.getBatchSize());
+
+        ImportRun(OutputStream out) {
+            this.out = out;
+        }
+
+        void run(InputStream in) throws IOException {
+            try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+                JsonToken token = parser.nextToken();
+                boolean array = token == JsonToken.START_ARRAY;
+                if (array) {
+                    token = parser.nextToken();
+                }
+
+                int index = 0;
+                while (token != null && token != JsonToken.END_ARRAY) {
+                    int current = index++;
+                    Image image;
+                    try {
+                        image = parser.readValueAs(Image.class);
+                    } catch (JsonProcessingException e) {
+                        // The parser cannot resynchronise after malformed input, so the import stops here.
+                        write(ImportResult.rejected(current, null, "Malformed image: " + e.getOriginalMessage()));
+                        break;
+                    }
+                    submit(current, image);
+                    token = parser.nextToken();
+                }
+            } finally {
+                awaitOutstanding();
+                drain();
+                flush();
+            }
+        }
+
+        /**
+         * Validates an image and starts verifying its URL, waiting for a free slot if needed.
+         */
+        private void submit(int index, Image image) throws IOException {
+            String violation = validate(image);
+            if (violation != null) {
+                write(ImportResult.rejected(index, image.getUrl(), violation));
+                return;
+            }
+            image.setId(null);
+
+            while (true) {
+                acquire(1);
+                try {
+                    imageVerifier.verifyImageUrl(image.getUrl()).whenComplete((result, error) -> {
+                        boolean valid = result != null && result.valid();
+                        if (valid) {
+                            image.setPerceptualHash(result.perceptualHash());
+                        }
+                        verified.add(new Verified(index, image, valid, error));
+                        permits.release();
+                    });
+                    return;
+                } catch (RejectedExecutionException e) {
+                    // The verifier is saturated by other traffic; back off until one of ours completes.
+                    permits.release();
+                    waitForCompletion();
+                } catch (IllegalArgumentException e) {
+                    permits.release();
+                    write(ImportResult.rejected(index, image.getUrl(), "Invalid image URL: " + e.getMessage()));
+                    return;
+                }
+            }
+        }
+
+        private String validate(Image image) {
+            Set<ConstraintViolation<Image>> violations = validator.validate(image);
+            if (violations.isEmpty()) {
+                return null;
+            }
+            return violations.stream()
+                    .map(v -> v.getPropertyPath() + " " + v.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+        }
+
+        /**
+         * Acquires verification slots, handling completed verifications while waiting.
+         */
+        private void acquire(int slots) throws IOException {
+            while (!permits.tryAcquire(slots)) {
+                waitForCompletion();
+            }
+        }
+
+        private void awaitOutstanding() throws IOException {
+            acquire(properties.getParallelism());
+            permits.release(properties.getParallelism());
+        }
+
+        private void waitForCompletion() throws IOException {
+            try {
+                Verified next = verified.poll(100, TimeUnit.MILLISECONDS);
+                if (next != null) {
+                    handle(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Import interrupted", e);
+            }
+            drain();
+        }
+
+        private void drain() throws IOException {
+            Verified next;
+            while ((next = verified.poll()) != null) {
+                handle(next);
+            }
+        }
+
+        private void handle(Verified result) throws IOException {
+            if (result.error() != null) {
+                Throwable cause = result.error() instanceof CompletionException && result.error().getCause() != null
+                        ? result.error().getCause()
+                        : result.error();
+                write(ImportResult.rejected(result.index(), result.image().getUrl(),
+                        "Verification failed: " + cause.getMessage()));
+                return;
+            }
+            if (!result.valid()) {
+                write(ImportResult.rejected(result.index(), result.image().getUrl(),
+                        "Invalid image URL. The URL does not contain a valid image."));
+                return;
+            }
+            if (similarImageService.rejectsDuplicates()) {
+                List<Long> duplicates = similarImageService.findDuplicates(result.image().getPerceptualHash());
+                if (!duplicates.isEmpty()) {
+                    write(ImportResult.rejected(result.index(), result.image().getUrl(), "Near-duplicate of image(s) "
+                            + duplicates.stream().map(String::valueOf).collect(Collectors.joining(","))));
+                    return;
+                }
+            }
+            batch.add(result);
+            if (batch.size() >= properties.getBatchSize()) {
+                flush();
+            }
+        }
+
+        /**
+         * Inserts the pending batch. If the batch fails (typically on a duplicate URL),
+         * its images are retried one by one so that each failure is attributed to its image.
+         */
+        private void flush() throws IOException {
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<Image> images = batch.stream().map(Verified::image).toList();
+            try {
+                insert(images);
+                for (Verified saved : batch) {
+                    writeSaved(saved);
+                }
+            } catch (DataAccessException e) {
+                log.debug("Batch insert of {} images failed, retrying one by one", images.size(), e);
+                for (Verified single : batch) {
+                    try {
+                        insert(List.of(single.image()));
+                        writeSaved(single);
+                    } catch (DataAccessException rowError) {
+                        single.image().setId(null);
+                        write(ImportResult.rejected(single.index(), single.image().getUrl(),
+                                "Could not save image: " + rowError.getMostSpecificCause().getMessage()));
+                    }
+                }
+            }
+            batch.clear();
+            out.flush();
+        }
+
+        /**
+         * Inserts the images and their {@link ImageAddedEvent}s in one transaction, bumping the version
+         * of their slideshows and appending the images to them in import order. Versions are bumped
+         * in ID order so that concurrent imports lock rows alike.
+         */
+        private void insert(List<Image> images) {
+            transactionTemplate.executeWithoutResult(status -> {
+                Set<Long> slideshowIds = images.stream()
+                        .map(ImageImportService::slideshowId)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toCollection(TreeSet::new));
+                if (!slideshowIds.isEmpty()) {
+                    slideshowRepository.incrementVersions(slideshowIds);
+                    for (Long slideshowId : slideshowIds) {
+                        imageOrderingService.append(slideshowId, images.stream()
+                                .filter(image -> slideshowId.equals(slideshowId(image)))
+                                .toList());
+                    }
+                }
+                imageRepository.insertBatch(images);
+                eventOutbox.publishAll(images.stream().map(ImageImportService::imageAdded).toList());
+            });
+        }
+
+        private void writeSaved(Verified saved) throws IOException {
+            Image image = saved.image();
+            write(ImportResult.saved(saved.index(), image.getUrl(), image.getId()));
+        }
+
+        private void write(ImportResult result) throws IOException {
+            out.write(objectMapper.writeValueAsBytes(result));
+            out.write(NEWLINE);
+        }
+    }
+
+    private static ImageAddedEvent imageAdded(Image image) {
+        return new ImageAddedEvent(
+                image.getId(), image.getUrl(), image.getDuration(), slideshowId(image), image.getPerceptualHash());
+    }
+
+    private static Long slideshowId(Image image) {
+        return image.getSlideshow() != null ? image.getSlideshow().getId() : null;
+    }
+
+    /**
+     * The outcome of verifying the URL of one imported image.
+     */
+    private record Verified(int index, Image image, boolean valid, Throwable error) {
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.michaelavoyan.imageservice.entities.Image;
+import com.michaelavoyan.imageservice.events.SlideshowReorderedEvent;
+import com.michaelavoyan.imageservice.repositories.ImageRepository;
+import com.michaelavoyan.imageservice.repositories.SlideshowRepository;
+import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Service maintaining the play order of the images of a slideshow.
+ * <p>
+ * Every image has a position; consecutive images are normally {@link #POSITION_GAP} apart. Moving an image
+ * gives it the position halfway between its new neighbours, so only the moved row is updated. When the
+ * neighbours have no room left between them the slideshow is renumbered on the spot, and when a move leaves
+ * less than {@link #MIN_GAP} of room the slideshow is renumbered later in the background. Changes to the
+ * order of a slideshow are serialized by the lock on its row, taken when its version is incremented.
+ */
+@Service
+public class ImageOrderingService {
+
+    /**
+     * The distance between the positions of consecutive images after appending or renumbering.
+     */
+    public static final long POSITION_GAP = 1L << 16;
+
+    /**
+     * A move leaving less room than this between two images schedules a background renumbering.
+     */
+    static final long MIN_GAP = 16;
+
+    private static final Logger log = LoggerFactory.getLogger(ImageOrderingService.class);
+
+    private final ImageRepository imageRepository;
+    private final SlideshowRepository slideshowRepository;
+    private final EventOutbox eventOutbox;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * The slideshows waiting to be renumbered.
+     */
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean sharedPositionsChecked;
+
+    /**
+     * Constructor to initialize repositories and services.
+     */
+    public ImageOrderingService(
+            ImageRepository imageRepository,
+            SlideshowRepository slideshowRepository,
+            EventOutbox eventOutbox,
+            TransactionTemplate transactionTemplate
+    ) {
+        this.imageRepository = imageRepository;
+        this.slideshowRepository = slideshowRepository;
+        this.eventOutbox = eventOutbox;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Assigns the images positions after the last image of the slideshow, in list order.
+     * Must be called in the transaction inserting the images, once the version of the slideshow
+     * has been incremented, so that concurrent appends cannot pick the same positions.
+     *
+     * @param slideshowId the ID of the slideshow
+     * @param images the new images
+     */
+    public void append(Long slideshowId, List<Image> images) {
+        long position = imageRepository.findMaxPositionBySlideshowId(slideshowId).orElse(0L);
+        for (Image image : images) {
+            position += POSITION_GAP;
+            image.setDisplayPosition(position);
+        }
+    }
+
+    /**
+     * Moves an image of a slideshow directly after another of its images, or to the front.
+     *
+     * @param slideshowId the ID of the slideshow
+     * @param imageId the ID of the image to move
+     * @param afterImageId the ID of the image to move it after, or {@code null} to move it to the front
+     * @throws EntityNotFoundException if the slideshow does not exist or the image is not part of it
+     * @throws IllegalArgumentException if {@code afterImageId} is the moved image or not part of the slideshow
+     */
+    public void move(Long slideshowId, Long imageId, Long afterImageId) {
+        if (imageId.equals(afterImageId)) {
+            throw new IllegalArgumentException("An image cannot be moved after itself.");
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            if (slideshowRepository.incrementVersions(List.of(slideshowId)) == 0) {
+                throw new EntityNotFoundException("Slideshow with ID " + slideshowId + " not found.");
+            }
+            if (!imageRepository.existsByIdAndSlideshowId(imageId, slideshowId)) {
+                throw new EntityNotFoundException(
+                        "Image ID " + imageId + " is not part of Slideshow ID " + slideshowId);
+            }
+            Long position = positionAfter(slideshowId, imageId, afterImageId);
+            if (position == null) {
+                renumber(slideshowId);
+                position = positionAfter(slideshowId, imageId, afterImageId);
+            }
+            imageRepository.updatePosition(imageId, position);
+            eventOutbox.publish(new SlideshowReorderedEvent(slideshowId, imageId));
+        });
+    }
+
+    /**
+     * Renumbers the images of a slideshow {@link #POSITION_GAP} apart, keeping their order.
+     *
+     * @param slideshowId the ID of the slideshow
+     */
+    public void rebalance(Long slideshowId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (slideshowRepository.findForUpdateById(slideshowId).isPresent()) {
+                renumber(slideshowId);
+            }
+        });
+    }
+
+    /**
+     * Renumbers the slideshows left with little room by recent moves. The first run also renumbers
+     * the slideshows whose images share positions, such as images created before positions existed.
+     */
+    @Scheduled(fixedDelayString = "${imageservice.ordering.rebalance-interval:1m}")
+    public void rebalancePending() {
+        if (!sharedPositionsChecked) {
+            pending.addAll(imageRepository.findSlideshowIdsWithSharedPositions());
+            sharedPositionsChecked = true;
+        }
+        for (Long slideshowId : List.copyOf(pending)) {
+            pending.remove(slideshowId);
+            try {
+                rebalance(slideshowId);
+            } catch (RuntimeException e) {
+                pending.add(slideshowId);
+                log.warn("Could not rebalance the positions of slideshow {}", slideshowId, e);
+            }
+        }
+    }
+
+    /**
+     * @return the number of slideshows waiting to be renumbered
+     */
+    int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Computes the position placing an image after another one, or at the front.
+     *
+     * @return the position, or {@code null} if the neighbours have no room left between them
+     */
+    private Long positionAfter(Long slideshowId, Long imageId, Long afterImageId) {
+        Long previous = null;
+        List<Long> next;
+        if (afterImageId == null) {
+            next = imageRepository.findFirstPositions(slideshowId, imageId, Limit.of(1));
+        } else {
+            previous = imageRepository.findPositionByIdAndSlideshowId(afterImageId, slideshowId)
+                    .orElseThrow(() -> new IllegalArgumentException(
+                            "Image ID " + afterImageId + " is not part of Slideshow ID " + slideshowId));
+            next = imageRepository.findPositionsAfter(slideshowId, imageId, previous, afterImageId, Limit.of(1));
+        }
+
+        if (next.isEmpty()) {
+            return previous == null ? POSITION_GAP : previous + POSITION_GAP;
+        }
+        long following = next.get(0);
+        if (previous == null) {
+            return following - POSITION_GAP;
+        }
+        long room = following - previous;
+        if (room < 2) {
+            return null;
+        }
+        if (room / 2 < MIN_GAP) {
+            pending.add(slideshowId);
+        }
+        return previous + room / 2;
+    }
+
+    private void renumber(Long slideshowId) {
+        imageRepository.updatePositions(imageRepository.findIdsInOrderBySlideshowId(slideshowId), POSITION_GAP);
+    }
+}
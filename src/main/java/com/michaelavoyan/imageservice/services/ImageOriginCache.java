@@ -0,0 +1,340 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.michaelavoyan.imageservice.config.OriginCacheProperties;
+import com.michaelavoyan.imageservice.dto.ImageContentRef;
+import com.michaelavoyan.imageservice.events.ImageAddedEvent;
+import com.michaelavoyan.imageservice.repositories.ImageRepository;
+import com.michaelavoyan.imageservice.utils.DiskLruStore;
+import com.michaelavoyan.imageservice.utils.ImageFormat;
+import com.michaelavoyan.imageservice.utils.ImageVerifier;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Content-addressed local cache of original image bytes, used when the service proxies images.
+ * <p>
+ * Bytes are downloaded through the {@link ImageVerifier} when an image is added, or on its first request,
+ * and stored in a {@link DiskLruStore} under their SHA-256, which is recorded on the image. Images with identical
+ * bytes share one file, and the hash doubles as a strong ETag. Concurrent requests for an image that is not
+ * cached yet share one download.
+ * <p>
+ * Cached bytes are never revalidated against the origin: like their URLs, images are treated as immutable.
+ * Files are not deleted with their images, as other images may share them; they age out of the store instead.
+ */
+@Service
+public class ImageOriginCache implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageOriginCache.class);
+
+    private static final int SNIFF_BYTES = 16;
+
+    private final ImageRepository imageRepository;
+    private final ImageVerifier imageVerifier;
+    private final Executor persistenceExecutor;
+    private final OriginCacheProperties properties;
+    private final DiskLruStore store;
+
+    private final ConcurrentMap<Long, CompletableFuture<Content>> inFlight = new ConcurrentHashMap<>();
+    private final Semaphore prefetchPermits;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * Constructor to initialize the repository, the verifier, the persistence executor and properties.
+     * When enabled, opens the store, indexing the images cached before a restart.
+     */
+    public ImageOriginCache(
+            ImageRepository imageRepository,
+            ImageVerifier imageVerifier,
+            @Qualifier("persistenceExecutor") Executor persistenceExecutor,
+            OriginCacheProperties properties
+    ) {
+        this.imageRepository = imageRepository;
+        this.imageVerifier = imageVerifier;
+        this.persistenceExecutor = persistenceExecutor;
+        this.properties = properties;
+        this.prefetchPermits = new Semaphore(properties.getPrefetchParallelism());
+        if (!properties.isEnabled()) {
+            this.store = null;
+            return;
+        }
+        try {
+            this.store = new DiskLruStore(
+                    properties.getDirectory(), properties.getMaxStoreSize().toBytes(), properties.getReleaseGrace());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the origin cache " + properties.getDirectory(), e);
+        }
+    }
+
+    /**
+     * @return whether image bytes are proxied through this cache
+     */
+    public boolean isEnabled() {
+        return store != null;
+    }
+
+    /**
+     * Finds the origin URL of an image, for clients to fetch it directly.
+     *
+     * @param imageId the ID of the image
+     * @return the URL of the image
+     * @throws EntityNotFoundException if the image does not exist
+     */
+    public String originUrl(Long imageId) {
+        return ref(imageId).url();
+    }
+
+    /**
+     * Returns the cached bytes of an image, downloading them if they are not cached yet.
+     * Each caller gets its own lease on the file and must close the returned content once done with it.
+     *
+     * @param imageId the ID of the image
+     * @return a future completing with the cached file, or failing if the origin cannot be fetched
+     * @throws EntityNotFoundException if the image does not exist
+     * @throws IllegalStateException if the cache is disabled
+     */
+    public CompletableFuture<Content> content(Long imageId) {
+        if (!isEnabled()) {
+            throw new IllegalStateException("The origin cache is disabled");
+        }
+        ImageContentRef ref = ref(imageId);
+        Content cached = cached(ref.contentHash());
+        if (cached != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        CompletableFuture<Content> pending = new CompletableFuture<>();
+        CompletableFuture<Content> existing = inFlight.putIfAbsent(imageId, pending);
+        if (existing != null) {
+            coalesced.increment();
+            return existing.thenCompose(stored -> reopen(imageId, stored));
+        }
+        misses.increment();
+
+        try {
+            imageVerifier.fetch(ref.url(), Math.toIntExact(properties.getMaxImageSize().toBytes()))
+                    .thenApplyAsync(bytes -> save(imageId, ref.contentHash(), bytes), persistenceExecutor)
+                    .whenComplete((content, e) -> {
+                        inFlight.remove(imageId, pending);
+                        if (e != null) {
+                            failures.increment();
+                            pending.completeExceptionally(e);
+                        } else {
+                            pending.complete(content);
+                        }
+                    });
+        } catch (RuntimeException e) {
+            // Rejected before any work started; waiters that joined meanwhile fail alike.
+            failures.increment();
+            inFlight.remove(imageId, pending);
+            pending.completeExceptionally(e);
+            throw e;
+        }
+        return pending;
+    }
+
+    /**
+     * Downloads a new image in the background, if prefetching is enabled and a prefetch slot is free.
+     *
+     * @param event the delivered event
+     */
+    @EventListener
+    public void onImageAdded(ImageAddedEvent event) {
+        if (!isEnabled() || !properties.isPrefetch() || !prefetchPermits.tryAcquire()) {
+            return;
+        }
+        try {
+            content(event.imageId()).whenComplete((content, e) -> {
+                prefetchPermits.release();
+                if (content != null) {
+                    content.close();
+                }
+                if (e != null) {
+                    log.debug("Could not prefetch image {}", event.imageId(), e);
+                }
+            });
+        } catch (EntityNotFoundException | RejectedExecutionException e) {
+            // Deleted meanwhile, or verification is busy; the image is fetched on first request instead.
+            prefetchPermits.release();
+        }
+    }
+
+    /**
+     * @return how long clients may cache an image
+     */
+    public Duration clientMaxAge() {
+        return properties.getClientMaxAge();
+    }
+
+    private ImageContentRef ref(Long imageId) {
+        ImageContentRef ref = imageRepository.findContentRefById(imageId);
+        if (ref == null) {
+            throw new EntityNotFoundException("Image not found with ID: " + imageId);
+        }
+        return ref;
+    }
+
+    /**
+     * Leases the file another caller downloaded, downloading it again if it was evicted meanwhile.
+     */
+    private CompletableFuture<Content> reopen(Long imageId, Content stored) {
+        DiskLruStore.Lease lease = store.open(stored.contentHash());
+        if (lease == null) {
+            return content(imageId);
+        }
+        return CompletableFuture.completedFuture(new Content(lease, stored.contentHash(), stored.mediaType()));
+    }
+
+    /**
+     * Returns the cached file for a hash, or {@code null} if there is none.
+     */
+    private Content cached(String contentHash) {
+        if (contentHash == null) {
+            return null;
+        }
+        DiskLruStore.Lease lease = store.open(contentHash);
+        if (lease == null) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(lease.file())) {
+            return new Content(lease, contentHash, mediaType(in.readNBytes(SNIFF_BYTES)));
+        } catch (IOException e) {
+            // Deleted behind the store's back.
+            lease.close();
+            return null;
+        }
+    }
+
+    /**
+     * Stores downloaded bytes under their hash and records the hash on the image if it changed.
+     */
+    private Content save(Long imageId, String previousHash, byte[] bytes) {
+        String contentHash = sha256(bytes);
+        DiskLruStore.Lease lease = store.open(contentHash);
+        try {
+            if (lease == null) {
+                lease = store.put(contentHash, bytes);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            if (!contentHash.equals(previousHash)) {
+                imageRepository.updateContentHash(imageId, contentHash);
+            }
+        } catch (RuntimeException e) {
+            lease.close();
+            throw e;
+        }
+        return new Content(lease, contentHash, mediaType(bytes));
+    }
+
+    private static MediaType mediaType(byte[] header) {
+        ImageFormat format = ImageFormat.sniff(header);
+        return format != null ? MediaType.parseMediaType(format.mimeType()) : MediaType.APPLICATION_OCTET_STREAM;
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!isEnabled()) {
+            return;
+        }
+        FunctionCounter.builder("origin_cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .description("Image content requests served from disk")
+                .register(registry);
+        FunctionCounter.builder("origin_cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .description("Image content requests that downloaded the image")
+                .register(registry);
+        FunctionCounter.builder("origin_cache.requests", coalesced, LongAdder::sum)
+                .tag("result", "coalesced")
+                .description("Image content requests that waited for a download already in progress")
+                .register(registry);
+        FunctionCounter.builder("origin_cache.failures", failures, LongAdder::sum)
+                .description("Image downloads that failed")
+                .register(registry);
+        Gauge.builder("origin_cache.store.size", store, DiskLruStore::bytes)
+                .baseUnit(BaseUnits.BYTES)
+                .description("Total size of the cached images")
+                .register(registry);
+        Gauge.builder("origin_cache.store.entries", store, DiskLruStore::size)
+                .description("Number of cached images")
+                .register(registry);
+    }
+
+    /**
+     * The cached bytes of an image, kept on disk until closed.
+     *
+     * @param lease the lease on the file holding the bytes
+     * @param contentHash the SHA-256 of the bytes, in lowercase hex
+     * @param mediaType the media type detected from the bytes
+     */
+    public record Content(DiskLruStore.Lease lease, String contentHash, MediaType mediaType) implements AutoCloseable {
+
+        /**
+         * @return the file holding the bytes
+         */
+        public Path file() {
+            return lease.file();
+        }
+
+        /**
+         * Releases the file, letting the store delete it once evicted.
+         */
+        @Override
+        public void close() {
+            lease.close();
+        }
+
+        /**
+         * @return a strong ETag; the file is named after its content
+         */
+        public String eTag() {
+            return "\"" + contentHash + "\"";
+        }
+    }
+}
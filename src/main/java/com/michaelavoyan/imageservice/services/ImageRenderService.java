@@ -0,0 +1,449 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.michaelavoyan.imageservice.config.RenderProperties;
+import com.michaelavoyan.imageservice.events.ImageDeletedEvent;
+import com.michaelavoyan.imageservice.events.SlideshowDeletedEvent;
+import com.michaelavoyan.imageservice.repositories.ImageRepository;
+import com.michaelavoyan.imageservice.utils.DiskLruStore;
+import com.michaelavoyan.imageservice.utils.ImageVerifier;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service rendering resized derivatives of images on first request.
+ * <p>
+ * The original is read from the {@link ImageOriginCache} when it is enabled, and otherwise downloaded through
+ * the {@link ImageVerifier}, which shares its per-host limits and timeouts. It is then decoded and resized on
+ * the bounded render executor, and kept in a {@link DiskLruStore}. Later requests are served from disk.
+ * Concurrent requests for a derivative that is not on disk yet share one render, so a burst of requests for
+ * a new image downloads and renders it once.
+ * <p>
+ * Derivative names include a hash of the image URL, so a derivative can never be served for another image.
+ * Derivatives of deleted images and slideshows are removed when their events are delivered.
+ */
+@Service
+public class ImageRenderService implements MeterBinder {
+
+    private final ImageRepository imageRepository;
+    private final ImageVerifier imageVerifier;
+    private final ImageOriginCache imageOriginCache;
+    private final Executor renderExecutor;
+    private final RenderProperties properties;
+    private final DiskLruStore store;
+
+    private final ConcurrentMap<String, CompletableFuture<Rendition>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * Constructor to initialize the repository, the verifier, the origin cache, the render executor and properties.
+     * Opens the derivative store, indexing the derivatives rendered before a restart.
+     */
+    public ImageRenderService(
+            ImageRepository imageRepository,
+            ImageVerifier imageVerifier,
+            ImageOriginCache imageOriginCache,
+            @Qualifier("renderExecutor") Executor renderExecutor,
+            RenderProperties properties
+    ) {
+        this.imageRepository = imageRepository;
+        this.imageVerifier = imageVerifier;
+        this.imageOriginCache = imageOriginCache;
+        this.renderExecutor = renderExecutor;
+        this.properties = properties;
+        try {
+            this.store = new DiskLruStore(
+                    properties.getDirectory(), properties.getMaxStoreSize().toBytes(), properties.getReleaseGrace());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the render store " + properties.getDirectory(), e);
+        }
+    }
+
+    /**
+     * Returns a derivative of an image, rendering it if it is not on disk yet.
+     * The image is scaled down to fit within the requested box, keeping its aspect ratio;
+     * it is never scaled up. Omitting both dimensions only converts the image.
+     * Each caller gets its own lease on the file and must close the returned rendition once done with it.
+     *
+     * @param imageId the ID of the image
+     * @param width the largest width, or {@code null} for no limit
+     * @param height the largest height, or {@code null} for no limit
+     * @param format the output format, {@code jpg} or {@code png}
+     * @return a future completing with the derivative, or failing if the original cannot be fetched or decoded
+     * @throws IllegalArgumentException if a dimension or the format is invalid
+     * @throws EntityNotFoundException if the image does not exist
+     */
+    public CompletableFuture<Rendition> render(Long imageId, Integer width, Integer height, String format) {
+        Format outputFormat = Format.of(format);
+        checkDimension("w", width);
+        checkDimension("h", height);
+        String url = imageRepository.findUrlById(imageId);
+        if (url == null) {
+            throw new EntityNotFoundException("Image not found with ID: " + imageId);
+        }
+        String key = imageId + "-" + (width != null ? width : 0) + "x" + (height != null ? height : 0)
+                + "-" + urlHash(url) + "." + outputFormat.extension();
+
+        DiskLruStore.Lease lease = store.open(key);
+        if (lease != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(new Rendition(lease, key, outputFormat));
+        }
+
+        CompletableFuture<Rendition> pending = new CompletableFuture<>();
+        CompletableFuture<Rendition> existing = inFlight.putIfAbsent(key, pending);
+        if (existing != null) {
+            coalesced.increment();
+            return existing.thenCompose(stored -> reopen(imageId, width, height, stored));
+        }
+        // Another request may have stored the derivative between the lookup and the claim.
+        lease = store.open(key);
+        if (lease != null) {
+            hits.increment();
+            inFlight.remove(key, pending);
+            pending.complete(new Rendition(lease, key, outputFormat));
+            return pending;
+        }
+        misses.increment();
+
+        try {
+            original(imageId, url)
+                    .thenApplyAsync(source -> store(key, render(source, width, height, outputFormat)), renderExecutor)
+                    .thenApply(stored -> new Rendition(stored, key, outputFormat))
+                    .whenComplete((rendition, e) -> {
+                        inFlight.remove(key, pending);
+                        if (e != null) {
+                            failures.increment();
+                            pending.completeExceptionally(e);
+                        } else {
+                            pending.complete(rendition);
+                        }
+                    });
+        } catch (RuntimeException e) {
+            // Rejected before any work started; waiters that joined meanwhile fail alike.
+            failures.increment();
+            inFlight.remove(key, pending);
+            pending.completeExceptionally(e);
+            throw e;
+        }
+        return pending;
+    }
+
+    /**
+     * Reads the original of an image from the origin cache, or downloads it if the cache is disabled.
+     */
+    private CompletableFuture<byte[]> original(Long imageId, String url) {
+        if (!imageOriginCache.isEnabled()) {
+            return imageVerifier.fetch(url, Math.toIntExact(properties.getMaxSourceSize().toBytes()));
+        }
+        return imageOriginCache.content(imageId).thenApply(content -> {
+            try (content) {
+                return Files.readAllBytes(content.file());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Leases the derivative another caller rendered, rendering it again if it was evicted meanwhile.
+     */
+    private CompletableFuture<Rendition> reopen(Long imageId, Integer width, Integer height, Rendition stored) {
+        DiskLruStore.Lease lease = store.open(stored.key());
+        if (lease == null) {
+            return render(imageId, width, height, stored.format().extension());
+        }
+        return CompletableFuture.completedFuture(new Rendition(lease, stored.key(), stored.format()));
+    }
+
+    /**
+     * Removes the derivatives of a deleted image.
+     *
+     * @param event the delivered event
+     */
+    @EventListener
+    public void onImageDeleted(ImageDeletedEvent event) {
+        removeDerivatives(event.imageId());
+    }
+
+    /**
+     * Removes the derivatives of the images of a deleted slideshow.
+     *
+     * @param event the delivered event
+     */
+    @EventListener
+    public void onSlideshowDeleted(SlideshowDeletedEvent event) {
+        event.imageIds().forEach(this::removeDerivatives);
+    }
+
+    /**
+     * @return how long clients may cache a derivative
+     */
+    public Duration clientMaxAge() {
+        return properties.getClientMaxAge();
+    }
+
+    private void removeDerivatives(Long imageId) {
+        String prefix = imageId + "-";
+        store.remove(key -> key.startsWith(prefix));
+    }
+
+    private DiskLruStore.Lease store(String key, byte[] content) {
+        try {
+            return store.put(key, content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Decodes an original, scales it to fit the requested box and encodes it in the output format.
+     * Large originals are subsampled while decoding, so only about twice the output resolution is held in memory.
+     */
+    byte[] render(byte[] source, Integer width, Integer height, Format format) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(source))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int sourceWidth = reader.getWidth(0);
+                int sourceHeight = reader.getHeight(0);
+                if ((long) sourceWidth * sourceHeight > properties.getMaxSourcePixels()) {
+                    throw new IOException("Image too large to render: " + sourceWidth + "x" + sourceHeight);
+                }
+
+                double scale = Math.min(1, Math.min(
+                        width != null ? (double) width / sourceWidth : 1,
+                        height != null ? (double) height / sourceHeight : 1));
+                int targetWidth = Math.max(1, (int) Math.round(sourceWidth * scale));
+                int targetHeight = Math.max(1, (int) Math.round(sourceHeight * scale));
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1,
+                        Math.min(sourceWidth / (2 * targetWidth), sourceHeight / (2 * targetHeight)));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage decoded = reader.read(0, param);
+
+                return encode(scale(decoded, targetWidth, targetHeight, format), format);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Scales an image by successive halvings with bilinear interpolation, which is close to bicubic quality
+     * at a fraction of its cost. Transparent pixels are flattened onto white for formats without alpha.
+     */
+    static BufferedImage scale(BufferedImage image, int width, int height, Format format) {
+        int type = format.alpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = image;
+        int currentWidth = image.getWidth();
+        int currentHeight = image.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(current, 0, 0, currentWidth, currentHeight,
+                        format.alpha() ? null : Color.WHITE, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private byte[] encode(BufferedImage image, Format format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (format == Format.PNG) {
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(properties.getJpegQuality());
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private void checkDimension(String name, Integer value) {
+        if (value != null && (value < 1 || value > properties.getMaxDimension())) {
+            throw new IllegalArgumentException(
+                    name + " must be between 1 and " + properties.getMaxDimension() + ", got " + value);
+        }
+    }
+
+    private static String urlHash(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 6);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("render.requests", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .description("Derivative requests served from disk")
+                .register(registry);
+        FunctionCounter.builder("render.requests", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .description("Derivative requests that rendered the derivative")
+                .register(registry);
+        FunctionCounter.builder("render.requests", coalesced, LongAdder::sum)
+                .tag("result", "coalesced")
+                .description("Derivative requests that waited for a render already in progress")
+                .register(registry);
+        FunctionCounter.builder("render.failures", failures, LongAdder::sum)
+                .description("Renders that failed to fetch, decode or store the image")
+                .register(registry);
+        Gauge.builder("render.store.size", store, DiskLruStore::bytes)
+                .baseUnit(BaseUnits.BYTES)
+                .description("Total size of the derivatives on disk")
+                .register(registry);
+        Gauge.builder("render.store.entries", store, DiskLruStore::size)
+                .description("Number of derivatives on disk")
+                .register(registry);
+    }
+
+    /**
+     * A derivative on disk, kept there until closed.
+     *
+     * @param lease the lease on the file holding the derivative
+     * @param key the name of the derivative, unique to its image, size and format
+     * @param format the format of the derivative
+     */
+    public record Rendition(DiskLruStore.Lease lease, String key, Format format) implements AutoCloseable {
+
+        /**
+         * @return the file holding the derivative
+         */
+        public Path file() {
+            return lease.file();
+        }
+
+        /**
+         * Releases the file, letting the store delete it once evicted.
+         */
+        @Override
+        public void close() {
+            lease.close();
+        }
+
+        /**
+         * @return a strong ETag; a derivative never changes once rendered
+         */
+        public String eTag() {
+            return "\"" + key + "\"";
+        }
+    }
+
+    /**
+     * The output formats of derivatives.
+     */
+    public enum Format {
+        JPG("jpg", MediaType.IMAGE_JPEG, false),
+        PNG("png", MediaType.IMAGE_PNG, true);
+
+        private final String extension;
+        private final MediaType mediaType;
+        private final boolean alpha;
+
+        Format(String extension, MediaType mediaType, boolean alpha) {
+            this.extension = extension;
+            this.mediaType = mediaType;
+            this.alpha = alpha;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        public MediaType mediaType() {
+            return mediaType;
+        }
+
+        public boolean alpha() {
+            return alpha;
+        }
+
+        /**
+         * Parses a format name, {@code jpg}, {@code jpeg} or {@code png}, ignoring case.
+         *
+         * @param name the format name
+         * @return the format
+         * @throws IllegalArgumentException if the format is not supported
+         */
+        public static Format of(String name) {
+            return switch (name == null ? "" : name.toLowerCase(Locale.ROOT)) {
+                case "jpg", "jpeg" -> JPG;
+                case "png" -> PNG;
+                default -> throw new IllegalArgumentException("Unsupported render format: " + name);
+            };
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.michaelavoyan.imageservice.config.SearchProperties;
+import com.michaelavoyan.imageservice.dto.ImageIndexEntry;
+import com.michaelavoyan.imageservice.dto.ImageSummary;
+import com.michaelavoyan.imageservice.events.ImageAddedEvent;
+import com.michaelavoyan.imageservice.events.ImageDeletedEvent;
+import com.michaelavoyan.imageservice.events.SlideshowDeletedEvent;
+import com.michaelavoyan.imageservice.repositories.ImageRepository;
+import com.michaelavoyan.imageservice.utils.TrigramIndex;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Service answering image searches from an in-memory {@link TrigramIndex} instead of a
+ * {@code LIKE '%query%'} table scan.
+ * <p>
+ * The index is built in the background at startup; until it is ready searches fall back to the database.
+ * It is kept current by the image and slideshow events of this instance, by a periodic catch-up loading
+ * images added by other instances, and by a periodic full rebuild
+ * which also forgets images deleted elsewhere. Matching images are always read from the database by ID,
+ * so a stale index entry can never return a deleted image.
+ */
+@Service
+public class ImageSearchService implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageSearchService.class);
+
+    /**
+     * Maximum number of IDs bound to one {@code IN} list.
+     */
+    static final int SUMMARY_BATCH_SIZE = 1_000;
+
+    private final ImageRepository imageRepository;
+    private final SearchProperties properties;
+
+    private volatile TrigramIndex index;
+    private volatile long highestId;
+
+    /**
+     * The index being rebuilt, which also receives the changes made during the rebuild.
+     */
+    private TrigramIndex rebuilding;
+    private Set<Long> deletedDuringRebuild;
+
+    /**
+     * Constructor to initialize repositories and properties.
+     */
+    public ImageSearchService(ImageRepository imageRepository, SearchProperties properties) {
+        this.imageRepository = imageRepository;
+        this.properties = properties;
+    }
+
+    /**
+     * Searches images by URL substring and optional duration.
+     * The summaries of the matches are loaded with one query per {@value #SUMMARY_BATCH_SIZE} matches.
+     *
+     * @param query the substring to look for
+     * @param duration the display duration to match, or {@code 0} for any
+     * @return the summaries of the matching images ordered by ID
+     */
+    @Transactional(readOnly = true)
+    public List<ImageSummary> search(String query, int duration) {
+        TrigramIndex current = index;
+        if (current == null) {
+            return imageRepository.searchImageSummaries(query, duration);
+        }
+        long[] ids = current.search(query, duration);
+        List<ImageSummary> summaries = new ArrayList<>(ids.length);
+        for (int from = 0; from < ids.length; from += SUMMARY_BATCH_SIZE) {
+            List<Long> batch = Arrays.stream(ids, from, Math.min(ids.length, from + SUMMARY_BATCH_SIZE))
+                    .boxed()
+                    .toList();
+            summaries.addAll(imageRepository.findSummariesByIdIn(batch));
+        }
+        return summaries;
+    }
+
+    /**
+     * @return {@code true} once the index has been loaded and searches no longer hit the database
+     */
+    public boolean isReady() {
+        return index != null;
+    }
+
+    /**
+     * Rebuilds the index from the database; the first run happens at startup.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${imageservice.search.rebuild-interval:1h}")
+    public void rebuild() {
+        if (!properties.isIndexEnabled()) {
+            return;
+        }
+        TrigramIndex fresh = new TrigramIndex();
+        synchronized (this) {
+            rebuilding = fresh;
+            deletedDuringRebuild = new HashSet<>();
+        }
+        try {
+            long last = load(fresh, 0);
+            synchronized (this) {
+                deletedDuringRebuild.forEach(fresh::remove);
+                highestId = Math.max(highestId, last);
+                index = fresh;
+            }
+            log.info("Image search index built with {} images", fresh.size());
+        } catch (RuntimeException e) {
+            log.error("Image search index rebuild failed", e);
+        } finally {
+            synchronized (this) {
+                rebuilding = null;
+                deletedDuringRebuild = null;
+            }
+        }
+    }
+
+    /**
+     * Indexes the images added since the last load, including those added by other instances. The last
+     * {@code catchUpWindow} IDs are read again, since a transaction may commit an image after another one
+     * with a higher ID was already loaded.
+     */
+    @Scheduled(fixedDelayString = "${imageservice.search.catch-up-interval:5s}")
+    public void catchUp() {
+        TrigramIndex current = index;
+        if (current == null) {
+            return;
+        }
+        try {
+            long last = load(current, Math.max(0, highestId - properties.getCatchUpWindow()));
+            synchronized (this) {
+                highestId = Math.max(highestId, last);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Image search index catch-up failed", e);
+        }
+    }
+
+    /**
+     * Indexes an added image once its transaction has committed.
+     */
+    @EventListener
+    public void onImageAdded(ImageAddedEvent event) {
+        apply(target -> target.put(event.imageId(), event.url(), event.duration()), event.imageId(), false);
+    }
+
+    /**
+     * Removes a deleted image from the index.
+     */
+    @EventListener
+    public void onImageDeleted(ImageDeletedEvent event) {
+        apply(target -> target.remove(event.imageId()), event.imageId(), true);
+    }
+
+    /**
+     * Removes the images of a deleted slideshow from the index.
+     */
+    @EventListener
+    public void onSlideshowDeleted(SlideshowDeletedEvent event) {
+        for (Long imageId : event.imageIds()) {
+            apply(target -> target.remove(imageId), imageId, true);
+        }
+    }
+
+    private synchronized void apply(Consumer<TrigramIndex> change, long imageId, boolean delete) {
+        if (index != null) {
+            change.accept(index);
+        }
+        if (rebuilding != null) {
+            change.accept(rebuilding);
+            if (delete) {
+                deletedDuringRebuild.add(imageId);
+            } else {
+                deletedDuringRebuild.remove(imageId);
+            }
+        }
+        if (!delete) {
+            highestId = Math.max(highestId, imageId);
+        }
+    }
+
+    /**
+     * Loads the images with an ID above {@code afterId} into the index, one keyset page at a time,
+     * skipping those already indexed.
+     *
+     * @return the highest ID loaded, or {@code afterId} if there was none
+     */
+    private long load(TrigramIndex target, long afterId) {
+        long last = afterId;
+        while (true) {
+            List<ImageIndexEntry> page =
+                    imageRepository.findIndexEntries(last, Limit.of(properties.getLoadBatchSize()));
+            for (ImageIndexEntry entry : page) {
+                if (!target.contains(entry.id())) {
+                    target.put(entry.id(), entry.url(), entry.duration());
+                }
+                last = entry.id();
+            }
+            if (page.size() < properties.getLoadBatchSize()) {
+                return last;
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("search.index.size", this, service -> service.index == null ? 0 : service.index.size())
+                .description("Images in the in-memory search index")
+                .register(registry);
+    }
+}
@@ -0,0 +1,279 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.michaelavoyan.imageservice.config.OutboxProperties;
+import com.michaelavoyan.imageservice.entities.OutboxEvent;
+import com.michaelavoyan.imageservice.repositories.OutboxEventRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service delivering outbox events to the application's event listeners.
+ * <p>
+ * The search index, the slideshow order cache, the near-duplicate index and the render store are held
+ * by each instance, so every instance reads every event. A single background thread reads the events
+ * after its own cursor in batches of up to {@code batchSize} and publishes each one through the
+ * {@link ApplicationEventPublisher}; rows are only deleted once older than {@code retention}, which
+ * any instance does. The thread is woken as soon as a transaction writing events commits, and
+ * otherwise polls every {@code pollInterval}. A restarted instance replays the events still kept.
+ * <p>
+ * IDs are assigned at insert but become visible at commit, so an ID skipped by the cursor is rechecked
+ * for {@code gapTimeout} in case its transaction commits late. An event whose listener throws is
+ * delivered again, waiting one more {@code pollInterval} after each attempt, and given up on after
+ * {@code maxAttempts}; it does not hold back the events behind it. Delivery is at least once, so
+ * listeners must be idempotent.
+ */
+@Service
+public class OutboxDispatcher implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxDispatcher.class);
+
+    private static final long PURGE_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private static final int MAX_TRACKED_GAPS = 10_000;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final OutboxProperties properties;
+
+    private final Semaphore signal = new Semaphore(0);
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * The highest event ID read, or -1 before the first event.
+     */
+    private long cursor = -1;
+
+    /**
+     * IDs skipped by the cursor, with the time after which they are no longer rechecked.
+     */
+    private final Map<Long, Long> gaps = new TreeMap<>();
+
+    /**
+     * Events whose listeners failed, with their pending retry.
+     */
+    private final Map<Long, Retry> retries = new TreeMap<>();
+
+    private long lastPurge = System.nanoTime() - PURGE_INTERVAL_NANOS;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    /**
+     * Constructor to initialize repositories and services.
+     */
+    public OutboxDispatcher(
+            OutboxEventRepository outboxEventRepository,
+            ApplicationEventPublisher eventPublisher,
+            ObjectMapper objectMapper,
+            OutboxProperties properties
+    ) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+    }
+
+    /**
+     * Starts the dispatcher once every listener is ready to receive events.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::run, "outbox-dispatcher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Stops the dispatcher. Events not yet delivered are replayed by the next run while still kept.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        Thread current;
+        synchronized (this) {
+            running = false;
+            current = worker;
+        }
+        if (current != null) {
+            wakeUp();
+            current.join(10_000);
+        }
+    }
+
+    /**
+     * Signals that new events have been committed.
+     */
+    public void wakeUp() {
+        if (signal.availablePermits() == 0) {
+            signal.release();
+        }
+    }
+
+    /**
+     * Delivers the next batch of events, then the late and retried events that are due,
+     * and deletes the events past retention.
+     *
+     * @return the number of new events read from the outbox
+     */
+    public synchronized int dispatchBatch() {
+        long now = System.nanoTime();
+        List<OutboxEvent> batch = outboxEventRepository.findAllByIdGreaterThanOrderByIdAsc(
+                cursor, Limit.of(properties.getBatchSize()));
+        for (OutboxEvent event : batch) {
+            trackGaps(event.getId(), now);
+            cursor = event.getId();
+            deliver(event, 0, now);
+        }
+        recheck(now);
+        purge(now);
+        return batch.size();
+    }
+
+    private void trackGaps(long id, long now) {
+        if (cursor < 0) {
+            return;
+        }
+        long deadline = now + properties.getGapTimeout().toNanos();
+        for (long missing = cursor + 1; missing < id && gaps.size() < MAX_TRACKED_GAPS; missing++) {
+            gaps.put(missing, deadline);
+        }
+    }
+
+    private void recheck(long now) {
+        gaps.values().removeIf(deadline -> now - deadline > 0);
+        List<Long> due = new ArrayList<>(gaps.keySet());
+        retries.forEach((id, retry) -> {
+            if (now - retry.due() >= 0) {
+                due.add(id);
+            }
+        });
+        if (due.isEmpty()) {
+            return;
+        }
+        Map<Long, OutboxEvent> found = new HashMap<>();
+        outboxEventRepository.findAllById(due).forEach(event -> found.put(event.getId(), event));
+        for (Long id : due) {
+            OutboxEvent event = found.get(id);
+            Retry retry = retries.remove(id);
+            if (retry != null && event == null) {
+                failed.increment();
+                log.warn("Outbox event {} was purged before it could be delivered", id);
+            } else if (event != null) {
+                gaps.remove(id);
+                deliver(event, retry == null ? 0 : retry.attempts(), now);
+            }
+        }
+    }
+
+    private void deliver(OutboxEvent event, int previousAttempts, long now) {
+        Class<?> type = EventOutbox.EVENT_TYPES.get(event.getEventType());
+        if (type == null) {
+            failed.increment();
+            log.warn("Discarding outbox event {} of unknown type {}", event.getId(), event.getEventType());
+            return;
+        }
+        try {
+            eventPublisher.publishEvent(objectMapper.readValue(event.getPayload(), type));
+            dispatched.increment();
+        } catch (Exception e) {
+            int attempts = previousAttempts + 1;
+            if (attempts < properties.getMaxAttempts()) {
+                retried.increment();
+                retries.put(event.getId(),
+                        new Retry(attempts, now + properties.getPollInterval().toNanos() * attempts));
+                log.warn("Could not deliver outbox event {} of type {}, attempt {} of {}",
+                        event.getId(), event.getEventType(), attempts, properties.getMaxAttempts(), e);
+            } else {
+                failed.increment();
+                log.error("Giving up on outbox event {} of type {} after {} attempts",
+                        event.getId(), event.getEventType(), attempts, e);
+            }
+        }
+    }
+
+    private void purge(long now) {
+        if (now - lastPurge < PURGE_INTERVAL_NANOS) {
+            return;
+        }
+        lastPurge = now;
+        int deleted = outboxEventRepository.deleteCreatedBefore(LocalDateTime.now().minus(properties.getRetention()));
+        if (deleted > 0) {
+            log.debug("Deleted {} outbox events past retention", deleted);
+        }
+    }
+
+    private void run() {
+        long pollNanos = properties.getPollInterval().toNanos();
+        while (running) {
+            try {
+                if (dispatchBatch() < properties.getBatchSize()) {
+                    signal.tryAcquire(pollNanos, TimeUnit.NANOSECONDS);
+                    signal.drainPermits();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Outbox dispatch failed, retrying in {}", properties.getPollInterval(), e);
+                try {
+                    TimeUnit.NANOSECONDS.sleep(pollNanos);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("outbox.dispatched", dispatched, LongAdder::sum)
+                .description("Outbox events delivered to listeners")
+                .register(registry);
+        FunctionCounter.builder("outbox.retried", retried, LongAdder::sum)
+                .description("Outbox deliveries that failed and were scheduled again")
+                .register(registry);
+        FunctionCounter.builder("outbox.failed", failed, LongAdder::sum)
+                .description("Outbox events given up on")
+                .register(registry);
+    }
+
+    /**
+     * A pending retry of an event whose listeners failed.
+     *
+     * @param attempts the deliveries made so far
+     * @param due      when the next delivery is due, in {@link System#nanoTime()} terms
+     */
+    private record Retry(int attempts, long due) {
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.michaelavoyan.imageservice.config.PlayCountProperties;
+import com.michaelavoyan.imageservice.dto.PlayCount;
+import com.michaelavoyan.imageservice.entities.PlayCountKey;
+import com.michaelavoyan.imageservice.entities.PlayCountRollup;
+import com.michaelavoyan.imageservice.repositories.PlayCountRollupRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service counting plays per slideshow, image and minute.
+ * <p>
+ * Plays are counted in memory in one {@link LongAdder} per key, so concurrent plays of the same image
+ * update separate cells instead of contending on a row or a lock. A scheduled rollup adds the counted
+ * deltas to the {@code play_count_rollup} table, and reads combine the stored rollups with the deltas
+ * not written yet, so they never scan the proof-of-play table.
+ * <p>
+ * Counts are only as durable as the last rollup: plays counted since then are lost if the process dies.
+ */
+@Service
+public class PlayCounter implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(PlayCounter.class);
+
+    private final PlayCountRollupRepository rollupRepository;
+    private final PlayCountProperties properties;
+
+    private final ConcurrentMap<PlayCountKey, LongAdder> cells = new ConcurrentHashMap<>();
+
+    /**
+     * Deltas taken out of {@link #cells} by the running rollup and not committed yet,
+     * so that reads during a rollup still see them.
+     */
+    private final ConcurrentMap<PlayCountKey, Long> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder rolledUp = new LongAdder();
+    private final LongAdder rollupFailures = new LongAdder();
+
+    /**
+     * Constructor to initialize repositories and properties.
+     */
+    public PlayCounter(PlayCountRollupRepository rollupRepository, PlayCountProperties properties) {
+        this.rollupRepository = rollupRepository;
+        this.properties = properties;
+    }
+
+    /**
+     * Counts one play.
+     *
+     * @param slideshowId the ID of the slideshow
+     * @param imageId the ID of the image
+     * @param playedAt when the image was played
+     */
+    public void record(Long slideshowId, Long imageId, LocalDateTime playedAt) {
+        cells.computeIfAbsent(PlayCountKey.of(slideshowId, imageId, playedAt), key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Returns the play counts of a slideshow per image and minute, including plays not rolled up yet.
+     *
+     * @param slideshowId the ID of the slideshow
+     * @param from the first minute, inclusive
+     * @param to the end of the range, exclusive
+     * @return the non-zero counts ordered by minute and image
+     */
+    public List<PlayCount> counts(Long slideshowId, LocalDateTime from, LocalDateTime to) {
+        Map<PlayCountKey, Long> counts = new HashMap<>();
+        for (PlayCountRollup rollup : rollupRepository.findBySlideshow(slideshowId, from, to)) {
+            counts.put(rollup.getId(), rollup.getPlayCount());
+        }
+        inFlight.forEach((key, delta) -> {
+            if (matches(key, slideshowId, from, to)) {
+                counts.merge(key, delta, Long::sum);
+            }
+        });
+        cells.forEach((key, cell) -> {
+            long delta = cell.sum();
+            if (delta != 0 && matches(key, slideshowId, from, to)) {
+                counts.merge(key, delta, Long::sum);
+            }
+        });
+        return counts.entrySet().stream()
+                .filter(entry -> entry.getValue() != 0)
+                .map(entry -> new PlayCount(entry.getKey().getImageId(), entry.getKey().getBucketStart(),
+                        entry.getValue()))
+                .sorted(Comparator.comparing(PlayCount::bucketStart).thenComparing(PlayCount::imageId))
+                .toList();
+    }
+
+    /**
+     * Writes the counted deltas to the rollup table.
+     * Idle counters for minutes older than the retention are dropped from memory. If the write fails
+     * the deltas are put back and retried by the next rollup.
+     */
+    @Scheduled(fixedDelayString = "${imageservice.play-counts.rollup-interval:10s}")
+    public synchronized void rollup() {
+        LocalDateTime horizon = LocalDateTime.now().minus(properties.getRetention()).truncatedTo(ChronoUnit.MINUTES);
+        Map<PlayCountKey, Long> deltas = new HashMap<>();
+        cells.forEach((key, cell) -> {
+            long delta = cell.sumThenReset();
+            if (delta == 0 && key.getBucketStart().isBefore(horizon) && cells.remove(key, cell)) {
+                // A play racing with the removal may have landed in the cell after the reset.
+                delta = cell.sumThenReset();
+            }
+            if (delta != 0) {
+                inFlight.merge(key, delta, Long::sum);
+                deltas.merge(key, delta, Long::sum);
+            }
+        });
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        try {
+            rollupRepository.addCounts(deltas);
+            deltas.values().forEach(rolledUp::add);
+        } catch (RuntimeException e) {
+            rollupFailures.increment();
+            log.warn("Play count rollup of {} keys failed, retrying on the next run", deltas.size(), e);
+            deltas.forEach((key, delta) -> cells.computeIfAbsent(key, k -> new LongAdder()).add(delta));
+        } finally {
+            inFlight.clear();
+        }
+    }
+
+    /**
+     * Writes the remaining deltas before the application stops.
+     */
+    @PreDestroy
+    public void flush() {
+        rollup();
+    }
+
+    private static boolean matches(PlayCountKey key, Long slideshowId, LocalDateTime from, LocalDateTime to) {
+        return key.getSlideshowId().equals(slideshowId)
+                && !key.getBucketStart().isBefore(from)
+                && key.getBucketStart().isBefore(to);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("play_counts.cells", cells, Map::size)
+                .description("Play counters held in memory")
+                .register(registry);
+        FunctionCounter.builder("play_counts.rolled_up", rolledUp, LongAdder::sum)
+                .description("Plays written to the rollup table")
+                .register(registry);
+        FunctionCounter.builder("play_counts.rollup_failures", rollupFailures, LongAdder::sum)
+                .description("Rollups that failed and were retried")
+                .register(registry);
+    }
+}
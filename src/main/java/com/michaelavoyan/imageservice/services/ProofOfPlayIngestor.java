@@ -0,0 +1,264 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.michaelavoyan.imageservice.config.ProofOfPlayProperties;
+import com.michaelavoyan.imageservice.dto.PlayEvent;
+import com.michaelavoyan.imageservice.events.PlayRecordedEvent;
+import com.michaelavoyan.imageservice.repositories.ProofOfPlayRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Service writing proof-of-play records in JDBC batches.
+ * <p>
+ * In {@link ProofOfPlayProperties.Ingestion#WRITE_BEHIND} mode accepted plays are put in a bounded queue
+ * and a single background writer inserts them in batches of up to {@code batchSize}, at the latest
+ * {@code flushInterval} after the first play of the batch was accepted. When the queue is full
+ * new plays are rejected rather than buffered, so a slow database turns into HTTP 503 for the
+ * players instead of unbounded memory growth. Plays still queued at shutdown are written before
+ * the application stops; plays queued when the process dies are lost.
+ * <p>
+ * When {@code publishEvents} is enabled, every insert writes a {@link PlayRecordedEvent} per play to the
+ * {@link EventOutbox} in the same transaction.
+ */
+@Service
+public class ProofOfPlayIngestor implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(ProofOfPlayIngestor.class);
+
+    private final ProofOfPlayRepository proofOfPlayRepository;
+    private final EventOutbox eventOutbox;
+    private final TransactionTemplate transactionTemplate;
+    private final ProofOfPlayProperties properties;
+    private final BlockingQueue<PlayEvent> queue;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    /**
+     * Constructor to initialize repositories and properties.
+     */
+    public ProofOfPlayIngestor(
+            ProofOfPlayRepository proofOfPlayRepository,
+            EventOutbox eventOutbox,
+            TransactionTemplate transactionTemplate,
+            ProofOfPlayProperties properties
+    ) {
+        this.proofOfPlayRepository = proofOfPlayRepository;
+        this.eventOutbox = eventOutbox;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+    }
+
+    /**
+     * Starts the background writer when write-behind ingestion is enabled.
+     */
+    @PostConstruct
+    public void start() {
+        if (!isWriteBehind()) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::runWriter, "pop-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stops accepting plays and waits for the writer to flush the queue.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join(properties.getFlushInterval().toMillis() + 10_000);
+        }
+    }
+
+    /**
+     * @return {@code true} if plays are queued and written by the background writer
+     */
+    public boolean isWriteBehind() {
+        return properties.getIngestion() == ProofOfPlayProperties.Ingestion.WRITE_BEHIND;
+    }
+
+    /**
+     * @return {@code true} if a {@link PlayRecordedEvent} is written with every play
+     */
+    public boolean publishesEvents() {
+        return properties.isPublishEvents();
+    }
+
+    /**
+     * Queues a play for the background writer.
+     *
+     * @param play the validated play
+     * @throws RejectedExecutionException if the queue is full or the writer is stopped
+     */
+    public void submit(PlayEvent play) {
+        if (!running || !queue.offer(play)) {
+            rejected.increment();
+            throw new RejectedExecutionException("Proof-of-play queue is full");
+        }
+    }
+
+    /**
+     * Queues as many plays as currently fit, in order.
+     *
+     * @param plays the validated plays
+     * @return the number of plays queued; the remaining plays were rejected
+     */
+    public int submitAll(List<PlayEvent> plays) {
+        int accepted = 0;
+        if (running) {
+            for (PlayEvent play : plays) {
+                if (!queue.offer(play)) {
+                    break;
+                }
+                accepted++;
+            }
+        }
+        rejected.add(plays.size() - accepted);
+        return accepted;
+    }
+
+    /**
+     * Inserts the plays in one batch. If the batch fails, the plays are retried one by one
+     * so that a single bad row does not discard the others.
+     *
+     * @param plays the validated plays
+     * @return the positions in {@code plays} of the plays that could not be inserted
+     */
+    public List<Integer> write(List<PlayEvent> plays) {
+        if (plays.isEmpty()) {
+            return List.of();
+        }
+        try {
+            insert(plays);
+            written.add(plays.size());
+            return List.of();
+        } catch (DataAccessException e) {
+            log.debug("Batch insert of {} plays failed, retrying one by one", plays.size(), e);
+        }
+        List<Integer> failures = new ArrayList<>();
+        for (int i = 0; i < plays.size(); i++) {
+            PlayEvent play = plays.get(i);
+            try {
+                insert(List.of(play));
+                written.increment();
+            } catch (DataAccessException e) {
+                failures.add(i);
+                failed.increment();
+                log.warn("Could not save play of image {} in slideshow {}: {}",
+                        play.imageId(), play.slideshowId(), e.getMostSpecificCause().getMessage());
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Inserts the plays and, if enabled, their {@link PlayRecordedEvent}s in one transaction.
+     */
+    private void insert(List<PlayEvent> plays) {
+        if (!publishesEvents()) {
+            proofOfPlayRepository.insertBatch(plays);
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            proofOfPlayRepository.insertBatch(plays);
+            eventOutbox.publishAll(plays.stream()
+                    .map(play -> new PlayRecordedEvent(play.slideshowId(), play.imageId(), play.playedAt()))
+                    .toList());
+        });
+    }
+
+    /**
+     * @return the maximum number of plays accepted in one batch upload
+     */
+    public int maxUploadSize() {
+        return properties.getMaxUploadSize();
+    }
+
+    /**
+     * @return the number of plays waiting to be written
+     */
+    public int queued() {
+        return queue.size();
+    }
+
+    private void runWriter() {
+        int batchSize = properties.getBatchSize();
+        long flushNanos = properties.getFlushInterval().toNanos();
+        while (running || !queue.isEmpty()) {
+            List<PlayEvent> batch = new ArrayList<>(batchSize);
+            try {
+                PlayEvent first = queue.poll(flushNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                        break;
+                    }
+                    PlayEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                write(batch);
+            } catch (InterruptedException e) {
+                // Keep draining; stop() ends the loop by clearing the running flag.
+                Thread.interrupted();
+            } catch (RuntimeException e) {
+                failed.add(batch.size());
+                log.error("Dropping {} plays after an unexpected write failure", batch.size(), e);
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("proof_of_play.queue.size", queue, BlockingQueue::size)
+                .description("Plays waiting to be written")
+                .register(registry);
+        FunctionCounter.builder("proof_of_play.written", written, LongAdder::sum)
+                .description("Plays inserted into the database")
+                .register(registry);
+        FunctionCounter.builder("proof_of_play.failed", failed, LongAdder::sum)
+                .description("Accepted plays that could not be inserted")
+                .register(registry);
+        FunctionCounter.builder("proof_of_play.rejected", rejected, LongAdder::sum)
+                .description("Plays rejected because the queue was full")
+                .register(registry);
+    }
+}
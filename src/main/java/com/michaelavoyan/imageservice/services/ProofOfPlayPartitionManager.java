@@ -0,0 +1,289 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.michaelavoyan.imageservice.config.ProofOfPlayProperties;
+import com.michaelavoyan.imageservice.repositories.ProofOfPlayRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Service keeping the proof-of-play table partitioned by day and enforcing its retention.
+ * <p>
+ * On MySQL the table is partitioned with {@code RANGE COLUMNS(played_at)}, one partition per day plus a
+ * catch-all {@code pmax}. The job creates the partitions of the coming days ahead of time and drops whole
+ * partitions once they are past the retention, which is a metadata operation instead of a row-by-row
+ * DELETE.
+ * <p>
+ * Every run first drops the unique keys and foreign keys left over from the schema that stored one play per
+ * slideshow and image, since {@code ddl-auto=update} never drops them and they reject repeated plays. Foreign
+ * keys go first as they may rely on the unique indexes; both are metadata changes, and MySQL does not allow
+ * either on a partitioned table anyway.
+ * <p>
+ * An unpartitioned MySQL table is then converted by changing the primary key to {@code (id, played_at)} and
+ * partitioning it. That is done right away when the table is empty, as after it was created; a populated
+ * table is only converted when {@code convertToPartitioned} is set, since the conversion copies it under a lock.
+ * <p>
+ * On other databases (H2 in tests), and on MySQL until the table is converted, the table is not partitioned
+ * and retention is a single set-based DELETE.
+ */
+@Service
+public class ProofOfPlayPartitionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(ProofOfPlayPartitionManager.class);
+
+    static final String TABLE = "proof_of_play";
+    static final String CATCH_ALL = "pmax";
+
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMMdd");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProofOfPlayRepository proofOfPlayRepository;
+    private final ProofOfPlayProperties properties;
+
+    private Boolean mySql;
+
+    /**
+     * Constructor to initialize repositories and properties.
+     */
+    public ProofOfPlayPartitionManager(
+            JdbcTemplate jdbcTemplate,
+            ProofOfPlayRepository proofOfPlayRepository,
+            ProofOfPlayProperties properties
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.proofOfPlayRepository = proofOfPlayRepository;
+        this.properties = properties;
+    }
+
+    /**
+     * Prepares the partitions as soon as the schema exists, so today's plays have a partition.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        maintain();
+    }
+
+    /**
+     * Creates upcoming partitions and drops expired plays.
+     * Failures are logged and retried on the next run; on MySQL plays keep landing in {@code pmax} meanwhile.
+     */
+    @Scheduled(cron = "${imageservice.proof-of-play.maintenance-cron:0 5 0 * * *}")
+    public synchronized void maintain() {
+        try {
+            maintain(LocalDate.now());
+        } catch (RuntimeException e) {
+            log.error("Proof-of-play partition maintenance failed", e);
+        }
+    }
+
+    void maintain(LocalDate today) {
+        LocalDate cutoff = cutoff(today);
+        for (String sql : dropStatements(constraints(), isMySql())) {
+            log.info("Dropping legacy proof-of-play constraint: {}", sql);
+            jdbcTemplate.execute(sql);
+        }
+        if (!isMySql()) {
+            deleteExpired(cutoff);
+            return;
+        }
+
+        List<Partition> partitions = partitions();
+        if (partitions.isEmpty()) {
+            if (!properties.isConvertToPartitioned() && !isEmpty()) {
+                log.warn("Table {} is not partitioned; set imageservice.proof-of-play.convert-to-partitioned=true "
+                        + "during a maintenance window to convert it", TABLE);
+                deleteExpired(cutoff);
+                return;
+            }
+            for (String sql : conversionStatements(today)) {
+                log.info("Converting proof-of-play table to daily partitions: {}", sql);
+                jdbcTemplate.execute(sql);
+            }
+            partitions = partitions();
+        }
+        for (String sql : plan(partitions, today, cutoff)) {
+            log.info("Proof-of-play partition maintenance: {}", sql);
+            jdbcTemplate.execute(sql);
+        }
+    }
+
+    /**
+     * Computes the statements adding the missing partitions up to {@code partitionsAhead} days after
+     * {@code today} and dropping the partitions holding only plays before {@code cutoff}.
+     */
+    List<String> plan(List<Partition> partitions, LocalDate today, LocalDate cutoff) {
+        List<String> statements = new ArrayList<>();
+
+        LocalDate last = partitions.stream()
+                .map(Partition::lessThan)
+                .filter(Objects::nonNull)
+                .max(LocalDate::compareTo)
+                .orElse(today);
+        LocalDate end = today.plusDays(properties.getPartitionsAhead() + 1L);
+        List<String> added = new ArrayList<>();
+        for (LocalDate bound = last.plusDays(1); !bound.isAfter(end); bound = bound.plusDays(1)) {
+            added.add(dayPartition(bound));
+        }
+        if (!added.isEmpty()) {
+            boolean hasCatchAll = partitions.stream().anyMatch(p -> p.lessThan() == null);
+            if (hasCatchAll) {
+                added.add(catchAllPartition());
+                statements.add("ALTER TABLE " + TABLE + " REORGANIZE PARTITION " + CATCH_ALL
+                        + " INTO (" + String.join(", ", added) + ")");
+            } else {
+                statements.add("ALTER TABLE " + TABLE + " ADD PARTITION (" + String.join(", ", added) + ")");
+            }
+        }
+
+        String expired = partitions.stream()
+                .filter(p -> p.lessThan() != null && !p.lessThan().isAfter(cutoff))
+                .map(Partition::name)
+                .collect(Collectors.joining(", "));
+        if (!expired.isEmpty()) {
+            statements.add("ALTER TABLE " + TABLE + " DROP PARTITION " + expired);
+        }
+        return statements;
+    }
+
+    /**
+     * Computes the statement partitioning an unpartitioned table: one partition for all the plays before
+     * {@code today}, one per day up to {@code partitionsAhead} days ahead, and the catch-all.
+     */
+    String partitionStatement(LocalDate today) {
+        List<String> partitions = new ArrayList<>();
+        partitions.add("PARTITION p_history VALUES LESS THAN ('" + today + "')");
+        for (LocalDate bound = today.plusDays(1);
+             !bound.isAfter(today.plusDays(properties.getPartitionsAhead() + 1L));
+             bound = bound.plusDays(1)) {
+            partitions.add(dayPartition(bound));
+        }
+        partitions.add(catchAllPartition());
+        return "ALTER TABLE " + TABLE + " PARTITION BY RANGE COLUMNS (played_at) ("
+                + String.join(", ", partitions) + ")";
+    }
+
+    /**
+     * Computes the statements dropping the legacy foreign keys and unique keys. Foreign keys are dropped before
+     * the unique keys, since MySQL refuses to drop an index a foreign key relies on.
+     */
+    static List<String> dropStatements(List<Constraint> constraints, boolean mySql) {
+        List<String> statements = new ArrayList<>();
+        constraints.stream()
+                .filter(Constraint::isForeignKey)
+                .forEach(c -> statements.add(mySql
+                        ? "ALTER TABLE " + TABLE + " DROP FOREIGN KEY `" + c.name() + "`"
+                        : "ALTER TABLE " + TABLE + " DROP CONSTRAINT \"" + c.name() + "\""));
+        constraints.stream()
+                .filter(c -> !c.isForeignKey())
+                .forEach(c -> statements.add(mySql
+                        ? "ALTER TABLE " + TABLE + " DROP INDEX `" + c.name() + "`"
+                        : "ALTER TABLE " + TABLE + " DROP CONSTRAINT \"" + c.name() + "\""));
+        return statements;
+    }
+
+    /**
+     * Computes the statements converting an unpartitioned table whose legacy constraints are gone.
+     */
+    List<String> conversionStatements(LocalDate today) {
+        return List.of(
+                "ALTER TABLE " + TABLE + " DROP PRIMARY KEY, ADD PRIMARY KEY (id, played_at)",
+                partitionStatement(today));
+    }
+
+    /**
+     * Parses a {@code PARTITION_DESCRIPTION} such as {@code '2025-03-02 00:00:00'} or {@code MAXVALUE}.
+     */
+    static LocalDate parseBound(String description) {
+        String value = description.replace("'", "").trim();
+        if (value.toUpperCase(Locale.ROOT).equals("MAXVALUE")) {
+            return null;
+        }
+        return LocalDate.parse(value.substring(0, 10));
+    }
+
+    private LocalDate cutoff(LocalDate today) {
+        return today.minusDays(Math.max(1, properties.getRetention().toDays()));
+    }
+
+    private void deleteExpired(LocalDate cutoff) {
+        int deleted = proofOfPlayRepository.deletePlayedBefore(cutoff.atStartOfDay());
+        log.info("Deleted {} plays before {}", deleted, cutoff);
+    }
+
+    private List<Constraint> constraints() {
+        String schema = isMySql() ? "DATABASE()" : "CURRENT_SCHEMA";
+        return jdbcTemplate.query(
+                "SELECT CONSTRAINT_NAME, CONSTRAINT_TYPE FROM information_schema.TABLE_CONSTRAINTS "
+                        + "WHERE TABLE_SCHEMA = " + schema + " AND UPPER(TABLE_NAME) = UPPER(?) "
+                        + "AND CONSTRAINT_TYPE IN ('FOREIGN KEY', 'UNIQUE') ORDER BY CONSTRAINT_TYPE, CONSTRAINT_NAME",
+                (rs, row) -> new Constraint(rs.getString(1), rs.getString(2)),
+                TABLE);
+    }
+
+    private boolean isEmpty() {
+        return jdbcTemplate.query("SELECT 1 FROM " + TABLE + " LIMIT 1", (rs, row) -> 1).isEmpty();
+    }
+
+    private List<Partition> partitions() {
+        return jdbcTemplate.query("SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS "
+                        + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL "
+                        + "ORDER BY PARTITION_ORDINAL_POSITION",
+                (rs, row) -> new Partition(rs.getString(1), parseBound(rs.getString(2))),
+                TABLE);
+    }
+
+    private boolean isMySql() {
+        if (mySql == null) {
+            String product = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            mySql = product != null && (product.contains("MySQL") || product.contains("MariaDB"));
+        }
+        return mySql;
+    }
+
+    private static String dayPartition(LocalDate lessThan) {
+        return "PARTITION " + lessThan.minusDays(1).format(PARTITION_NAME) + " VALUES LESS THAN ('" + lessThan + "')";
+    }
+
+    private static String catchAllPartition() {
+        return "PARTITION " + CATCH_ALL + " VALUES LESS THAN (MAXVALUE)";
+    }
+
+    /**
+     * A partition of the proof-of-play table.
+     *
+     * @param name the partition name
+     * @param lessThan the exclusive upper bound, or {@code null} for the catch-all partition
+     */
+    record Partition(String name, LocalDate lessThan) {
+    }
+
+    /**
+     * A foreign key or unique constraint of the proof-of-play table.
+     *
+     * @param name the constraint name
+     * @param type the {@code CONSTRAINT_TYPE}, {@code FOREIGN KEY} or {@code UNIQUE}
+     */
+    record Constraint(String name, String type) {
+        boolean isForeignKey() {
+            return "FOREIGN KEY".equals(type);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.michaelavoyan.imageservice.config.ReplicaDataSourceConfig;
+import com.michaelavoyan.imageservice.config.ReplicaProperties;
+import com.michaelavoyan.imageservice.entities.ReplicaHeartbeat;
+import com.michaelavoyan.imageservice.utils.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Keeps track of the replication lag of the read replicas.
+ * <p>
+ * Every {@code checkInterval}, the current time is written to the {@link ReplicaHeartbeat} row of the primary,
+ * and the heartbeat replicated to each replica is read back: the lag of a replica is how old its heartbeat is.
+ * A replica whose heartbeat cannot be read, for instance because it is down, or is older than {@code maxLag}
+ * is not used for reads until a later check finds it caught up.
+ * <p>
+ * Registered by {@link ReplicaDataSourceConfig} when replicas are enabled, it owns the connection pools and
+ * closes them on shutdown.
+ */
+public class ReplicaMonitor implements MeterBinder, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaMonitor.class);
+
+    private static final int HEARTBEAT_ID = 1;
+
+    private final ReplicaRoutingDataSource router;
+    private final JdbcTemplate primary;
+    private final ReplicaProperties properties;
+    private final Clock clock;
+
+    /**
+     * Constructor to initialize the data sources, properties and clock.
+     */
+    public ReplicaMonitor(ReplicaRoutingDataSource router, ReplicaProperties properties, Clock clock) {
+        this.router = router;
+        this.primary = new JdbcTemplate(router.getPrimary());
+        this.properties = properties;
+        this.clock = clock;
+    }
+
+    /**
+     * @return the data source routing read-only connections to the replicas
+     */
+    public ReplicaRoutingDataSource getRouter() {
+        return router;
+    }
+
+    /**
+     * Writes the heartbeat to the primary, then measures the lag of every replica.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${imageservice.replicas.check-interval:1s}")
+    public void check() {
+        beat();
+        for (ReplicaRoutingDataSource.Replica replica : router.getReplicas()) {
+            boolean wasAvailable = replica.isAvailable();
+            try {
+                JdbcTemplate jdbc = new JdbcTemplate(replica.dataSource());
+                jdbc.setQueryTimeout((int) Math.max(1, properties.getConnectionTimeout().toSeconds()));
+                Long beatAt = jdbc.queryForObject(
+                        "SELECT beat_at FROM replica_heartbeat WHERE id = ?", Long.class, HEARTBEAT_ID);
+                replica.update(Duration.ofMillis(Math.max(0, clock.millis() - beatAt)), properties.getMaxLag());
+                if (wasAvailable && !replica.isAvailable()) {
+                    log.warn("Replica {} lags by {}, reading from the primary", replica.name(), replica.lag());
+                }
+            } catch (DataAccessException e) {
+                replica.markUnavailable();
+                if (wasAvailable) {
+                    log.warn("Replica {} cannot be checked, reading from the primary", replica.name(), e);
+                }
+            }
+            if (!wasAvailable && replica.isAvailable()) {
+                log.info("Replica {} is available, lagging by {}", replica.name(), replica.lag());
+            }
+        }
+    }
+
+    /**
+     * Writes the current time to the heartbeat row, creating it on the first beat.
+     */
+    private void beat() {
+        long now = clock.millis();
+        try {
+            if (primary.update("UPDATE replica_heartbeat SET beat_at = ? WHERE id = ?", now, HEARTBEAT_ID) == 0) {
+                primary.update("INSERT INTO replica_heartbeat (id, beat_at) VALUES (?, ?)", HEARTBEAT_ID, now);
+            }
+        } catch (DuplicateKeyException e) {
+            // Another instance created the row first; its heartbeat serves as well
+        } catch (DataAccessException e) {
+            log.warn("Could not write the replication heartbeat", e);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (ReplicaRoutingDataSource.Replica replica : router.getReplicas()) {
+            Gauge.builder("datasource.replica.available", replica, r -> r.isAvailable() ? 1 : 0)
+                    .description("Whether the replica serves reads")
+                    .tag("replica", replica.name())
+                    .register(registry);
+            Gauge.builder("datasource.replica.lag", replica, r -> r.lag() == null ? Double.NaN : r.lag().toMillis())
+                    .description("Replication lag measured by the last successful check")
+                    .baseUnit("milliseconds")
+                    .tag("replica", replica.name())
+                    .register(registry);
+            if (replica.dataSource() instanceof HikariDataSource pool
+                    && pool.getMetricRegistry() == null && pool.getMetricsTrackerFactory() == null) {
+                pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+            }
+        }
+        FunctionCounter.builder("datasource.reads", router, ReplicaRoutingDataSource::getReplicaConnections)
+                .description("Read-only connections handed out")
+                .tag("target", "replica")
+                .register(registry);
+        FunctionCounter.builder("datasource.reads", router, ReplicaRoutingDataSource::getPrimaryConnections)
+                .description("Read-only connections handed out")
+                .tag("target", "primary")
+                .register(registry);
+    }
+
+    /**
+     * Closes the connection pools of the primary and the replicas.
+     */
+    @Override
+    public void close() {
+        router.close();
+    }
+}
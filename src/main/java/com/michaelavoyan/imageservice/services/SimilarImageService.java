@@ -0,0 +1,287 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.michaelavoyan.imageservice.config.DuplicateProperties;
+import com.michaelavoyan.imageservice.dto.ImageHashEntry;
+import com.michaelavoyan.imageservice.dto.ImageSummary;
+import com.michaelavoyan.imageservice.dto.SimilarImage;
+import com.michaelavoyan.imageservice.events.ImageAddedEvent;
+import com.michaelavoyan.imageservice.events.ImageDeletedEvent;
+import com.michaelavoyan.imageservice.events.SlideshowDeletedEvent;
+import com.michaelavoyan.imageservice.repositories.ImageRepository;
+import com.michaelavoyan.imageservice.utils.BkTree;
+import com.michaelavoyan.imageservice.utils.PerceptualHash;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Service finding near-duplicate images by perceptual hash, from an in-memory {@link BkTree}.
+ * <p>
+ * The tree is built in the background at startup and kept current like the search index: by the image and
+ * slideshow events of this instance, by a periodic catch-up loading images added by other instances, and by
+ * a periodic full rebuild which also forgets images deleted elsewhere and compacts the tree. Until the tree is
+ * ready no near-duplicates are reported. Matches returned to clients are read back from the database by ID,
+ * so a stale tree entry can never return a deleted image.
+ */
+@Service
+public class SimilarImageService implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(SimilarImageService.class);
+
+    private final ImageRepository imageRepository;
+    private final DuplicateProperties properties;
+
+    private volatile BkTree index;
+    private volatile long highestId;
+
+    /**
+     * The tree being rebuilt, which also receives the changes made during the rebuild.
+     */
+    private BkTree rebuilding;
+    private Set<Long> deletedDuringRebuild;
+
+    /**
+     * Constructor to initialize repositories and properties.
+     */
+    public SimilarImageService(ImageRepository imageRepository, DuplicateProperties properties) {
+        this.imageRepository = imageRepository;
+        this.properties = properties;
+    }
+
+    /**
+     * Finds the existing near-duplicates of an image about to be added, within the configured distance.
+     *
+     * @param perceptualHash the perceptual hash of the new image, or {@code null}
+     * @return the IDs of the near-duplicates, closest first; empty if the image has no hash
+     */
+    public List<Long> findDuplicates(Long perceptualHash) {
+        BkTree current = index;
+        if (perceptualHash == null || current == null) {
+            return List.of();
+        }
+        return current.search(perceptualHash, properties.getMaxDistance()).stream()
+                .map(BkTree.Match::id)
+                .toList();
+    }
+
+    /**
+     * @return whether near-duplicates are refused rather than flagged
+     */
+    public boolean rejectsDuplicates() {
+        return properties.getAction() == DuplicateProperties.Action.REJECT;
+    }
+
+    /**
+     * Finds the images similar to an existing image, excluding the image itself.
+     *
+     * @param imageId the ID of the image
+     * @param maxDistance the largest distance accepted, or {@code null} for the configured one
+     * @return the similar images, closest first; empty if the image has no hash
+     * @throws EntityNotFoundException if the image does not exist
+     * @throws IllegalArgumentException if the distance is out of range
+     */
+    public List<SimilarImage> similarTo(Long imageId, Integer maxDistance) {
+        int distance = checkDistance(maxDistance);
+        Long hash = imageRepository.findPerceptualHashById(imageId);
+        if (hash == null) {
+            if (!imageRepository.existsById(imageId)) {
+                throw new EntityNotFoundException("Image not found with ID: " + imageId);
+            }
+            return List.of();
+        }
+        return similar(hash, distance, imageId);
+    }
+
+    /**
+     * Finds the images similar to a perceptual hash, typically one computed by a client before uploading.
+     *
+     * @param hash the hash, as 16 hexadecimal digits
+     * @param maxDistance the largest distance accepted, or {@code null} for the configured one
+     * @return the similar images, closest first
+     * @throws IllegalArgumentException if the hash or the distance is invalid
+     */
+    public List<SimilarImage> similarTo(String hash, Integer maxDistance) {
+        return similar(PerceptualHash.fromHex(hash), checkDistance(maxDistance), null);
+    }
+
+    private List<SimilarImage> similar(long hash, int maxDistance, Long excludedId) {
+        BkTree current = index;
+        if (current == null) {
+            return List.of();
+        }
+        List<BkTree.Match> matches = current.search(hash, maxDistance).stream()
+                .filter(match -> excludedId == null || match.id() != excludedId)
+                .toList();
+        List<SimilarImage> similar = new ArrayList<>(matches.size());
+        for (int from = 0; from < matches.size(); from += ImageSearchService.SUMMARY_BATCH_SIZE) {
+            List<BkTree.Match> batch =
+                    matches.subList(from, Math.min(matches.size(), from + ImageSearchService.SUMMARY_BATCH_SIZE));
+            Map<Long, ImageSummary> summaries = imageRepository
+                    .findSummariesByIdIn(batch.stream().map(BkTree.Match::id).toList()).stream()
+                    .collect(Collectors.toMap(ImageSummary::id, Function.identity()));
+            for (BkTree.Match match : batch) {
+                ImageSummary summary = summaries.get(match.id());
+                if (summary != null) {
+                    similar.add(new SimilarImage(summary.id(), summary.url(), match.distance()));
+                }
+            }
+        }
+        return similar;
+    }
+
+    private int checkDistance(Integer maxDistance) {
+        int distance = maxDistance != null ? maxDistance : properties.getMaxDistance();
+        if (distance < 0 || distance > properties.getMaxQueryDistance()) {
+            throw new IllegalArgumentException(
+                    "maxDistance must be between 0 and " + properties.getMaxQueryDistance() + ", got " + distance);
+        }
+        return distance;
+    }
+
+    /**
+     * Rebuilds the tree from the database; the first run happens at startup.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${imageservice.duplicates.rebuild-interval:1h}")
+    public void rebuild() {
+        BkTree fresh = new BkTree();
+        synchronized (this) {
+            rebuilding = fresh;
+            deletedDuringRebuild = new HashSet<>();
+        }
+        try {
+            long last = load(fresh, 0);
+            synchronized (this) {
+                deletedDuringRebuild.forEach(fresh::remove);
+                highestId = Math.max(highestId, last);
+                index = fresh;
+            }
+            log.info("Near-duplicate index built with {} images", fresh.size());
+        } catch (RuntimeException e) {
+            log.error("Near-duplicate index rebuild failed", e);
+        } finally {
+            synchronized (this) {
+                rebuilding = null;
+                deletedDuringRebuild = null;
+            }
+        }
+    }
+
+    /**
+     * Indexes the images added since the last load, including those added by other instances. As for the
+     * search index, the last {@code catchUpWindow} IDs are read again.
+     */
+    @Scheduled(fixedDelayString = "${imageservice.duplicates.catch-up-interval:5s}")
+    public void catchUp() {
+        BkTree current = index;
+        if (current == null) {
+            return;
+        }
+        try {
+            long last = load(current, Math.max(0, highestId - properties.getCatchUpWindow()));
+            synchronized (this) {
+                highestId = Math.max(highestId, last);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Near-duplicate index catch-up failed", e);
+        }
+    }
+
+    /**
+     * Indexes an added image once its transaction has committed.
+     */
+    @EventListener
+    public void onImageAdded(ImageAddedEvent event) {
+        if (event.perceptualHash() != null) {
+            apply(target -> target.put(event.imageId(), event.perceptualHash()), event.imageId(), false);
+        }
+    }
+
+    /**
+     * Removes a deleted image from the tree.
+     */
+    @EventListener
+    public void onImageDeleted(ImageDeletedEvent event) {
+        apply(target -> target.remove(event.imageId()), event.imageId(), true);
+    }
+
+    /**
+     * Removes the images of a deleted slideshow from the tree.
+     */
+    @EventListener
+    public void onSlideshowDeleted(SlideshowDeletedEvent event) {
+        for (Long imageId : event.imageIds()) {
+            apply(target -> target.remove(imageId), imageId, true);
+        }
+    }
+
+    private synchronized void apply(Consumer<BkTree> change, long imageId, boolean delete) {
+        if (index != null) {
+            change.accept(index);
+        }
+        if (rebuilding != null) {
+            change.accept(rebuilding);
+            if (delete) {
+                deletedDuringRebuild.add(imageId);
+            } else {
+                deletedDuringRebuild.remove(imageId);
+            }
+        }
+        if (!delete) {
+            highestId = Math.max(highestId, imageId);
+        }
+    }
+
+    /**
+     * Loads the hashed images with an ID above {@code afterId} into the tree, one keyset page at a time,
+     * skipping those already indexed.
+     *
+     * @return the highest ID loaded, or {@code afterId} if there was none
+     */
+    private long load(BkTree target, long afterId) {
+        long last = afterId;
+        while (true) {
+            List<ImageHashEntry> page =
+                    imageRepository.findHashEntries(last, Limit.of(properties.getLoadBatchSize()));
+            for (ImageHashEntry entry : page) {
+                if (target.hashOf(entry.id()) == null) {
+                    target.put(entry.id(), entry.perceptualHash());
+                }
+                last = entry.id();
+            }
+            if (page.size() < properties.getLoadBatchSize()) {
+                return last;
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("duplicates.index.size", this, service -> service.index == null ? 0 : service.index.size())
+                .description("Images in the in-memory near-duplicate index")
+                .register(registry);
+        Gauge.builder("duplicates.index.nodes", this,
+                        service -> service.index == null ? 0 : service.index.nodeCount())
+                .description("Nodes in the near-duplicate index, including those emptied by deletions")
+                .register(registry);
+    }
+}
@@ -0,0 +1,365 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.michaelavoyan.imageservice.config.SlideshowOrderCacheProperties;
+import com.michaelavoyan.imageservice.dto.OrderedImage;
+import com.michaelavoyan.imageservice.events.ImageAddedEvent;
+import com.michaelavoyan.imageservice.events.ImageDeletedEvent;
+import com.michaelavoyan.imageservice.events.SlideshowAddedEvent;
+import com.michaelavoyan.imageservice.events.SlideshowDeletedEvent;
+import com.michaelavoyan.imageservice.events.SlideshowReorderedEvent;
+import com.michaelavoyan.imageservice.repositories.ImageRepository;
+import com.michaelavoyan.imageservice.repositories.SlideshowRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded read-through LRU cache of slideshow orders, holding the JSON response as ready-to-write bytes.
+ * <p>
+ * A hit is served without touching the database or Jackson. Concurrent misses for the same slideshow share
+ * one load. Entries are invalidated by the image and slideshow events delivered from the outbox, and expire
+ * after a TTL as a safety net for changes made by other instances. Unknown slideshows are cached too, so polling
+ * a deleted slideshow does not reach the database either.
+ * <p>
+ * Each order carries the slideshow version read before its images, so its ETag never claims a newer order
+ * than the one it holds. Callers that know the current version can require an order at least that recent.
+ * Hit, miss, eviction and load metrics are published through Micrometer as {@code cache.*} meters
+ * tagged {@code cache=slideshowOrder}.
+ */
+@Service
+public class SlideshowOrderCache implements MeterBinder {
+
+    private static final String CACHE_NAME = "slideshowOrder";
+
+    private static final byte[] EMPTY_LIST = {'[', ']'};
+
+    private static final long NOT_FOUND_VERSION = -1;
+
+    private final ImageRepository imageRepository;
+    private final SlideshowRepository slideshowRepository;
+    private final ObjectMapper objectMapper;
+    private final SlideshowOrderCacheProperties properties;
+
+    private final Map<Long, Entry> entries;
+    private final ConcurrentMap<Long, CompletableFuture<SlideshowOrder>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented by every invalidation; a load that overlapped one is not cached, as it may be stale.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+
+    /**
+     * Constructor to initialize repositories, the JSON mapper and properties.
+     */
+    public SlideshowOrderCache(
+            ImageRepository imageRepository,
+            SlideshowRepository slideshowRepository,
+            ObjectMapper objectMapper,
+            SlideshowOrderCacheProperties properties
+    ) {
+        this.imageRepository = imageRepository;
+        this.slideshowRepository = slideshowRepository;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                boolean evict = size() > SlideshowOrderCache.this.properties.getMaxEntries();
+                if (evict) {
+                    evictions.increment();
+                }
+                return evict;
+            }
+        };
+    }
+
+    /**
+     * Returns the order of a slideshow, loading and caching it on a miss.
+     *
+     * @param slideshowId the ID of the slideshow
+     * @return the serialized order, or a not-found marker
+     */
+    public SlideshowOrder get(Long slideshowId) {
+        return get(slideshowId, Long.MIN_VALUE);
+    }
+
+    /**
+     * Returns the order of a slideshow, reloading it if the cached order is older than {@code minVersion}.
+     *
+     * @param slideshowId the ID of the slideshow
+     * @param minVersion the version the order must have at least, typically the current one
+     * @return the serialized order, or a not-found marker
+     */
+    public SlideshowOrder get(Long slideshowId, long minVersion) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(slideshowId);
+        }
+        if (entry != null && entry.isFresh() && entry.order().version() >= minVersion) {
+            hits.increment();
+            return entry.order();
+        }
+
+        CompletableFuture<SlideshowOrder> pending = new CompletableFuture<>();
+        CompletableFuture<SlideshowOrder> existing = inFlight.putIfAbsent(slideshowId, pending);
+        if (existing != null) {
+            coalesced.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        misses.increment();
+
+        long generation = invalidations.get();
+        try {
+            SlideshowOrder order = load(slideshowId);
+            put(slideshowId, order, generation);
+            pending.complete(order);
+            return order;
+        } catch (RuntimeException e) {
+            pending.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(slideshowId, pending);
+        }
+    }
+
+    /**
+     * Reads the current version of a slideshow from the database, without loading its images.
+     *
+     * @param slideshowId the ID of the slideshow
+     * @return the version, or {@code null} if the slideshow does not exist
+     */
+    @Transactional(readOnly = true)
+    public Long version(Long slideshowId) {
+        return slideshowRepository.findVersionById(slideshowId).orElse(null);
+    }
+
+    /**
+     * @return how long clients may use an order before revalidating it
+     */
+    public Duration clientMaxAge() {
+        return properties.getClientMaxAge();
+    }
+
+    /**
+     * Drops the cached order of a slideshow.
+     *
+     * @param slideshowId the ID of the slideshow
+     */
+    public void invalidate(Long slideshowId) {
+        if (slideshowId == null) {
+            return;
+        }
+        invalidations.incrementAndGet();
+        inFlight.remove(slideshowId);
+        synchronized (entries) {
+            entries.remove(slideshowId);
+        }
+    }
+
+    /**
+     * Returns the number of cached orders, fresh or expired.
+     *
+     * @return the cache size
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Invalidates the slideshow of an added image.
+     */
+    @EventListener
+    public void onImageAdded(ImageAddedEvent event) {
+        invalidate(event.slideshowId());
+    }
+
+    /**
+     * Invalidates the slideshow of a deleted image.
+     */
+    @EventListener
+    public void onImageDeleted(ImageDeletedEvent event) {
+        invalidate(event.slideshowId());
+    }
+
+    /**
+     * Invalidates a cached not-found entry for a new slideshow.
+     */
+    @EventListener
+    public void onSlideshowAdded(SlideshowAddedEvent event) {
+        invalidate(event.slideshowId());
+    }
+
+    /**
+     * Invalidates a deleted slideshow.
+     */
+    @EventListener
+    public void onSlideshowDeleted(SlideshowDeletedEvent event) {
+        invalidate(event.slideshowId());
+    }
+
+    /**
+     * Invalidates a reordered slideshow.
+     */
+    @EventListener
+    public void onSlideshowReordered(SlideshowReorderedEvent event) {
+        invalidate(event.slideshowId());
+    }
+
+    private SlideshowOrder load(Long slideshowId) {
+        long start = System.nanoTime();
+        try {
+            Optional<Long> version = slideshowRepository.findVersionById(slideshowId);
+            if (version.isEmpty()) {
+                return new SlideshowOrder(false, NOT_FOUND_VERSION, EMPTY_LIST);
+            }
+            List<OrderedImage> images = imageRepository.findOrderBySlideshowId(slideshowId);
+            return new SlideshowOrder(true, version.get(), objectMapper.writeValueAsBytes(images));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize the order of slideshow " + slideshowId, e);
+        } finally {
+            loads.increment();
+            loadNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private void put(Long slideshowId, SlideshowOrder order, long generation) {
+        if (properties.getMaxEntries() <= 0) {
+            return;
+        }
+        Entry entry = new Entry(order, System.nanoTime() + properties.getTtl().toNanos());
+        synchronized (entries) {
+            if (invalidations.get() != generation) {
+                return;
+            }
+            entries.put(slideshowId, entry);
+        }
+        puts.increment();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new CacheMeterBinder<>(this, CACHE_NAME, Tags.empty()) {
+            @Override
+            protected Long size() {
+                return (long) SlideshowOrderCache.this.size();
+            }
+
+            @Override
+            protected long hitCount() {
+                return hits.sum();
+            }
+
+            @Override
+            protected Long missCount() {
+                return misses.sum();
+            }
+
+            @Override
+            protected Long evictionCount() {
+                return evictions.sum();
+            }
+
+            @Override
+            protected long putCount() {
+                return puts.sum();
+            }
+
+            @Override
+            protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+                FunctionTimer.builder("cache.load", SlideshowOrderCache.this,
+                                cache -> cache.loads.sum(), cache -> cache.loadNanos.sum(), TimeUnit.NANOSECONDS)
+                        .tag("cache", CACHE_NAME)
+                        .description("Time spent loading and serializing slideshow orders on a miss")
+                        .register(registry);
+                FunctionCounter.builder("cache.coalesced", coalesced, LongAdder::sum)
+                        .tag("cache", CACHE_NAME)
+                        .description("Requests that joined an in-flight load of the same slideshow")
+                        .register(registry);
+            }
+        }.bindTo(registry);
+    }
+
+    long hitCount() {
+        return hits.sum();
+    }
+
+    long missCount() {
+        return misses.sum();
+    }
+
+    long evictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * The cached response for a slideshow.
+     *
+     * @param found whether the slideshow exists
+     * @param version the slideshow version the order was loaded at, or {@code -1} if the slideshow does not exist
+     * @param json the serialized list of {@link OrderedImage}, or {@code []} if the slideshow does not exist
+     */
+    public record SlideshowOrder(boolean found, long version, byte[] json) {
+        /**
+         * @return the strong ETag of this order
+         */
+        public String eTag() {
+            return eTag(version);
+        }
+
+        /**
+         * @param version a slideshow version
+         * @return the strong ETag of the order at that version
+         */
+        public static String eTag(long version) {
+            return "\"" + version + "\"";
+        }
+    }
+
+    /**
+     * A cached order and the {@link System#nanoTime()} at which it expires.
+     */
+    private record Entry(SlideshowOrder order, long expiresAt) {
+        boolean isFresh() {
+            return System.nanoTime() - expiresAt < 0;
+        }
+    }
+}
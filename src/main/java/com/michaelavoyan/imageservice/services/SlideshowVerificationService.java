@@ -0,0 +1,208 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.michaelavoyan.imageservice.config.SlideshowProperties;
+import com.michaelavoyan.imageservice.dto.ImportResult;
+import com.michaelavoyan.imageservice.entities.Image;
+import com.michaelavoyan.imageservice.utils.ImageVerifier;
+import com.michaelavoyan.imageservice.utils.VerificationResult;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Service verifying the image URLs of a new slideshow before it is saved.
+ * <p>
+ * Up to {@code verificationParallelism} URLs of a slideshow are verified at the same time, each completion
+ * starting the next one, so no thread waits for the origins. Verification stops at the
+ * {@code verificationTimeout} deadline: images whose verification has not completed by then are reported
+ * as failed, while their requests still complete and fill the verification cache.
+ * <p>
+ * Valid images get their perceptual hash; when near-duplicates are rejected, images close to an indexed
+ * image are reported as failed as well.
+ */
+@Service
+public class SlideshowVerificationService {
+
+    private final ImageVerifier imageVerifier;
+    private final SimilarImageService similarImageService;
+    private final SlideshowProperties properties;
+
+    /**
+     * Constructor to initialize the verifier, services and properties.
+     */
+    public SlideshowVerificationService(
+            ImageVerifier imageVerifier,
+            SimilarImageService similarImageService,
+            SlideshowProperties properties
+    ) {
+        this.imageVerifier = imageVerifier;
+        this.similarImageService = similarImageService;
+        this.properties = properties;
+    }
+
+    /**
+     * Verifies the URLs of the images of a slideshow.
+     *
+     * @param images the images, in request order
+     * @return a future completing with the images that failed verification, in request order; empty if all
+     *         images are valid. It fails with a {@link RejectedExecutionException} if the verifier is saturated.
+     */
+    public CompletableFuture<List<ImportResult>> verify(List<Image> images) {
+        return new VerificationRun(images).start();
+    }
+
+    /**
+     * The verification of the images of one slideshow.
+     * Results are recorded under the run's lock; {@link #pump} starts verifications from one thread at a time.
+     */
+    private class VerificationRun {
+
+        private final List<Image> images;
+        private final String[] errors;
+        private final boolean[] completed;
+        private final CompletableFuture<List<ImportResult>> done = new CompletableFuture<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger pumpRequests = new AtomicInteger();
+        private int next;
+        private int remaining;
+
+        VerificationRun(List<Image> images) {
+            this.images = images;
+            this.errors = new String[images.size()];
+            this.completed = new boolean[images.size()];
+            this.remaining = images.size();
+        }
+
+        CompletableFuture<List<ImportResult>> start() {
+            CompletableFuture<List<ImportResult>> result = done
+                    .orTimeout(properties.getVerificationTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                    .exceptionally(e -> {
+                        if (e instanceof TimeoutException) {
+                            return expire();
+                        }
+                        throw e instanceof CompletionException completion ? completion : new CompletionException(e);
+                    });
+            if (images.isEmpty()) {
+                done.complete(List.of());
+            }
+            pump();
+            return result;
+        }
+
+        /**
+         * Starts verifications until {@code verificationParallelism} are in flight. Verifications completing
+         * synchronously, such as cache hits, ask for another pass instead of recursing.
+         */
+        private void pump() {
+            if (pumpRequests.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (!done.isDone() && next < images.size()
+                        && inFlight.get() < properties.getVerificationParallelism()) {
+                    launch(next++);
+                }
+            } while (pumpRequests.decrementAndGet() != 0);
+        }
+
+        private void launch(int index) {
+            Image image = images.get(index);
+            CompletableFuture<VerificationResult> verification;
+            try {
+                verification = imageVerifier.verifyImageUrl(image.getUrl());
+            } catch (IllegalArgumentException e) {
+                complete(index, null, e);
+                return;
+            } catch (RejectedExecutionException e) {
+                done.completeExceptionally(e);
+                return;
+            }
+            inFlight.incrementAndGet();
+            verification.whenComplete((result, error) -> {
+                inFlight.decrementAndGet();
+                complete(index, result, error);
+                pump();
+            });
+        }
+
+        private synchronized void complete(int index, VerificationResult result, Throwable error) {
+            if (done.isDone()) {
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause()
+                    : error;
+            if (cause instanceof RejectedExecutionException) {
+                done.completeExceptionally(cause);
+                return;
+            }
+            errors[index] = check(images.get(index), result, cause);
+            completed[index] = true;
+            if (--remaining == 0) {
+                done.complete(failures());
+            }
+        }
+
+        /**
+         * Reports the images not verified by the deadline as failed.
+         */
+        private synchronized List<ImportResult> expire() {
+            String error = "Verification did not complete within "
+                    + properties.getVerificationTimeout().toMillis() + " ms";
+            for (int i = 0; i < images.size(); i++) {
+                if (!completed[i]) {
+                    errors[i] = error;
+                }
+            }
+            return failures();
+        }
+
+        private List<ImportResult> failures() {
+            List<ImportResult> failures = new ArrayList<>();
+            for (int i = 0; i < images.size(); i++) {
+                if (errors[i] != null) {
+                    failures.add(ImportResult.rejected(i, images.get(i).getUrl(), errors[i]));
+                }
+            }
+            return failures;
+        }
+    }
+
+    /**
+     * Checks the verification result of an image, setting its perceptual hash if it is valid.
+     *
+     * @return the reason the image is refused, or {@code null} if it is accepted
+     */
+    private String check(Image image, VerificationResult result, Throwable error) {
+        if (error instanceof IllegalArgumentException) {
+            return "Invalid image URL: " + error.getMessage();
+        }
+        if (error != null) {
+            return "Verification failed: " + error.getMessage();
+        }
+        if (!result.valid()) {
+            return "Invalid image URL. The URL does not contain a valid image.";
+        }
+        image.setPerceptualHash(result.perceptualHash());
+        if (similarImageService.rejectsDuplicates()) {
+            List<Long> duplicates = similarImageService.findDuplicates(result.perceptualHash());
+            if (!duplicates.isEmpty()) {
+                return "Near-duplicate of image(s) "
+                        + duplicates.stream().map(String::valueOf).collect(Collectors.joining(","));
+            }
+        }
+        return null;
+    }
+}
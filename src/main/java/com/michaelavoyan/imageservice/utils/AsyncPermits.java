@@ -0,0 +1,94 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.utils;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A counting semaphore whose acquisitions complete a future instead of blocking the calling thread.
+ * <p>
+ * Waiters are served in arrival order: a released permit completes the future of the oldest waiter,
+ * on the releasing thread, so whatever was chained to it runs there. A waiter that is not served within
+ * its timeout fails with a {@link TimeoutException} and leaves the queue.
+ */
+public class AsyncPermits {
+
+    private final Deque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    private int available;
+
+    /**
+     * Constructor to initialize the number of permits.
+     *
+     * @param permits the number of permits initially available
+     */
+    public AsyncPermits(int permits) {
+        this.available = permits;
+    }
+
+    /**
+     * Takes a permit, now if one is free or once one is released.
+     *
+     * @param timeout the maximum time to wait for a permit
+     * @return a future completing once the permit is held, or failing with a {@link TimeoutException}
+     */
+    public CompletableFuture<Void> acquire(Duration timeout) {
+        CompletableFuture<Void> waiter;
+        synchronized (this) {
+            if (available > 0 && waiters.isEmpty()) {
+                available--;
+                return CompletableFuture.completedFuture(null);
+            }
+            waiter = new CompletableFuture<>();
+            waiters.addLast(waiter);
+        }
+        waiter.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS).whenComplete((ignored, e) -> {
+            if (e != null) {
+                synchronized (this) {
+                    waiters.remove(waiter);
+                }
+            }
+        });
+        return waiter;
+    }
+
+    /**
+     * Returns a permit, handing it to the oldest waiter if there is one.
+     */
+    public void release() {
+        while (true) {
+            CompletableFuture<Void> next;
+            synchronized (this) {
+                next = waiters.pollFirst();
+                if (next == null) {
+                    available++;
+                    return;
+                }
+            }
+            // A waiter timing out concurrently cannot take the permit, which goes to the next one.
+            if (next.complete(null)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the number of permits free right now
+     */
+    public synchronized int availablePermits() {
+        return available;
+    }
+
+    /**
+     * @return the number of acquisitions waiting for a permit
+     */
+    public synchronized int queueLength() {
+        return waiters.size();
+    }
+}
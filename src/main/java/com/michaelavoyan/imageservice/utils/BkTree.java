@@ -0,0 +1,242 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory BK-tree over 64-bit perceptual hashes, answering "every image within Hamming distance k" queries.
+ * <p>
+ * Each node holds one hash and the IDs of the images having it; a child hangs off its parent by its distance
+ * to the parent's hash. By the triangle inequality, a query at distance {@code d} from a node only needs
+ * to visit the children whose edge lies within {@code [d - k, d + k]}, which for small {@code k} prunes
+ * most of the tree. Removing an image only drops its ID: emptied nodes stay in the tree as routing nodes
+ * until it is rebuilt.
+ * <p>
+ * Reads run concurrently with each other; updates take an exclusive lock.
+ */
+public class BkTree {
+
+    private final Map<Long, Long> hashes = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Node root;
+    private int nodes;
+
+    /**
+     * Adds an image, replacing any previous entry with the same ID.
+     *
+     * @param id the ID of the image
+     * @param hash the perceptual hash of the image
+     */
+    public void put(long id, long hash) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            hashes.put(id, hash);
+            if (root == null) {
+                root = new Node(hash);
+                nodes++;
+                root.add(id);
+                return;
+            }
+            Node node = root;
+            while (true) {
+                int distance = PerceptualHash.distance(node.hash, hash);
+                if (distance == 0) {
+                    node.add(id);
+                    return;
+                }
+                Node child = node.child(distance);
+                if (child == null) {
+                    child = node.addChild(distance, new Node(hash));
+                    nodes++;
+                    child.add(id);
+                    return;
+                }
+                node = child;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes an image; does nothing if it is not indexed.
+     *
+     * @param id the ID of the image
+     */
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the hash of an indexed image.
+     *
+     * @param id the ID of the image
+     * @return the hash, or {@code null} if the image is not indexed
+     */
+    public Long hashOf(long id) {
+        lock.readLock().lock();
+        try {
+            return hashes.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the images whose hash is within {@code maxDistance} of a hash.
+     *
+     * @param hash the hash to compare with
+     * @param maxDistance the largest Hamming distance accepted
+     * @return the matches, closest first, then by ascending ID
+     */
+    public List<Match> search(long hash, int maxDistance) {
+        List<Match> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (root == null) {
+                return matches;
+            }
+            Deque<Node> pending = new ArrayDeque<>();
+            pending.push(root);
+            while (!pending.isEmpty()) {
+                Node node = pending.pop();
+                int distance = PerceptualHash.distance(node.hash, hash);
+                if (distance <= maxDistance) {
+                    for (int i = 0; i < node.idCount; i++) {
+                        matches.add(new Match(node.ids[i], distance));
+                    }
+                }
+                for (int i = 0; i < node.childCount; i++) {
+                    int edge = node.edges[i];
+                    if (edge >= distance - maxDistance && edge <= distance + maxDistance) {
+                        pending.push(node.children[i]);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        matches.sort(Comparator.comparingInt(Match::distance).thenComparingLong(Match::id));
+        return matches;
+    }
+
+    /**
+     * @return the number of indexed images
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return hashes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of nodes, including those left empty by removals
+     */
+    public int nodeCount() {
+        lock.readLock().lock();
+        try {
+            return nodes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeLocked(long id) {
+        Long hash = hashes.remove(id);
+        if (hash == null) {
+            return;
+        }
+        Node node = root;
+        while (node != null) {
+            int distance = PerceptualHash.distance(node.hash, hash);
+            if (distance == 0) {
+                node.remove(id);
+                return;
+            }
+            node = node.child(distance);
+        }
+    }
+
+    /**
+     * An image found by {@link #search}.
+     *
+     * @param id the ID of the image
+     * @param distance the Hamming distance between its hash and the queried one
+     */
+    public record Match(long id, int distance) {
+    }
+
+    /**
+     * A hash, the images having it, and the subtrees of hashes at each distance from it.
+     * Children are kept in small parallel arrays rather than a map: most nodes have a handful of them.
+     */
+    private static final class Node {
+        private final long hash;
+        private long[] ids = new long[1];
+        private int idCount;
+        private byte[] edges = new byte[0];
+        private Node[] children = new Node[0];
+        private int childCount;
+
+        Node(long hash) {
+            this.hash = hash;
+        }
+
+        void add(long id) {
+            if (idCount == ids.length) {
+                ids = Arrays.copyOf(ids, idCount * 2);
+            }
+            ids[idCount++] = id;
+        }
+
+        void remove(long id) {
+            for (int i = 0; i < idCount; i++) {
+                if (ids[i] == id) {
+                    ids[i] = ids[--idCount];
+                    return;
+                }
+            }
+        }
+
+        Node child(int distance) {
+            for (int i = 0; i < childCount; i++) {
+                if (edges[i] == distance) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node addChild(int distance, Node child) {
+            if (childCount == edges.length) {
+                int capacity = Math.max(2, childCount * 2);
+                edges = Arrays.copyOf(edges, capacity);
+                children = Arrays.copyOf(children, capacity);
+            }
+            edges[childCount] = (byte) distance;
+            children[childCount++] = child;
+            return child;
+        }
+    }
+}
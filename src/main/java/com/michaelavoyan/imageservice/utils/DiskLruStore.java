@@ -0,0 +1,302 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * A directory of files bounded by their total size, evicting the least recently read files first.
+ * <p>
+ * Each file is named after its key. The recency order is kept in memory and rebuilt from the
+ * modification times of the files when the store is opened, so entries survive restarts.
+ * Files are written to a temporary name and atomically renamed, so a reader never sees a partial file.
+ * <p>
+ * Files are handed out as {@link Lease}s. A file evicted or removed while leased leaves the index at once but
+ * stays on disk until its last lease is released and {@code releaseGrace} has passed; it is then deleted by a
+ * later put, remove or release. The grace covers readers that open the file just after giving up their lease,
+ * such as Tomcat's sendfile, which opens it once the request has completed. Files kept for their readers no
+ * longer count towards the size of the store.
+ * All methods are thread-safe; file I/O happens outside the index lock.
+ */
+public class DiskLruStore {
+
+    private static final Pattern KEY = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]*");
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final long releaseGraceNanos;
+
+    /**
+     * Key to file size, in access order.
+     */
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    /**
+     * Number of open leases per key; guarded by the index lock.
+     */
+    private final Map<String, Integer> readers = new HashMap<>();
+
+    /**
+     * When the last lease of a key was released, for releases within the grace period; guarded by the index lock.
+     */
+    private final Map<String, Long> released = new HashMap<>();
+
+    /**
+     * Keys dropped from the index whose files are kept for their readers; guarded by the index lock.
+     */
+    private final Set<String> dropped = new HashSet<>();
+
+    /**
+     * Opens the store, creating the directory if needed and indexing the files already in it.
+     * Files left over from interrupted writes are deleted.
+     *
+     * @param directory the directory holding the files
+     * @param maxBytes the total size of the files kept
+     * @param releaseGrace how long a dropped file stays on disk after its last lease was released
+     * @throws IOException if the directory cannot be created or listed
+     */
+    public DiskLruStore(Path directory, long maxBytes, Duration releaseGrace) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+        this.releaseGraceNanos = releaseGrace.toNanos();
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(this.directory)) {
+            files = listing.filter(Files::isRegularFile).toList();
+        }
+        List<Map.Entry<Path, BasicFileAttributes>> existing = new ArrayList<>();
+        for (Path file : files) {
+            if (file.getFileName().toString().endsWith(TEMP_SUFFIX)) {
+                Files.deleteIfExists(file);
+            } else if (KEY.matcher(file.getFileName().toString()).matches()) {
+                existing.add(Map.entry(file, Files.readAttributes(file, BasicFileAttributes.class)));
+            }
+        }
+        existing.sort(Comparator.comparing(entry -> entry.getValue().lastModifiedTime()));
+        for (Map.Entry<Path, BasicFileAttributes> entry : existing) {
+            index.put(entry.getKey().getFileName().toString(), entry.getValue().size());
+            bytes += entry.getValue().size();
+        }
+        delete(evict(null));
+    }
+
+    /**
+     * Leases the file stored under a key, marking it as recently used. The file stays on disk until the lease
+     * is released, even if it is evicted meanwhile; a file evicted but still leased by others can be leased too.
+     *
+     * @param key the key
+     * @return a lease on the file, or {@code null} if there is none
+     */
+    public Lease open(String key) {
+        checkKey(key);
+        synchronized (index) {
+            if (index.get(key) == null && !dropped.contains(key)) {
+                return null;
+            }
+            readers.merge(key, 1, Integer::sum);
+        }
+        Lease lease = new Lease(key);
+        if (!Files.isRegularFile(lease.file())) {
+            // Deleted behind our back; forget it.
+            lease.close();
+            remove(key::equals);
+            return null;
+        }
+        return lease;
+    }
+
+    /**
+     * Stores a file under a key, replacing any previous one, and evicts the least recently used
+     * files until the store fits its size again. The new file itself is never evicted by its own put.
+     *
+     * @param key the key, made of letters, digits, dots, dashes and underscores
+     * @param content the content of the file
+     * @return a lease on the stored file
+     * @throws IOException if the file cannot be written
+     */
+    public Lease put(String key, byte[] content) throws IOException {
+        checkKey(key);
+        Path file = directory.resolve(key);
+        Path temp = Files.createTempFile(directory, key + ".", TEMP_SUFFIX);
+        try {
+            Files.write(temp, content);
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        List<String> deletable;
+        synchronized (index) {
+            Long previous = index.put(key, (long) content.length);
+            bytes += content.length - (previous != null ? previous : 0);
+            dropped.remove(key);
+            readers.merge(key, 1, Integer::sum);
+            dropped.addAll(evict(key));
+            deletable = purge();
+        }
+        delete(deletable);
+        return new Lease(key);
+    }
+
+    /**
+     * Deletes the files whose key matches a predicate.
+     *
+     * @param keys the predicate selecting the keys to delete
+     * @return the number of files removed from the store
+     */
+    public int remove(Predicate<String> keys) {
+        List<String> removed = new ArrayList<>();
+        List<String> deletable;
+        synchronized (index) {
+            Iterator<Map.Entry<String, Long>> entries = index.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<String, Long> entry = entries.next();
+                if (keys.test(entry.getKey())) {
+                    bytes -= entry.getValue();
+                    removed.add(entry.getKey());
+                    entries.remove();
+                }
+            }
+            dropped.addAll(removed);
+            deletable = purge();
+        }
+        delete(deletable);
+        return removed.size();
+    }
+
+    /**
+     * @return the total size of the stored files, in bytes
+     */
+    public long bytes() {
+        synchronized (index) {
+            return bytes;
+        }
+    }
+
+    /**
+     * @return the number of stored files
+     */
+    public int size() {
+        synchronized (index) {
+            return index.size();
+        }
+    }
+
+    /**
+     * Drops the least recently used entries until the store fits, sparing {@code keep}.
+     * Must be called while holding the index lock; the returned files are deleted by the caller.
+     */
+    private List<String> evict(String keep) {
+        List<String> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> entries = index.entrySet().iterator();
+        while (bytes > maxBytes && entries.hasNext()) {
+            Map.Entry<String, Long> eldest = entries.next();
+            if (eldest.getKey().equals(keep)) {
+                continue;
+            }
+            bytes -= eldest.getValue();
+            evicted.add(eldest.getKey());
+            entries.remove();
+        }
+        return evicted;
+    }
+
+    /**
+     * Takes the dropped keys whose files are no longer read, and were not released within the grace period.
+     * Must be called while holding the index lock; the returned files are deleted by the caller.
+     */
+    private List<String> purge() {
+        long now = System.nanoTime();
+        released.values().removeIf(at -> now - at >= releaseGraceNanos);
+        List<String> deletable = new ArrayList<>();
+        Iterator<String> keys = dropped.iterator();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (!readers.containsKey(key) && !released.containsKey(key)) {
+                deletable.add(key);
+                keys.remove();
+            }
+        }
+        return deletable;
+    }
+
+    private void delete(List<String> keys) {
+        for (String key : keys) {
+            try {
+                Files.deleteIfExists(directory.resolve(key));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not delete " + key, e);
+            }
+        }
+    }
+
+    private static String checkKey(String key) {
+        if (key == null || !KEY.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid store key: " + key);
+        }
+        return key;
+    }
+
+    /**
+     * A reader's hold on a stored file, keeping it on disk until released.
+     */
+    public final class Lease implements AutoCloseable {
+        private final String key;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Lease(String key) {
+            this.key = key;
+        }
+
+        /**
+         * @return the leased file
+         */
+        public Path file() {
+            return directory.resolve(key);
+        }
+
+        /**
+         * Releases the file; closing a lease again has no effect.
+         */
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            List<String> deletable;
+            synchronized (index) {
+                if (readers.compute(key, (k, count) -> count == 1 ? null : count - 1) == null
+                        && releaseGraceNanos > 0) {
+                    released.put(key, System.nanoTime());
+                }
+                deletable = purge();
+            }
+            delete(deletable);
+        }
+    }
+}
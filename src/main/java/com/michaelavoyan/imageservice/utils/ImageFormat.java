@@ -0,0 +1,71 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.utils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Image formats accepted by the service, recognised by their magic bytes.
+ */
+public enum ImageFormat {
+    JPEG("image/jpeg"), PNG("image/png"), GIF("image/gif"), WEBP("image/webp");
+
+    private static final byte[] JPEG_MAGIC = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    private static final byte[] PNG_MAGIC = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] GIF87_MAGIC = "GIF87a".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] GIF89_MAGIC = "GIF89a".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RIFF_MAGIC = "RIFF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] WEBP_MAGIC = "WEBP".getBytes(StandardCharsets.US_ASCII);
+
+    private final String mimeType;
+
+    ImageFormat(String mimeType) {
+        this.mimeType = mimeType;
+    }
+
+    /**
+     * @return the MIME type of the format
+     */
+    public String mimeType() {
+        return mimeType;
+    }
+
+    /**
+     * Detects the image format from the leading bytes of a file.
+     *
+     * @param header the first bytes of the file
+     * @return the detected format, or {@code null} if the bytes do not match any supported format
+     */
+    public static ImageFormat sniff(byte[] header) {
+        if (startsWith(header, 0, JPEG_MAGIC)) {
+            return JPEG;
+        }
+        if (startsWith(header, 0, PNG_MAGIC)) {
+            return PNG;
+        }
+        if (startsWith(header, 0, GIF87_MAGIC) || startsWith(header, 0, GIF89_MAGIC)) {
+            return GIF;
+        }
+        if (startsWith(header, 0, RIFF_MAGIC) && startsWith(header, 8, WEBP_MAGIC)) {
+            return WEBP;
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether {@code data} contains {@code prefix} at the given offset.
+     */
+    static boolean startsWith(byte[] data, int offset, byte[] prefix) {
+        if (data.length < offset + prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -4,26 +4,60 @@
 
 package com.michaelavoyan.imageservice.utils;
 
+import com.michaelavoyan.imageservice.config.HttpClientProperties;
+import com.michaelavoyan.imageservice.config.VerifierProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Component;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Utility class for verifying image URLs by checking their content type and attempting to read them.
- * This class provides methods to establish an HTTP connection to an image URL
+ * This class provides methods to request an image URL through the shared {@link HttpClient}
  * and verify whether the image is valid by checking its content type and readability.
+ * <p>
+ * In {@link VerifierProperties.Mode#HEADER} mode only the first few KB of the body are read:
+ * the magic bytes are sniffed and an {@link ImageReader} reads the dimensions without decoding
+ * any pixels. {@link VerifierProperties.Mode#STRICT} mode downloads and fully decodes the image.
+ * When perceptual hashing is enabled, the whole image is downloaded in either mode and its
+ * {@link PerceptualHash} is returned with the verdict.
+ * <p>
+ * Requests to origins are timed phase by phase in the {@code verifier.phase} timer, and as a whole in the
+ * {@code verifier.verifications} timer tagged with their outcome; cached results are not timed.
  */
 @Component
 public class ImageVerifier {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageVerifier.class);
+
     /**
      * List of allowed image MIME types.
      */
@@ -31,63 +65,527 @@ public class ImageVerifier {
             "image/jpeg", "image/jpg", "image/png", "image/webp", "image/gif"
     );
 
+    private final VerifierProperties properties;
+    private final HttpClientProperties httpClientProperties;
+    private final HttpClient httpClient;
+    private final Executor verificationExecutor;
+    private final VerificationCache verificationCache;
+
+    /**
+     * Per-host slots limiting the number of concurrent requests (and connections) to one origin.
+     * Requests waiting for a slot are queued without holding a verification thread. A host is forgotten
+     * once no request to it is in flight, so the map only grows with the hosts being requested right now.
+     */
+    private final ConcurrentMap<String, HostPermits> hostPermits = new ConcurrentHashMap<>();
+
     /**
-     * Creates an HTTP connection to the given URL.
+     * Verifications requested from origins and not completed yet, whether queued, waiting or running.
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final Timer queueTimer;
+    private final Timer acquireTimer;
+    private final Timer headersTimer;
+    private final Timer readTimer;
+    private final Timer decodeTimer;
+    private final Timer validTimer;
+    private final Timer invalidTimer;
+    private final Timer errorTimer;
+
+    /**
+     * Constructor to initialize the verifier with its configuration.
      *
-     * @param urlStr the URL string to connect to
-     * @return a {@link HttpURLConnection} instance
-     * @throws RuntimeException if an error occurs while opening the connection
+     * @param properties the verifier configuration
+     * @param httpClientProperties the HTTP client configuration
+     * @param httpClient the shared HTTP client used to reach image origins
+     * @param verificationExecutor the bounded executor running the verification work
+     * @param verificationCache the cache of verification results
+     * @param meterRegistry the registry of the verification timers
      */
-    public HttpURLConnection createConnection(String urlStr) {
-        try {
-            URL url = new URL(urlStr);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET"); // Use GET instead of HEAD
-            connection.setConnectTimeout(5000);
-            connection.setReadTimeout(5000);
-            connection.setDoInput(true);
-            return connection;
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to create connection: " + e.getMessage(), e);
+    public ImageVerifier(
+            VerifierProperties properties,
+            HttpClientProperties httpClientProperties,
+            HttpClient httpClient,
+            @Qualifier("verificationExecutor") Executor verificationExecutor,
+            VerificationCache verificationCache,
+            MeterRegistry meterRegistry
+    ) {
+        this.properties = properties;
+        this.httpClientProperties = httpClientProperties;
+        this.httpClient = httpClient;
+        this.verificationExecutor = verificationExecutor;
+        this.verificationCache = verificationCache;
+
+        queueTimer = phaseTimer(meterRegistry, "queue", "Waiting for a verification thread");
+        acquireTimer = phaseTimer(meterRegistry, "acquire", "Waiting for a free slot for the origin host");
+        headersTimer = phaseTimer(meterRegistry, "headers",
+                "Connecting to the origin, sending the request and receiving the response headers");
+        readTimer = phaseTimer(meterRegistry, "read", "Receiving the response body");
+        decodeTimer = phaseTimer(meterRegistry, "decode", "Checking, decoding and hashing the image");
+        validTimer = verificationTimer(meterRegistry, "valid");
+        invalidTimer = verificationTimer(meterRegistry, "invalid");
+        errorTimer = verificationTimer(meterRegistry, "error");
+        meterRegistry.gauge("verifier.in_flight", inFlight);
+    }
+
+    private static Timer phaseTimer(MeterRegistry registry, String phase, String description) {
+        return Timer.builder("verifier.phase")
+                .description(description)
+                .tag("phase", phase)
+                .register(registry);
+    }
+
+    private static Timer verificationTimer(MeterRegistry registry, String outcome) {
+        return Timer.builder("verifier.verifications")
+                .description("Verifications of image URLs against their origin")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    /**
+     * Creates an HTTP request for the given URL.
+     * In {@link VerifierProperties.Mode#HEADER} mode without perceptual hashing the request asks only for
+     * the header prefix, so origins supporting ranges send no more than that and keep the connection reusable.
+     *
+     * @param urlStr the URL string to request
+     * @return a {@link HttpRequest} instance
+     * @throws IllegalArgumentException if the URL is not a valid absolute HTTP(S) URL
+     */
+    public HttpRequest createRequest(String urlStr) {
+        return createRequest(urlStr, null);
+    }
+
+    /**
+     * Creates an HTTP request for the given URL, made conditional on the validators of a previous result.
+     *
+     * @param urlStr the URL string to request
+     * @param previous the previous result to revalidate, or {@code null}
+     * @return a {@link HttpRequest} instance
+     * @throws IllegalArgumentException if the URL is not a valid absolute HTTP(S) URL
+     */
+    HttpRequest createRequest(String urlStr, VerificationResult previous) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(originUri(urlStr))
+                .GET()
+                .timeout(httpClientProperties.getRequestTimeout());
+        if (properties.getMode() == VerifierProperties.Mode.HEADER && !properties.isPerceptualHash()) {
+            builder.header(HttpHeaders.RANGE, "bytes=0-" + (properties.getHeaderBytes() - 1));
+        }
+        if (previous != null && previous.etag() != null) {
+            builder.header(HttpHeaders.IF_NONE_MATCH, previous.etag());
+        } else if (previous != null && previous.lastModified() != null) {
+            builder.header(HttpHeaders.IF_MODIFIED_SINCE, previous.lastModified());
         }
+        return builder.build();
+    }
+
+    /**
+     * Downloads a whole image from its origin, sharing the per-host slots and timeouts of verification.
+     *
+     * @param url the image URL
+     * @param maxBytes the largest body accepted
+     * @return a future completing with the body, or failing with an {@link IOException} if the origin
+     *         does not answer 200 OK or sends more than {@code maxBytes}
+     * @throws IllegalArgumentException if the URL is not a valid absolute HTTP(S) URL
+     */
+    public CompletableFuture<byte[]> fetch(String url, int maxBytes) {
+        HttpRequest request = HttpRequest.newBuilder(originUri(url))
+                .GET()
+                .timeout(httpClientProperties.getRequestTimeout())
+                .build();
+        HostPermits host = retainHost(request.uri());
+
+        return acquire(host.permits, request.uri())
+                .thenCompose(acquired -> send(host.permits, request, PrefixBodySubscriber.handler(maxBytes + 1)))
+                .whenComplete((response, e) -> releaseHost(host))
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        throw new CompletionException(
+                                new IOException("Origin answered " + response.statusCode() + " for " + url));
+                    }
+                    if (response.body().length > maxBytes) {
+                        throw new CompletionException(
+                                new IOException("Image larger than " + maxBytes + " bytes: " + url));
+                    }
+                    return response.body();
+                });
     }
 
     /**
      * Asynchronously checks if a given image URL is valid.
-     * The method verifies the content type of the response and attempts to read the image.
-     * If the content type is not allowed or the image cannot be read, the method returns {@code false}.
+     * The method verifies the status and content type of the response and attempts to read the image.
+     * If the response is not an allowed image or the image cannot be read, the method returns {@code false}.
+     * <p>
+     * Results are cached by normalized URL; expired results are revalidated with a conditional GET
+     * and concurrent calls for the same URL share one request. A URL whose origin cannot be reached,
+     * for instance because it times out or resets the connection, is reported invalid without caching
+     * that verdict, and a previous result is kept and returned instead.
      *
-     * @param connection the {@link HttpURLConnection} to the image URL
+     * @param url the image URL
      * @return a {@link CompletableFuture} containing {@code true} if the image is valid, otherwise {@code false}
+     * @throws IllegalArgumentException if the URL is not a valid absolute HTTP(S) URL
+     * @throws RejectedExecutionException if the verification queue is full
+     */
+    public CompletableFuture<Boolean> isValidImageUrl(String url) {
+        return verifyImageUrl(url).thenApply(VerificationResult::valid);
+    }
+
+    /**
+     * Asynchronously verifies a given image URL like {@link #isValidImageUrl}, returning the full result,
+     * including the perceptual hash of the image when hashing is enabled.
+     *
+     * @param url the image URL
+     * @return a {@link CompletableFuture} containing the verification result
+     * @throws IllegalArgumentException if the URL is not a valid absolute HTTP(S) URL
+     * @throws RejectedExecutionException if the verification queue is full
+     */
+    public CompletableFuture<VerificationResult> verifyImageUrl(String url) {
+        String normalizedUrl = VerificationCache.normalize(url);
+        return verificationCache.get(normalizedUrl, previous -> verify(normalizedUrl, previous))
+                .exceptionally(e -> {
+                    if (unwrap(e) instanceof RejectedExecutionException rejected) {
+                        throw rejected;
+                    }
+                    return VerificationResult.of(false);
+                });
+    }
+
+    /**
+     * Requests the URL from its origin and verifies the response.
+     *
+     * @param url the normalized image URL
+     * @param previous the expired result to revalidate, or {@code null}
+     * @return a future completing with the verification result, or failing if the origin could not be reached
+     *         or the work was rejected; failures are not verdicts on the image and are not cached
+     */
+    private CompletableFuture<VerificationResult> verify(String url, VerificationResult previous) {
+        HttpRequest request = createRequest(url, previous);
+        Stopwatch stopwatch = new Stopwatch();
+        HttpResponse.BodyHandler<byte[]> bodyHandler = bodyHandler();
+
+        HostPermits host = retainHost(request.uri());
+        AsyncPermits permits = host.permits;
+        inFlight.incrementAndGet();
+        CompletableFuture<VerificationResult> result;
+        try {
+            result = CompletableFuture.runAsync(() -> stopwatch.lap(queueTimer), verificationExecutor)
+                    .thenCompose(queued -> acquire(permits, request.uri()))
+                    .thenCompose(acquired -> {
+                        stopwatch.lap(acquireTimer);
+                        return send(permits, request, responseInfo -> {
+                            stopwatch.lap(headersTimer);
+                            return bodyHandler.apply(responseInfo);
+                        }).whenComplete((response, e) -> {
+                            if (response != null) {
+                                stopwatch.lap(readTimer);
+                            }
+                        });
+                    })
+                    .thenApplyAsync(response -> {
+                        stopwatch.lap(queueTimer);
+                        VerificationResult verdict = toResult(response, previous);
+                        stopwatch.lap(decodeTimer);
+                        return verdict;
+                    }, verificationExecutor);
+        } catch (RuntimeException e) {
+            inFlight.decrementAndGet();
+            releaseHost(host);
+            throw e;
+        }
+        return result.whenComplete((verdict, e) -> {
+            inFlight.decrementAndGet();
+            releaseHost(host);
+            if (verdict != null) {
+                stopwatch.stop(verdict.valid() ? validTimer : invalidTimer);
+            } else if (!(unwrap(e) instanceof RejectedExecutionException)) {
+                log.debug("Verification of {} failed", url, unwrap(e));
+                stopwatch.stop(errorTimer);
+            }
+        });
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    /**
+     * Times the successive phases of one verification. Phases run one after another, handed over through
+     * the completion of futures, so the lap needs no further synchronization than being volatile.
+     */
+    private static final class Stopwatch {
+        private final long startedAt = System.nanoTime();
+        private volatile long lapStartedAt = startedAt;
+
+        void lap(Timer timer) {
+            long now = System.nanoTime();
+            timer.record(now - lapStartedAt, TimeUnit.NANOSECONDS);
+            lapStartedAt = now;
+        }
+
+        void stop(Timer timer) {
+            timer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Parses an image URL, accepting only absolute HTTP(S) URLs.
+     */
+    private static URI originUri(String url) {
+        URI uri = URI.create(url);
+        String scheme = uri.getScheme();
+        if (uri.getHost() == null || !("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))) {
+            throw new IllegalArgumentException("Not an absolute HTTP(S) URL: " + url);
+        }
+        return uri;
+    }
+
+    /**
+     * Returns the slots of the host of a URI, keeping them until the request is done with {@link #releaseHost}.
+     */
+    private HostPermits retainHost(URI uri) {
+        return hostPermits.compute(uri.getHost().toLowerCase(Locale.ROOT), (name, host) -> {
+            HostPermits retained = host != null
+                    ? host
+                    : new HostPermits(name, new AsyncPermits(httpClientProperties.getMaxConnectionsPerHost()));
+            retained.requests++;
+            return retained;
+        });
+    }
+
+    /**
+     * Ends a request retained by {@link #retainHost}, forgetting the host if it was the last one.
+     */
+    private void releaseHost(HostPermits host) {
+        hostPermits.computeIfPresent(host.name, (name, current) -> --current.requests == 0 ? null : current);
+    }
+
+    /**
+     * @return the number of hosts with requests in flight
+     */
+    int hostCount() {
+        return hostPermits.size();
+    }
+
+    /**
+     * The slots of one host, with the number of requests retaining them; the count is only read and
+     * written while computing the entry of the host, which the map runs atomically.
      */
-    public CompletableFuture<Boolean> isValidImageUrl(
-            HttpURLConnection connection
+    private static final class HostPermits {
+        private final String name;
+        private final AsyncPermits permits;
+        private int requests;
+
+        private HostPermits(String name, AsyncPermits permits) {
+            this.name = name;
+            this.permits = permits;
+        }
+    }
+
+    /**
+     * Waits for a free slot for the given origin, without blocking the calling thread.
+     *
+     * @return a future completing once the slot is held, or failing with a {@link RejectedExecutionException}
+     *         if no slot frees up within the configured timeout
+     */
+    private CompletableFuture<Void> acquire(AsyncPermits permits, URI uri) {
+        return permits.acquire(httpClientProperties.getConnectionAcquireTimeout()).exceptionally(e -> {
+            throw new RejectedExecutionException("Too many concurrent requests to " + uri.getHost());
+        });
+    }
+
+    /**
+     * Sends a request while holding a slot of its origin, and frees the slot once the response is read.
+     */
+    private <T> CompletableFuture<HttpResponse<T>> send(
+            AsyncPermits permits,
+            HttpRequest request,
+            HttpResponse.BodyHandler<T> bodyHandler
     ) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                connection.connect();
+        CompletableFuture<HttpResponse<T>> response;
+        try {
+            response = httpClient.sendAsync(request, bodyHandler);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        return response
+                .orTimeout(httpClientProperties.getReadTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((r, e) -> permits.release());
+    }
 
-                String contentType = connection.getHeaderField(HttpHeaders.CONTENT_TYPE);
+    private HttpResponse.BodyHandler<byte[]> bodyHandler() {
+        if (properties.getMode() == VerifierProperties.Mode.STRICT) {
+            return HttpResponse.BodyHandlers.ofByteArray();
+        }
+        // One byte more than the limit tells a whole image from a truncated one.
+        return PrefixBodySubscriber.handler(properties.isPerceptualHash()
+                ? Math.toIntExact(properties.getMaxImageSize().toBytes()) + 1
+                : properties.getHeaderBytes());
+    }
 
-                if (contentType == null || !ALLOWED_IMAGE_TYPES.contains(contentType.toLowerCase())) {
-                    System.out.println("Invalid Content-Type: " + contentType);
-                    return false;
-                }
+    /**
+     * Checks the status, content type and body of a response.
+     * A {@code 304 Not Modified} answer to a conditional request confirms the previous result.
+     */
+    private VerificationResult toResult(HttpResponse<byte[]> response, VerificationResult previous) {
+        String etag = response.headers().firstValue(HttpHeaders.ETAG).orElse(null);
+        String lastModified = response.headers().firstValue(HttpHeaders.LAST_MODIFIED).orElse(null);
+        if (response.statusCode() == 304 && previous != null) {
+            return new VerificationResult(
+                    previous.valid(),
+                    etag != null ? etag : previous.etag(),
+                    lastModified != null ? lastModified : previous.lastModified(),
+                    previous.perceptualHash());
+        }
+        boolean valid = isValidResponse(response);
+        Long perceptualHash = valid && properties.isPerceptualHash() && isWholeImage(response.body())
+                ? PerceptualHash.of(response.body())
+                : null;
+        return new VerificationResult(valid, etag, lastModified, perceptualHash);
+    }
 
-                try (InputStream inputStream = connection.getInputStream()) {
-                    BufferedImage image = ImageIO.read(inputStream);
-                    boolean isValid = image != null;
-                    System.out.println("Image read status: " + isValid);
-                    return isValid;
-                }
+    /**
+     * Checks that a body was not cut at {@code maxImageSize}; decoders would render the missing part gray.
+     */
+    private boolean isWholeImage(byte[] body) {
+        return properties.getMode() == VerifierProperties.Mode.STRICT
+                || body.length <= properties.getMaxImageSize().toBytes();
+    }
+
+    /**
+     * Checks the status, content type and body of a response.
+     */
+    private boolean isValidResponse(HttpResponse<byte[]> response) {
+        int status = response.statusCode();
+        if (status != 200 && status != 206) {
+            log.debug("Unexpected status {} from {}", status, response.uri());
+            return false;
+        }
+
+        String contentType = response.headers().firstValue(HttpHeaders.CONTENT_TYPE).orElse(null);
+        if (contentType == null || !ALLOWED_IMAGE_TYPES.contains(mimeType(contentType))) {
+            log.debug("Invalid Content-Type {} from {}", contentType, response.uri());
+            return false;
+        }
+
+        boolean isValid = isReadableImage(response.body());
+        if (!isValid) {
+            log.debug("Unreadable image from {}", response.uri());
+        }
+        return isValid;
+    }
+
+    /**
+     * Strips parameters such as {@code charset} from a Content-Type header value.
+     */
+    private static String mimeType(String contentType) {
+        int separator = contentType.indexOf(';');
+        return (separator < 0 ? contentType : contentType.substring(0, separator)).trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Checks whether the body contains a readable image, according to the configured mode.
+     *
+     * @param body the image body, or its header prefix in {@link VerifierProperties.Mode#HEADER} mode
+     * @return {@code true} if the body contains a readable image
+     */
+    boolean isReadableImage(byte[] body) {
+        if (properties.getMode() == VerifierProperties.Mode.STRICT) {
+            try {
+                BufferedImage image = ImageIO.read(new ByteArrayInputStream(body));
+                return image != null;
             } catch (IOException e) {
-                System.out.println("Exception in isValidImageUrl: " + e.getMessage());
+                log.debug("Undecodable image: {}", e.getMessage());
+                return false;
+            }
+        }
+        return isReadableImageHeader(body);
+    }
+
+    /**
+     * Checks whether the given prefix of a file starts with a supported image header
+     * with positive dimensions. No pixel data is decoded.
+     *
+     * @param header the first bytes of the file
+     * @return {@code true} if the header describes a supported image
+     */
+    boolean isReadableImageHeader(byte[] header) {
+        ImageFormat format = ImageFormat.sniff(header);
+        if (format == null) {
+            log.debug("Unrecognised image signature");
+            return false;
+        }
+        if (format == ImageFormat.WEBP) {
+            // The JDK ships no WebP reader, so the dimensions are parsed from the RIFF chunk directly.
+            return hasWebpDimensions(header);
+        }
+
+        // A memory cache keeps ImageIO from spilling the header into a temporary file.
+        try (ImageInputStream stream = new MemoryCacheImageInputStream(new ByteArrayInputStream(header))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext()) {
                 return false;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                return reader.getWidth(0) > 0 && reader.getHeight(0) > 0;
             } finally {
-                if (connection != null) {
-                    connection.disconnect();
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            // Also raised when the header does not fit within the configured prefix.
+            log.debug("Unreadable {} header: {}", format, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Reads the canvas size of a WebP file from its first chunk (VP8, VP8L or VP8X).
+     *
+     * @param header the first bytes of the file
+     * @return {@code true} if the chunk declares positive dimensions
+     */
+    private static boolean hasWebpDimensions(byte[] header) {
+        if (header.length < 30) {
+            return false;
+        }
+        String chunk = new String(header, 12, 4, StandardCharsets.US_ASCII);
+        int width;
+        int height;
+        switch (chunk) {
+            case "VP8X" -> {
+                width = 1 + readUInt24(header, 24);
+                height = 1 + readUInt24(header, 27);
+            }
+            case "VP8 " -> {
+                // Key frame start code precedes the 14-bit dimensions.
+                if ((header[23] & 0xFF) != 0x9D || (header[24] & 0xFF) != 0x01 || (header[25] & 0xFF) != 0x2A) {
+                    return false;
                 }
+                width = readUInt16(header, 26) & 0x3FFF;
+                height = readUInt16(header, 28) & 0x3FFF;
             }
-        });
+            case "VP8L" -> {
+                if ((header[20] & 0xFF) != 0x2F) {
+                    return false;
+                }
+                int bits = (header[21] & 0xFF) | (header[22] & 0xFF) << 8
+                        | (header[23] & 0xFF) << 16 | (header[24] & 0xFF) << 24;
+                width = 1 + (bits & 0x3FFF);
+                height = 1 + ((bits >> 14) & 0x3FFF);
+            }
+            default -> {
+                return false;
+            }
+        }
+        return width > 0 && height > 0;
+    }
+
+    private static int readUInt16(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8;
+    }
+
+    private static int readUInt24(byte[] data, int offset) {
+        return readUInt16(data, offset) | (data[offset + 2] & 0xFF) << 16;
     }
 }
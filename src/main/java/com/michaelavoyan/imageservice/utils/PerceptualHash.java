@@ -0,0 +1,162 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.utils;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HexFormat;
+import java.util.Iterator;
+
+/**
+ * 64-bit difference hash (dHash) of images, which changes little when an image is re-encoded, resized or
+ * slightly retouched, so that copies of one creative served under different URLs have nearby hashes.
+ * <p>
+ * The image is reduced to a 9x8 grayscale thumbnail and each bit records whether a pixel is brighter than its
+ * right neighbour. Two images are near-duplicates when few bits differ, that is when the {@link #distance}
+ * between their hashes is small.
+ */
+public final class PerceptualHash {
+
+    private static final int WIDTH = 9;
+    private static final int HEIGHT = 8;
+
+    /**
+     * Decoded images are subsampled down to about this size before being reduced to the thumbnail.
+     */
+    private static final int DECODE_SIZE = 64;
+
+    /**
+     * Images with more pixels are not hashed; even subsampled, decoding them takes too long.
+     */
+    private static final long MAX_PIXELS = 100_000_000;
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * Hashes an encoded image. Large images are subsampled while decoding, so only a few thousand pixels
+     * are held in memory.
+     *
+     * @param encoded the bytes of the image
+     * @return the hash, or {@code null} if the image cannot be decoded (WebP included, which the JDK cannot read)
+     */
+    public static Long of(byte[] encoded) {
+        try (ImageInputStream in = new MemoryCacheImageInputStream(new ByteArrayInputStream(encoded))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > MAX_PIXELS) {
+                    return null;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, Math.min(width, height) / DECODE_SIZE);
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return of(reader.read(0, param));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            // Truncated or corrupt images throw all sorts of runtime exceptions from the JDK decoders.
+            return null;
+        }
+    }
+
+    /**
+     * Hashes a decoded image.
+     *
+     * @param image the image
+     * @return the hash
+     */
+    public static long of(BufferedImage image) {
+        BufferedImage thumbnail = reduce(image);
+        long hash = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH - 1; x++) {
+                int left = thumbnail.getRaster().getSample(x, y, 0);
+                int right = thumbnail.getRaster().getSample(x + 1, y, 0);
+                hash = hash << 1 | (left > right ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Counts the bits that differ between two hashes.
+     *
+     * @param a a hash
+     * @param b another hash
+     * @return the Hamming distance, from {@code 0} (identical) to {@code 64}
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * Formats a hash as 16 hexadecimal digits.
+     *
+     * @param hash the hash
+     * @return the hexadecimal form
+     */
+    public static String toHex(long hash) {
+        return HexFormat.of().toHexDigits(hash);
+    }
+
+    /**
+     * Parses a hash formatted by {@link #toHex}.
+     *
+     * @param hex 16 hexadecimal digits
+     * @return the hash
+     * @throws IllegalArgumentException if the value is not 16 hexadecimal digits
+     */
+    public static long fromHex(String hex) {
+        if (hex == null || hex.length() != 16) {
+            throw new IllegalArgumentException("A perceptual hash is 16 hexadecimal digits: " + hex);
+        }
+        try {
+            return HexFormat.fromHexDigitsToLong(hex);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("A perceptual hash is 16 hexadecimal digits: " + hex, e);
+        }
+    }
+
+    /**
+     * Reduces an image to the grayscale thumbnail by successive halvings, which average all source pixels
+     * instead of sampling a few of them.
+     */
+    private static BufferedImage reduce(BufferedImage image) {
+        BufferedImage current = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do {
+            width = Math.max(WIDTH, width / 2);
+            height = Math.max(HEIGHT, height / 2);
+            BufferedImage next = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (width != WIDTH || height != HEIGHT);
+        return current;
+    }
+}
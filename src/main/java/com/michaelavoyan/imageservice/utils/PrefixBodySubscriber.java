@@ -0,0 +1,77 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * A {@link HttpResponse.BodySubscriber} that collects at most {@code limit} bytes of a response body
+ * and then cancels the subscription, so the rest of the body is never transferred.
+ */
+class PrefixBodySubscriber implements HttpResponse.BodySubscriber<byte[]> {
+
+    private final int limit;
+    private final ByteArrayOutputStream buffer;
+    private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+    private Flow.Subscription subscription;
+
+    PrefixBodySubscriber(int limit) {
+        this.limit = limit;
+        this.buffer = new ByteArrayOutputStream(Math.min(limit, 8192));
+    }
+
+    /**
+     * Creates a body handler that reads at most {@code limit} bytes of every response.
+     *
+     * @param limit the maximum number of bytes to read
+     * @return the body handler
+     */
+    static HttpResponse.BodyHandler<byte[]> handler(int limit) {
+        return responseInfo -> new PrefixBodySubscriber(limit);
+    }
+
+    @Override
+    public CompletionStage<byte[]> getBody() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        for (ByteBuffer item : items) {
+            int length = Math.min(item.remaining(), limit - buffer.size());
+            byte[] chunk = new byte[length];
+            item.get(chunk);
+            buffer.write(chunk, 0, length);
+        }
+        if (buffer.size() >= limit) {
+            subscription.cancel();
+            result.complete(buffer.toByteArray());
+        } else {
+            subscription.request(1);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        result.complete(buffer.toByteArray());
+    }
+}
@@ -0,0 +1,221 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Data source for read-only work, handing out connections to the replicas in turn.
+ * <p>
+ * A replica is only used while it is available, that is while its last check succeeded and found it lagging
+ * by no more than the allowed lag; replicas start unavailable until checked. When no replica is available,
+ * when getting a replica connection fails, or when the current thread is pinned to the primary for
+ * read-your-writes, connections come from the primary instead.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private static final ThreadLocal<Boolean> PINNED_TO_PRIMARY = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final LongAdder replicaConnections = new LongAdder();
+    private final LongAdder primaryConnections = new LongAdder();
+
+    /**
+     * Constructor to initialize the primary and the replicas.
+     */
+    public ReplicaRoutingDataSource(DataSource primary, List<Replica> replicas) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+    }
+
+    /**
+     * Pins the reads of the current thread to the primary, or releases them.
+     *
+     * @param pinned {@code true} to read from the primary, {@code false} to read from the replicas again
+     */
+    public static void setPinnedToPrimary(boolean pinned) {
+        if (pinned) {
+            PINNED_TO_PRIMARY.set(Boolean.TRUE);
+        } else {
+            PINNED_TO_PRIMARY.remove();
+        }
+    }
+
+    /**
+     * @return {@code true} if the reads of the current thread are pinned to the primary
+     */
+    public static boolean isPinnedToPrimary() {
+        return PINNED_TO_PRIMARY.get() != null;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!isPinnedToPrimary()) {
+            int start = Math.floorMod(next.getAndIncrement(), Math.max(1, replicas.size()));
+            for (int i = 0; i < replicas.size(); i++) {
+                Replica replica = replicas.get((start + i) % replicas.size());
+                if (!replica.isAvailable()) {
+                    continue;
+                }
+                try {
+                    Connection connection = replica.dataSource().getConnection();
+                    replicaConnections.increment();
+                    return connection;
+                } catch (SQLException e) {
+                    log.warn("Replica {} is unavailable, reading from another one or the primary", replica.name(), e);
+                    replica.markUnavailable();
+                }
+            }
+        }
+        primaryConnections.increment();
+        return primary.getConnection();
+    }
+
+    /**
+     * Not supported: every pool connects with its own configured credentials, as {@code HikariDataSource} does.
+     *
+     * @throws SQLFeatureNotSupportedException always
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Replica connections use the credentials of their pools");
+    }
+
+    /**
+     * @return the primary, which also serves the reads no replica can take
+     */
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    /**
+     * @return the replicas, in configuration order
+     */
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * @return the number of read-only connections handed out by the replicas
+     */
+    public long getReplicaConnections() {
+        return replicaConnections.sum();
+    }
+
+    /**
+     * @return the number of read-only connections handed out by the primary instead of a replica
+     */
+    public long getPrimaryConnections() {
+        return primaryConnections.sum();
+    }
+
+    /**
+     * Closes the connection pools of the primary and the replicas. Every pool is closed even if another
+     * fails to close; the first failure is then thrown with the others suppressed.
+     *
+     * @throws IllegalStateException if a pool could not be closed
+     */
+    @Override
+    public void close() {
+        IllegalStateException failure = null;
+        for (Replica replica : replicas) {
+            failure = closePool(replica.dataSource(), failure);
+        }
+        failure = closePool(primary, failure);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static IllegalStateException closePool(DataSource dataSource, IllegalStateException failure) {
+        if (!(dataSource instanceof AutoCloseable pool)) {
+            return failure;
+        }
+        try {
+            pool.close();
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure == null) {
+                return new IllegalStateException("Could not close connection pool " + dataSource, e);
+            }
+            failure.addSuppressed(e);
+        }
+        return failure;
+    }
+
+    /**
+     * A replica, with its connection pool and its last known state.
+     */
+    public static class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean available;
+        private volatile Duration lag;
+
+        public Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public DataSource dataSource() {
+            return dataSource;
+        }
+
+        /**
+         * @return {@code true} if reads may use the replica
+         */
+        public boolean isAvailable() {
+            return available;
+        }
+
+        /**
+         * @return the replication lag measured by the last successful check, or {@code null} if there was none
+         */
+        public Duration lag() {
+            return lag;
+        }
+
+        /**
+         * Records a successful check, making the replica available if it does not lag by more than allowed.
+         *
+         * @param lag the measured replication lag
+         * @param maxLag the maximum lag of a replica still used for reads
+         */
+        public void update(Duration lag, Duration maxLag) {
+            this.lag = lag;
+            this.available = lag.compareTo(maxLag) <= 0;
+        }
+
+        /**
+         * Stops using the replica until its next successful check.
+         */
+        public void markUnavailable() {
+            this.available = false;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.utils;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token buckets keyed by client, all with the same rate and burst.
+ * <p>
+ * A bucket holds up to {@code burst} tokens and refills at {@code permitsPerSecond}; each request takes one token.
+ * The buckets are spread over stripes by key hash, each stripe a plain map guarded by its own lock, so that
+ * clients landing on different stripes never contend. Buckets idle long enough to be full again are
+ * indistinguishable from new ones, and are dropped as their stripe is used.
+ */
+public class TokenBuckets {
+
+    /**
+     * Number of acquisitions on a stripe between two sweeps of its idle buckets.
+     */
+    private static final int SWEEP_INTERVAL = 1024;
+
+    private final Stripe[] stripes;
+    private final double burst;
+    private final double permitsPerNano;
+    private final long refillNanos;
+
+    /**
+     * Constructor to initialize the rate, burst and striping.
+     *
+     * @param permitsPerSecond the sustained rate of each bucket
+     * @param burst the capacity of each bucket
+     * @param stripes the number of stripes, rounded up to a power of two
+     */
+    public TokenBuckets(double permitsPerSecond, int burst, int stripes) {
+        if (permitsPerSecond <= 0 || burst < 1 || stripes < 1) {
+            throw new IllegalArgumentException("The rate, burst and stripes of token buckets must be positive");
+        }
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.burst = burst;
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.refillNanos = (long) Math.ceil(burst / permitsPerNano);
+    }
+
+    /**
+     * Takes a token from the bucket of a key if it has one.
+     *
+     * @param key the client
+     * @param now the current time, from {@link System#nanoTime()}
+     * @return 0 if a token was taken, otherwise the nanoseconds until the bucket has one
+     */
+    public long tryAcquire(String key, long now) {
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            if (++stripe.acquisitions % SWEEP_INTERVAL == 0) {
+                sweep(stripe, now);
+            }
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(burst, now);
+                stripe.buckets.put(key, bucket);
+            } else {
+                bucket.tokens = Math.min(burst, bucket.tokens + (now - bucket.updatedAt) * permitsPerNano);
+                bucket.updatedAt = now;
+            }
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((1 - bucket.tokens) / permitsPerNano));
+        }
+    }
+
+    /**
+     * @return the number of buckets currently tracked
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.buckets.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of stripes
+     */
+    public int stripes() {
+        return stripes.length;
+    }
+
+    private Stripe stripe(String key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    /**
+     * Drops the buckets of a stripe that would be full by now.
+     */
+    private void sweep(Stripe stripe, long now) {
+        Iterator<Map.Entry<String, Bucket>> entries = stripe.buckets.entrySet().iterator();
+        while (entries.hasNext()) {
+            if (now - entries.next().getValue().updatedAt >= refillNanos) {
+                entries.remove();
+            }
+        }
+    }
+
+    private static final class Stripe {
+        private final Map<String, Bucket> buckets = new HashMap<>();
+        private int acquisitions;
+    }
+
+    private static final class Bucket {
+        private double tokens;
+        private long updatedAt;
+
+        private Bucket(double tokens, long updatedAt) {
+            this.tokens = tokens;
+            this.updatedAt = updatedAt;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.utils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory substring index over image URLs.
+ * <p>
+ * Every URL is lower-cased and split into its three-character substrings (trigrams); each trigram maps to the
+ * sorted IDs of the images containing it. A query is answered by intersecting the posting lists of its
+ * trigrams, starting with the shortest, and checking the few remaining candidates with {@link String#contains}.
+ * Matching is case-insensitive, like the default MySQL collation, and the query is taken literally:
+ * {@code %} and {@code _} are not wildcards. Queries shorter than three characters have no trigram and are
+ * answered by scanning the indexed URLs.
+ * <p>
+ * Reads run concurrently with each other; updates take an exclusive lock.
+ */
+public class TrigramIndex {
+
+    private static final long[] NONE = new long[0];
+
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Adds an image, replacing any previous entry with the same ID.
+     *
+     * @param id the ID of the image
+     * @param url the URL of the image
+     * @param duration the display duration of the image
+     */
+    public void put(long id, String url, int duration) {
+        Entry entry = new Entry(url.toLowerCase(Locale.ROOT), duration);
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            entries.put(id, entry);
+            for (long trigram : trigrams(entry.url())) {
+                postings.computeIfAbsent(trigram, t -> new Postings()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes an image; does nothing if it is not indexed.
+     *
+     * @param id the ID of the image
+     */
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param id the ID of an image
+     * @return {@code true} if the image is indexed
+     */
+    public boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return entries.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the images whose URL contains the query.
+     *
+     * @param query the substring to look for
+     * @param duration the display duration to match, or {@code 0} for any
+     * @return the IDs of the matching images in ascending order
+     */
+    public long[] search(String query, int duration) {
+        String needle = query.toLowerCase(Locale.ROOT);
+        lock.readLock().lock();
+        try {
+            return needle.length() < 3 ? scan(needle, duration) : lookup(needle, duration);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of indexed images
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long[] lookup(String needle, int duration) {
+        long[] trigrams = trigrams(needle);
+        Postings[] lists = new Postings[trigrams.length];
+        for (int i = 0; i < trigrams.length; i++) {
+            lists[i] = postings.get(trigrams[i]);
+            if (lists[i] == null) {
+                return NONE;
+            }
+        }
+        Arrays.sort(lists, Comparator.comparingInt(Postings::size));
+
+        Postings shortest = lists[0];
+        long[] matches = new long[shortest.size()];
+        int count = 0;
+        candidates:
+        for (int i = 0; i < shortest.size(); i++) {
+            long id = shortest.get(i);
+            for (int j = 1; j < lists.length; j++) {
+                if (!lists[j].contains(id)) {
+                    continue candidates;
+                }
+            }
+            if (matches(entries.get(id), needle, duration)) {
+                matches[count++] = id;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    private long[] scan(String needle, int duration) {
+        long[] matches = new long[entries.size()];
+        int count = 0;
+        for (Map.Entry<Long, Entry> entry : entries.entrySet()) {
+            if (matches(entry.getValue(), needle, duration)) {
+                matches[count++] = entry.getKey();
+            }
+        }
+        long[] result = Arrays.copyOf(matches, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static boolean matches(Entry entry, String needle, int duration) {
+        return entry != null
+                && (duration == 0 || entry.duration() == duration)
+                && entry.url().contains(needle);
+    }
+
+    private void removeLocked(long id) {
+        Entry previous = entries.remove(id);
+        if (previous == null) {
+            return;
+        }
+        for (long trigram : trigrams(previous.url())) {
+            Postings list = postings.get(trigram);
+            if (list != null && list.remove(id) && list.size() == 0) {
+                postings.remove(trigram);
+            }
+        }
+    }
+
+    /**
+     * Returns the distinct trigrams of a string, each packed into a long.
+     */
+    static long[] trigrams(String value) {
+        if (value.length() < 3) {
+            return NONE;
+        }
+        long[] trigrams = new long[value.length() - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = ((long) value.charAt(i) << 32) | ((long) value.charAt(i + 1) << 16) | value.charAt(i + 2);
+        }
+        return Arrays.stream(trigrams).distinct().toArray();
+    }
+
+    /**
+     * The lower-cased URL and duration of an indexed image.
+     */
+    private record Entry(String url, int duration) {
+    }
+
+    /**
+     * A sorted, growable array of image IDs. IDs are mostly added in ascending order, which appends.
+     */
+    static final class Postings {
+
+        private long[] ids = new long[4];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        long get(int index) {
+            return ids[index];
+        }
+
+        boolean contains(long id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+
+        void add(long id) {
+            int index = size == 0 || ids[size - 1] < id ? -(size + 1) : Arrays.binarySearch(ids, 0, size, id);
+            if (index >= 0) {
+                return;
+            }
+            int insertAt = -(index + 1);
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+            }
+            System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+            ids[insertAt] = id;
+            size++;
+        }
+
+        boolean remove(long id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.utils;
+
+import com.michaelavoyan.imageservice.config.VerifierProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded LRU/TTL cache of image verification results, keyed by normalized URL.
+ * <p>
+ * Expired entries are kept until evicted so that their ETag/Last-Modified validators can be used
+ * for a conditional GET, and served instead of failing when their revalidation fails. Failed loads are
+ * not cached. Concurrent requests for the same URL share a single in-flight verification.
+ * Hit, miss, eviction and revalidation counters are published through Micrometer as
+ * {@code cache.*} meters tagged {@code cache=imageVerification}.
+ */
+@Component
+public class VerificationCache implements MeterBinder {
+
+    private static final String CACHE_NAME = "imageVerification";
+
+    private final VerifierProperties.Cache properties;
+    private final Map<String, Entry> entries;
+    private final ConcurrentMap<String, CompletableFuture<VerificationResult>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder staleServed = new LongAdder();
+
+    /**
+     * Constructor to initialize the cache with its configuration.
+     *
+     * @param properties the verifier configuration
+     */
+    public VerificationCache(VerifierProperties properties) {
+        this.properties = properties.getCache();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                boolean evict = size() > VerificationCache.this.properties.getMaxEntries();
+                if (evict) {
+                    evictions.increment();
+                }
+                return evict;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached result for a URL, or loads it.
+     * A fresh cached result is returned immediately. Otherwise the loader is called with the expired
+     * result (or {@code null}), so that it can revalidate it, and its result is cached. If the load fails,
+     * as when the origin cannot be reached, nothing is cached and the expired result, if any, is returned
+     * instead of the failure. Callers arriving while a load is in progress receive the same future.
+     *
+     * @param normalizedUrl the URL, as returned by {@link #normalize(String)}
+     * @param loader verifies the URL, given the previous (expired) result or {@code null}
+     * @return a future completing with the verification result
+     */
+    public CompletableFuture<VerificationResult> get(
+            String normalizedUrl,
+            Function<VerificationResult, CompletableFuture<VerificationResult>> loader
+    ) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(normalizedUrl);
+        }
+        if (entry != null && entry.isFresh()) {
+            hits.increment();
+            return CompletableFuture.completedFuture(entry.result());
+        }
+
+        CompletableFuture<VerificationResult> pending = new CompletableFuture<>();
+        CompletableFuture<VerificationResult> existing = inFlight.putIfAbsent(normalizedUrl, pending);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+        misses.increment();
+
+        VerificationResult previous = entry != null && entry.result().hasValidators() ? entry.result() : null;
+        if (previous != null) {
+            revalidations.increment();
+        }
+        CompletableFuture<VerificationResult> load;
+        try {
+            load = loader.apply(previous);
+        } catch (RuntimeException e) {
+            inFlight.remove(normalizedUrl, pending);
+            throw e;
+        }
+        load.whenComplete((result, error) -> {
+            if (error == null) {
+                put(normalizedUrl, result);
+            }
+            inFlight.remove(normalizedUrl, pending);
+            if (error == null) {
+                pending.complete(result);
+            } else if (entry != null) {
+                staleServed.increment();
+                pending.complete(entry.result());
+            } else {
+                pending.completeExceptionally(error);
+            }
+        });
+        return pending;
+    }
+
+    private void put(String normalizedUrl, VerificationResult result) {
+        if (properties.getMaxEntries() <= 0) {
+            return;
+        }
+        Duration ttl = result.valid() ? properties.getTtl() : properties.getNegativeTtl();
+        Entry entry = new Entry(result, System.nanoTime() + ttl.toNanos());
+        synchronized (entries) {
+            entries.put(normalizedUrl, entry);
+        }
+        puts.increment();
+    }
+
+    /**
+     * Returns the number of cached results, fresh or expired.
+     *
+     * @return the cache size
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Normalizes a URL so that equivalent spellings share one cache entry:
+     * the scheme and host are lower-cased, default ports, dot segments and fragments are removed.
+     *
+     * @param url the URL
+     * @return the normalized URL
+     * @throws IllegalArgumentException if the URL is not a valid absolute HTTP(S) URL
+     */
+    public static String normalize(String url) {
+        URI uri = URI.create(url.trim()).normalize();
+        String scheme = uri.getScheme() == null ? null : uri.getScheme().toLowerCase(Locale.ROOT);
+        if (uri.getHost() == null || !("http".equals(scheme) || "https".equals(scheme))) {
+            throw new IllegalArgumentException("Not an absolute HTTP(S) URL: " + url);
+        }
+
+        StringBuilder normalized = new StringBuilder(url.length())
+                .append(scheme).append("://");
+        if (uri.getRawUserInfo() != null) {
+            normalized.append(uri.getRawUserInfo()).append('@');
+        }
+        normalized.append(uri.getHost().toLowerCase(Locale.ROOT));
+        int port = uri.getPort();
+        if (port != -1 && !(port == 80 && "http".equals(scheme)) && !(port == 443 && "https".equals(scheme))) {
+            normalized.append(':').append(port);
+        }
+        String path = uri.getRawPath();
+        normalized.append(path == null || path.isEmpty() ? "/" : path);
+        if (uri.getRawQuery() != null) {
+            normalized.append('?').append(uri.getRawQuery());
+        }
+        return normalized.toString();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new CacheMeterBinder<>(this, CACHE_NAME, Tags.empty()) {
+            @Override
+            protected Long size() {
+                return (long) VerificationCache.this.size();
+            }
+
+            @Override
+            protected long hitCount() {
+                return hits.sum();
+            }
+
+            @Override
+            protected Long missCount() {
+                return misses.sum();
+            }
+
+            @Override
+            protected Long evictionCount() {
+                return evictions.sum();
+            }
+
+            @Override
+            protected long putCount() {
+                return puts.sum();
+            }
+
+            @Override
+            protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+                FunctionCounter.builder("cache.revalidations", revalidations, LongAdder::sum)
+                        .tag("cache", CACHE_NAME)
+                        .description("Expired entries revalidated with a conditional GET")
+                        .register(registry);
+                FunctionCounter.builder("cache.coalesced", coalesced, LongAdder::sum)
+                        .tag("cache", CACHE_NAME)
+                        .description("Requests that joined an in-flight verification of the same URL")
+                        .register(registry);
+                FunctionCounter.builder("cache.stale_served", staleServed, LongAdder::sum)
+                        .tag("cache", CACHE_NAME)
+                        .description("Expired entries served because their revalidation failed")
+                        .register(registry);
+            }
+        }.bindTo(registry);
+    }
+
+    long hitCount() {
+        return hits.sum();
+    }
+
+    long missCount() {
+        return misses.sum();
+    }
+
+    long evictionCount() {
+        return evictions.sum();
+    }
+
+    long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    long staleServedCount() {
+        return staleServed.sum();
+    }
+
+    /**
+     * A cached result and the {@link System#nanoTime()} at which it expires.
+     */
+    private record Entry(VerificationResult result, long expiresAt) {
+        boolean isFresh() {
+            return System.nanoTime() - expiresAt < 0;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.utils;
+
+/**
+ * The outcome of verifying an image URL, together with the origin's cache validators
+ * so that the verdict can later be revalidated with a conditional GET.
+ *
+ * @param valid whether the URL points to a readable image
+ * @param etag the {@code ETag} returned by the origin, or {@code null}
+ * @param lastModified the {@code Last-Modified} date returned by the origin, or {@code null}
+ * @param perceptualHash the {@link PerceptualHash} of the image, or {@code null} if it was not computed
+ */
+public record VerificationResult(boolean valid, String etag, String lastModified, Long perceptualHash) {
+
+    /**
+     * Creates a result without a perceptual hash.
+     *
+     * @param valid whether the URL points to a readable image
+     * @param etag the {@code ETag} returned by the origin, or {@code null}
+     * @param lastModified the {@code Last-Modified} date returned by the origin, or {@code null}
+     */
+    public VerificationResult(boolean valid, String etag, String lastModified) {
+        this(valid, etag, lastModified, null);
+    }
+
+    /**
+     * Creates a result without cache validators.
+     *
+     * @param valid whether the URL points to a readable image
+     * @return the result
+     */
+    public static VerificationResult of(boolean valid) {
+        return new VerificationResult(valid, null, null);
+    }
+
+    /**
+     * Checks whether the result can be revalidated with a conditional GET.
+     *
+     * @return {@code true} if the origin returned an ETag or a Last-Modified date
+     */
+    public boolean hasValidators() {
+        return etag != null || lastModified != null;
+    }
+}
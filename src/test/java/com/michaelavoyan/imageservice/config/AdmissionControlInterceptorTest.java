@@ -0,0 +1,135 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import com.michaelavoyan.imageservice.controllers.ImageServiceController;
+import com.michaelavoyan.imageservice.errors.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.DispatcherType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for the {@link AdmissionControlInterceptor} class.
+ */
+class AdmissionControlInterceptorTest {
+
+    private final ImageServiceController controller = mock(ImageServiceController.class);
+
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    private RateLimitProperties properties;
+
+    private AdmissionControlInterceptor interceptor;
+
+    private SimpleMeterRegistry registry;
+
+    /**
+     * Initializes the interceptor with a burst of two slideshows per client and two writes in flight.
+     */
+    @BeforeEach
+    void setUp() {
+        properties = new RateLimitProperties();
+        properties.setAddSlideshow(new RateLimitProperties.Limit(0.001, 2));
+        properties.setMaxConcurrentWrites(2);
+        interceptor = new AdmissionControlInterceptor(properties);
+        registry = new SimpleMeterRegistry();
+        interceptor.bindTo(registry);
+    }
+
+    /**
+     * Tests that a client over its rate is shed with a retry delay, even with a new API key,
+     * while other addresses are still admitted.
+     */
+    @Test
+    void testPreHandle_ShedsClientOverRate() throws Exception {
+        HandlerMethod addSlideshow = handler("addSlideshow");
+        for (int i = 0; i < 2; i++) {
+            MockHttpServletRequest request = request("key-1", "10.0.0.1");
+            assertTrue(interceptor.preHandle(request, response, addSlideshow));
+            interceptor.afterCompletion(request, response, addSlideshow, null);
+        }
+
+        TooManyRequestsException e = assertThrows(TooManyRequestsException.class,
+                () -> interceptor.preHandle(request("key-2", "10.0.0.1"), response, addSlideshow));
+
+        assertTrue(e.getRetryAfter().compareTo(Duration.ofSeconds(1)) > 0);
+        assertTrue(interceptor.preHandle(request(null, "10.0.0.2"), response, addSlideshow));
+        assertEquals(3, count("addSlideshow", "admitted"));
+        assertEquals(1, count("addSlideshow", "rate_limited"));
+    }
+
+    /**
+     * Tests that writes over the concurrency cap are shed until an admitted request completes,
+     * and that the cap is shared by the endpoints.
+     */
+    @Test
+    void testPreHandle_ShedsOverConcurrency() throws Exception {
+        HandlerMethod addImage = handler("addImage");
+        HandlerMethod addProofOfPlay = handler("addProofOfPlay");
+        MockHttpServletRequest first = request("key-1", "10.0.0.1");
+        assertTrue(interceptor.preHandle(first, response, addImage));
+        assertTrue(interceptor.preHandle(request("key-2", "10.0.0.1"), response, addProofOfPlay));
+
+        assertThrows(TooManyRequestsException.class,
+                () -> interceptor.preHandle(request("key-3", "10.0.0.1"), response, addImage));
+        assertEquals(2, interceptor.getWritesInFlight());
+
+        interceptor.afterCompletion(first, response, addImage, null);
+        interceptor.afterCompletion(first, response, addImage, null);
+
+        assertEquals(1, interceptor.getWritesInFlight());
+        assertTrue(interceptor.preHandle(request("key-3", "10.0.0.1"), response, addImage));
+        assertEquals(1, count("addImage", "concurrency_limited"));
+        assertEquals(2, registry.get("ratelimit.writes.in_flight").gauge().value());
+    }
+
+    /**
+     * Tests that reads, other handlers and asynchronous dispatches of admitted requests pass through.
+     */
+    @Test
+    void testPreHandle_IgnoresOtherRequests() throws Exception {
+        properties.setMaxConcurrentWrites(0);
+        interceptor = new AdmissionControlInterceptor(properties);
+        MockHttpServletRequest async = request("key-1", "10.0.0.1");
+        async.setDispatcherType(DispatcherType.ASYNC);
+
+        assertTrue(interceptor.preHandle(request("key-1", "10.0.0.1"), response,
+                handler("getSlideshowImages")));
+        assertTrue(interceptor.preHandle(async, response, handler("addImage")));
+        assertTrue(interceptor.preHandle(request("key-1", "10.0.0.1"), response, new Object()));
+    }
+
+    private HandlerMethod handler(String name) throws NoSuchMethodException {
+        for (var method : ImageServiceController.class.getMethods()) {
+            if (method.getName().equals(name)) {
+                return new HandlerMethod(controller, method);
+            }
+        }
+        throw new NoSuchMethodException(name);
+    }
+
+    private double count(String endpoint, String outcome) {
+        return registry.get("ratelimit.requests").tag("endpoint", endpoint).tag("outcome", outcome)
+                .functionCounter().count();
+    }
+
+    private static MockHttpServletRequest request(String apiKey, String address) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/write");
+        if (apiKey != null) {
+            request.addHeader("X-API-Key", apiKey);
+        }
+        request.setRemoteAddr(address);
+        return request;
+    }
+}
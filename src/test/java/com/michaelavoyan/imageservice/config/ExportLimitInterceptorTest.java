@@ -0,0 +1,94 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import com.michaelavoyan.imageservice.controllers.ExportController;
+import com.michaelavoyan.imageservice.controllers.ImageServiceController;
+import com.michaelavoyan.imageservice.errors.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.DispatcherType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Unit tests for the {@link ExportLimitInterceptor} class.
+ */
+class ExportLimitInterceptorTest {
+
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    private ExportLimitInterceptor interceptor;
+
+    private SimpleMeterRegistry registry;
+
+    /**
+     * Initializes the interceptor with two exports in flight.
+     */
+    @BeforeEach
+    void setUp() {
+        ExportProperties properties = new ExportProperties();
+        properties.setMaxConcurrent(2);
+        interceptor = new ExportLimitInterceptor(properties);
+        registry = new SimpleMeterRegistry();
+        interceptor.bindTo(registry);
+    }
+
+    /**
+     * Tests that exports over the cap are rejected until an admitted export completes.
+     */
+    @Test
+    void testPreHandle_RejectsOverConcurrency() throws Exception {
+        HandlerMethod exportImages = handler(ExportController.class, "exportImages");
+        HandlerMethod exportPlays = handler(ExportController.class, "exportProofOfPlay");
+        MockHttpServletRequest first = new MockHttpServletRequest();
+        assertTrue(interceptor.preHandle(first, response, exportImages));
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest(), response, exportPlays));
+
+        TooManyRequestsException e = assertThrows(TooManyRequestsException.class,
+                () -> interceptor.preHandle(new MockHttpServletRequest(), response, exportImages));
+        assertNotNull(e.getRetryAfter());
+        assertEquals(2, interceptor.getExportsInFlight());
+
+        interceptor.afterCompletion(first, response, exportImages, null);
+        interceptor.afterCompletion(first, response, exportImages, null);
+
+        assertEquals(1, interceptor.getExportsInFlight());
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest(), response, exportImages));
+        assertEquals(1, registry.get("export.rejected").functionCounter().count());
+        assertEquals(2, registry.get("export.in_flight").gauge().value());
+    }
+
+    /**
+     * Tests that other handlers and asynchronous dispatches of admitted exports pass through.
+     */
+    @Test
+    void testPreHandle_IgnoresOtherRequests() throws Exception {
+        ExportProperties properties = new ExportProperties();
+        properties.setMaxConcurrent(0);
+        interceptor = new ExportLimitInterceptor(properties);
+        MockHttpServletRequest async = new MockHttpServletRequest();
+        async.setDispatcherType(DispatcherType.ASYNC);
+
+        assertTrue(interceptor.preHandle(async, response, handler(ExportController.class, "exportImages")));
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest(), response,
+                handler(ImageServiceController.class, "getSlideshowImages")));
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest(), response, new Object()));
+    }
+
+    private static HandlerMethod handler(Class<?> type, String name) throws NoSuchMethodException {
+        for (var method : type.getMethods()) {
+            if (method.getName().equals(name)) {
+                return new HandlerMethod(mock(type), method);
+            }
+        }
+        throw new NoSuchMethodException(name);
+    }
+}
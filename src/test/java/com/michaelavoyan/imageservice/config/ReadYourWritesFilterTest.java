@@ -0,0 +1,93 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import com.michaelavoyan.imageservice.utils.ReplicaRoutingDataSource;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link ReadYourWritesFilter} class.
+ */
+class ReadYourWritesFilterTest {
+
+    private ReplicaProperties properties;
+
+    private ReadYourWritesFilter filter;
+
+    /**
+     * Initializes the filter with the default properties.
+     */
+    @BeforeEach
+    void setUp() {
+        properties = new ReplicaProperties();
+        filter = new ReadYourWritesFilter(properties);
+    }
+
+    /**
+     * Tests that a client reads from the replicas until it writes, then from the primary.
+     */
+    @Test
+    void testDoFilter_PinsReadsAfterWrite() throws Exception {
+        assertFalse(pinned(request("GET", "client-1", "10.0.0.1")));
+        assertTrue(pinned(request("POST", "client-1", "10.0.0.1")));
+        assertTrue(pinned(request("GET", "client-1", "10.0.0.2")));
+        assertFalse(pinned(request("GET", "client-2", "10.0.0.1")));
+        assertFalse(ReplicaRoutingDataSource.isPinnedToPrimary());
+    }
+
+    /**
+     * Tests that clients sending no header are identified by their address.
+     */
+    @Test
+    void testDoFilter_IdentifiesClientsByAddress() throws Exception {
+        pinned(request("DELETE", null, "10.0.0.1"));
+
+        assertTrue(pinned(request("GET", null, "10.0.0.1")));
+        assertFalse(pinned(request("GET", null, "10.0.0.2")));
+    }
+
+    /**
+     * Tests that reads return to the replicas once the window has passed.
+     */
+    @Test
+    void testDoFilter_WindowExpires() throws Exception {
+        properties.setReadYourWritesWindow(Duration.ofMillis(50));
+        pinned(request("PUT", "client-1", "10.0.0.1"));
+
+        Thread.sleep(100);
+
+        assertFalse(pinned(request("GET", "client-1", "10.0.0.1")));
+    }
+
+    /**
+     * Runs a request through the filter.
+     *
+     * @return whether reads were pinned to the primary while the request was handled
+     */
+    private boolean pinned(MockHttpServletRequest request) throws Exception {
+        AtomicBoolean pinned = new AtomicBoolean();
+        FilterChain chain = (req, res) -> pinned.set(ReplicaRoutingDataSource.isPinnedToPrimary());
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        return pinned.get();
+    }
+
+    private MockHttpServletRequest request(String method, String client, String address) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, "/api/images/search");
+        if (client != null) {
+            request.addHeader(properties.getClientHeader(), client);
+        }
+        request.setRemoteAddr(address);
+        return request;
+    }
+}
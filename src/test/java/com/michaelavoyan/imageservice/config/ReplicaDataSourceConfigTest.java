@@ -0,0 +1,145 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.config;
+
+import com.michaelavoyan.imageservice.entities.Slideshow;
+import com.michaelavoyan.imageservice.repositories.SlideshowRepository;
+import com.michaelavoyan.imageservice.services.ReplicaMonitor;
+import com.michaelavoyan.imageservice.services.SlideshowOrderCache;
+import com.michaelavoyan.imageservice.utils.ReplicaRoutingDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link ReplicaDataSourceConfig}, with two H2 databases standing in for the primary and a replica.
+ * Nothing is replicated between them: the tests copy the schema and the rows a replica would have received.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1",
+        "imageservice.replicas.enabled=true",
+        "imageservice.replicas.instances[0].url=jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1",
+        "imageservice.replicas.check-interval=1h"
+})
+@ActiveProfiles("test")
+class ReplicaDataSourceConfigTest {
+
+    @Autowired
+    private ReplicaMonitor replicaMonitor;
+
+    @Autowired
+    private SlideshowRepository slideshowRepository;
+
+    @Autowired
+    private SlideshowOrderCache slideshowOrderCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private JdbcTemplate replica;
+
+    private ReplicaRoutingDataSource.Replica state;
+
+    /**
+     * Copies the schema of the tables used by the tests to the replica, and brings the replica up to date.
+     */
+    @BeforeEach
+    void setUp() {
+        state = replicaMonitor.getRouter().getReplicas().get(0);
+        replica = new JdbcTemplate(state.dataSource());
+        replica.execute("DROP ALL OBJECTS");
+        for (String statement : jdbcTemplate.queryForList(
+                "SCRIPT NODATA TABLE slideshow, replica_heartbeat", String.class)) {
+            replica.execute(statement);
+        }
+        replicateHeartbeat();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReplicaRoutingDataSource.setPinnedToPrimary(false);
+    }
+
+    /**
+     * Tests that read-only transactions read from the replica, and other work from the primary.
+     */
+    @Test
+    void testReadOnlyTransactionsUseReplica() {
+        assertTrue(state.isAvailable());
+        Slideshow slideshow = slideshowRepository.save(new Slideshow());
+
+        assertNull(slideshowOrderCache.version(slideshow.getId()));
+
+        replicate("slideshow", slideshow.getId());
+
+        assertEquals(slideshow.getVersion(), slideshowOrderCache.version(slideshow.getId()));
+    }
+
+    /**
+     * Tests that reads pinned to the primary, as after a write of the same client, see the latest writes.
+     */
+    @Test
+    void testPinnedReadsUsePrimary() {
+        Slideshow slideshow = slideshowRepository.save(new Slideshow());
+
+        ReplicaRoutingDataSource.setPinnedToPrimary(true);
+
+        assertEquals(slideshow.getVersion(), slideshowOrderCache.version(slideshow.getId()));
+    }
+
+    /**
+     * Tests that reads fall back to the primary when the replica lags or is down.
+     */
+    @Test
+    void testFallsBackToPrimary() {
+        Slideshow slideshow = slideshowRepository.save(new Slideshow());
+        replica.update("UPDATE replica_heartbeat SET beat_at = beat_at - 60000");
+
+        replicaMonitor.check();
+
+        assertFalse(state.isAvailable());
+        assertEquals(slideshow.getVersion(), slideshowOrderCache.version(slideshow.getId()));
+
+        replicateHeartbeat();
+        assertTrue(state.isAvailable());
+        replica.execute("DROP TABLE replica_heartbeat");
+
+        replicaMonitor.check();
+
+        assertFalse(state.isAvailable());
+        assertEquals(slideshow.getVersion(), slideshowOrderCache.version(slideshow.getId()));
+    }
+
+    /**
+     * Writes a heartbeat to the primary, copies it to the replica and checks the replica.
+     */
+    private void replicateHeartbeat() {
+        replicaMonitor.check();
+        replicate("replica_heartbeat", 1L);
+        replicaMonitor.check();
+    }
+
+    /**
+     * Copies a row from the primary to the replica.
+     */
+    private void replicate(String table, Long id) {
+        Map<String, Object> row = jdbcTemplate.queryForMap("SELECT * FROM " + table + " WHERE id = ?", id);
+        List<String> columns = new ArrayList<>(row.keySet());
+        replica.update("MERGE INTO " + table + " (" + String.join(", ", columns) + ") KEY (id) VALUES ("
+                        + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")",
+                columns.stream().map(row::get).toArray());
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.controllers;
+
+import jakarta.servlet.ServletRequestEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockServletContext;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link FileReleaseListener} class.
+ */
+class FileReleaseListenerTest {
+
+    private final FileReleaseListener listener = new FileReleaseListener();
+
+    /**
+     * Tests that a file registered by a request is released once the request is destroyed.
+     */
+    @Test
+    void testRequestDestroyed_ReleasesFile() {
+        AtomicInteger releases = new AtomicInteger();
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        FileResponses.releaseAfter(request, CompletableFuture.completedFuture(releases::incrementAndGet));
+
+        assertEquals(0, releases.get());
+        listener.requestDestroyed(new ServletRequestEvent(new MockServletContext(), request));
+
+        assertEquals(1, releases.get());
+    }
+
+    /**
+     * Tests that a file still pending when the request is destroyed is released once available.
+     */
+    @Test
+    void testRequestDestroyed_ReleasesPendingFileWhenAvailable() {
+        AtomicInteger releases = new AtomicInteger();
+        CompletableFuture<AutoCloseable> file = new CompletableFuture<>();
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        FileResponses.releaseAfter(request, file);
+
+        listener.requestDestroyed(new ServletRequestEvent(new MockServletContext(), request));
+        assertEquals(0, releases.get());
+        file.complete(releases::incrementAndGet);
+
+        assertEquals(1, releases.get());
+    }
+}
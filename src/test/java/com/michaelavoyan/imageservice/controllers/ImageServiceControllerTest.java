@@ -4,29 +4,63 @@
 
 package com.michaelavoyan.imageservice.controllers;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.michaelavoyan.imageservice.config.DuplicateProperties;
+import com.michaelavoyan.imageservice.config.SearchProperties;
+import com.michaelavoyan.imageservice.config.SlideshowOrderCacheProperties;
+import com.michaelavoyan.imageservice.config.SlideshowProperties;
+import com.michaelavoyan.imageservice.dto.ImageHashEntry;
+import com.michaelavoyan.imageservice.dto.ImageSummary;
+import com.michaelavoyan.imageservice.dto.ImportResult;
+import com.michaelavoyan.imageservice.dto.OrderedImage;
+import com.michaelavoyan.imageservice.dto.PlayBatchResult;
+import com.michaelavoyan.imageservice.dto.PlayEvent;
+import com.michaelavoyan.imageservice.dto.PlayRecord;
+import com.michaelavoyan.imageservice.dto.PlayUpload;
 import com.michaelavoyan.imageservice.entities.Image;
 import com.michaelavoyan.imageservice.entities.ProofOfPlay;
 import com.michaelavoyan.imageservice.entities.Slideshow;
+import com.michaelavoyan.imageservice.events.ImageDeletedEvent;
+import com.michaelavoyan.imageservice.events.SlideshowDeletedEvent;
 import com.michaelavoyan.imageservice.repositories.ImageRepository;
 import com.michaelavoyan.imageservice.repositories.ProofOfPlayRepository;
 import com.michaelavoyan.imageservice.repositories.SlideshowRepository;
+import com.michaelavoyan.imageservice.services.EventOutbox;
+import com.michaelavoyan.imageservice.services.ImageOrderingService;
+import com.michaelavoyan.imageservice.services.ImageSearchService;
+import com.michaelavoyan.imageservice.services.PlayCounter;
+import com.michaelavoyan.imageservice.services.SimilarImageService;
+import com.michaelavoyan.imageservice.services.SlideshowOrderCache;
+import com.michaelavoyan.imageservice.services.SlideshowVerificationService;
+import com.michaelavoyan.imageservice.services.ProofOfPlayIngestor;
 import com.michaelavoyan.imageservice.utils.ImageVerifier;
+import com.michaelavoyan.imageservice.utils.VerificationResult;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 /**
@@ -47,11 +81,27 @@ class ImageServiceControllerTest {
     private ProofOfPlayRepository proofOfPlayRepository;
 
     @Mock
-    private ApplicationEventPublisher eventPublisher;
+    private EventOutbox eventOutbox;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
 
     @Mock
     private ImageVerifier imageVerifier;
 
+    @Mock
+    private ProofOfPlayIngestor proofOfPlayIngestor;
+
+    @Mock
+    private PlayCounter playCounter;
+
+    @Mock
+    private ImageOrderingService imageOrderingService;
+
+    private DuplicateProperties duplicateProperties;
+
+    private SimilarImageService similarImageService;
+
     private ImageServiceController controller;
 
     private Image image;
@@ -63,13 +113,26 @@ class ImageServiceControllerTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        duplicateProperties = new DuplicateProperties();
+        similarImageService = new SimilarImageService(imageRepository, duplicateProperties);
         controller = new ImageServiceController(
                 imageRepository,
                 slideshowRepository,
                 proofOfPlayRepository,
-                eventPublisher,
-                imageVerifier
+                eventOutbox,
+                new TransactionTemplate(transactionManager),
+                imageVerifier,
+                Runnable::run,
+                proofOfPlayIngestor,
+                playCounter,
+                new ImageSearchService(imageRepository, new SearchProperties()),
+                new SlideshowOrderCache(imageRepository, slideshowRepository,
+                        Jackson2ObjectMapperBuilder.json().build(), new SlideshowOrderCacheProperties()),
+                imageOrderingService,
+                similarImageService,
+                new SlideshowVerificationService(imageVerifier, similarImageService, new SlideshowProperties())
         );
+        when(proofOfPlayIngestor.maxUploadSize()).thenReturn(1000);
 
         image = new Image();
         image.setId(1L);
@@ -79,8 +142,8 @@ class ImageServiceControllerTest {
         slideshow.setId(1L);
         slideshow.setImages(List.of(image));
 
-        when(imageVerifier.createConnection(anyString())).thenReturn(null);
-        when(imageVerifier.isValidImageUrl(any())).thenReturn(CompletableFuture.completedFuture(true));
+        when(imageVerifier.verifyImageUrl(anyString()))
+                .thenReturn(CompletableFuture.completedFuture(VerificationResult.of(true)));
     }
     /**
      * Tests successful image addition.
@@ -88,7 +151,6 @@ class ImageServiceControllerTest {
     @Test
     void testAddImage_Success() throws Exception {
         when(imageRepository.save(any(Image.class))).thenReturn(image);
-        when(imageVerifier.isValidImageUrl(any())).thenReturn(CompletableFuture.completedFuture(true));
 
         CompletableFuture<ResponseEntity<?>> response = controller.addImage(image);
 
@@ -98,16 +160,72 @@ class ImageServiceControllerTest {
         });
     }
 
+    /**
+     * Tests that a saturated verification executor is surfaced to the caller.
+     */
+    @Test
+    void testAddImage_VerifierSaturated() {
+        when(imageVerifier.verifyImageUrl(anyString())).thenThrow(new RejectedExecutionException("Queue full"));
+
+        assertThrows(RejectedExecutionException.class, () -> controller.addImage(image));
+        verify(imageRepository, never()).save(any(Image.class));
+    }
+
+    /**
+     * Tests that a near-duplicate image is saved and flagged with the IDs of the images it resembles.
+     */
+    @Test
+    void testAddImage_FlagsNearDuplicate() throws Exception {
+        ResponseEntity<?> entity = addNearDuplicate();
+
+        assertEquals(200, entity.getStatusCode().value());
+        assertEquals("5", entity.getHeaders().getFirst("X-Similar-Images"));
+        verify(imageRepository).save(image);
+        assertEquals(0b1110L, image.getPerceptualHash());
+    }
+
+    /**
+     * Tests that a near-duplicate image is refused when near-duplicates are rejected.
+     */
+    @Test
+    void testAddImage_RejectsNearDuplicate() throws Exception {
+        duplicateProperties.setAction(DuplicateProperties.Action.REJECT);
+
+        ResponseEntity<?> entity = addNearDuplicate();
+
+        assertEquals(409, entity.getStatusCode().value());
+        assertEquals("Near-duplicate of image(s) 5.", entity.getBody());
+        verify(imageRepository, never()).save(any(Image.class));
+    }
+
+    /**
+     * Adds an image one bit away from an indexed image.
+     */
+    private ResponseEntity<?> addNearDuplicate() throws Exception {
+        when(imageRepository.findHashEntries(eq(0L), any(Limit.class)))
+                .thenReturn(List.of(new ImageHashEntry(5L, 0b1111L)));
+        when(imageRepository.save(any(Image.class))).thenReturn(image);
+        when(imageVerifier.verifyImageUrl(anyString())).thenReturn(
+                CompletableFuture.completedFuture(new VerificationResult(true, null, null, 0b1110L)));
+        similarImageService.rebuild();
+
+        return controller.addImage(image).get();
+    }
+
     /**
      * Tests successful image deletion.
      */
     @Test
     void testDeleteImage_Success() {
         when(imageRepository.existsById(1L)).thenReturn(true);
+        when(imageRepository.findSlideshowIdById(1L)).thenReturn(3L);
         doNothing().when(imageRepository).deleteById(1L);
 
         ResponseEntity<?> response = controller.deleteImage(1L);
         assertEquals(204, response.getStatusCode().value());
+        verify(slideshowRepository).incrementVersions(List.of(3L));
+        verify(eventOutbox).publish(new ImageDeletedEvent(1L, 3L));
+        verify(transactionManager).commit(any());
     }
 
     /**
@@ -125,30 +243,72 @@ class ImageServiceControllerTest {
      * Tests successful slideshow addition.
      */
     @Test
-    void testAddSlideshow_Success() {
+    void testAddSlideshow_Success() throws Exception {
+        when(imageVerifier.verifyImageUrl(image.getUrl()))
+                .thenReturn(CompletableFuture.completedFuture(new VerificationResult(true, null, null, 42L)));
         when(slideshowRepository.saveAndFlush(any(Slideshow.class))).thenReturn(slideshow);
-        if (slideshow.getImages() != null) {
-            for (Image image : slideshow.getImages()) {
-                image.setSlideshow(slideshow); // Manually assign slideshow to images
-            }
-        }
-        when(imageRepository.saveAll(anyList())).thenReturn(slideshow.getImages());
 
-        ResponseEntity<?> response = controller.addSlideshow(slideshow);
+        ResponseEntity<?> response = controller.addSlideshow(slideshow).get();
 
         assertEquals(200, response.getStatusCode().value());
+        assertEquals(42L, image.getPerceptualHash());
 
         verify(slideshowRepository, times(1)).saveAndFlush(any(Slideshow.class));
-        verify(imageRepository, times(1)).saveAll(anyList());
+        verify(imageRepository, times(1)).insertBatch(anyList());
+        verify(imageRepository, never()).saveAll(anyList());
+        verify(imageOrderingService).append(eq(slideshow.getId()), anyList());
+    }
+
+    /**
+     * Tests that a slideshow with an invalid image URL is not saved and the failed URL is reported.
+     */
+    @Test
+    void testAddSlideshow_InvalidImage() throws Exception {
+        Image invalid = new Image();
+        invalid.setUrl("https://example.com/not-an-image.html");
+        slideshow.setImages(List.of(image, invalid));
+        when(imageVerifier.verifyImageUrl(image.getUrl()))
+                .thenReturn(CompletableFuture.completedFuture(VerificationResult.of(true)));
+        when(imageVerifier.verifyImageUrl(invalid.getUrl()))
+                .thenReturn(CompletableFuture.completedFuture(VerificationResult.of(false)));
+
+        ResponseEntity<?> response = controller.addSlideshow(slideshow).get();
+
+        assertEquals(400, response.getStatusCode().value());
+        List<?> failures = assertInstanceOf(List.class, response.getBody());
+        assertEquals(1, failures.size());
+        ImportResult failure = assertInstanceOf(ImportResult.class, failures.get(0));
+        assertEquals(1, failure.index());
+        assertEquals(invalid.getUrl(), failure.url());
+        verify(slideshowRepository, never()).saveAndFlush(any(Slideshow.class));
+        verify(imageRepository, never()).insertBatch(anyList());
+    }
+
+    /**
+     * Tests that a saved slideshow serializes without nesting itself in each of its images,
+     * while an image still accepts a slideshow reference.
+     */
+    @Test
+    void testAddSlideshow_ResponseSerializes() throws Exception {
+        image.setSlideshow(slideshow);
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        JsonNode json = objectMapper.readTree(objectMapper.writeValueAsBytes(slideshow));
+
+        assertEquals(1, json.path("images").get(0).path("slideshow").path("id").asLong());
+        assertTrue(json.path("images").get(0).path("slideshow").path("images").isMissingNode());
+        Image posted = objectMapper.readValue("{\"url\": \"https://example.com/a.jpg\", \"duration\": 5, "
+                + "\"slideshow\": {\"id\": 7}}", Image.class);
+        assertEquals(7L, posted.getSlideshow().getId());
     }
 
     /**
      * Tests adding an empty slideshow.
      */
     @Test
-    void testAddSlideshow_BadRequest() {
+    void testAddSlideshow_BadRequest() throws Exception {
         Slideshow emptySlideshow = new Slideshow();
-        ResponseEntity<?> response = controller.addSlideshow(emptySlideshow);
+        ResponseEntity<?> response = controller.addSlideshow(emptySlideshow).get();
         assertEquals(400, response.getStatusCode().value());
     }
 
@@ -162,6 +322,7 @@ class ImageServiceControllerTest {
 
         ResponseEntity<?> response = controller.deleteSlideshow(1L);
         assertEquals(204, response.getStatusCode().value());
+        verify(eventOutbox).publish(new SlideshowDeletedEvent(1L, List.of()));
     }
 
     /**
@@ -180,16 +341,16 @@ class ImageServiceControllerTest {
      */
     @Test
     void testSearchImages() {
-        List<Image> images = List.of(image);
+        List<ImageSummary> images = List.of(new ImageSummary(1L, image.getUrl(), 5, null, 2L, 3L));
 
-        // Use nullable(Integer.class) instead of eq(null)
-        when(imageRepository.searchImages(eq("test"), nullable(Integer.class))).thenReturn(images);
+        when(imageRepository.searchImageSummaries("test", 0)).thenReturn(images);
 
-        ResponseEntity<List<Image>> response = controller.searchImages("test", null);
+        ResponseEntity<List<ImageSummary>> response = controller.searchImages("test", null);
 
         assertEquals(200, response.getStatusCode().value());
         assertNotNull(response.getBody());
         assertEquals(1, response.getBody().size());
+        assertEquals(3L, response.getBody().get(0).slideshowImageCount());
     }
 
     /**
@@ -197,10 +358,50 @@ class ImageServiceControllerTest {
      */
     @Test
     void testGetSlideshowImages_Success() {
-        when(slideshowRepository.findById(1L)).thenReturn(Optional.of(slideshow));
+        when(slideshowRepository.findVersionById(1L)).thenReturn(Optional.of(2L));
+        when(imageRepository.findOrderBySlideshowId(1L)).thenReturn(
+                List.of(new OrderedImage(1L, "https://example.com/image.jpg", 5, null)));
 
-        ResponseEntity<?> response = controller.getSlideshowImages(1L);
+        ResponseEntity<?> response = controller.getSlideshowImages(1L, null);
         assertEquals(200, response.getStatusCode().value());
+        assertEquals("[{\"id\":1,\"url\":\"https://example.com/image.jpg\",\"duration\":5,\"createdAt\":null}]",
+                new String((byte[]) response.getBody(), StandardCharsets.UTF_8));
+        assertEquals("\"2\"", response.getHeaders().getETag());
+        assertEquals("max-age=0, must-revalidate", response.getHeaders().getCacheControl());
+
+        controller.getSlideshowImages(1L, null);
+        verify(imageRepository, times(1)).findOrderBySlideshowId(1L);
+    }
+
+    /**
+     * Tests that a poll holding the current ETag is answered from the version alone.
+     */
+    @Test
+    void testGetSlideshowImages_NotModified() {
+        when(slideshowRepository.findVersionById(1L)).thenReturn(Optional.of(2L));
+
+        ResponseEntity<?> response = controller.getSlideshowImages(1L, "\"1\", W/\"2\"");
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals("\"2\"", response.getHeaders().getETag());
+        assertNull(response.getBody());
+        verify(imageRepository, never()).findOrderBySlideshowId(anyLong());
+    }
+
+    /**
+     * Tests that a poll holding an outdated ETag gets the current order even if an older one is cached.
+     */
+    @Test
+    void testGetSlideshowImages_StaleETag() {
+        when(slideshowRepository.findVersionById(1L)).thenReturn(Optional.of(1L));
+        controller.getSlideshowImages(1L, null);
+        when(slideshowRepository.findVersionById(1L)).thenReturn(Optional.of(2L));
+
+        ResponseEntity<?> response = controller.getSlideshowImages(1L, "\"1\"");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"2\"", response.getHeaders().getETag());
+        verify(imageRepository, times(2)).findOrderBySlideshowId(1L);
     }
 
     /**
@@ -208,14 +409,14 @@ class ImageServiceControllerTest {
      */
     @Test
     void testGetSlideshowImages_NotFound() {
-        when(slideshowRepository.findById(1L)).thenReturn(Optional.empty());
+        when(slideshowRepository.findVersionById(1L)).thenReturn(Optional.empty());
 
-        ResponseEntity<?> response = controller.getSlideshowImages(1L);
+        ResponseEntity<?> response = controller.getSlideshowImages(1L, null);
 
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
-        assertEquals(List.of(), response.getBody());
+        assertEquals("[]", new String((byte[]) response.getBody(), StandardCharsets.UTF_8));
 
-        verify(slideshowRepository, times(1)).findById(1L);
+        verify(slideshowRepository, times(1)).findVersionById(1L);
     }
 
     /**
@@ -241,6 +442,7 @@ class ImageServiceControllerTest {
         ProofOfPlay returnedProofOfPlay = (ProofOfPlay) response.getBody();
         assertEquals(slideshow, returnedProofOfPlay.getSlideshow());
         assertEquals(image, returnedProofOfPlay.getImage());
+        verify(eventOutbox, never()).publish(any());
     }
 
     /**
@@ -269,4 +471,100 @@ class ImageServiceControllerTest {
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
         assertEquals("Image with ID 1 not found.", response.getBody());
     }
+
+    /**
+     * Tests that a valid play is queued and accepted in write-behind mode, with a single lookup.
+     */
+    @Test
+    void testAddProofOfPlay_WriteBehind() {
+        when(proofOfPlayIngestor.isWriteBehind()).thenReturn(true);
+        when(imageRepository.existsByIdAndSlideshowId(2L, 1L)).thenReturn(true);
+
+        ResponseEntity<?> response = controller.addProofOfPlay(1L, 2L);
+
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        verify(proofOfPlayIngestor).submit(any(PlayEvent.class));
+        verify(playCounter).record(eq(1L), eq(2L), any());
+        verifyNoInteractions(slideshowRepository, proofOfPlayRepository);
+    }
+
+    /**
+     * Tests that a full write-behind queue is reported as a rejected execution (HTTP 503).
+     */
+    @Test
+    void testAddProofOfPlay_WriteBehindQueueFull() {
+        when(proofOfPlayIngestor.isWriteBehind()).thenReturn(true);
+        when(imageRepository.existsByIdAndSlideshowId(2L, 1L)).thenReturn(true);
+        doThrow(new RejectedExecutionException("full")).when(proofOfPlayIngestor).submit(any(PlayEvent.class));
+
+        assertThrows(RejectedExecutionException.class, () -> controller.addProofOfPlay(1L, 2L));
+    }
+
+    /**
+     * Tests a batch upload in sync mode, where plays of foreign images are rejected and the rest inserted.
+     */
+    @Test
+    void testAddProofOfPlayBatch_Sync() {
+        when(slideshowRepository.existsById(1L)).thenReturn(true);
+        when(imageRepository.findIdsBySlideshowId(1L)).thenReturn(List.of(2L, 3L));
+        when(proofOfPlayIngestor.write(anyList())).thenReturn(List.of());
+
+        ResponseEntity<?> response = controller.addProofOfPlayBatch(1L, List.of(
+                new PlayUpload(2L, null), new PlayUpload(9L, null), new PlayUpload(3L, null)));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        PlayBatchResult result = (PlayBatchResult) response.getBody();
+        assertEquals(2, result.accepted());
+        assertEquals(1, result.rejected().size());
+        assertEquals(1, result.rejected().get(0).index());
+        verify(playCounter, times(2)).record(eq(1L), anyLong(), any());
+    }
+
+    /**
+     * Tests a batch upload in write-behind mode when the queue only has room for part of it.
+     */
+    @Test
+    void testAddProofOfPlayBatch_WriteBehindPartiallyQueued() {
+        when(proofOfPlayIngestor.isWriteBehind()).thenReturn(true);
+        when(slideshowRepository.existsById(1L)).thenReturn(true);
+        when(imageRepository.findIdsBySlideshowId(1L)).thenReturn(List.of(2L));
+        when(proofOfPlayIngestor.submitAll(anyList())).thenReturn(1);
+
+        ResponseEntity<?> response = controller.addProofOfPlayBatch(1L, List.of(
+                new PlayUpload(2L, null), new PlayUpload(2L, null)));
+
+        assertEquals(HttpStatus.ACCEPTED, response.getStatusCode());
+        PlayBatchResult result = (PlayBatchResult) response.getBody();
+        assertEquals(1, result.accepted());
+        assertEquals("Server busy, retry later.", result.rejected().get(0).reason());
+    }
+
+    /**
+     * Tests a batch upload to a non-existing slideshow.
+     */
+    @Test
+    void testAddProofOfPlayBatch_SlideshowNotFound() {
+        when(slideshowRepository.existsById(1L)).thenReturn(false);
+
+        ResponseEntity<?> response = controller.addProofOfPlayBatch(1L, List.of(new PlayUpload(2L, null)));
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
+    /**
+     * Tests reading the plays of one image in a time range.
+     */
+    @Test
+    void testGetProofOfPlay_ImageRange() {
+        LocalDateTime from = LocalDateTime.of(2025, 3, 1, 0, 0);
+        LocalDateTime to = from.plusDays(1);
+        List<PlayRecord> plays = List.of(new PlayRecord(5L, 1L, 2L, from.plusHours(1)));
+        when(proofOfPlayRepository.findImagePlays(1L, 2L, from, to, Limit.of(100))).thenReturn(plays);
+
+        ResponseEntity<?> response = controller.getProofOfPlay(1L, from, to, 2L, 100);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(plays, response.getBody());
+        assertEquals(HttpStatus.BAD_REQUEST, controller.getProofOfPlay(1L, to, from, null, 100).getStatusCode());
+    }
 }
@@ -6,8 +6,12 @@ package com.michaelavoyan.imageservice.errors;
 
 import jakarta.persistence.EntityNotFoundException;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.http.HttpStatus.*;
 
@@ -65,5 +69,35 @@ class GlobalExceptionHandlerTest {
         assertEquals(NOT_FOUND, response.getStatusCode());
         assertEquals("Not Found: Requested entity not found", response.getBody());
     }
-}
 
+    /**
+     * Tests that a {@link RejectedExecutionException} (representing a saturated executor) is correctly handled.
+     * Verifies that the response contains HTTP 503 status and a Retry-After header.
+     */
+    @Test
+    void testHandleRejected() {
+        RejectedExecutionException exception = new RejectedExecutionException("Queue full");
+
+        ResponseEntity<String> response = globalExceptionHandler.handleRejected(exception);
+
+        assertNotNull(response);
+        assertEquals(SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("1", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+
+    /**
+     * Tests that a {@link TooManyRequestsException} (representing a shed request) is correctly handled.
+     * Verifies that the response contains HTTP 429 status and a Retry-After header rounded up to whole seconds.
+     */
+    @Test
+    void testHandleTooManyRequests() {
+        TooManyRequestsException exception = new TooManyRequestsException("slow down", Duration.ofMillis(2100));
+
+        ResponseEntity<String> response = globalExceptionHandler.handleTooManyRequests(exception);
+
+        assertNotNull(response);
+        assertEquals(TOO_MANY_REQUESTS, response.getStatusCode());
+        assertEquals("3", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals("Too Many Requests: slow down", response.getBody());
+    }
+}
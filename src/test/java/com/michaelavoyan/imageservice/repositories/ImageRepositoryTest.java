@@ -0,0 +1,179 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.repositories;
+
+import com.michaelavoyan.imageservice.dto.ImageContentRef;
+import com.michaelavoyan.imageservice.dto.ImageRecord;
+import com.michaelavoyan.imageservice.dto.ImageSummary;
+import com.michaelavoyan.imageservice.entities.Image;
+import com.michaelavoyan.imageservice.entities.Slideshow;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link ImageRepository} against the H2 test database.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ImageRepositoryTest {
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private SlideshowRepository slideshowRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Tests that a batch insert assigns generated IDs to every image.
+     */
+    @Test
+    void testInsertBatch() {
+        List<Image> images = List.of(
+                image("https://example.com/batch-1.jpg"),
+                image("https://example.com/batch-2.jpg"));
+
+        imageRepository.insertBatch(images);
+
+        assertNotNull(images.get(0).getId());
+        assertNotEquals(images.get(0).getId(), images.get(1).getId());
+        assertEquals("https://example.com/batch-2.jpg", imageRepository.findById(images.get(1).getId())
+                .map(Image::getUrl)
+                .orElse(null));
+    }
+
+    /**
+     * Tests that a batch containing a duplicate URL is rolled back as a whole.
+     */
+    @Test
+    void testInsertBatch_RollsBackOnDuplicate() {
+        imageRepository.insertBatch(List.of(image("https://example.com/existing.jpg")));
+        long count = imageRepository.count();
+
+        assertThrows(DataIntegrityViolationException.class, () -> imageRepository.insertBatch(
+                List.of(image("https://example.com/new.jpg"), image("https://example.com/existing.jpg"))));
+
+        assertEquals(count, imageRepository.count());
+    }
+
+    /**
+     * Tests that summaries carry the slideshow ID and its image count, and match the LIKE search.
+     */
+    @Test
+    void testSummaries() {
+        Slideshow slideshow = slideshowRepository.save(new Slideshow());
+        Image first = image("https://example.com/summary-1.jpg");
+        first.setSlideshow(slideshow);
+        Image second = image("https://example.com/summary-2.jpg");
+        second.setSlideshow(slideshow);
+        Image loose = image("https://example.com/summary-loose.jpg");
+        imageRepository.insertBatch(List.of(first, second, loose));
+
+        List<ImageSummary> summaries =
+                imageRepository.findSummariesByIdIn(List.of(loose.getId(), first.getId()));
+
+        assertEquals(List.of(first.getId(), loose.getId()), summaries.stream().map(ImageSummary::id).toList());
+        assertEquals(slideshow.getId(), summaries.get(0).slideshowId());
+        assertEquals(2, summaries.get(0).slideshowImageCount());
+        assertNull(summaries.get(1).slideshowId());
+        assertEquals(0, summaries.get(1).slideshowImageCount());
+        assertEquals(3, imageRepository.searchImageSummaries("summary-", 5).size());
+        assertEquals(0, imageRepository.searchImageSummaries("summary-", 6).size());
+    }
+
+    /**
+     * Tests that images are read in position order, ties are detected, and renumbering keeps the order.
+     */
+    @Test
+    void testPositions() {
+        Slideshow slideshow = slideshowRepository.save(new Slideshow());
+        Image first = image("https://example.com/position-1.jpg");
+        Image second = image("https://example.com/position-2.jpg");
+        Image third = image("https://example.com/position-3.jpg");
+        List.of(first, second, third).forEach(image -> image.setSlideshow(slideshow));
+        imageRepository.insertBatch(List.of(first, second, third));
+        List<Long> ids = List.of(first.getId(), second.getId(), third.getId());
+
+        assertTrue(imageRepository.findSlideshowIdsWithSharedPositions().contains(slideshow.getId()));
+        assertEquals(ids, imageRepository.findIdsInOrderBySlideshowId(slideshow.getId()));
+
+        imageRepository.updatePositions(ids, 100);
+        imageRepository.updatePosition(first.getId(), 250);
+
+        assertFalse(imageRepository.findSlideshowIdsWithSharedPositions().contains(slideshow.getId()));
+        assertEquals(List.of(second.getId(), first.getId(), third.getId()),
+                imageRepository.findIdsInOrderBySlideshowId(slideshow.getId()));
+        assertEquals(Optional.of(300L), imageRepository.findMaxPositionBySlideshowId(slideshow.getId()));
+        assertEquals(List.of(200L, 300L),
+                imageRepository.findFirstPositions(slideshow.getId(), first.getId(), Limit.of(2)));
+        assertEquals(List.of(250L), imageRepository.findPositionsAfter(
+                slideshow.getId(), third.getId(), 200L, second.getId(), Limit.of(2)));
+    }
+
+    /**
+     * Tests that the content hash is recorded and read back with the URL.
+     */
+    @Test
+    void testContentHash() {
+        Image image = image("https://example.com/content.jpg");
+        imageRepository.insertBatch(List.of(image));
+
+        assertEquals(new ImageContentRef("https://example.com/content.jpg", null),
+                imageRepository.findContentRefById(image.getId()));
+
+        imageRepository.updateContentHash(image.getId(), "ab".repeat(32));
+
+        assertEquals("ab".repeat(32), imageRepository.findContentRefById(image.getId()).contentHash());
+        assertNull(imageRepository.findContentRefById(-1L));
+    }
+
+    /**
+     * Tests that the export stream matches the LIKE search, in ID order, with the slideshow ID.
+     */
+    @Test
+    void testStreamImages() {
+        Slideshow slideshow = slideshowRepository.save(new Slideshow());
+        Image first = image("https://example.com/stream-1.jpg");
+        first.setSlideshow(slideshow);
+        Image second = image("https://example.com/stream-2.jpg");
+        second.setDuration(7);
+        imageRepository.insertBatch(List.of(first, second, image("https://example.com/other.jpg")));
+
+        List<ImageRecord> images = new TransactionTemplate(transactionManager).execute(status -> {
+            try (Stream<ImageRecord> stream = imageRepository.streamImages("/stream-", 0)) {
+                return stream.toList();
+            }
+        });
+
+        assertEquals(List.of(first.getId(), second.getId()), images.stream().map(ImageRecord::id).toList());
+        assertEquals(slideshow.getId(), images.get(0).slideshowId());
+        assertNull(images.get(1).slideshowId());
+        assertEquals(7, images.get(1).duration());
+    }
+
+    private static Image image(String url) {
+        Image image = new Image();
+        image.setUrl(url);
+        image.setDuration(5);
+        return image;
+    }
+}
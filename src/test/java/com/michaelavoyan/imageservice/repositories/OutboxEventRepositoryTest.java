@@ -0,0 +1,60 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.repositories;
+
+import com.michaelavoyan.imageservice.entities.OutboxEvent;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link OutboxEventRepository} against the H2 test database.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OutboxEventRepositoryTest {
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    /**
+     * Tests that appended events are read back oldest first after a cursor and deleted by age.
+     */
+    @Test
+    void testAppend_ReadsInOrder() {
+        outboxEventRepository.append(List.of(event("ImageAddedEvent", 1), event("SlideshowAddedEvent", 1)));
+        outboxEventRepository.append(List.of(event("ImageDeletedEvent", 2)));
+
+        List<OutboxEvent> batch = outboxEventRepository.findAllByIdGreaterThanOrderByIdAsc(-1L, Limit.of(2));
+        assertEquals(List.of("ImageAddedEvent", "SlideshowAddedEvent"),
+                batch.stream().map(OutboxEvent::getEventType).toList());
+        assertEquals("{\"a\":1}", batch.get(0).getPayload());
+        assertEquals(List.of("ImageDeletedEvent"),
+                outboxEventRepository.findAllByIdGreaterThanOrderByIdAsc(batch.get(1).getId(), Limit.of(2)).stream()
+                        .map(OutboxEvent::getEventType).toList());
+
+        assertEquals(2, outboxEventRepository.deleteCreatedBefore(LocalDateTime.of(2025, 3, 1, 12, 2)));
+        assertEquals(1, outboxEventRepository.count());
+        outboxEventRepository.deleteAll();
+    }
+
+    private static OutboxEvent event(String type, int minute) {
+        OutboxEvent event = new OutboxEvent();
+        event.setEventType(type);
+        event.setPayload("{\"a\":1}");
+        event.setCreatedAt(LocalDateTime.of(2025, 3, 1, 12, minute));
+        return event;
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.repositories;
+
+import com.michaelavoyan.imageservice.entities.PlayCountKey;
+import com.michaelavoyan.imageservice.entities.PlayCountRollup;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link PlayCountRollupRepository} against the H2 test database.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PlayCountRollupRepositoryTest {
+
+    private static final LocalDateTime MINUTE = LocalDateTime.of(2025, 3, 1, 12, 0);
+
+    @Autowired
+    private PlayCountRollupRepository rollupRepository;
+
+    /**
+     * Tests that counts are inserted on the first rollup and added to on the next ones.
+     */
+    @Test
+    void testAddCounts_InsertsThenIncrements() {
+        PlayCountKey first = PlayCountKey.of(1L, 10L, MINUTE.plusSeconds(30));
+        PlayCountKey second = PlayCountKey.of(1L, 11L, MINUTE);
+
+        rollupRepository.addCounts(Map.of(first, 3L));
+        rollupRepository.addCounts(Map.of(first, 2L, second, 1L));
+
+        List<PlayCountRollup> rollups = rollupRepository.findBySlideshow(1L, MINUTE, MINUTE.plusMinutes(1));
+        assertEquals(2, rollups.size());
+        assertEquals(first, rollups.get(0).getId());
+        assertEquals(5L, rollups.get(0).getPlayCount());
+        assertEquals(1L, rollups.get(1).getPlayCount());
+    }
+
+    /**
+     * Tests that the range query excludes other slideshows and minutes outside the range.
+     */
+    @Test
+    void testFindBySlideshow_FiltersRange() {
+        rollupRepository.addCounts(Map.of(
+                PlayCountKey.of(2L, 10L, MINUTE), 1L,
+                PlayCountKey.of(2L, 10L, MINUTE.plusMinutes(5)), 1L,
+                PlayCountKey.of(3L, 10L, MINUTE), 1L));
+
+        List<PlayCountRollup> rollups = rollupRepository.findBySlideshow(2L, MINUTE, MINUTE.plusMinutes(5));
+
+        assertEquals(1, rollups.size());
+        assertEquals(MINUTE, rollups.get(0).getId().getBucketStart());
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.repositories;
+
+import com.michaelavoyan.imageservice.dto.PlayEvent;
+import com.michaelavoyan.imageservice.dto.PlayRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link ProofOfPlayRepository} against the H2 test database.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProofOfPlayRepositoryTest {
+
+    private static final LocalDateTime NOON = LocalDateTime.of(2025, 3, 1, 12, 0);
+
+    @Autowired
+    private ProofOfPlayRepository proofOfPlayRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        proofOfPlayRepository.deleteAllInBatch();
+    }
+
+    /**
+     * Tests that repeated plays of the same image are all stored.
+     */
+    @Test
+    void testInsertBatch_StoresRepeatedPlays() {
+        proofOfPlayRepository.insertBatch(List.of(play(1L, 10L, NOON), play(1L, 10L, NOON.plusMinutes(1))));
+        proofOfPlayRepository.insertBatch(List.of(play(1L, 10L, NOON.plusMinutes(2))));
+
+        assertEquals(3, proofOfPlayRepository.count());
+    }
+
+    /**
+     * Tests that the time-range queries use a half-open range and filter by slideshow and image.
+     */
+    @Test
+    void testFindPlays_TimeRange() {
+        proofOfPlayRepository.insertBatch(List.of(
+                play(1L, 10L, NOON.minusSeconds(1)),
+                play(1L, 10L, NOON),
+                play(1L, 11L, NOON.plusMinutes(30)),
+                play(2L, 10L, NOON),
+                play(1L, 10L, NOON.plusHours(1))));
+
+        List<PlayRecord> plays = proofOfPlayRepository.findPlays(1L, NOON, NOON.plusHours(1), Limit.of(10));
+        assertEquals(List.of(10L, 11L), plays.stream().map(PlayRecord::imageId).toList());
+        assertEquals(NOON, plays.get(0).playedAt());
+
+        List<PlayRecord> imagePlays =
+                proofOfPlayRepository.findImagePlays(1L, 10L, NOON.minusHours(1), NOON.plusHours(2), Limit.of(2));
+        assertEquals(2, imagePlays.size());
+        assertEquals(NOON.minusSeconds(1), imagePlays.get(0).playedAt());
+    }
+
+    /**
+     * Tests that the export streams use the same half-open range and filters as the time-range queries.
+     */
+    @Test
+    void testStreamPlays_TimeRange() {
+        proofOfPlayRepository.insertBatch(List.of(
+                play(1L, 10L, NOON.minusSeconds(1)),
+                play(1L, 10L, NOON),
+                play(1L, 11L, NOON.plusMinutes(30)),
+                play(2L, 10L, NOON),
+                play(1L, 10L, NOON.plusHours(1))));
+
+        List<PlayRecord> plays = read(() -> proofOfPlayRepository.streamPlays(1L, NOON, NOON.plusHours(1)));
+        assertEquals(List.of(10L, 11L), plays.stream().map(PlayRecord::imageId).toList());
+
+        List<PlayRecord> imagePlays =
+                read(() -> proofOfPlayRepository.streamImagePlays(1L, 10L, NOON.minusHours(1), NOON.plusHours(2)));
+        assertEquals(List.of(NOON.minusSeconds(1), NOON, NOON.plusHours(1)),
+                imagePlays.stream().map(PlayRecord::playedAt).toList());
+    }
+
+    /**
+     * Tests that retention deletes only the plays before the cutoff.
+     */
+    @Test
+    void testDeletePlayedBefore() {
+        proofOfPlayRepository.insertBatch(List.of(
+                play(1L, 10L, NOON.minusDays(2)),
+                play(1L, 10L, NOON)));
+
+        assertEquals(1, proofOfPlayRepository.deletePlayedBefore(NOON.minusDays(1)));
+        assertEquals(1, proofOfPlayRepository.count());
+    }
+
+    private List<PlayRecord> read(Supplier<Stream<PlayRecord>> plays) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            try (Stream<PlayRecord> stream = plays.get()) {
+                return stream.toList();
+            }
+        });
+    }
+
+    private static PlayEvent play(Long slideshowId, Long imageId, LocalDateTime playedAt) {
+        return new PlayEvent(slideshowId, imageId, playedAt);
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.repositories;
+
+import com.michaelavoyan.imageservice.entities.Slideshow;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link SlideshowRepository} against the H2 test database.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SlideshowRepositoryTest {
+
+    @Autowired
+    private SlideshowRepository slideshowRepository;
+
+    /**
+     * Tests that versions start at zero, are incremented per call and are read without the entity.
+     */
+    @Test
+    void testIncrementVersions() {
+        Slideshow first = slideshowRepository.save(new Slideshow());
+        Slideshow second = slideshowRepository.save(new Slideshow());
+
+        assertEquals(Optional.of(0L), slideshowRepository.findVersionById(first.getId()));
+        assertEquals(2, slideshowRepository.incrementVersions(List.of(first.getId(), second.getId())));
+        assertEquals(1, slideshowRepository.incrementVersions(List.of(first.getId())));
+
+        assertEquals(Optional.of(2L), slideshowRepository.findVersionById(first.getId()));
+        assertEquals(Optional.of(1L), slideshowRepository.findVersionById(second.getId()));
+        assertEquals(Optional.empty(), slideshowRepository.findVersionById(-1L));
+
+        slideshowRepository.deleteAll(List.of(first, second));
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.michaelavoyan.imageservice.entities.OutboxEvent;
+import com.michaelavoyan.imageservice.events.ImageDeletedEvent;
+import com.michaelavoyan.imageservice.events.SlideshowAddedEvent;
+import com.michaelavoyan.imageservice.repositories.OutboxEventRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link EventOutbox} class.
+ */
+class EventOutboxTest {
+
+    @Mock
+    private OutboxEventRepository outboxEventRepository;
+
+    @Mock
+    private OutboxDispatcher dispatcher;
+
+    private EventOutbox eventOutbox;
+
+    /**
+     * Initializes mocks before each test case.
+     */
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        eventOutbox = new EventOutbox(outboxEventRepository, dispatcher, new ObjectMapper());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    /**
+     * Tests that events are serialized with their type and appended in one batch.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPublishAll_AppendsTypedRows() {
+        eventOutbox.publishAll(List.of(new ImageDeletedEvent(1L, 2L), new SlideshowAddedEvent(2L)));
+
+        ArgumentCaptor<List<OutboxEvent>> rows = ArgumentCaptor.forClass(List.class);
+        verify(outboxEventRepository).append(rows.capture());
+        assertEquals(2, rows.getValue().size());
+        assertEquals("ImageDeletedEvent", rows.getValue().get(0).getEventType());
+        assertEquals("{\"imageId\":1,\"slideshowId\":2}", rows.getValue().get(0).getPayload());
+        assertEquals("SlideshowAddedEvent", rows.getValue().get(1).getEventType());
+    }
+
+    /**
+     * Tests that the dispatcher is only woken once the transaction has committed.
+     */
+    @Test
+    void testPublish_WakesDispatcherAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        eventOutbox.publish(new SlideshowAddedEvent(2L));
+        verify(dispatcher, never()).wakeUp();
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(dispatcher).wakeUp();
+    }
+
+    /**
+     * Tests that objects outside the known event types are refused.
+     */
+    @Test
+    void testPublish_RejectsUnknownType() {
+        assertThrows(IllegalArgumentException.class, () -> eventOutbox.publish("not an event"));
+        verify(outboxEventRepository, never()).append(anyList());
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.michaelavoyan.imageservice.dto.ImageRecord;
+import com.michaelavoyan.imageservice.dto.PlayRecord;
+import com.michaelavoyan.imageservice.repositories.ImageRepository;
+import com.michaelavoyan.imageservice.repositories.ProofOfPlayRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link ExportService} class.
+ */
+class ExportServiceTest {
+
+    private static final LocalDateTime NOON = LocalDateTime.of(2025, 3, 1, 12, 0);
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @Mock
+    private ProofOfPlayRepository proofOfPlayRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private ExportService service;
+
+    /**
+     * Initializes mocks and the service.
+     */
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        service = new ExportService(imageRepository, proofOfPlayRepository, transactionManager, objectMapper);
+    }
+
+    /**
+     * Tests that images are exported as one JSON object per line, and that the stream is closed.
+     */
+    @Test
+    void testExportImages_Ndjson() throws Exception {
+        AtomicBoolean closed = new AtomicBoolean();
+        when(imageRepository.streamImages("example", 0)).thenReturn(Stream.of(
+                new ImageRecord(1L, "https://example.com/a.jpg", 5, NOON, 3L),
+                new ImageRecord(2L, "https://example.com/b.jpg", 7, NOON, null)).onClose(() -> closed.set(true)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        service.exportImages("example", 0, ExportService.Format.NDJSON, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals("https://example.com/a.jpg", first.get("url").asText());
+        assertEquals(3, first.get("slideshowId").asLong());
+        assertEquals("2025-03-01T12:00:00", first.get("createdAt").asText());
+        assertTrue(objectMapper.readTree(lines[1]).get("slideshowId").isNull());
+        assertTrue(closed.get());
+        verify(transactionManager).commit(any());
+    }
+
+    /**
+     * Tests that images are exported as CSV with a header, quoting fields that need it.
+     */
+    @Test
+    void testExportImages_Csv() throws Exception {
+        when(imageRepository.streamImages("", 5)).thenReturn(Stream.of(
+                new ImageRecord(1L, "https://example.com/a,\"b\".jpg", 5, NOON, null)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        service.exportImages("", 5, ExportService.Format.CSV, out);
+
+        assertEquals("id,url,duration,createdAt,slideshowId\r\n"
+                        + "1,\"https://example.com/a,\"\"b\"\".jpg\",5,2025-03-01T12:00,\r\n",
+                out.toString(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Tests that plays are read for one image when an image ID is given, and for the slideshow otherwise.
+     */
+    @Test
+    void testExportPlays() throws Exception {
+        when(proofOfPlayRepository.streamImagePlays(1L, 10L, NOON, NOON.plusHours(1)))
+                .thenReturn(Stream.of(new PlayRecord(7L, 1L, 10L, NOON)));
+        when(proofOfPlayRepository.streamPlays(1L, NOON, NOON.plusHours(1))).thenReturn(Stream.empty());
+        ByteArrayOutputStream imagePlays = new ByteArrayOutputStream();
+        ByteArrayOutputStream plays = new ByteArrayOutputStream();
+
+        service.exportPlays(1L, 10L, NOON, NOON.plusHours(1), ExportService.Format.CSV, imagePlays);
+        service.exportPlays(1L, null, NOON, NOON.plusHours(1), ExportService.Format.CSV, plays);
+
+        assertEquals("id,slideshowId,imageId,playedAt\r\n7,1,10,2025-03-01T12:00\r\n",
+                imagePlays.toString(StandardCharsets.UTF_8));
+        assertEquals("id,slideshowId,imageId,playedAt\r\n", plays.toString(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Tests that a failed write, such as a disconnected client, is reported and closes the stream.
+     */
+    @Test
+    void testExport_WriteFailure() {
+        AtomicBoolean closed = new AtomicBoolean();
+        when(proofOfPlayRepository.streamPlays(1L, NOON, NOON.plusHours(1))).thenReturn(
+                Stream.generate(() -> new PlayRecord(7L, 1L, 10L, NOON)).onClose(() -> closed.set(true)));
+        OutputStream out = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        IOException e = assertThrows(IOException.class,
+                () -> service.exportPlays(1L, null, NOON, NOON.plusHours(1), ExportService.Format.NDJSON, out));
+
+        assertEquals("Broken pipe", e.getMessage());
+        assertTrue(closed.get());
+        verify(transactionManager).rollback(any());
+    }
+
+    /**
+     * Tests that format names are parsed ignoring case, and unsupported ones refused.
+     */
+    @Test
+    void testFormatOf() {
+        assertEquals(ExportService.Format.CSV, ExportService.Format.of("CSV"));
+        assertEquals(ExportService.Format.NDJSON, ExportService.Format.of("ndjson"));
+        assertThrows(IllegalArgumentException.class, () -> ExportService.Format.of("xml"));
+    }
+}
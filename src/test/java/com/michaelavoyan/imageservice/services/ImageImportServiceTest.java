@@ -0,0 +1,235 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.michaelavoyan.imageservice.config.ImportProperties;
+import com.michaelavoyan.imageservice.entities.Image;
+import com.michaelavoyan.imageservice.events.ImageAddedEvent;
+import com.michaelavoyan.imageservice.repositories.ImageRepository;
+import com.michaelavoyan.imageservice.repositories.SlideshowRepository;
+import com.michaelavoyan.imageservice.utils.ImageVerifier;
+import com.michaelavoyan.imageservice.utils.VerificationResult;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link ImageImportService} class.
+ */
+class ImageImportServiceTest {
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @Mock
+    private SlideshowRepository slideshowRepository;
+
+    @Mock
+    private ImageOrderingService imageOrderingService;
+
+    @Mock
+    private ImageVerifier imageVerifier;
+
+    @Mock
+    private EventOutbox eventOutbox;
+
+    @Mock
+    private SimilarImageService similarImageService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ImportProperties properties;
+
+    private ImageImportService service;
+
+    private final AtomicLong ids = new AtomicLong();
+
+    /**
+     * Initializes mocks; inserted images get sequential IDs.
+     */
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        properties = new ImportProperties();
+        service = new ImageImportService(
+                imageRepository,
+                slideshowRepository,
+                imageOrderingService,
+                imageVerifier,
+                eventOutbox,
+                new TransactionTemplate(transactionManager),
+                objectMapper,
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                properties,
+                similarImageService
+        );
+
+        when(imageVerifier.verifyImageUrl(anyString()))
+                .thenReturn(CompletableFuture.completedFuture(VerificationResult.of(true)));
+        doAnswer(invocation -> {
+            List<Image> images = invocation.getArgument(0);
+            images.forEach(image -> image.setId(ids.incrementAndGet()));
+            return null;
+        }).when(imageRepository).insertBatch(anyList());
+    }
+
+    /**
+     * Tests a newline-delimited import mixing saved, unverifiable and invalid images.
+     */
+    @Test
+    void testImportImages_Ndjson() throws Exception {
+        when(imageVerifier.verifyImageUrl("https://example.com/bad.jpg"))
+                .thenReturn(CompletableFuture.completedFuture(VerificationResult.of(false)));
+
+        List<JsonNode> results = importImages("""
+                {"url": "https://example.com/a.jpg", "duration": 5}
+                {"url": "https://example.com/bad.jpg", "duration": 5}
+                {"url": "https://example.com/b.jpg", "duration": 0}
+                """);
+
+        assertEquals(3, results.size());
+        assertEquals(1, results.get(0).get("id").asLong());
+        assertTrue(results.get(1).get("error").asText().startsWith("Invalid image URL"));
+        assertEquals("duration must be greater than or equal to 1", results.get(2).get("error").asText());
+        verify(imageVerifier, never()).verifyImageUrl("https://example.com/b.jpg");
+        verify(eventOutbox).publishAll(List.of(new ImageAddedEvent(1L, "https://example.com/a.jpg", 5, null, null)));
+    }
+
+    /**
+     * Tests that a JSON array is inserted in batches of the configured size.
+     */
+    @Test
+    void testImportImages_JsonArrayBatches() throws Exception {
+        properties.setBatchSize(2);
+
+        List<JsonNode> results = importImages("""
+                [{"url": "https://example.com/1.jpg", "duration": 1},
+                 {"url": "https://example.com/2.jpg", "duration": 2},
+                 {"url": "https://example.com/3.jpg", "duration": 3}]
+                """);
+
+        assertEquals(3, results.size());
+        results.forEach(result -> assertTrue(result.has("id")));
+        verify(imageRepository, times(2)).insertBatch(anyList());
+    }
+
+    /**
+     * Tests that the version of every slideshow receiving images is bumped once per batch
+     * and that the images are appended to it in import order.
+     */
+    @Test
+    void testImportImages_BumpsSlideshowVersions() throws Exception {
+        importImages("""
+                {"url": "https://example.com/1.jpg", "duration": 1, "slideshow": {"id": 4}}
+                {"url": "https://example.com/2.jpg", "duration": 1, "slideshow": {"id": 4}}
+                {"url": "https://example.com/3.jpg", "duration": 1}
+                """);
+
+        verify(slideshowRepository).incrementVersions(Set.of(4L));
+        verify(imageOrderingService).append(eq(4L), argThat(images -> images.size() == 2
+                && images.get(0).getUrl().endsWith("1.jpg") && images.get(1).getUrl().endsWith("2.jpg")));
+    }
+
+    /**
+     * Tests that a failed batch is retried row by row so that only the faulty image is rejected.
+     */
+    @Test
+    void testImportImages_BatchFailureFallsBackToRows() throws Exception {
+        doAnswer(invocation -> {
+            List<Image> images = invocation.getArgument(0);
+            if (images.stream().anyMatch(image -> image.getUrl().endsWith("dup.jpg"))) {
+                throw new DataIntegrityViolationException("Duplicate entry");
+            }
+            images.forEach(image -> image.setId(ids.incrementAndGet()));
+            return null;
+        }).when(imageRepository).insertBatch(anyList());
+
+        List<JsonNode> results = importImages("""
+                {"url": "https://example.com/ok.jpg", "duration": 1}
+                {"url": "https://example.com/dup.jpg", "duration": 1}
+                """);
+
+        assertTrue(results.get(0).has("id"));
+        assertTrue(results.get(1).get("error").asText().startsWith("Could not save image"));
+        verify(imageRepository, times(3)).insertBatch(anyList());
+    }
+
+    /**
+     * Tests that malformed input stops the import with an error line.
+     */
+    @Test
+    void testImportImages_Malformed() throws Exception {
+        List<JsonNode> results = importImages("""
+                {"url": "https://example.com/a.jpg", "duration": "five"}
+                """);
+
+        assertEquals(1, results.size());
+        assertTrue(results.get(0).get("error").asText().startsWith("Malformed image"));
+        verify(imageRepository, never()).insertBatch(anyList());
+    }
+
+    /**
+     * Tests that near-duplicates are rejected when configured so, and that hashes are stored with the images.
+     */
+    @Test
+    void testImportImages_RejectsNearDuplicates() throws Exception {
+        when(imageVerifier.verifyImageUrl("https://example.com/a.jpg"))
+                .thenReturn(CompletableFuture.completedFuture(new VerificationResult(true, null, null, 0xF0L)));
+        when(imageVerifier.verifyImageUrl("https://example.com/copy.jpg"))
+                .thenReturn(CompletableFuture.completedFuture(new VerificationResult(true, null, null, 0xF1L)));
+        when(similarImageService.rejectsDuplicates()).thenReturn(true);
+        when(similarImageService.findDuplicates(0xF1L)).thenReturn(List.of(7L, 9L));
+
+        List<JsonNode> results = importImages("""
+                {"url": "https://example.com/a.jpg", "duration": 5}
+                {"url": "https://example.com/copy.jpg", "duration": 5}
+                """);
+
+        assertEquals(1, results.get(0).get("id").asLong());
+        assertEquals("Near-duplicate of image(s) 7,9", results.get(1).get("error").asText());
+        verify(eventOutbox).publishAll(List.of(new ImageAddedEvent(1L, "https://example.com/a.jpg", 5, null, 0xF0L)));
+    }
+
+    /**
+     * Runs an import and returns its result lines ordered by request index.
+     */
+    private List<JsonNode> importImages(String body) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.importImages(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), out);
+
+        List<JsonNode> results = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isBlank()) {
+                results.add(objectMapper.readTree(line));
+            }
+        }
+        results.sort(Comparator.comparingInt(result -> result.get("index").asInt()));
+        return results;
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.michaelavoyan.imageservice.entities.Image;
+import com.michaelavoyan.imageservice.entities.Slideshow;
+import com.michaelavoyan.imageservice.events.SlideshowReorderedEvent;
+import com.michaelavoyan.imageservice.repositories.ImageRepository;
+import com.michaelavoyan.imageservice.repositories.SlideshowRepository;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+
+import static com.michaelavoyan.imageservice.services.ImageOrderingService.POSITION_GAP;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link ImageOrderingService} class.
+ */
+class ImageOrderingServiceTest {
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @Mock
+    private SlideshowRepository slideshowRepository;
+
+    @Mock
+    private EventOutbox eventOutbox;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ImageOrderingService service;
+
+    /**
+     * Initializes mocks; slideshow 1 exists and holds image 5.
+     */
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        service = new ImageOrderingService(imageRepository, slideshowRepository, eventOutbox,
+                new TransactionTemplate(transactionManager));
+        when(slideshowRepository.incrementVersions(List.of(1L))).thenReturn(1);
+        when(imageRepository.existsByIdAndSlideshowId(5L, 1L)).thenReturn(true);
+    }
+
+    /**
+     * Tests that appended images are placed after the last image, one gap apart.
+     */
+    @Test
+    void testAppend() {
+        when(imageRepository.findMaxPositionBySlideshowId(1L)).thenReturn(Optional.of(3 * POSITION_GAP));
+        Image first = new Image();
+        Image second = new Image();
+
+        service.append(1L, List.of(first, second));
+
+        assertEquals(4 * POSITION_GAP, first.getDisplayPosition());
+        assertEquals(5 * POSITION_GAP, second.getDisplayPosition());
+    }
+
+    /**
+     * Tests that a move between two images updates the moved row only, halfway between its neighbours.
+     */
+    @Test
+    void testMove_BetweenNeighbours() {
+        when(imageRepository.findPositionByIdAndSlideshowId(2L, 1L)).thenReturn(Optional.of(POSITION_GAP));
+        when(imageRepository.findPositionsAfter(1L, 5L, POSITION_GAP, 2L, Limit.of(1)))
+                .thenReturn(List.of(2 * POSITION_GAP));
+
+        service.move(1L, 5L, 2L);
+
+        verify(imageRepository).updatePosition(5L, POSITION_GAP + POSITION_GAP / 2);
+        verify(imageRepository, never()).updatePositions(anyList(), anyLong());
+        verify(eventOutbox).publish(new SlideshowReorderedEvent(1L, 5L));
+        assertEquals(0, service.pendingCount());
+    }
+
+    /**
+     * Tests that a move to the front goes one gap before the first image.
+     */
+    @Test
+    void testMove_ToFront() {
+        when(imageRepository.findFirstPositions(1L, 5L, Limit.of(1))).thenReturn(List.of(POSITION_GAP));
+
+        service.move(1L, 5L, null);
+
+        verify(imageRepository).updatePosition(5L, 0L);
+    }
+
+    /**
+     * Tests that neighbours without room are renumbered before the move, and tight moves schedule a rebalance.
+     */
+    @Test
+    void testMove_RenumbersWhenNoRoom() {
+        when(imageRepository.findPositionByIdAndSlideshowId(2L, 1L))
+                .thenReturn(Optional.of(100L))
+                .thenReturn(Optional.of(POSITION_GAP));
+        when(imageRepository.findPositionsAfter(eq(1L), eq(5L), anyLong(), eq(2L), eq(Limit.of(1))))
+                .thenReturn(List.of(101L))
+                .thenReturn(List.of(POSITION_GAP + 20));
+        when(imageRepository.findIdsInOrderBySlideshowId(1L)).thenReturn(List.of(2L, 3L, 5L));
+
+        service.move(1L, 5L, 2L);
+
+        verify(imageRepository).updatePositions(List.of(2L, 3L, 5L), POSITION_GAP);
+        verify(imageRepository).updatePosition(5L, POSITION_GAP + 10);
+        assertEquals(1, service.pendingCount());
+    }
+
+    /**
+     * Tests that unknown slideshows, foreign images and invalid anchors are refused.
+     */
+    @Test
+    void testMove_Invalid() {
+        assertThrows(EntityNotFoundException.class, () -> service.move(2L, 5L, null));
+        assertThrows(EntityNotFoundException.class, () -> service.move(1L, 6L, null));
+        assertThrows(IllegalArgumentException.class, () -> service.move(1L, 5L, 5L));
+        assertThrows(IllegalArgumentException.class, () -> service.move(1L, 5L, 9L));
+        verify(imageRepository, never()).updatePosition(anyLong(), anyLong());
+    }
+
+    /**
+     * Tests that the first background run renumbers slideshows whose images share positions.
+     */
+    @Test
+    void testRebalancePending_SharedPositions() {
+        when(imageRepository.findSlideshowIdsWithSharedPositions()).thenReturn(List.of(7L));
+        when(slideshowRepository.findForUpdateById(7L)).thenReturn(Optional.of(new Slideshow()));
+        when(imageRepository.findIdsInOrderBySlideshowId(7L)).thenReturn(List.of(3L, 1L));
+
+        service.rebalancePending();
+        service.rebalancePending();
+
+        verify(imageRepository, times(1)).findSlideshowIdsWithSharedPositions();
+        verify(imageRepository, times(1)).updatePositions(List.of(3L, 1L), POSITION_GAP);
+        assertEquals(0, service.pendingCount());
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.michaelavoyan.imageservice.config.OriginCacheProperties;
+import com.michaelavoyan.imageservice.dto.ImageContentRef;
+import com.michaelavoyan.imageservice.events.ImageAddedEvent;
+import com.michaelavoyan.imageservice.repositories.ImageRepository;
+import com.michaelavoyan.imageservice.utils.ImageVerifier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.MediaType;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link ImageOriginCache} class.
+ */
+class ImageOriginCacheTest {
+
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 1, 2, 3};
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @Mock
+    private ImageVerifier imageVerifier;
+
+    @TempDir
+    Path directory;
+
+    private OriginCacheProperties properties;
+
+    /**
+     * Initializes mocks and an enabled cache configuration; image 1 has never been cached.
+     */
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        properties = new OriginCacheProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(directory);
+        when(imageRepository.findContentRefById(1L)).thenReturn(new ImageContentRef("https://example.com/a.png", null));
+    }
+
+    /**
+     * Tests that an image is downloaded once, stored under its SHA-256 and then served from disk.
+     */
+    @Test
+    void testContent_DownloadsOnceThenServesFromDisk() throws Exception {
+        ImageOriginCache cache = cache();
+        when(imageVerifier.fetch(eq("https://example.com/a.png"), anyInt()))
+                .thenReturn(CompletableFuture.completedFuture(PNG));
+
+        ImageOriginCache.Content first = cache.content(1L).get();
+        String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(PNG));
+        assertEquals(hash, first.contentHash());
+        assertEquals("\"" + hash + "\"", first.eTag());
+        assertEquals(MediaType.IMAGE_PNG, first.mediaType());
+        assertArrayEquals(PNG, Files.readAllBytes(first.file()));
+        verify(imageRepository).updateContentHash(1L, hash);
+
+        when(imageRepository.findContentRefById(1L)).thenReturn(new ImageContentRef("https://example.com/a.png", hash));
+        ImageOriginCache.Content second = cache.content(1L).get();
+
+        assertEquals(first.file(), second.file());
+        assertEquals(first.contentHash(), second.contentHash());
+        verify(imageVerifier, times(1)).fetch(anyString(), anyInt());
+    }
+
+    /**
+     * Tests that concurrent requests share one download and that images with identical bytes share one file.
+     */
+    @Test
+    void testContent_CoalescesAndDeduplicates() throws Exception {
+        ImageOriginCache cache = cache();
+        CompletableFuture<byte[]> download = new CompletableFuture<>();
+        when(imageVerifier.fetch(eq("https://example.com/a.png"), anyInt())).thenReturn(download);
+        when(imageRepository.findContentRefById(2L)).thenReturn(new ImageContentRef("https://mirror.com/a.png", null));
+        when(imageVerifier.fetch(eq("https://mirror.com/a.png"), anyInt()))
+                .thenReturn(CompletableFuture.completedFuture(PNG));
+
+        CompletableFuture<ImageOriginCache.Content> first = cache.content(1L);
+        CompletableFuture<ImageOriginCache.Content> second = cache.content(1L);
+        download.complete(PNG);
+
+        assertEquals(first.get().file(), second.get().file());
+        assertEquals(first.get().file(), cache.content(2L).get().file());
+        verify(imageVerifier, times(1)).fetch(eq("https://example.com/a.png"), anyInt());
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    /**
+     * Tests that added images are prefetched only while a prefetch slot is free.
+     */
+    @Test
+    void testOnImageAdded_PrefetchesWithinParallelism() {
+        properties.setPrefetchParallelism(1);
+        ImageOriginCache cache = cache();
+        CompletableFuture<byte[]> download = new CompletableFuture<>();
+        when(imageVerifier.fetch(anyString(), anyInt())).thenReturn(download);
+        when(imageRepository.findContentRefById(2L)).thenReturn(new ImageContentRef("https://example.com/b.png", null));
+
+        cache.onImageAdded(new ImageAddedEvent(1L, "https://example.com/a.png", 5, null, null));
+        cache.onImageAdded(new ImageAddedEvent(2L, "https://example.com/b.png", 5, null, null));
+        download.complete(PNG);
+        cache.onImageAdded(new ImageAddedEvent(2L, "https://example.com/b.png", 5, null, null));
+
+        verify(imageVerifier).fetch(eq("https://example.com/a.png"), anyInt());
+        verify(imageVerifier).fetch(eq("https://example.com/b.png"), anyInt());
+    }
+
+    /**
+     * Tests that a disabled cache downloads nothing and only exposes origin URLs.
+     */
+    @Test
+    void testDisabled() {
+        properties.setEnabled(false);
+        ImageOriginCache cache = cache();
+
+        cache.onImageAdded(new ImageAddedEvent(1L, "https://example.com/a.png", 5, null, null));
+
+        assertFalse(cache.isEnabled());
+        assertEquals("https://example.com/a.png", cache.originUrl(1L));
+        assertThrows(IllegalStateException.class, () -> cache.content(1L));
+        verifyNoInteractions(imageVerifier);
+    }
+
+    private ImageOriginCache cache() {
+        return new ImageOriginCache(imageRepository, imageVerifier, Runnable::run, properties);
+    }
+}
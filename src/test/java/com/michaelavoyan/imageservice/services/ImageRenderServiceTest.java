@@ -0,0 +1,168 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.michaelavoyan.imageservice.config.RenderProperties;
+import com.michaelavoyan.imageservice.events.ImageDeletedEvent;
+import com.michaelavoyan.imageservice.repositories.ImageRepository;
+import com.michaelavoyan.imageservice.utils.DiskLruStore;
+import com.michaelavoyan.imageservice.utils.ImageVerifier;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.MediaType;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link ImageRenderService} class.
+ */
+class ImageRenderServiceTest {
+
+    private static final String URL = "https://example.com/a.png";
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @Mock
+    private ImageVerifier imageVerifier;
+
+    @Mock
+    private ImageOriginCache imageOriginCache;
+
+    @TempDir
+    Path directory;
+
+    private ImageRenderService service;
+
+    /**
+     * Initializes mocks; image 1 exists, the origin cache is disabled, renders run on the calling thread
+     * and released files are deleted at once.
+     */
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        RenderProperties properties = new RenderProperties();
+        properties.setDirectory(directory);
+        properties.setReleaseGrace(Duration.ZERO);
+        service = new ImageRenderService(imageRepository, imageVerifier, imageOriginCache, Runnable::run, properties);
+        when(imageRepository.findUrlById(1L)).thenReturn(URL);
+    }
+
+    /**
+     * Tests that a derivative is rendered to fit the box once and then served from disk.
+     */
+    @Test
+    void testRender_RendersOnceThenServesFromDisk() throws Exception {
+        when(imageVerifier.fetch(eq(URL), anyInt())).thenReturn(CompletableFuture.completedFuture(png(400, 200)));
+
+        ImageRenderService.Rendition first = service.render(1L, 100, 100, "png").get();
+        ImageRenderService.Rendition second = service.render(1L, 100, 100, "png").get();
+
+        assertEquals(first.file(), second.file());
+        BufferedImage rendered = ImageIO.read(first.file().toFile());
+        assertEquals(100, rendered.getWidth());
+        assertEquals(50, rendered.getHeight());
+        verify(imageVerifier, times(1)).fetch(eq(URL), anyInt());
+    }
+
+    /**
+     * Tests that concurrent requests for a new derivative share one download and render.
+     */
+    @Test
+    void testRender_CoalescesConcurrentRequests() throws Exception {
+        CompletableFuture<byte[]> download = new CompletableFuture<>();
+        when(imageVerifier.fetch(eq(URL), anyInt())).thenReturn(download);
+
+        CompletableFuture<ImageRenderService.Rendition> first = service.render(1L, 50, null, "jpg");
+        CompletableFuture<ImageRenderService.Rendition> second = service.render(1L, 50, null, "jpg");
+        assertFalse(first.isDone());
+
+        download.complete(png(400, 200));
+
+        assertEquals(first.get().file(), second.get().file());
+        assertEquals(25, ImageIO.read(first.get().file().toFile()).getHeight());
+        verify(imageVerifier, times(1)).fetch(eq(URL), anyInt());
+    }
+
+    /**
+     * Tests that a failed render is not remembered, so the next request retries it.
+     */
+    @Test
+    void testRender_FailureIsRetried() throws Exception {
+        when(imageVerifier.fetch(eq(URL), anyInt()))
+                .thenReturn(CompletableFuture.failedFuture(new IOException("Origin answered 500")))
+                .thenReturn(CompletableFuture.completedFuture(png(20, 20)));
+
+        assertThrows(ExecutionException.class, () -> service.render(1L, 10, 10, "png").get());
+        assertNotNull(service.render(1L, 10, 10, "png").get());
+    }
+
+    /**
+     * Tests that the derivatives of a deleted image are removed from disk once no longer served.
+     */
+    @Test
+    void testOnImageDeleted_RemovesDerivativesOnceReleased() throws Exception {
+        when(imageVerifier.fetch(eq(URL), anyInt())).thenReturn(CompletableFuture.completedFuture(png(40, 40)));
+        ImageRenderService.Rendition rendition = service.render(1L, 10, 10, "png").get();
+
+        service.onImageDeleted(new ImageDeletedEvent(1L, null));
+
+        assertTrue(Files.exists(rendition.file()));
+        rendition.close();
+        assertFalse(Files.exists(rendition.file()));
+    }
+
+    /**
+     * Tests that the original is read from the origin cache when it is enabled, and released once read.
+     */
+    @Test
+    void testRender_ReadsOriginalFromOriginCache() throws Exception {
+        DiskLruStore originals = new DiskLruStore(directory.resolve("originals"), 1_000_000, Duration.ZERO);
+        DiskLruStore.Lease original = originals.put("hash", png(30, 30));
+        when(imageOriginCache.isEnabled()).thenReturn(true);
+        when(imageOriginCache.content(1L)).thenReturn(CompletableFuture.completedFuture(
+                new ImageOriginCache.Content(original, "hash", MediaType.IMAGE_PNG)));
+
+        assertEquals(15, ImageIO.read(service.render(1L, 15, null, "png").get().file().toFile()).getWidth());
+        verifyNoInteractions(imageVerifier);
+        originals.remove("hash"::equals);
+        assertFalse(Files.exists(original.file()));
+    }
+
+    /**
+     * Tests that invalid requests are refused before anything is downloaded.
+     */
+    @Test
+    void testRender_InvalidRequests() {
+        assertThrows(IllegalArgumentException.class, () -> service.render(1L, 0, 10, "png"));
+        assertThrows(IllegalArgumentException.class, () -> service.render(1L, 10, 5000, "png"));
+        assertThrows(IllegalArgumentException.class, () -> service.render(1L, 10, 10, "gif"));
+        assertThrows(EntityNotFoundException.class, () -> service.render(2L, 10, 10, "png"));
+        verifyNoInteractions(imageVerifier);
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", out);
+        return out.toByteArray();
+    }
+}
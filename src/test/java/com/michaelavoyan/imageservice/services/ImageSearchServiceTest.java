@@ -0,0 +1,144 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.michaelavoyan.imageservice.config.SearchProperties;
+import com.michaelavoyan.imageservice.dto.ImageIndexEntry;
+import com.michaelavoyan.imageservice.dto.ImageSummary;
+import com.michaelavoyan.imageservice.events.ImageAddedEvent;
+import com.michaelavoyan.imageservice.events.ImageDeletedEvent;
+import com.michaelavoyan.imageservice.events.SlideshowDeletedEvent;
+import com.michaelavoyan.imageservice.repositories.ImageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link ImageSearchService} class.
+ */
+class ImageSearchServiceTest {
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    private SearchProperties properties;
+
+    private ImageSearchService service;
+
+    /**
+     * Initializes mocks; the database holds three images, loaded in pages of two.
+     */
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        properties = new SearchProperties();
+        properties.setLoadBatchSize(2);
+        service = new ImageSearchService(imageRepository, properties);
+
+        when(imageRepository.findIndexEntries(0L, Limit.of(2))).thenReturn(List.of(
+                new ImageIndexEntry(1L, "https://example.com/cat.jpg", 5),
+                new ImageIndexEntry(2L, "https://example.com/dog.jpg", 5)));
+        when(imageRepository.findIndexEntries(2L, Limit.of(2))).thenReturn(List.of(
+                new ImageIndexEntry(3L, "https://example.com/cat-2.jpg", 7)));
+        when(imageRepository.findSummariesByIdIn(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(ImageSearchServiceTest::summary).toList();
+        });
+    }
+
+    /**
+     * Tests that searches hit the database until the index is built.
+     */
+    @Test
+    void testSearch_FallsBackUntilReady() {
+        when(imageRepository.searchImageSummaries("cat", 0)).thenReturn(List.of(summary(1L)));
+
+        assertEquals(1, service.search("cat", 0).size());
+        assertFalse(service.isReady());
+        verify(imageRepository).searchImageSummaries("cat", 0);
+    }
+
+    /**
+     * Tests that a built index answers searches and images are returned in ID order.
+     */
+    @Test
+    void testSearch_UsesIndex() {
+        service.rebuild();
+
+        List<ImageSummary> images = service.search("CAT", 0);
+
+        assertTrue(service.isReady());
+        assertEquals(List.of(1L, 3L), ids(images));
+        assertEquals(List.of(3L), ids(service.search("cat", 7)));
+        verify(imageRepository, never()).searchImageSummaries(anyString(), anyInt());
+    }
+
+    /**
+     * Tests that large result sets are loaded in bounded IN lists.
+     */
+    @Test
+    void testSearch_BatchesLargeResults() {
+        service.rebuild();
+        for (long id = 100; id < 100 + ImageSearchService.SUMMARY_BATCH_SIZE + 5; id++) {
+            service.onImageAdded(new ImageAddedEvent(id, "https://example.com/many/" + id, 5, null, null));
+        }
+
+        assertEquals(ImageSearchService.SUMMARY_BATCH_SIZE + 5, service.search("/many/", 0).size());
+        verify(imageRepository, times(2)).findSummariesByIdIn(anyCollection());
+    }
+
+    /**
+     * Tests that events and the catch-up keep the index current, the catch-up reading the last IDs again
+     * for images committed after others with higher IDs.
+     */
+    @Test
+    void testEventsAndCatchUp() {
+        properties.setCatchUpWindow(2);
+        service.rebuild();
+
+        service.onImageAdded(new ImageAddedEvent(10L, "https://example.com/bird.png", 5, null, null));
+        service.onImageDeleted(new ImageDeletedEvent(1L, null));
+        service.onSlideshowDeleted(new SlideshowDeletedEvent(4L, List.of(3L)));
+        assertEquals(List.of(10L), ids(service.search("bird", 0)));
+        assertEquals(List.of(), service.search("cat", 0));
+
+        when(imageRepository.findIndexEntries(8L, Limit.of(2))).thenReturn(List.of(
+                new ImageIndexEntry(9L, "https://other-instance.com/late-fish.png", 5),
+                new ImageIndexEntry(11L, "https://other-instance.com/fish.png", 5)));
+        service.catchUp();
+        assertEquals(List.of(9L, 11L), ids(service.search("fish", 0)));
+        verify(imageRepository).findIndexEntries(11L, Limit.of(2));
+    }
+
+    /**
+     * Tests that a disabled index leaves every search to the database.
+     */
+    @Test
+    void testRebuild_Disabled() {
+        properties.setIndexEnabled(false);
+
+        service.rebuild();
+
+        assertFalse(service.isReady());
+        verify(imageRepository, never()).findIndexEntries(anyLong(), any());
+    }
+
+    private static ImageSummary summary(Long id) {
+        return new ImageSummary(id, "https://example.com/" + id, 5, null, null, 0);
+    }
+
+    private static List<Long> ids(List<ImageSummary> summaries) {
+        return summaries.stream().map(ImageSummary::id).toList();
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.michaelavoyan.imageservice.config.OutboxProperties;
+import com.michaelavoyan.imageservice.entities.OutboxEvent;
+import com.michaelavoyan.imageservice.events.ImageDeletedEvent;
+import com.michaelavoyan.imageservice.events.SlideshowDeletedEvent;
+import com.michaelavoyan.imageservice.repositories.OutboxEventRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link OutboxDispatcher} class.
+ */
+class OutboxDispatcherTest {
+
+    @Mock
+    private OutboxEventRepository outboxEventRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private OutboxProperties properties;
+
+    private OutboxDispatcher dispatcher;
+
+    /**
+     * Initializes mocks before each test case.
+     */
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        properties = new OutboxProperties();
+        properties.setPollInterval(Duration.ofMinutes(1));
+        dispatcher = new OutboxDispatcher(outboxEventRepository, eventPublisher, new ObjectMapper(), properties);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.stop();
+    }
+
+    /**
+     * Tests that a batch is published as typed events in order, advancing the cursor without deleting.
+     */
+    @Test
+    void testDispatchBatch_PublishesInOrder() {
+        when(outboxEventRepository.findAllByIdGreaterThanOrderByIdAsc(eq(-1L), any(Limit.class))).thenReturn(List.of(
+                row(1L, "ImageDeletedEvent", "{\"imageId\":5,\"slideshowId\":2}"),
+                row(2L, "SlideshowDeletedEvent", "{\"slideshowId\":2,\"imageIds\":[6,7]}")));
+
+        assertEquals(2, dispatcher.dispatchBatch());
+        assertEquals(0, dispatcher.dispatchBatch());
+
+        var order = inOrder(eventPublisher);
+        order.verify(eventPublisher).publishEvent(new ImageDeletedEvent(5L, 2L));
+        order.verify(eventPublisher).publishEvent(new SlideshowDeletedEvent(2L, List.of(6L, 7L)));
+        verify(outboxEventRepository).findAllByIdGreaterThanOrderByIdAsc(eq(2L), any(Limit.class));
+        verify(outboxEventRepository, never()).deleteAllByIdInBatch(any());
+        verify(outboxEventRepository).deleteCreatedBefore(any(LocalDateTime.class));
+    }
+
+    /**
+     * Tests that unknown types and failing listeners do not hold back the rest of the batch.
+     */
+    @Test
+    void testDispatchBatch_SkipsFailures() {
+        when(outboxEventRepository.findAllByIdGreaterThanOrderByIdAsc(eq(-1L), any(Limit.class))).thenReturn(List.of(
+                row(1L, "RemovedEvent", "{}"),
+                row(2L, "ImageDeletedEvent", "{\"imageId\":5,\"slideshowId\":2}"),
+                row(3L, "ImageDeletedEvent", "{\"imageId\":6,\"slideshowId\":2}")));
+        doThrow(new IllegalStateException("listener failed"))
+                .when(eventPublisher).publishEvent(new ImageDeletedEvent(5L, 2L));
+
+        assertEquals(3, dispatcher.dispatchBatch());
+
+        verify(eventPublisher).publishEvent(new ImageDeletedEvent(6L, 2L));
+    }
+
+    /**
+     * Tests that an event whose listener fails is delivered again until the attempt limit.
+     */
+    @Test
+    void testDispatchBatch_RetriesFailedEventsUpToLimit() {
+        properties.setPollInterval(Duration.ZERO);
+        properties.setMaxAttempts(3);
+        OutboxEvent failing = row(1L, "ImageDeletedEvent", "{\"imageId\":5,\"slideshowId\":2}");
+        when(outboxEventRepository.findAllByIdGreaterThanOrderByIdAsc(eq(-1L), any(Limit.class)))
+                .thenReturn(List.of(failing));
+        when(outboxEventRepository.findAllById(List.of(1L))).thenReturn(List.of(failing));
+        doThrow(new IllegalStateException("listener failed"))
+                .when(eventPublisher).publishEvent(new ImageDeletedEvent(5L, 2L));
+
+        for (int i = 0; i < 5; i++) {
+            dispatcher.dispatchBatch();
+        }
+
+        verify(eventPublisher, times(3)).publishEvent(new ImageDeletedEvent(5L, 2L));
+    }
+
+    /**
+     * Tests that an event committed after a newer one was read is still delivered.
+     */
+    @Test
+    void testDispatchBatch_DeliversLateCommits() {
+        when(outboxEventRepository.findAllByIdGreaterThanOrderByIdAsc(eq(-1L), any(Limit.class))).thenReturn(List.of(
+                row(1L, "ImageDeletedEvent", "{\"imageId\":5,\"slideshowId\":2}"),
+                row(3L, "ImageDeletedEvent", "{\"imageId\":7,\"slideshowId\":2}")));
+        when(outboxEventRepository.findAllById(List.of(2L)))
+                .thenReturn(List.of())
+                .thenReturn(List.of(row(2L, "ImageDeletedEvent", "{\"imageId\":6,\"slideshowId\":2}")));
+
+        dispatcher.dispatchBatch();
+        verify(eventPublisher, never()).publishEvent(new ImageDeletedEvent(6L, 2L));
+        dispatcher.dispatchBatch();
+        dispatcher.dispatchBatch();
+
+        verify(eventPublisher).publishEvent(new ImageDeletedEvent(6L, 2L));
+        verify(outboxEventRepository, times(2)).findAllById(List.of(2L));
+    }
+
+    /**
+     * Tests that the running dispatcher delivers events as soon as it is woken.
+     */
+    @Test
+    void testWakeUp_DeliversCommittedEvents() {
+        when(outboxEventRepository.findAllByIdGreaterThanOrderByIdAsc(anyLong(), any(Limit.class)))
+                .thenReturn(List.of())
+                .thenReturn(List.of(row(1L, "ImageDeletedEvent", "{\"imageId\":5,\"slideshowId\":2}")))
+                .thenReturn(List.of());
+        dispatcher.start();
+
+        dispatcher.wakeUp();
+
+        verify(eventPublisher, timeout(5000)).publishEvent(new ImageDeletedEvent(5L, 2L));
+    }
+
+    private static OutboxEvent row(long id, String type, String payload) {
+        OutboxEvent event = new OutboxEvent();
+        event.setId(id);
+        event.setEventType(type);
+        event.setPayload(payload);
+        event.setCreatedAt(LocalDateTime.of(2025, 3, 1, 12, 0));
+        return event;
+    }
+}
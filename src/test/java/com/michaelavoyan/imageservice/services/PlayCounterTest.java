@@ -0,0 +1,121 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.michaelavoyan.imageservice.config.PlayCountProperties;
+import com.michaelavoyan.imageservice.dto.PlayCount;
+import com.michaelavoyan.imageservice.entities.PlayCountKey;
+import com.michaelavoyan.imageservice.entities.PlayCountRollup;
+import com.michaelavoyan.imageservice.repositories.PlayCountRollupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link PlayCounter} class.
+ */
+class PlayCounterTest {
+
+    private static final LocalDateTime MINUTE = LocalDateTime.now().withSecond(0).withNano(0);
+
+    @Mock
+    private PlayCountRollupRepository rollupRepository;
+
+    private PlayCounter playCounter;
+
+    /**
+     * Initializes mocks; the rollup table starts empty.
+     */
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        playCounter = new PlayCounter(rollupRepository, new PlayCountProperties());
+        when(rollupRepository.findBySlideshow(anyLong(), any(), any())).thenReturn(List.of());
+    }
+
+    /**
+     * Tests that concurrent plays of the same key are all counted.
+     */
+    @Test
+    void testRecord_Concurrent() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8_000; i++) {
+            pool.execute(() -> playCounter.record(1L, 2L, MINUTE.plusSeconds(10)));
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(List.of(new PlayCount(2L, MINUTE, 8_000)),
+                playCounter.counts(1L, MINUTE, MINUTE.plusMinutes(1)));
+    }
+
+    /**
+     * Tests that a rollup writes the deltas once and reads combine stored rollups with live deltas.
+     */
+    @Test
+    void testRollup_WritesDeltasAndMergesOnRead() {
+        playCounter.record(1L, 2L, MINUTE);
+        playCounter.record(1L, 2L, MINUTE);
+        playCounter.record(9L, 2L, MINUTE);
+
+        playCounter.rollup();
+        playCounter.rollup();
+
+        verify(rollupRepository, times(1)).addCounts(Map.of(
+                PlayCountKey.of(1L, 2L, MINUTE), 2L,
+                PlayCountKey.of(9L, 2L, MINUTE), 1L));
+
+        PlayCountRollup stored = new PlayCountRollup();
+        stored.setId(PlayCountKey.of(1L, 2L, MINUTE));
+        stored.setPlayCount(2L);
+        when(rollupRepository.findBySlideshow(1L, MINUTE, MINUTE.plusMinutes(1))).thenReturn(List.of(stored));
+        playCounter.record(1L, 2L, MINUTE);
+
+        assertEquals(List.of(new PlayCount(2L, MINUTE, 3)), playCounter.counts(1L, MINUTE, MINUTE.plusMinutes(1)));
+    }
+
+    /**
+     * Tests that deltas of a failed rollup are kept and written by the next one.
+     */
+    @Test
+    void testRollup_RetriesAfterFailure() {
+        playCounter.record(1L, 2L, MINUTE);
+        doThrow(new QueryTimeoutException("down")).doNothing().when(rollupRepository).addCounts(anyMap());
+
+        playCounter.rollup();
+        assertEquals(1, playCounter.counts(1L, MINUTE, MINUTE.plusMinutes(1)).get(0).count());
+        playCounter.rollup();
+
+        verify(rollupRepository, times(2)).addCounts(Map.of(PlayCountKey.of(1L, 2L, MINUTE), 1L));
+    }
+
+    /**
+     * Tests that late plays for minutes past the retention are still counted.
+     */
+    @Test
+    void testRollup_EvictsIdleOldCells() {
+        LocalDateTime old = MINUTE.minusHours(2);
+        playCounter.record(1L, 2L, old);
+        playCounter.rollup();
+        playCounter.rollup();
+        playCounter.record(1L, 2L, old);
+        playCounter.rollup();
+
+        verify(rollupRepository, times(2)).addCounts(Map.of(PlayCountKey.of(1L, 2L, old), 1L));
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.michaelavoyan.imageservice.config.ProofOfPlayProperties;
+import com.michaelavoyan.imageservice.dto.PlayEvent;
+import com.michaelavoyan.imageservice.events.PlayRecordedEvent;
+import com.michaelavoyan.imageservice.repositories.ProofOfPlayRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link ProofOfPlayIngestor} class.
+ */
+class ProofOfPlayIngestorTest {
+
+    @Mock
+    private ProofOfPlayRepository proofOfPlayRepository;
+
+    @Mock
+    private EventOutbox eventOutbox;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private ProofOfPlayProperties properties;
+
+    private ProofOfPlayIngestor ingestor;
+
+    /**
+     * Initializes mocks and a small write-behind configuration.
+     */
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        properties = new ProofOfPlayProperties();
+        properties.setIngestion(ProofOfPlayProperties.Ingestion.WRITE_BEHIND);
+        properties.setQueueCapacity(3);
+        properties.setBatchSize(2);
+        properties.setFlushInterval(Duration.ofMillis(50));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (ingestor != null) {
+            ingestor.stop();
+        }
+    }
+
+    /**
+     * Tests that queued plays are written in batches of at most batchSize.
+     */
+    @Test
+    void testWriterFlushesBySizeAndTime() {
+        ingestor = new ProofOfPlayIngestor(proofOfPlayRepository, eventOutbox, transactionTemplate, properties);
+        ingestor.start();
+
+        assertEquals(3, ingestor.submitAll(List.of(play(1), play(2), play(3))));
+
+        verify(proofOfPlayRepository, timeout(2000).times(2)).insertBatch(anyList());
+        verify(proofOfPlayRepository).insertBatch(List.of(play(1), play(2)));
+        verify(proofOfPlayRepository).insertBatch(List.of(play(3)));
+    }
+
+    /**
+     * Tests that plays are rejected once the queue is full while the writer is stuck on the database.
+     */
+    @Test
+    void testSubmit_QueueFull() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return null;
+        }).when(proofOfPlayRepository).insertBatch(anyList());
+        ingestor = new ProofOfPlayIngestor(proofOfPlayRepository, eventOutbox, transactionTemplate, properties);
+        ingestor.start();
+
+        ingestor.submit(play(1));
+        assertTrue(writing.await(2, TimeUnit.SECONDS));
+        assertEquals(3, ingestor.submitAll(List.of(play(2), play(3), play(4), play(5))));
+        assertThrows(RejectedExecutionException.class, () -> ingestor.submit(play(6)));
+
+        release.countDown();
+    }
+
+    /**
+     * Tests that plays are rejected before the writer is started.
+     */
+    @Test
+    void testSubmit_NotStarted() {
+        ingestor = new ProofOfPlayIngestor(proofOfPlayRepository, eventOutbox, transactionTemplate, properties);
+
+        assertThrows(RejectedExecutionException.class, () -> ingestor.submit(play(1)));
+        assertEquals(0, ingestor.submitAll(List.of(play(1))));
+    }
+
+    /**
+     * Tests that a failed batch is retried row by row and only the bad rows are reported,
+     * and that events are written only for the saved plays.
+     */
+    @Test
+    void testWrite_FallsBackToSingleRows() {
+        properties.setPublishEvents(true);
+        ingestor = new ProofOfPlayIngestor(proofOfPlayRepository, eventOutbox, transactionTemplate, properties);
+        List<PlayEvent> plays = List.of(play(1), play(2), play(3));
+        doThrow(new DataIntegrityViolationException("duplicate")).when(proofOfPlayRepository).insertBatch(plays);
+        doThrow(new DataIntegrityViolationException("duplicate"))
+                .when(proofOfPlayRepository).insertBatch(List.of(play(2)));
+
+        assertEquals(List.of(1), ingestor.write(plays));
+        verify(proofOfPlayRepository).insertBatch(List.of(play(1)));
+        verify(proofOfPlayRepository).insertBatch(List.of(play(3)));
+        verify(eventOutbox).publishAll(List.of(new PlayRecordedEvent(1L, 1L, play(1).playedAt())));
+        verify(eventOutbox).publishAll(List.of(new PlayRecordedEvent(1L, 3L, play(3).playedAt())));
+        verify(eventOutbox, times(2)).publishAll(anyList());
+    }
+
+    /**
+     * Tests that no events are written unless publishing is enabled.
+     */
+    @Test
+    void testWrite_NoEventsByDefault() {
+        ingestor = new ProofOfPlayIngestor(proofOfPlayRepository, eventOutbox, transactionTemplate, properties);
+
+        assertEquals(List.of(), ingestor.write(List.of(play(1), play(2))));
+        verify(proofOfPlayRepository).insertBatch(List.of(play(1), play(2)));
+        verifyNoInteractions(eventOutbox);
+    }
+
+    /**
+     * Tests that plays still queued at shutdown are written before the writer stops.
+     */
+    @Test
+    void testStop_DrainsQueue() throws InterruptedException {
+        properties.setFlushInterval(Duration.ofSeconds(1));
+        ingestor = new ProofOfPlayIngestor(proofOfPlayRepository, eventOutbox, transactionTemplate, properties);
+        ingestor.start();
+        ingestor.submit(play(1));
+
+        ingestor.stop();
+
+        verify(proofOfPlayRepository).insertBatch(List.of(play(1)));
+        assertEquals(0, ingestor.queued());
+    }
+
+    private static PlayEvent play(long imageId) {
+        return new PlayEvent(1L, imageId, LocalDateTime.of(2025, 3, 1, 12, 0));
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.michaelavoyan.imageservice.config.ProofOfPlayProperties;
+import com.michaelavoyan.imageservice.repositories.ProofOfPlayRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.h2.jdbcx.JdbcDataSource;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link ProofOfPlayPartitionManager} class.
+ */
+class ProofOfPlayPartitionManagerTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2025, 3, 10);
+
+    private static final LocalDateTime NOON = TODAY.atTime(12, 0);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private ProofOfPlayRepository proofOfPlayRepository;
+
+    private ProofOfPlayPartitionManager manager;
+
+    /**
+     * Initializes mocks with a 5-day retention and 2 partitions ahead.
+     */
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ProofOfPlayProperties properties = new ProofOfPlayProperties();
+        properties.setRetention(Duration.ofDays(5));
+        properties.setPartitionsAhead(2);
+        manager = new ProofOfPlayPartitionManager(jdbcTemplate, proofOfPlayRepository, properties);
+    }
+
+    /**
+     * Tests the statement converting an unpartitioned table.
+     */
+    @Test
+    void testPartitionStatement() {
+        assertEquals("ALTER TABLE proof_of_play PARTITION BY RANGE COLUMNS (played_at) ("
+                + "PARTITION p_history VALUES LESS THAN ('2025-03-10'), "
+                + "PARTITION p20250310 VALUES LESS THAN ('2025-03-11'), "
+                + "PARTITION p20250311 VALUES LESS THAN ('2025-03-12'), "
+                + "PARTITION p20250312 VALUES LESS THAN ('2025-03-13'), "
+                + "PARTITION pmax VALUES LESS THAN (MAXVALUE))", manager.partitionStatement(TODAY));
+    }
+
+    /**
+     * Tests that missing days are split out of the catch-all and expired days are dropped.
+     */
+    @Test
+    void testPlan_AddsAndDropsPartitions() {
+        List<ProofOfPlayPartitionManager.Partition> partitions = List.of(
+                partition("p_history", "'2025-03-01 00:00:00'"),
+                partition("p20250304", "'2025-03-05 00:00:00'"),
+                partition("p20250305", "'2025-03-06 00:00:00'"),
+                partition("p20250311", "'2025-03-12 00:00:00'"),
+                partition("pmax", "MAXVALUE"));
+
+        List<String> statements = manager.plan(partitions, TODAY, TODAY.minusDays(5));
+
+        assertEquals(List.of(
+                "ALTER TABLE proof_of_play REORGANIZE PARTITION pmax INTO ("
+                        + "PARTITION p20250312 VALUES LESS THAN ('2025-03-13'), "
+                        + "PARTITION pmax VALUES LESS THAN (MAXVALUE))",
+                "ALTER TABLE proof_of_play DROP PARTITION p_history, p20250304"), statements);
+    }
+
+    /**
+     * Tests that nothing is done when the partitions are already up to date.
+     */
+    @Test
+    void testPlan_UpToDate() {
+        List<ProofOfPlayPartitionManager.Partition> partitions = List.of(
+                partition("p20250309", "'2025-03-10 00:00:00'"),
+                partition("p20250312", "'2025-03-13 00:00:00'"),
+                partition("pmax", "MAXVALUE"));
+
+        assertEquals(List.of(), manager.plan(partitions, TODAY, TODAY.minusDays(5)));
+    }
+
+    /**
+     * Tests that retention falls back to a single DELETE on databases other than MySQL.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testMaintain_DeletesOnOtherDatabases() {
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn("H2");
+
+        manager.maintain(TODAY);
+
+        verify(proofOfPlayRepository).deletePlayedBefore(TODAY.minusDays(5).atStartOfDay());
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    /**
+     * Tests that the legacy foreign keys are dropped before the unique indexes they may rely on.
+     */
+    @Test
+    void testDropStatements_DropsForeignKeysFirst() {
+        List<ProofOfPlayPartitionManager.Constraint> constraints = List.of(
+                new ProofOfPlayPartitionManager.Constraint("uk_slideshow_image", "UNIQUE"),
+                new ProofOfPlayPartitionManager.Constraint("fk_slideshow", "FOREIGN KEY"),
+                new ProofOfPlayPartitionManager.Constraint("fk_image", "FOREIGN KEY"));
+
+        assertEquals(List.of(
+                "ALTER TABLE proof_of_play DROP FOREIGN KEY `fk_slideshow`",
+                "ALTER TABLE proof_of_play DROP FOREIGN KEY `fk_image`",
+                "ALTER TABLE proof_of_play DROP INDEX `uk_slideshow_image`"),
+                ProofOfPlayPartitionManager.dropStatements(constraints, true));
+        assertEquals(List.of(
+                "ALTER TABLE proof_of_play DROP CONSTRAINT \"fk_slideshow\"",
+                "ALTER TABLE proof_of_play DROP CONSTRAINT \"fk_image\"",
+                "ALTER TABLE proof_of_play DROP CONSTRAINT \"uk_slideshow_image\""),
+                ProofOfPlayPartitionManager.dropStatements(constraints, false));
+    }
+
+    /**
+     * Tests that an unpartitioned MySQL table holding plays is left alone unless its conversion is enabled,
+     * with retention falling back to a DELETE.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testMaintain_DoesNotConvertPopulatedTableUnlessEnabled() {
+        // The mocked information_schema queries find no constraints and no partitions
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn("MySQL");
+        when(jdbcTemplate.query(startsWith("SELECT 1 FROM"), any(RowMapper.class))).thenReturn(List.of(1));
+
+        manager.maintain(TODAY);
+
+        verify(proofOfPlayRepository).deletePlayedBefore(TODAY.minusDays(5).atStartOfDay());
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    /**
+     * Tests that an empty unpartitioned MySQL table, as just created, is partitioned without the flag.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testMaintain_ConvertsEmptyTable() {
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn("MySQL");
+
+        manager.maintain(TODAY);
+
+        var order = inOrder(jdbcTemplate);
+        for (String sql : manager.conversionStatements(TODAY)) {
+            order.verify(jdbcTemplate).execute(sql);
+        }
+        assertEquals("ALTER TABLE proof_of_play DROP PRIMARY KEY, ADD PRIMARY KEY (id, played_at)",
+                manager.conversionStatements(TODAY).get(0));
+    }
+
+    /**
+     * Tests that on a table created by the schema that stored one play per slideshow and image,
+     * the legacy unique key and foreign keys are dropped so that a repeated play is stored.
+     */
+    @Test
+    void testMaintain_DropsLegacyUniqueKey() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:legacy-proof-of-play;DB_CLOSE_DELAY=-1");
+        JdbcTemplate h2 = new JdbcTemplate(dataSource);
+        h2.execute("DROP ALL OBJECTS");
+        h2.execute("CREATE TABLE slideshow (id BIGINT PRIMARY KEY)");
+        h2.execute("CREATE TABLE image (id BIGINT PRIMARY KEY)");
+        h2.execute("CREATE TABLE proof_of_play (id BIGINT AUTO_INCREMENT PRIMARY KEY, played_at TIMESTAMP(6), "
+                + "image_id BIGINT NOT NULL, slideshow_id BIGINT NOT NULL, "
+                + "CONSTRAINT UKslideshow_image UNIQUE (slideshow_id, image_id), "
+                + "CONSTRAINT FKimage FOREIGN KEY (image_id) REFERENCES image (id), "
+                + "CONSTRAINT FKslideshow FOREIGN KEY (slideshow_id) REFERENCES slideshow (id))");
+        h2.execute("INSERT INTO slideshow (id) VALUES (1)");
+        h2.execute("INSERT INTO image (id) VALUES (10)");
+        String insert = "INSERT INTO proof_of_play (slideshow_id, image_id, played_at) VALUES (1, 10, ?)";
+        h2.update(insert, NOON);
+
+        new ProofOfPlayPartitionManager(h2, proofOfPlayRepository, new ProofOfPlayProperties()).maintain(TODAY);
+        h2.update(insert, NOON.plusMinutes(1));
+
+        assertEquals(2, h2.queryForObject("SELECT COUNT(*) FROM proof_of_play "
+                + "WHERE slideshow_id = 1 AND image_id = 10", Integer.class));
+    }
+
+    private static ProofOfPlayPartitionManager.Partition partition(String name, String description) {
+        return new ProofOfPlayPartitionManager.Partition(name, ProofOfPlayPartitionManager.parseBound(description));
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.michaelavoyan.imageservice.config.ReplicaProperties;
+import com.michaelavoyan.imageservice.utils.ReplicaRoutingDataSource;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link ReplicaMonitor} against two H2 databases standing in for the primary and a replica.
+ */
+class ReplicaMonitorTest {
+
+    private static final Instant NOW = Instant.parse("2025-03-01T12:00:00Z");
+
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+    private ReplicaRoutingDataSource.Replica state;
+    private ReplicaMonitor monitor;
+
+    /**
+     * Creates the heartbeat table in both databases; nothing is replicated until the tests copy rows.
+     */
+    @BeforeEach
+    void setUp() {
+        primary = new JdbcTemplate(h2("monitor-primary"));
+        replica = new JdbcTemplate(h2("monitor-replica"));
+        for (JdbcTemplate jdbc : List.of(primary, replica)) {
+            jdbc.execute("DROP TABLE IF EXISTS replica_heartbeat");
+            jdbc.execute("CREATE TABLE replica_heartbeat (id INT PRIMARY KEY, beat_at BIGINT NOT NULL)");
+        }
+        state = new ReplicaRoutingDataSource.Replica("replica-1", replica.getDataSource());
+        ReplicaRoutingDataSource router = new ReplicaRoutingDataSource(primary.getDataSource(), List.of(state));
+        monitor = new ReplicaMonitor(router, new ReplicaProperties(), Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    /**
+     * Tests that the heartbeat is written to the primary, and a replica that has it is available.
+     */
+    @Test
+    void testCheck_ReplicaUpToDate() {
+        monitor.check();
+
+        assertEquals(NOW.toEpochMilli(), primary.queryForObject("SELECT beat_at FROM replica_heartbeat", Long.class));
+        assertFalse(state.isAvailable());
+
+        replicate(NOW.minusSeconds(1));
+        monitor.check();
+
+        assertTrue(state.isAvailable());
+        assertEquals(Duration.ofSeconds(1), state.lag());
+    }
+
+    /**
+     * Tests that a replica lagging by more than the maximum lag is not used until it catches up.
+     */
+    @Test
+    void testCheck_ReplicaLagging() {
+        replicate(NOW.minusSeconds(6));
+        monitor.check();
+
+        assertFalse(state.isAvailable());
+        assertEquals(Duration.ofSeconds(6), state.lag());
+
+        replicate(NOW);
+        monitor.check();
+
+        assertTrue(state.isAvailable());
+    }
+
+    /**
+     * Tests that a replica whose heartbeat cannot be read is not used.
+     */
+    @Test
+    void testCheck_ReplicaDown() {
+        replicate(NOW);
+        monitor.check();
+        replica.execute("DROP TABLE replica_heartbeat");
+
+        monitor.check();
+
+        assertFalse(state.isAvailable());
+    }
+
+    private void replicate(Instant beatAt) {
+        replica.update("MERGE INTO replica_heartbeat (id, beat_at) KEY (id) VALUES (1, ?)", beatAt.toEpochMilli());
+    }
+
+    private static JdbcDataSource h2(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUser("sa");
+        return dataSource;
+    }
+}
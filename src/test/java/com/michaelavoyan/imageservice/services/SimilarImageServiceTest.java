@@ -0,0 +1,153 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.michaelavoyan.imageservice.config.DuplicateProperties;
+import com.michaelavoyan.imageservice.dto.ImageHashEntry;
+import com.michaelavoyan.imageservice.dto.ImageSummary;
+import com.michaelavoyan.imageservice.dto.SimilarImage;
+import com.michaelavoyan.imageservice.events.ImageAddedEvent;
+import com.michaelavoyan.imageservice.events.ImageDeletedEvent;
+import com.michaelavoyan.imageservice.events.SlideshowDeletedEvent;
+import com.michaelavoyan.imageservice.repositories.ImageRepository;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link SimilarImageService} class.
+ */
+class SimilarImageServiceTest {
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    private DuplicateProperties properties;
+
+    private SimilarImageService service;
+
+    /**
+     * Initializes mocks; the database holds three hashed images, loaded in pages of two.
+     */
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        properties = new DuplicateProperties();
+        properties.setLoadBatchSize(2);
+        service = new SimilarImageService(imageRepository, properties);
+
+        when(imageRepository.findHashEntries(0L, Limit.of(2))).thenReturn(List.of(
+                new ImageHashEntry(1L, 0x00FFL),
+                new ImageHashEntry(2L, 0x01FFL)));
+        when(imageRepository.findHashEntries(2L, Limit.of(2))).thenReturn(List.of(
+                new ImageHashEntry(3L, 0xFF00L)));
+        when(imageRepository.findSummariesByIdIn(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(SimilarImageServiceTest::summary).toList();
+        });
+    }
+
+    /**
+     * Tests that nothing is reported until the index is built.
+     */
+    @Test
+    void testFindDuplicates_EmptyUntilReady() {
+        assertEquals(List.of(), service.findDuplicates(0x00FFL));
+
+        service.rebuild();
+
+        assertEquals(List.of(1L, 2L), service.findDuplicates(0x00FFL));
+        assertEquals(List.of(), service.findDuplicates(null));
+    }
+
+    /**
+     * Tests the similar images of an existing image, which exclude the image itself.
+     */
+    @Test
+    void testSimilarTo_Image() {
+        service.rebuild();
+        when(imageRepository.findPerceptualHashById(1L)).thenReturn(0x00FFL);
+
+        assertEquals(List.of(new SimilarImage(2L, "https://example.com/2.jpg", 1)), service.similarTo(1L, null));
+        assertEquals(2, service.similarTo(1L, 16).size());
+        assertThrows(IllegalArgumentException.class, () -> service.similarTo(1L, 17));
+    }
+
+    /**
+     * Tests that an image without a hash has no similar images, and a missing image is not found.
+     */
+    @Test
+    void testSimilarTo_Unhashed() {
+        service.rebuild();
+        when(imageRepository.findPerceptualHashById(anyLong())).thenReturn(null);
+        when(imageRepository.existsById(4L)).thenReturn(true);
+
+        assertEquals(List.of(), service.similarTo(4L, null));
+        assertThrows(EntityNotFoundException.class, () -> service.similarTo(5L, null));
+    }
+
+    /**
+     * Tests queries by hash, and that images deleted from the database are not returned.
+     */
+    @Test
+    void testSimilarTo_Hash() {
+        service.rebuild();
+        when(imageRepository.findSummariesByIdIn(List.of(3L))).thenReturn(List.of());
+
+        assertEquals(List.of(1L, 2L), service.similarTo("00000000000001ff", 8).stream()
+                .map(SimilarImage::id).sorted().toList());
+        assertEquals(List.of(), service.similarTo("000000000000ff00", 0));
+        assertThrows(IllegalArgumentException.class, () -> service.similarTo("xyz", null));
+    }
+
+    /**
+     * Tests that events update the index.
+     */
+    @Test
+    void testEvents() {
+        service.rebuild();
+
+        service.onImageAdded(new ImageAddedEvent(4L, "https://example.com/4.jpg", 5, 9L, 0x00FEL));
+        service.onImageDeleted(new ImageDeletedEvent(1L, null));
+        service.onSlideshowDeleted(new SlideshowDeletedEvent(9L, List.of(4L)));
+
+        assertEquals(List.of(2L), service.findDuplicates(0x00FFL));
+    }
+
+    /**
+     * Tests that catch-up loads the images added by other instances, reading the last IDs again
+     * for images committed after others with higher IDs.
+     */
+    @Test
+    void testCatchUp() {
+        properties.setCatchUpWindow(2);
+        service.rebuild();
+        when(imageRepository.findHashEntries(1L, Limit.of(2))).thenReturn(List.of(
+                new ImageHashEntry(2L, 0x01FFL),
+                new ImageHashEntry(8L, 0xFF01L)));
+        service.catchUp();
+        when(imageRepository.findHashEntries(6L, Limit.of(2))).thenReturn(List.of(
+                new ImageHashEntry(7L, 0xFF03L),
+                new ImageHashEntry(8L, 0xFF01L)));
+
+        service.catchUp();
+
+        assertEquals(List.of(3L, 8L, 7L), service.findDuplicates(0xFF00L));
+    }
+
+    private static ImageSummary summary(Long id) {
+        return new ImageSummary(id, "https://example.com/" + id + ".jpg", 5, null, null, 0);
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.michaelavoyan.imageservice.config.SlideshowOrderCacheProperties;
+import com.michaelavoyan.imageservice.dto.OrderedImage;
+import com.michaelavoyan.imageservice.events.ImageAddedEvent;
+import com.michaelavoyan.imageservice.events.SlideshowDeletedEvent;
+import com.michaelavoyan.imageservice.repositories.ImageRepository;
+import com.michaelavoyan.imageservice.repositories.SlideshowRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link SlideshowOrderCache} class.
+ */
+class SlideshowOrderCacheTest {
+
+    @Mock
+    private ImageRepository imageRepository;
+
+    @Mock
+    private SlideshowRepository slideshowRepository;
+
+    private SlideshowOrderCacheProperties properties;
+
+    private SlideshowOrderCache cache;
+
+    /**
+     * Initializes mocks; slideshow 1 is at version 3 and holds one image.
+     */
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        properties = new SlideshowOrderCacheProperties();
+        cache = new SlideshowOrderCache(imageRepository, slideshowRepository,
+                // Configured like Spring Boot's ObjectMapper, which writes dates as ISO strings.
+                Jackson2ObjectMapperBuilder.json()
+                        .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                        .build(),
+                properties);
+        when(imageRepository.findOrderBySlideshowId(1L)).thenReturn(List.of(
+                new OrderedImage(7L, "https://example.com/a.jpg", 5, LocalDateTime.of(2025, 3, 1, 12, 0))));
+        when(slideshowRepository.findVersionById(1L)).thenReturn(Optional.of(3L));
+    }
+
+    /**
+     * Tests that the order is serialized once and then served from the cache.
+     */
+    @Test
+    void testGet_SerializesOnceThenHits() {
+        SlideshowOrderCache.SlideshowOrder first = cache.get(1L);
+        SlideshowOrderCache.SlideshowOrder second = cache.get(1L);
+
+        assertTrue(first.found());
+        assertSame(first, second);
+        assertEquals("\"3\"", second.eTag());
+        assertEquals("[{\"id\":7,\"url\":\"https://example.com/a.jpg\",\"duration\":5,"
+                + "\"createdAt\":\"2025-03-01T12:00:00\"}]", new String(second.json(), StandardCharsets.UTF_8));
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        verify(imageRepository, times(1)).findOrderBySlideshowId(1L);
+    }
+
+    /**
+     * Tests that unknown slideshows are cached as not found without querying their images.
+     */
+    @Test
+    void testGet_NotFound() {
+        assertFalse(cache.get(2L).found());
+        assertFalse(cache.get(2L).found());
+
+        verify(slideshowRepository, times(1)).findVersionById(2L);
+        verify(imageRepository, never()).findOrderBySlideshowId(2L);
+    }
+
+    /**
+     * Tests that a cached order older than the required version is reloaded.
+     */
+    @Test
+    void testGet_ReloadsOlderVersion() {
+        cache.get(1L);
+        assertEquals(3L, cache.get(1L, 3L).version());
+
+        when(slideshowRepository.findVersionById(1L)).thenReturn(Optional.of(4L));
+        assertEquals(4L, cache.get(1L, 4L).version());
+        assertEquals(4L, cache.get(1L).version());
+
+        verify(imageRepository, times(2)).findOrderBySlideshowId(1L);
+    }
+
+    /**
+     * Tests that image and slideshow events invalidate the cached order.
+     */
+    @Test
+    void testInvalidation() {
+        cache.get(1L);
+        cache.onImageAdded(new ImageAddedEvent(8L, "https://example.com/b.jpg", 5, 1L, null));
+        cache.get(1L);
+        cache.onSlideshowDeleted(new SlideshowDeletedEvent(1L, List.of(7L, 8L)));
+        cache.get(1L);
+
+        verify(imageRepository, times(3)).findOrderBySlideshowId(1L);
+    }
+
+    /**
+     * Tests that expired entries are reloaded and the LRU bound evicts the least recently used order.
+     */
+    @Test
+    void testExpiryAndEviction() {
+        properties.setTtl(Duration.ZERO);
+        cache.get(1L);
+        cache.get(1L);
+        verify(imageRepository, times(2)).findOrderBySlideshowId(1L);
+
+        properties.setTtl(Duration.ofMinutes(1));
+        properties.setMaxEntries(2);
+        cache.get(1L);
+        cache.get(2L);
+        cache.get(3L);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictionCount());
+    }
+
+    /**
+     * Tests that concurrent misses for one slideshow share a single load.
+     */
+    @Test
+    void testGet_CoalescesConcurrentMisses() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(imageRepository.findOrderBySlideshowId(5L)).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await();
+            return List.of();
+        });
+        when(slideshowRepository.findVersionById(5L)).thenReturn(Optional.of(0L));
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<SlideshowOrderCache.SlideshowOrder> first = pool.submit(() -> cache.get(5L));
+            assertTrue(loading.await(2, TimeUnit.SECONDS));
+            Future<SlideshowOrderCache.SlideshowOrder> second = pool.submit(() -> cache.get(5L));
+            Thread.sleep(50);
+            release.countDown();
+
+            assertSame(first.get(2, TimeUnit.SECONDS), second.get(2, TimeUnit.SECONDS));
+            verify(imageRepository, times(1)).findOrderBySlideshowId(5L);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that hit, miss and load metrics are registered.
+     */
+    @Test
+    void testBindTo() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+        cache.get(1L);
+        cache.get(1L);
+
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "slideshowOrder").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1L, registry.get("cache.load").tag("cache", "slideshowOrder").functionTimer().count(), 0);
+    }
+}
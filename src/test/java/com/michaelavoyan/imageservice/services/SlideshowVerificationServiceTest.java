@@ -0,0 +1,160 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.services;
+
+import com.michaelavoyan.imageservice.config.SlideshowProperties;
+import com.michaelavoyan.imageservice.dto.ImportResult;
+import com.michaelavoyan.imageservice.entities.Image;
+import com.michaelavoyan.imageservice.utils.ImageVerifier;
+import com.michaelavoyan.imageservice.utils.VerificationResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link SlideshowVerificationService} class.
+ */
+class SlideshowVerificationServiceTest {
+
+    @Mock
+    private ImageVerifier imageVerifier;
+
+    @Mock
+    private SimilarImageService similarImageService;
+
+    private SlideshowProperties properties;
+
+    private SlideshowVerificationService service;
+
+    /**
+     * Pending verifications by URL, completed by the tests.
+     */
+    private final Map<String, CompletableFuture<VerificationResult>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Initializes mocks; verifications stay pending until completed by the test.
+     */
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        properties = new SlideshowProperties();
+        properties.setVerificationParallelism(2);
+        service = new SlideshowVerificationService(imageVerifier, similarImageService, properties);
+        when(imageVerifier.verifyImageUrl(anyString()))
+                .thenAnswer(invocation -> pending.computeIfAbsent(invocation.getArgument(0),
+                        url -> new CompletableFuture<>()));
+    }
+
+    /**
+     * Tests that no more than the configured number of URLs are verified at the same time,
+     * and that valid images get their perceptual hash.
+     */
+    @Test
+    void testVerify_BoundedParallelism() throws Exception {
+        List<Image> images = images(5);
+
+        CompletableFuture<List<ImportResult>> result = service.verify(images);
+
+        for (int i = 0; i < images.size(); i++) {
+            assertEquals(Math.min(images.size(), i + 2), pending.size());
+            pending.get(images.get(i).getUrl()).complete(new VerificationResult(true, null, null, (long) i));
+        }
+        assertEquals(List.of(), result.get(1, TimeUnit.SECONDS));
+        assertEquals(4L, images.get(4).getPerceptualHash());
+    }
+
+    /**
+     * Tests that failed images are reported in request order with their reason.
+     */
+    @Test
+    void testVerify_ReportsFailures() throws Exception {
+        List<Image> images = images(3);
+        images.get(2).setUrl("ftp://example.com/image.jpg");
+        when(imageVerifier.verifyImageUrl(images.get(2).getUrl()))
+                .thenThrow(new IllegalArgumentException("Not an absolute HTTP(S) URL"));
+
+        CompletableFuture<List<ImportResult>> result = service.verify(images);
+        pending.get(images.get(1).getUrl()).complete(VerificationResult.of(false));
+        pending.get(images.get(0).getUrl()).complete(VerificationResult.of(true));
+
+        List<ImportResult> failures = result.get(1, TimeUnit.SECONDS);
+        assertEquals(List.of(1, 2), failures.stream().map(ImportResult::index).toList());
+        assertEquals("Invalid image URL. The URL does not contain a valid image.", failures.get(0).error());
+        assertTrue(failures.get(1).error().startsWith("Invalid image URL: "));
+    }
+
+    /**
+     * Tests that images not verified by the deadline are reported as failed, and the rest are not started.
+     */
+    @Test
+    void testVerify_Deadline() throws Exception {
+        properties.setVerificationTimeout(Duration.ofMillis(100));
+        List<Image> images = images(3);
+
+        CompletableFuture<List<ImportResult>> result = service.verify(images);
+        pending.get(images.get(0).getUrl()).complete(VerificationResult.of(true));
+
+        List<ImportResult> failures = result.get(1, TimeUnit.SECONDS);
+        assertEquals(List.of(1, 2), failures.stream().map(ImportResult::index).toList());
+        assertTrue(failures.get(0).error().startsWith("Verification did not complete within"));
+
+        pending.get(images.get(1).getUrl()).complete(VerificationResult.of(true));
+        assertEquals(3, pending.size());
+        assertNull(pending.get(images.get(2).getUrl()).getNow(null));
+    }
+
+    /**
+     * Tests that near-duplicates are reported as failed when they are rejected.
+     */
+    @Test
+    void testVerify_RejectsNearDuplicates() throws Exception {
+        when(similarImageService.rejectsDuplicates()).thenReturn(true);
+        when(similarImageService.findDuplicates(anyLong())).thenReturn(List.of(7L));
+        List<Image> images = images(1);
+
+        CompletableFuture<List<ImportResult>> result = service.verify(images);
+        pending.get(images.get(0).getUrl()).complete(new VerificationResult(true, null, null, 5L));
+
+        assertEquals("Near-duplicate of image(s) 7", result.get(1, TimeUnit.SECONDS).get(0).error());
+    }
+
+    /**
+     * Tests that a saturated verifier fails the whole verification.
+     */
+    @Test
+    void testVerify_Rejected() {
+        when(imageVerifier.verifyImageUrl(anyString())).thenThrow(new RejectedExecutionException("Queue full"));
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> service.verify(images(3)).get(1, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+    }
+
+    private static List<Image> images(int count) {
+        List<Image> images = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Image image = new Image();
+            image.setUrl("https://example.com/image-" + i + ".jpg");
+            images.add(image);
+        }
+        return images;
+    }
+}
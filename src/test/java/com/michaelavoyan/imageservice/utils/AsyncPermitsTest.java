@@ -0,0 +1,66 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link AsyncPermits} class.
+ */
+class AsyncPermitsTest {
+
+    private static final Duration LONG = Duration.ofMinutes(1);
+
+    /**
+     * Tests that free permits are taken at once, and that released permits go to the waiters in order.
+     */
+    @Test
+    void testAcquire_ServesWaitersInOrder() {
+        AsyncPermits permits = new AsyncPermits(1);
+
+        assertTrue(permits.acquire(LONG).isDone());
+        CompletableFuture<Void> first = permits.acquire(LONG);
+        CompletableFuture<Void> second = permits.acquire(LONG);
+        assertFalse(first.isDone());
+        assertEquals(2, permits.queueLength());
+
+        permits.release();
+
+        assertTrue(first.isDone());
+        assertFalse(second.isDone());
+
+        permits.release();
+        permits.release();
+
+        assertTrue(second.isDone());
+        assertEquals(1, permits.availablePermits());
+        assertEquals(0, permits.queueLength());
+    }
+
+    /**
+     * Tests that a waiter not served in time fails without taking the permit released afterwards.
+     */
+    @Test
+    void testAcquire_TimesOut() {
+        AsyncPermits permits = new AsyncPermits(1);
+        permits.acquire(LONG);
+
+        CompletableFuture<Void> waiter = permits.acquire(Duration.ofMillis(10));
+
+        ExecutionException e = assertThrows(ExecutionException.class, waiter::get);
+        assertInstanceOf(TimeoutException.class, e.getCause());
+
+        permits.release();
+
+        assertEquals(1, permits.availablePermits());
+    }
+}
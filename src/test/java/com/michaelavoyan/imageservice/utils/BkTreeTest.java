@@ -0,0 +1,81 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link BkTree} class.
+ */
+class BkTreeTest {
+
+    private BkTree tree;
+
+    @BeforeEach
+    void setUp() {
+        tree = new BkTree();
+        tree.put(1, 0b0000L);
+        tree.put(2, 0b0001L);
+        tree.put(3, 0b0111L);
+        tree.put(4, 0b0001L);
+        tree.put(5, 0xFFFF_FFFF_FFFF_FFFFL);
+    }
+
+    /**
+     * Tests that matches are returned closest first, then by ID.
+     */
+    @Test
+    void testSearch_OrderedByDistance() {
+        assertEquals(List.of(new BkTree.Match(2, 0), new BkTree.Match(4, 0), new BkTree.Match(1, 1)),
+                tree.search(0b0001L, 1));
+        assertEquals(List.of(new BkTree.Match(5, 0)), tree.search(-1L, 3));
+        assertEquals(5, tree.search(0L, 64).size());
+    }
+
+    /**
+     * Tests that removed and replaced images are no longer found under their old hash.
+     */
+    @Test
+    void testRemoveAndReplace() {
+        tree.remove(2);
+        tree.put(1, 0b0111L);
+
+        assertEquals(List.of(new BkTree.Match(4, 0)), tree.search(0b0001L, 0));
+        assertEquals(List.of(new BkTree.Match(1, 0), new BkTree.Match(3, 0)), tree.search(0b0111L, 0));
+        assertEquals(4, tree.size());
+        assertNull(tree.hashOf(2));
+        assertEquals(0b0111L, tree.hashOf(1));
+    }
+
+    /**
+     * Tests the pruned search against a linear scan over random hashes.
+     */
+    @Test
+    void testSearch_MatchesLinearScan() {
+        Random random = new Random(42);
+        long[] hashes = LongStream.generate(random::nextLong).limit(2_000).toArray();
+        BkTree randomTree = new BkTree();
+        for (int i = 0; i < hashes.length; i++) {
+            randomTree.put(i, hashes[i]);
+        }
+
+        for (int query = 0; query < 20; query++) {
+            // Flip a few bits of an indexed hash, so that the query has close neighbours.
+            long hash = hashes[random.nextInt(hashes.length)] ^ (1L << random.nextInt(64));
+            long[] expected = LongStream.range(0, hashes.length)
+                    .filter(i -> PerceptualHash.distance(hashes[(int) i], hash) <= 20)
+                    .toArray();
+            long[] actual = randomTree.search(hash, 20).stream().mapToLong(BkTree.Match::id).sorted().toArray();
+            assertArrayEquals(expected, actual);
+        }
+    }
+}
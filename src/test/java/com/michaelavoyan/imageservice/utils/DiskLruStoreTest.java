@@ -0,0 +1,135 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link DiskLruStore} class.
+ */
+class DiskLruStoreTest {
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Tests that the least recently read file is evicted once the store is over its size.
+     */
+    @Test
+    void testPut_EvictsLeastRecentlyUsed() throws IOException {
+        DiskLruStore store = new DiskLruStore(directory, 25, Duration.ZERO);
+        store.put("a", new byte[10]).close();
+        store.put("b", new byte[10]).close();
+        store.open("a").close();
+
+        store.put("c", new byte[10]).close();
+
+        assertNull(store.open("b"));
+        assertFalse(Files.exists(directory.resolve("b")));
+        try (DiskLruStore.Lease a = store.open("a"); DiskLruStore.Lease c = store.open("c")) {
+            assertEquals(20, Files.size(a.file()) + Files.size(c.file()));
+        }
+        assertEquals(20, store.bytes());
+        assertEquals(2, store.size());
+    }
+
+    /**
+     * Tests that a file larger than the store is still kept until the next put.
+     */
+    @Test
+    void testPut_KeepsOversizedNewestFile() throws IOException {
+        DiskLruStore store = new DiskLruStore(directory, 5, Duration.ZERO);
+        store.put("a", new byte[3]).close();
+
+        try (DiskLruStore.Lease big = store.put("big", new byte[10]); DiskLruStore.Lease read = store.open("big")) {
+            assertEquals(big.file(), read.file());
+        }
+        assertNull(store.open("a"));
+    }
+
+    /**
+     * Tests that an evicted file stays on disk, and can still be leased, until its last lease is released.
+     */
+    @Test
+    void testOpen_KeepsEvictedFileUntilReleased() throws IOException {
+        DiskLruStore store = new DiskLruStore(directory, 15, Duration.ZERO);
+        DiskLruStore.Lease first = store.put("a", new byte[10]);
+        store.put("b", new byte[10]).close();
+
+        assertEquals(1, store.size());
+        assertEquals(10, store.bytes());
+        DiskLruStore.Lease second = store.open("a");
+        assertNotNull(second);
+        first.close();
+        first.close();
+        assertTrue(Files.exists(second.file()));
+
+        second.close();
+
+        assertFalse(Files.exists(directory.resolve("a")));
+        assertNull(store.open("a"));
+    }
+
+    /**
+     * Tests that a file removed just after its release stays on disk for the release grace.
+     */
+    @Test
+    void testRemove_KeepsRecentlyReleasedFile() throws IOException {
+        DiskLruStore store = new DiskLruStore(directory, 100, Duration.ofHours(1));
+        store.put("a", new byte[4]).close();
+
+        assertEquals(1, store.remove("a"::equals));
+
+        assertEquals(0, store.size());
+        assertTrue(Files.exists(directory.resolve("a")));
+    }
+
+    /**
+     * Tests that reopening a store indexes its files oldest first and deletes interrupted writes.
+     */
+    @Test
+    void testOpen_RebuildsIndexFromDirectory() throws IOException {
+        Files.write(directory.resolve("old"), new byte[10]);
+        Files.write(directory.resolve("new"), new byte[10]);
+        Files.write(directory.resolve("new.123.tmp"), new byte[10]);
+        Files.setLastModifiedTime(directory.resolve("old"), FileTime.fromMillis(1_000));
+        Files.setLastModifiedTime(directory.resolve("new"), FileTime.fromMillis(2_000));
+
+        DiskLruStore store = new DiskLruStore(directory, 15, Duration.ZERO);
+
+        assertNotNull(store.open("new"));
+        assertNull(store.open("old"));
+        assertFalse(Files.exists(directory.resolve("new.123.tmp")));
+        assertEquals(10, store.bytes());
+    }
+
+    /**
+     * Tests removing files by key and rejecting keys that could escape the directory.
+     */
+    @Test
+    void testRemoveAndInvalidKeys() throws IOException {
+        DiskLruStore store = new DiskLruStore(directory, 100, Duration.ZERO);
+        store.put("1-a.jpg", new byte[4]).close();
+        store.put("1-b.png", new byte[4]).close();
+        store.put("2-a.jpg", new byte[4]).close();
+
+        assertEquals(2, store.remove(key -> key.startsWith("1-")));
+
+        assertEquals(1, store.size());
+        assertEquals(4, store.bytes());
+        assertFalse(Files.exists(directory.resolve("1-a.jpg")));
+        assertThrows(IllegalArgumentException.class, () -> store.put("../escape", new byte[1]));
+        assertThrows(IllegalArgumentException.class, () -> store.open("a/b"));
+    }
+}
@@ -4,81 +4,374 @@
 
 package com.michaelavoyan.imageservice.utils;
 
+import com.michaelavoyan.imageservice.config.HttpClientProperties;
+import com.michaelavoyan.imageservice.config.VerifierProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.Mock;
-import org.mockito.MockitoAnnotations;
 import org.springframework.http.HttpHeaders;
 
-import java.io.ByteArrayInputStream;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.Mockito.*;
 
 class ImageVerifierTest {
 
     private ImageVerifier imageVerifier;
 
-    @Mock
-    private HttpURLConnection mockConnection;
+    private VerifierProperties properties;
+
+    private VerificationCache verificationCache;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private HttpClientProperties httpClientProperties;
+
+    private MockWebServer server;
+
+    private ExecutorService executor;
 
     @BeforeEach
-    void setUp() {
-        MockitoAnnotations.openMocks(this);
-        imageVerifier = new ImageVerifier();
+    void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        executor = Executors.newFixedThreadPool(2);
+
+        properties = new VerifierProperties();
+        httpClientProperties = new HttpClientProperties();
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(httpClientProperties.getConnectTimeout())
+                .build();
+        verificationCache = new VerificationCache(properties);
+        meterRegistry = new SimpleMeterRegistry();
+        imageVerifier = new ImageVerifier(
+                properties, httpClientProperties, httpClient, executor, verificationCache, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.shutdown();
+        executor.shutdownNow();
     }
 
     @Test
-    void testCreateConnection_Success() throws Exception {
+    void testCreateRequest_Success() {
         String testUrl = "https://example.com/image.jpg";
-        HttpURLConnection connection = imageVerifier.createConnection(testUrl);
-        assertNotNull(connection);
+        HttpRequest request = imageVerifier.createRequest(testUrl);
+        assertNotNull(request);
+        assertEquals("bytes=0-65535", request.headers().firstValue(HttpHeaders.RANGE).orElse(null));
+    }
+
+    @Test
+    void testCreateRequest_InvalidUrl() {
+        assertThrows(IllegalArgumentException.class, () -> imageVerifier.createRequest("ftp://example.com/a.jpg"));
+        assertThrows(IllegalArgumentException.class, () -> imageVerifier.createRequest("not a url"));
     }
 
     @Test
     void testIsValidImageUrl_ValidImage() throws Exception {
-        when(mockConnection.getHeaderField(HttpHeaders.CONTENT_TYPE)).thenReturn("image/jpeg");
+        server.enqueue(imageResponse("image/jpeg", testImageBytes()));
 
-        // Load a real image from resources
-        InputStream imageStream = getClass().getResourceAsStream("/js-collections.jpeg");
-        assertNotNull(imageStream, "Test image not found!");
+        CompletableFuture<Boolean> result = imageVerifier.isValidImageUrl(url());
+        assertTrue(result.get(), "Expected a valid image but got false");
 
-        when(mockConnection.getInputStream()).thenReturn(imageStream);
-        when(mockConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+        RecordedRequest request = server.takeRequest();
+        assertEquals("bytes=0-65535", request.getHeader(HttpHeaders.RANGE));
+    }
 
-        CompletableFuture<Boolean> result = imageVerifier.isValidImageUrl(mockConnection);
+    @Test
+    void testIsValidImageUrl_StrictMode() throws Exception {
+        properties.setMode(VerifierProperties.Mode.STRICT);
+        server.enqueue(imageResponse("image/jpeg", testImageBytes()));
+
+        CompletableFuture<Boolean> result = imageVerifier.isValidImageUrl(url());
         assertTrue(result.get(), "Expected a valid image but got false");
+        assertNull(server.takeRequest().getHeader(HttpHeaders.RANGE));
     }
 
-
     @Test
     void testIsValidImageUrl_InvalidContentType() throws Exception {
-        when(mockConnection.getHeaderField(HttpHeaders.CONTENT_TYPE)).thenReturn("text/html");
-        when(mockConnection.getResponseCode()).thenReturn(HttpURLConnection.HTTP_OK);
+        server.enqueue(imageResponse("text/html", testImageBytes()));
 
-        CompletableFuture<Boolean> result = imageVerifier.isValidImageUrl(mockConnection);
+        CompletableFuture<Boolean> result = imageVerifier.isValidImageUrl(url());
         assertFalse(result.get());
     }
 
     @Test
     void testIsValidImageUrl_InvalidImage() throws Exception {
-        when(mockConnection.getHeaderField(HttpHeaders.CONTENT_TYPE)).thenReturn("image/jpeg");
-        when(mockConnection.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+        server.enqueue(imageResponse("image/jpeg", new byte[0]));
+
+        CompletableFuture<Boolean> result = imageVerifier.isValidImageUrl(url());
+        assertFalse(result.get());
+    }
 
-        CompletableFuture<Boolean> result = imageVerifier.isValidImageUrl(mockConnection);
+    @Test
+    void testIsValidImageUrl_NotFound() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404));
+
+        CompletableFuture<Boolean> result = imageVerifier.isValidImageUrl(url());
         assertFalse(result.get());
     }
 
     @Test
     void testIsValidImageUrl_ConnectionError() throws Exception {
-        when(mockConnection.getHeaderField(HttpHeaders.CONTENT_TYPE)).thenReturn("image/jpeg");
-        when(mockConnection.getInputStream()).thenThrow(new IOException("Failed to read input stream"));
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
 
-        CompletableFuture<Boolean> result = imageVerifier.isValidImageUrl(mockConnection);
+        CompletableFuture<Boolean> result = imageVerifier.isValidImageUrl(url());
         assertFalse(result.get());
     }
+
+    @Test
+    void testIsValidImageUrl_TimeoutIsNotCached() throws Exception {
+        httpClientProperties.setReadTimeout(Duration.ofMillis(200));
+        server.enqueue(imageResponse("image/jpeg", testImageBytes()).setHeadersDelay(1, TimeUnit.SECONDS));
+        server.enqueue(imageResponse("image/jpeg", testImageBytes()));
+
+        assertFalse(imageVerifier.isValidImageUrl(url()).get());
+        assertTrue(imageVerifier.isValidImageUrl(url()).get());
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    void testIsValidImageUrl_KeepsValidResultWhenRevalidationFails() throws Exception {
+        properties.getCache().setTtl(Duration.ZERO);
+        server.enqueue(imageResponse("image/jpeg", testImageBytes()).setHeader(HttpHeaders.ETAG, "\"v1\""));
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+        server.enqueue(new MockResponse().setResponseCode(304));
+
+        assertTrue(imageVerifier.isValidImageUrl(url()).get());
+        assertTrue(imageVerifier.isValidImageUrl(url()).get());
+        assertTrue(imageVerifier.isValidImageUrl(url()).get());
+
+        server.takeRequest();
+        server.takeRequest();
+        assertEquals("\"v1\"", server.takeRequest().getHeader(HttpHeaders.IF_NONE_MATCH));
+    }
+
+    @Test
+    void testIsValidImageUrl_TimesPhases() throws Exception {
+        server.enqueue(imageResponse("image/jpeg", testImageBytes()));
+
+        assertTrue(imageVerifier.isValidImageUrl(url()).get());
+        assertTrue(imageVerifier.isValidImageUrl(url()).get());
+
+        for (String phase : new String[]{"acquire", "headers", "read", "decode"}) {
+            assertEquals(1, meterRegistry.get("verifier.phase").tag("phase", phase).timer().count(), phase);
+        }
+        assertEquals(2, meterRegistry.get("verifier.phase").tag("phase", "queue").timer().count());
+        assertEquals(1, meterRegistry.get("verifier.verifications").tag("outcome", "valid").timer().count());
+        assertEquals(0, meterRegistry.get("verifier.in_flight").gauge().value());
+    }
+
+    @Test
+    void testIsValidImageUrl_TimesErrors() throws Exception {
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+
+        assertFalse(imageVerifier.isValidImageUrl(url()).get());
+
+        assertEquals(1, meterRegistry.get("verifier.verifications").tag("outcome", "error").timer().count());
+        assertEquals(0, meterRegistry.get("verifier.verifications").tag("outcome", "invalid").timer().count());
+        assertEquals(0, meterRegistry.get("verifier.phase").tag("phase", "decode").timer().count());
+    }
+
+    @Test
+    void testIsValidImageUrl_WaitingForHostKeepsThreadsFree() throws Exception {
+        // One slot per host and two threads: requests queued for a slow host must not hold the threads.
+        httpClientProperties.setMaxConnectionsPerHost(1);
+        byte[] image = pngBytes(64, 64);
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                MockResponse response = imageResponse("image/png", image);
+                return "/a".equals(request.getPath()) ? response.setHeadersDelay(1, TimeUnit.SECONDS) : response;
+            }
+        });
+
+        List<CompletableFuture<Boolean>> slowHost = new ArrayList<>();
+        for (String path : new String[]{"/a", "/b", "/c"}) {
+            slowHost.add(imageVerifier.isValidImageUrl(server.url(path).newBuilder().host("localhost").toString()));
+        }
+        String otherHost = server.url("/d").newBuilder().host("127.0.0.1").toString();
+
+        assertTrue(imageVerifier.isValidImageUrl(otherHost).get(700, TimeUnit.MILLISECONDS));
+        for (CompletableFuture<Boolean> result : slowHost) {
+            assertTrue(result.get());
+        }
+    }
+
+    @Test
+    void testIsValidImageUrl_HeaderModeIgnoredRange() throws Exception {
+        // The origin ignores the Range header and sends the whole body; only the prefix is read.
+        properties.setHeaderBytes(1024);
+        server.enqueue(imageResponse("image/png", pngBytes(4000, 3000)));
+
+        CompletableFuture<Boolean> result = imageVerifier.isValidImageUrl(url());
+        assertTrue(result.get());
+    }
+
+    @Test
+    void testIsValidImageUrl_HeaderModeRejectsUnknownSignature() throws Exception {
+        server.enqueue(imageResponse("image/jpeg", "<html>not an image</html>".getBytes()));
+
+        CompletableFuture<Boolean> result = imageVerifier.isValidImageUrl(url());
+        assertFalse(result.get());
+    }
+
+    @Test
+    void testIsValidImageUrl_ReusesConnection() throws Exception {
+        // Bodies that fit in the header prefix are read to the end, leaving the connection reusable.
+        server.enqueue(imageResponse("image/png", pngBytes(64, 64)));
+        server.enqueue(imageResponse("image/png", pngBytes(64, 64)));
+
+        assertTrue(imageVerifier.isValidImageUrl(server.url("/first").toString()).get());
+        assertTrue(imageVerifier.isValidImageUrl(server.url("/second").toString()).get());
+
+        server.takeRequest();
+        assertEquals(1, server.takeRequest().getSequenceNumber(), "Expected the keep-alive connection to be reused");
+    }
+
+    @Test
+    void testIsValidImageUrl_CachedResult() throws Exception {
+        server.enqueue(imageResponse("image/jpeg", testImageBytes()));
+
+        assertTrue(imageVerifier.isValidImageUrl(url()).get());
+        assertTrue(imageVerifier.isValidImageUrl(url().toUpperCase().replace("/IMAGE", "/image")).get());
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, verificationCache.hitCount());
+    }
+
+    @Test
+    void testIsValidImageUrl_RevalidatesExpiredResult() throws Exception {
+        properties.getCache().setTtl(Duration.ZERO);
+        server.enqueue(imageResponse("image/jpeg", testImageBytes()).setHeader(HttpHeaders.ETAG, "\"v1\""));
+        server.enqueue(new MockResponse().setResponseCode(304));
+
+        assertTrue(imageVerifier.isValidImageUrl(url()).get());
+        assertTrue(imageVerifier.isValidImageUrl(url()).get());
+
+        server.takeRequest();
+        assertEquals("\"v1\"", server.takeRequest().getHeader(HttpHeaders.IF_NONE_MATCH));
+    }
+
+    @Test
+    void testVerifyImageUrl_ComputesPerceptualHash() throws Exception {
+        properties.setPerceptualHash(true);
+        byte[] image = testImageBytes();
+        server.enqueue(imageResponse("image/jpeg", image));
+
+        VerificationResult result = imageVerifier.verifyImageUrl(url()).get();
+        assertTrue(result.valid());
+        assertEquals(PerceptualHash.of(image), result.perceptualHash());
+        assertNull(server.takeRequest().getHeader(HttpHeaders.RANGE));
+    }
+
+    @Test
+    void testVerifyImageUrl_NoPerceptualHashByDefault() throws Exception {
+        server.enqueue(imageResponse("image/jpeg", testImageBytes()));
+
+        VerificationResult result = imageVerifier.verifyImageUrl(url()).get();
+        assertTrue(result.valid());
+        assertNull(result.perceptualHash());
+    }
+
+    @Test
+    void testFetch_ReturnsWholeBody() throws Exception {
+        byte[] image = pngBytes(200, 200);
+        server.enqueue(imageResponse("image/png", image));
+        server.enqueue(imageResponse("image/png", image));
+
+        assertArrayEquals(image, imageVerifier.fetch(url(), image.length).get());
+        assertNull(server.takeRequest().getHeader(HttpHeaders.RANGE));
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> imageVerifier.fetch(url(), image.length - 1).get());
+        assertInstanceOf(IOException.class, e.getCause());
+    }
+
+    @Test
+    void testFetch_ForgetsHostsOnceIdle() throws Exception {
+        byte[] image = pngBytes(16, 16);
+        server.enqueue(imageResponse("image/png", image).setHeadersDelay(200, TimeUnit.MILLISECONDS));
+        server.enqueue(new MockResponse().setResponseCode(404));
+        server.enqueue(imageResponse("image/png", image));
+
+        CompletableFuture<byte[]> pending = imageVerifier.fetch(url(), image.length);
+        assertEquals(1, imageVerifier.hostCount());
+        pending.get();
+        assertThrows(ExecutionException.class, () -> imageVerifier.fetch(url(), image.length).get());
+        assertTrue(imageVerifier.isValidImageUrl(server.url("/b").newBuilder().host("localhost").toString()).get());
+
+        assertEquals(0, imageVerifier.hostCount());
+    }
+
+    @Test
+    void testIsReadableImageHeader_WebpExtended() {
+        byte[] header = new byte[30];
+        System.arraycopy("RIFF".getBytes(), 0, header, 0, 4);
+        System.arraycopy("WEBPVP8X".getBytes(), 0, header, 8, 8);
+        header[24] = (byte) 0x7F; // width - 1 = 127
+        header[27] = (byte) 0x3F; // height - 1 = 63
+
+        assertEquals(ImageFormat.WEBP, ImageFormat.sniff(header));
+        assertTrue(imageVerifier.isReadableImageHeader(header));
+    }
+
+    private String url() {
+        return server.url("/image").toString();
+    }
+
+    private static MockResponse imageResponse(String contentType, byte[] body) {
+        return new MockResponse()
+                .setHeader(HttpHeaders.CONTENT_TYPE, contentType)
+                .setBody(new Buffer().write(body));
+    }
+
+    /**
+     * Loads a real image from resources.
+     */
+    private byte[] testImageBytes() throws IOException {
+        try (InputStream imageStream = getClass().getResourceAsStream("/js-collections.jpeg")) {
+            assertNotNull(imageStream, "Test image not found!");
+            return imageStream.readAllBytes();
+        }
+    }
+
+    /**
+     * Encodes a noisy PNG of the given size, which compresses poorly.
+     */
+    private static byte[] pngBytes(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y += 7) {
+            for (int x = 0; x < width; x += 7) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
 }
@@ -0,0 +1,101 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.utils;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link PerceptualHash} class.
+ */
+class PerceptualHashTest {
+
+    /**
+     * Tests that re-encoded and resized copies of an image hash close to the original,
+     * and that a different image does not.
+     */
+    @Test
+    void testOf_NearDuplicates() throws IOException {
+        BufferedImage original = scene(800, 600, Color.ORANGE);
+        long hash = PerceptualHash.of(original);
+
+        // Decoding subsamples large images, so even a lossless copy may differ by a bit or two.
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.of(encode(original, "png"))) <= 2);
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.of(encode(original, "jpg"))) <= 4);
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.of(scene(320, 240, Color.ORANGE))) <= 6);
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.of(mirror(original))) > 16);
+    }
+
+    /**
+     * Tests that bytes which are not a decodable image have no hash.
+     */
+    @Test
+    void testOf_Undecodable() throws IOException {
+        byte[] png = encode(scene(100, 100, Color.BLUE), "png");
+
+        assertNull(PerceptualHash.of("<html>not an image</html>".getBytes()));
+        assertNull(PerceptualHash.of(Arrays.copyOf(png, png.length / 2)));
+    }
+
+    /**
+     * Tests the hexadecimal form and the distance.
+     */
+    @Test
+    void testHex() {
+        assertEquals("00000000000000ff", PerceptualHash.toHex(0xFFL));
+        assertEquals(-2L, PerceptualHash.fromHex("FFFFFFFFFFFFFFFE"));
+        assertEquals(64, PerceptualHash.distance(0L, -1L));
+        assertThrows(IllegalArgumentException.class, () -> PerceptualHash.fromHex("ff"));
+        assertThrows(IllegalArgumentException.class, () -> PerceptualHash.fromHex("zzzzzzzzzzzzzzzz"));
+    }
+
+    /**
+     * Draws a gradient with a few shapes, scaled to the given size.
+     */
+    private static BufferedImage scene(int width, int height, Color accent) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.scale(width / 100.0, height / 100.0);
+            for (int x = 0; x < 100; x++) {
+                graphics.setColor(new Color(x * 2, x * 2, 255 - x * 2));
+                graphics.fillRect(x, 0, 1, 100);
+            }
+            graphics.setColor(accent);
+            graphics.fillOval(10, 20, 35, 50);
+            graphics.setColor(Color.BLACK);
+            graphics.fillRect(60, 55, 30, 30);
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    private static BufferedImage mirror(BufferedImage image) {
+        BufferedImage mirrored = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = mirrored.createGraphics();
+        try {
+            graphics.drawImage(image, image.getWidth(), 0, -image.getWidth(), image.getHeight(), null);
+        } finally {
+            graphics.dispose();
+        }
+        return mirrored;
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+}
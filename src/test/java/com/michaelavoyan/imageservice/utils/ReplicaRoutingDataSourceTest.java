@@ -0,0 +1,137 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the {@link ReplicaRoutingDataSource} class.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private static final Duration MAX_LAG = Duration.ofSeconds(5);
+
+    @Mock
+    private DataSource primary;
+
+    @Mock
+    private DataSource firstPool;
+
+    @Mock
+    private DataSource secondPool;
+
+    @Mock
+    private Connection primaryConnection;
+
+    @Mock
+    private Connection firstConnection;
+
+    @Mock
+    private Connection secondConnection;
+
+    private ReplicaRoutingDataSource.Replica first;
+    private ReplicaRoutingDataSource.Replica second;
+    private ReplicaRoutingDataSource router;
+
+    /**
+     * Initializes mocks; both replicas are available.
+     */
+    @BeforeEach
+    void setUp() throws SQLException {
+        MockitoAnnotations.openMocks(this);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(firstPool.getConnection()).thenReturn(firstConnection);
+        when(secondPool.getConnection()).thenReturn(secondConnection);
+        first = new ReplicaRoutingDataSource.Replica("replica-1", firstPool);
+        second = new ReplicaRoutingDataSource.Replica("replica-2", secondPool);
+        first.update(Duration.ZERO, MAX_LAG);
+        second.update(Duration.ofSeconds(1), MAX_LAG);
+        router = new ReplicaRoutingDataSource(primary, List.of(first, second));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReplicaRoutingDataSource.setPinnedToPrimary(false);
+    }
+
+    /**
+     * Tests that connections are taken from the available replicas in turn.
+     */
+    @Test
+    void testGetConnection_RoundRobin() throws SQLException {
+        assertSame(firstConnection, router.getConnection());
+        assertSame(secondConnection, router.getConnection());
+        assertSame(firstConnection, router.getConnection());
+        assertEquals(3, router.getReplicaConnections());
+        assertEquals(0, router.getPrimaryConnections());
+    }
+
+    /**
+     * Tests that lagging replicas are skipped, and the primary is used when no replica is left.
+     */
+    @Test
+    void testGetConnection_SkipsLaggingReplicas() throws SQLException {
+        first.update(Duration.ofSeconds(6), MAX_LAG);
+
+        assertFalse(first.isAvailable());
+        assertSame(secondConnection, router.getConnection());
+        assertSame(secondConnection, router.getConnection());
+
+        second.markUnavailable();
+
+        assertSame(primaryConnection, router.getConnection());
+        assertEquals(1, router.getPrimaryConnections());
+    }
+
+    /**
+     * Tests that a replica failing to give a connection is marked unavailable and the next one is tried.
+     */
+    @Test
+    void testGetConnection_FallsBackWhenReplicaIsDown() throws SQLException {
+        when(firstPool.getConnection()).thenThrow(new SQLException("Connection refused"));
+
+        assertSame(secondConnection, router.getConnection());
+        assertFalse(first.isAvailable());
+        assertSame(secondConnection, router.getConnection());
+        verify(firstPool, times(1)).getConnection();
+    }
+
+    /**
+     * Tests that a thread pinned to the primary reads from it until released.
+     */
+    @Test
+    void testGetConnection_PinnedToPrimary() throws SQLException {
+        ReplicaRoutingDataSource.setPinnedToPrimary(true);
+
+        assertSame(primaryConnection, router.getConnection());
+
+        ReplicaRoutingDataSource.setPinnedToPrimary(false);
+
+        assertSame(firstConnection, router.getConnection());
+    }
+
+    /**
+     * Tests that connections with other credentials are refused with the JDBC exception for unsupported features.
+     */
+    @Test
+    void testGetConnection_OtherCredentialsNotSupported() {
+        assertThrows(SQLFeatureNotSupportedException.class, () -> router.getConnection("user", "secret"));
+        verifyNoInteractions(primary, firstPool);
+    }
+}
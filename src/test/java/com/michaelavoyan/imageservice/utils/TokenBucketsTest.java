@@ -0,0 +1,100 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link TokenBuckets} class, driven by explicit times rather than the clock.
+ */
+class TokenBucketsTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Tests that a client may make a burst of requests, then one per refilled token, and is told how long to wait.
+     */
+    @Test
+    void testTryAcquire_BurstThenRate() {
+        TokenBuckets buckets = new TokenBuckets(2, 3, 4);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, buckets.tryAcquire("client", 0));
+        }
+        assertEquals(SECOND / 2, buckets.tryAcquire("client", 0));
+        assertEquals(SECOND / 4, buckets.tryAcquire("client", SECOND / 4));
+        assertEquals(0, buckets.tryAcquire("client", SECOND / 2));
+        assertTrue(buckets.tryAcquire("client", SECOND / 2) > 0);
+    }
+
+    /**
+     * Tests that clients have separate buckets, and that buckets idle long enough to be full are dropped.
+     */
+    @Test
+    void testTryAcquire_SeparatesAndForgetsClients() {
+        TokenBuckets buckets = new TokenBuckets(1, 1, 1);
+
+        assertEquals(0, buckets.tryAcquire("a", 0));
+        assertTrue(buckets.tryAcquire("a", 0) > 0);
+        assertEquals(0, buckets.tryAcquire("b", 0));
+        assertEquals(2, buckets.size());
+
+        for (int i = 0; i < 1024; i++) {
+            buckets.tryAcquire("c", 10 * SECOND + i * SECOND);
+        }
+
+        assertEquals(1, buckets.size());
+    }
+
+    /**
+     * Tests that the number of stripes is rounded up to a power of two.
+     */
+    @Test
+    void testStripes_PowerOfTwo() {
+        assertEquals(1, new TokenBuckets(1, 1, 1).stripes());
+        assertEquals(64, new TokenBuckets(1, 1, 64).stripes());
+        assertEquals(128, new TokenBuckets(1, 1, 100).stripes());
+        assertThrows(IllegalArgumentException.class, () -> new TokenBuckets(0, 1, 1));
+    }
+
+    /**
+     * Tests that concurrent clients never get more tokens than their bursts.
+     */
+    @Test
+    void testTryAcquire_Concurrent() throws Exception {
+        TokenBuckets buckets = new TokenBuckets(1e-9, 100, 8);
+        AtomicInteger admitted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        if (buckets.tryAcquire("client-" + (i % 10), 0) == 0) {
+                            admitted.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(10 * 100, admitted.get());
+    }
+}
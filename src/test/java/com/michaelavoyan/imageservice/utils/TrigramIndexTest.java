@@ -0,0 +1,111 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link TrigramIndex} class.
+ */
+class TrigramIndexTest {
+
+    private TrigramIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new TrigramIndex();
+        index.put(3, "https://cdn.example.com/Summer/beach.jpg", 5);
+        index.put(1, "https://cdn.example.com/winter/snow.png", 10);
+        index.put(2, "https://img.test/summer-sale.webp", 10);
+    }
+
+    /**
+     * Tests case-insensitive substring matching with results in ID order.
+     */
+    @Test
+    void testSearch_Substring() {
+        assertArrayEquals(new long[]{2, 3}, index.search("SUMMER", 0));
+        assertArrayEquals(new long[]{1, 3}, index.search("cdn.example", 0));
+        assertArrayEquals(new long[0], index.search("autumn", 0));
+    }
+
+    /**
+     * Tests that a match needs the whole query, not only all of its trigrams.
+     */
+    @Test
+    void testSearch_VerifiesCandidates() {
+        index.put(4, "abcd-bcde", 5);
+
+        assertArrayEquals(new long[0], index.search("abcde", 0));
+        assertArrayEquals(new long[]{4}, index.search("abcd-b", 0));
+    }
+
+    /**
+     * Tests the duration filter, where 0 means any duration.
+     */
+    @Test
+    void testSearch_Duration() {
+        assertArrayEquals(new long[]{1, 2}, index.search("", 10));
+        assertArrayEquals(new long[]{3}, index.search("summer", 5));
+    }
+
+    /**
+     * Tests queries shorter than a trigram.
+     */
+    @Test
+    void testSearch_ShortQuery() {
+        assertArrayEquals(new long[]{3}, index.search("be", 0));
+        assertArrayEquals(new long[]{1, 2, 3}, index.search("", 0));
+    }
+
+    /**
+     * Tests that removed and replaced images are no longer found under their old URL.
+     */
+    @Test
+    void testRemoveAndReplace() {
+        index.remove(3);
+        index.put(2, "https://img.test/autumn.webp", 10);
+
+        assertArrayEquals(new long[0], index.search("summer", 0));
+        assertArrayEquals(new long[]{2}, index.search("autumn", 0));
+        assertEquals(2, index.size());
+        assertFalse(index.contains(3));
+        assertTrue(index.contains(2));
+    }
+
+    /**
+     * Tests the index against a brute-force scan on random URLs inserted in random order.
+     */
+    @Test
+    void testSearch_MatchesBruteForce() {
+        TrigramIndex random = new TrigramIndex();
+        String[] urls = new String[2_000];
+        Random rnd = new Random(7);
+        for (int i = 0; i < urls.length; i++) {
+            StringBuilder url = new StringBuilder("https://x/");
+            for (int j = 0; j < 12; j++) {
+                url.append((char) ('a' + rnd.nextInt(4)));
+            }
+            urls[i] = url.toString();
+        }
+        for (int i = urls.length - 1; i >= 0; i--) {
+            random.put(i, urls[i], 1 + i % 3);
+        }
+
+        for (String query : new String[]{"abca", "dd", "abcdabc", "x/a"}) {
+            long[] expected = IntStream.range(0, urls.length)
+                    .filter(i -> urls[i].contains(query) && 1 + i % 3 == 2)
+                    .asLongStream()
+                    .toArray();
+            assertArrayEquals(expected, random.search(query, 2), query);
+        }
+    }
+}
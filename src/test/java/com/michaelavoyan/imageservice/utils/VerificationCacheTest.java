@@ -0,0 +1,177 @@
+/**
+ * Created by Michael Avoyan on 01/03/2025.
+ */
+
+package com.michaelavoyan.imageservice.utils;
+
+import com.michaelavoyan.imageservice.config.VerifierProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the {@link VerificationCache} class.
+ */
+class VerificationCacheTest {
+
+    private VerifierProperties properties;
+
+    private VerificationCache cache;
+
+    @BeforeEach
+    void setUp() {
+        properties = new VerifierProperties();
+        cache = new VerificationCache(properties);
+    }
+
+    /**
+     * Tests that a fresh result is served without calling the loader again.
+     */
+    @Test
+    void testGet_HitAfterMiss() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            VerificationResult result = cache.get("https://example.com/a.jpg", previous -> {
+                loads.incrementAndGet();
+                return CompletableFuture.completedFuture(VerificationResult.of(true));
+            }).get();
+            assertTrue(result.valid());
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.missCount());
+        assertEquals(2, cache.hitCount());
+    }
+
+    /**
+     * Tests that concurrent requests for one URL share a single in-flight load.
+     */
+    @Test
+    void testGet_CoalescesInFlightLoads() throws Exception {
+        CompletableFuture<VerificationResult> load = new CompletableFuture<>();
+        AtomicInteger loads = new AtomicInteger();
+
+        CompletableFuture<VerificationResult> first = cache.get("https://example.com/a.jpg", previous -> {
+            loads.incrementAndGet();
+            return load;
+        });
+        CompletableFuture<VerificationResult> second = cache.get("https://example.com/a.jpg", previous -> {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture(VerificationResult.of(false));
+        });
+
+        assertSame(first, second);
+        load.complete(VerificationResult.of(true));
+        assertTrue(second.get().valid());
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.coalescedCount());
+    }
+
+    /**
+     * Tests that an expired result is handed to the loader for revalidation.
+     */
+    @Test
+    void testGet_PassesExpiredResultToLoader() throws Exception {
+        properties.getCache().setTtl(Duration.ZERO);
+        VerificationResult original = new VerificationResult(true, "\"v1\"", null);
+        cache.get("https://example.com/a.jpg", previous -> CompletableFuture.completedFuture(original)).get();
+
+        AtomicReference<VerificationResult> revalidated = new AtomicReference<>();
+        cache.get("https://example.com/a.jpg", previous -> {
+            revalidated.set(previous);
+            return CompletableFuture.completedFuture(previous);
+        }).get();
+
+        assertEquals(original, revalidated.get());
+    }
+
+    /**
+     * Tests that the least recently used entry is evicted once the cache is full.
+     */
+    @Test
+    void testGet_EvictsLeastRecentlyUsed() throws Exception {
+        properties.getCache().setMaxEntries(2);
+        for (String url : new String[]{"https://a.com/1", "https://a.com/2", "https://a.com/1", "https://a.com/3"}) {
+            cache.get(url, previous -> CompletableFuture.completedFuture(VerificationResult.of(true))).get();
+        }
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictionCount());
+        assertEquals(1, cache.hitCount());
+    }
+
+    /**
+     * Tests that a rejected load is not cached and does not block later requests.
+     */
+    @Test
+    void testGet_RejectedLoadIsNotCached() throws Exception {
+        assertThrows(RejectedExecutionException.class, () -> cache.get("https://example.com/a.jpg", previous -> {
+            throw new RejectedExecutionException("Queue full");
+        }));
+
+        VerificationResult result = cache.get("https://example.com/a.jpg",
+                previous -> CompletableFuture.completedFuture(VerificationResult.of(true))).get();
+        assertTrue(result.valid());
+        assertEquals(1, cache.size());
+    }
+
+    /**
+     * Tests that a failed load is not cached, and that an expired result is served when its revalidation fails.
+     */
+    @Test
+    void testGet_FailedLoadIsNotCached() throws Exception {
+        properties.getCache().setTtl(Duration.ZERO);
+        String url = "https://example.com/a.jpg";
+
+        CompletableFuture<VerificationResult> failed = cache.get(url,
+                previous -> CompletableFuture.failedFuture(new IOException("Connection reset")));
+
+        assertThrows(ExecutionException.class, failed::get);
+        assertEquals(0, cache.size());
+
+        cache.get(url, previous -> CompletableFuture.completedFuture(new VerificationResult(true, "\"v1\"", null)))
+                .get();
+        VerificationResult stale = cache.get(url,
+                previous -> CompletableFuture.failedFuture(new IOException("Connection reset"))).get();
+
+        assertTrue(stale.valid());
+        assertEquals("\"v1\"", stale.etag());
+        assertEquals(1, cache.staleServedCount());
+    }
+
+    /**
+     * Tests URL normalization.
+     */
+    @Test
+    void testNormalize() {
+        assertEquals("https://cdn.example.com/a/b.jpg?x=1",
+                VerificationCache.normalize("HTTPS://CDN.Example.com:443/a/./c/../b.jpg?x=1#frag"));
+        assertEquals("http://example.com:8080/", VerificationCache.normalize("http://example.com:8080"));
+        assertThrows(IllegalArgumentException.class, () -> VerificationCache.normalize("mailto:someone@example.com"));
+    }
+
+    /**
+     * Tests that the cache statistics are published as meters.
+     */
+    @Test
+    void testBindTo() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+        cache.get("https://example.com/a.jpg",
+                previous -> CompletableFuture.completedFuture(VerificationResult.of(true))).get();
+
+        assertEquals(1.0, registry.get("cache.gets").tag("result", "miss").functionCounter().count());
+        assertNotNull(registry.get("cache.evictions").functionCounter());
+    }
+}